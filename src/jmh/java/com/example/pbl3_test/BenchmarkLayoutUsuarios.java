@@ -0,0 +1,106 @@
+package com.example.pbl3_test;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara as duas organizações do {@link LayoutUsuarios}, com todos os arquivos direto em {@code Usuarios}
+ * ou em subdiretórios derivados do CPF, com 10 mil, 1 milhão e 5 milhões de usuários.
+ *
+ * <p>
+ * As operações são as que o {@link MotorArquivos} faz no diretório {@code Usuarios}: ler o documento de um
+ * usuário sorteado entre todos, procurar um CPF que não existe, como no cadastro, e regravar um documento
+ * da mesma forma que o {@link LogEscrita}, por um arquivo temporário renomeado sobre o original. Os
+ * documentos são gravados diretamente, sem passar pelo {@link Controller}, para que a preparação de milhões
+ * de usuários seja viável.
+ * </p>
+ *
+ * <p>
+ * Cada combinação de organização e quantidade fica em {@code <pbl3.benchmark.dir>/layout-<organização>-<quantidade>},
+ * criada apenas na primeira execução e reaproveitada nas seguintes, já que a criação de milhões de
+ * arquivos leva minutos. O diretório padrão é {@code java.io.tmpdir}; todas as combinações juntas ocupam
+ * cerca de 12 milhões de inodes. Executado pelo perfil {@code jmh}:
+ * {@code mvn -P jmh test-compile exec:exec -Djmh.args="BenchmarkLayoutUsuarios"}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BenchmarkLayoutUsuarios {
+
+    private static final String DIRETA = "direta";
+    private static final String EXTENSAO = new CodecJson().getExtensao();
+    private static final String CONCLUIDO = ".concluido";
+
+    @Param({"10000", "1000000", "5000000"})
+    private int usuarios;
+
+    @Param({DIRETA, LayoutUsuarios.SUBDIRETORIOS})
+    private String organizacao;
+
+    private LayoutUsuarios layout;
+    private byte[] documento;
+
+    @Setup
+    public void preparar() throws IOException {
+        Path base = Paths.get(System.getProperty("pbl3.benchmark.dir", System.getProperty("java.io.tmpdir")))
+                .resolve("layout-" + organizacao + "-" + usuarios);
+        layout = new LayoutUsuarios(base.resolve("Usuarios").toFile(), LayoutUsuarios.SUBDIRETORIOS.equals(organizacao));
+        documento = new CodecJson().codificarUsuario(new Usuario("usuario", "senha", "Usuário de teste",
+                cpf(0), "usuario@exemplo.com", false));
+        if (Files.exists(base.resolve(CONCLUIDO))) {
+            return;
+        }
+        for (int i = 0; i < usuarios; i++) {
+            File arquivo = layout.arquivo(cpf(i), EXTENSAO);
+            if (i == 0 || layout.isSubdividido()) {
+                arquivo.getParentFile().mkdirs();
+            }
+            Files.write(arquivo.toPath(), documento);
+        }
+        Files.createFile(base.resolve(CONCLUIDO));
+    }
+
+    @Benchmark
+    public byte[] lerUsuario() throws IOException {
+        return Files.readAllBytes(layout.arquivo(cpf(ThreadLocalRandom.current().nextInt(usuarios)), EXTENSAO).toPath());
+    }
+
+    @Benchmark
+    public boolean procurarAusente() {
+        return layout.arquivo(cpf(usuarios + ThreadLocalRandom.current().nextInt(usuarios)), EXTENSAO).isFile();
+    }
+
+    @Benchmark
+    public Path regravarUsuario() throws IOException {
+        Path destino = layout.arquivo(cpf(ThreadLocalRandom.current().nextInt(usuarios)), EXTENSAO).toPath();
+        Path temporario = destino.resolveSibling(destino.getFileName() + ".tmp");
+        Files.write(temporario, documento);
+        return Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String cpf(int i) {
+        return String.format("%011d", i);
+    }
+}
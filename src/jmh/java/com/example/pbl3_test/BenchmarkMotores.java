@@ -0,0 +1,111 @@
+package com.example.pbl3_test;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compara o tempo das operações mais frequentes da aplicação em cada motor de armazenamento.
+ *
+ * <p>
+ * Cada motor recebe um diretório de dados temporário com usuários e eventos cadastrados, e as operações
+ * são feitas por meio do {@link Controller}. A conformidade entre os motores é verificada pelos testes
+ * em {@code MotorArmazenamentoTest}. Executado pelo perfil {@code jmh}:
+ * {@code mvn -P jmh test-compile exec:exec -Djmh.args="BenchmarkMotores"}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BenchmarkMotores {
+
+    private static final int USUARIOS = 200;
+    private static final int EVENTOS = 20;
+
+    @Param({MotorArquivos.NOME, MotorMemoria.NOME, MotorSql.NOME})
+    private String motor;
+
+    private Path diretorio;
+    private Armazenamento dados;
+    private final Controller controller = new Controller();
+    private final List<Usuario> usuarios = new ArrayList<>();
+    private final List<String> eventoIds = new ArrayList<>();
+
+    @Setup
+    public void preparar() throws IOException {
+        Registro.setNivel(Registro.Nivel.AVISO);
+        diretorio = Files.createTempDirectory("pbl3-" + motor + "-");
+        dados = new Armazenamento(MotorArmazenamento.porNome(motor, diretorio.toFile(), new Properties(),
+                1000, 5 * 60 * 1000L));
+        dados.verificarExistencia();
+        Usuario admin = new Usuario("admin", "admin", "Administrador", "99999999999", "admin@exemplo.com", true);
+        LocalDate amanha = LocalDate.now().plusDays(1);
+        for (int i = 0; i < USUARIOS; i++) {
+            usuarios.add(controller.cadastrarUsuario("usuario" + i, "senha" + i, "Usuário " + i,
+                    String.format("%011d", i), "usuario" + i + "@exemplo.com", false, dados));
+        }
+        for (int i = 0; i < EVENTOS; i++) {
+            Date data = Date.from(amanha.plusDays(i).atStartOfDay(ZoneId.systemDefault()).toInstant());
+            eventoIds.add(controller.cadastrarEvento(admin, "Evento " + i, "Descrição " + i, data,
+                    Integer.MAX_VALUE / 2, 10.0 + i, dados).getID());
+        }
+    }
+
+    @TearDown
+    public void encerrar() throws IOException {
+        dados.fechar();
+        try (Stream<Path> caminhos = Files.walk(diretorio)) {
+            caminhos.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public Ingresso comprar() {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        return controller.comprarIngresso(usuarios.get(aleatorio.nextInt(USUARIOS)),
+                eventoIds.get(aleatorio.nextInt(EVENTOS)), dados, "Pix", new Date());
+    }
+
+    @Benchmark
+    public Evento lerEvento() {
+        return dados.lerEvento(eventoIds.get(ThreadLocalRandom.current().nextInt(EVENTOS)));
+    }
+
+    @Benchmark
+    public boolean login() throws IOException {
+        int i = ThreadLocalRandom.current().nextInt(USUARIOS);
+        return controller.loginUsuario("usuario" + i, "senha" + i, dados);
+    }
+
+    @Benchmark
+    public List<String> listarProximosEventos() {
+        return dados.listarProximosEventos(20);
+    }
+}
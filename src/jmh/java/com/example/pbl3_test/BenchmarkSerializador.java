@@ -0,0 +1,91 @@
+package com.example.pbl3_test;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara os adaptadores do {@link SerializadorJson} com a serialização por reflexão usada antes,
+ * que criava um novo {@link Gson} a cada leitura ou gravação.
+ *
+ * <p>
+ * Executado pelo perfil {@code jmh}: {@code mvn -P jmh test-compile exec:exec}. Para medir também a
+ * alocação por operação, acrescente {@code -Djmh.args="-prof gc"}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BenchmarkSerializador {
+
+    private static final int RECIBOS = 200;
+
+    private Evento evento;
+    private Usuario usuario;
+    private String jsonEvento;
+    private String jsonUsuario;
+    private String jsonEventoReflexao;
+    private String jsonUsuarioReflexao;
+
+    @Setup
+    public void preparar() {
+        evento = new Evento("Show", "Evento de teste", new Date(), 1000, 50.0);
+        evento.adicionarAvaliacao("avaliador", "Muito bom");
+        usuario = new Usuario("login", "senha", "Nome Completo", "12345678900", "login@exemplo.com", false);
+        for (int i = 0; i < RECIBOS; i++) {
+            Ingresso ingresso = new Ingresso(evento, 50.0);
+            usuario.adicionarIngresso(ingresso);
+            usuario.adicionarRecibo(new Recibo(usuario.getNome(), usuario.getCpf(), usuario.getEmail(),
+                    ingresso, "Cartão", evento.getID(), new Date()));
+        }
+        jsonEvento = SerializadorJson.GSON.toJson(evento);
+        jsonUsuario = SerializadorJson.GSON.toJson(usuario);
+        // O formato das datas difere entre os dois serializadores
+        jsonEventoReflexao = new Gson().toJson(evento);
+        jsonUsuarioReflexao = new Gson().toJson(usuario);
+    }
+
+    @Benchmark
+    public Evento lerEventoAdaptadores() {
+        return SerializadorJson.GSON.fromJson(jsonEvento, Evento.class);
+    }
+
+    @Benchmark
+    public Evento lerEventoReflexao() {
+        return new Gson().fromJson(jsonEventoReflexao, Evento.class);
+    }
+
+    @Benchmark
+    public Usuario lerUsuarioAdaptadores() {
+        return SerializadorJson.GSON.fromJson(jsonUsuario, Usuario.class);
+    }
+
+    @Benchmark
+    public Usuario lerUsuarioReflexao() {
+        return new Gson().fromJson(jsonUsuarioReflexao, Usuario.class);
+    }
+
+    @Benchmark
+    public String gravarUsuarioAdaptadores() {
+        return SerializadorJson.GSON.toJson(usuario);
+    }
+
+    @Benchmark
+    public String gravarUsuarioReflexao() {
+        return new Gson().toJson(usuario);
+    }
+}
@@ -1,194 +1,341 @@
 package com.example.pbl3_test;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
-
-import java.io.*;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 /**
- * Classe responsável por gerenciar a persistência de dados de usuários e eventos,
- * utilizando arquivos JSON como meio de armazenamento.
+ * Classe responsável por gerenciar a persistência de dados de usuários e eventos.
+ *
+ * <p>
+ * As operações são repassadas ao {@link MotorArmazenamento} configurado no diretório de dados
+ * (arquivo {@value MotorArmazenamento#ARQUIVO_CONFIGURACAO}). Por padrão é usado o {@link MotorArquivos},
+ * que grava um arquivo por entidade; o {@link MotorMemoria} e o {@link MotorSql} podem ser escolhidos
+ * sem alterar as telas e o {@link Controller}.
+ * </p>
+ *
+ * <p>
+ * As operações travam as entidades envolvidas nas {@link TravasEntidades} do motor: escrita para as
+ * gravações e leitura para as consultas. No {@link MotorArquivos} as travas também valem entre
+ * processos que usam o mesmo diretório de dados. Operações que leem e depois alteram uma entidade,
+ * como as do {@link Controller}, devem travá-la para escrita com {@link #getTravas()} antes da leitura.
+ * </p>
+ *
+ * <p>
+ * Relatórios que percorrem todos os eventos e usuários devem usar {@link #abrirVisao()}, em vez de
+ * ler as entidades uma a uma, para obter dados consistentes sem disputar as travas com as compras.
+ * </p>
  */
-public class Armazenamento {
+public class Armazenamento implements MotorArmazenamento {
+
+    private static final int CAPACIDADE_CACHE_PADRAO = 1000;
+    private static final long TEMPO_VIDA_CACHE_PADRAO = 5 * 60 * 1000L;
 
-    private final String baseDir;
+    private final MotorArmazenamento motor;
+    private final TravasEntidades travas;
+    private ReservasIngressos reservas;
 
     /**
      * Construtor da classe, que inicializa o caminho base para os arquivos de dados.
      */
     public Armazenamento() {
-        String projectDir = System.getProperty("user.dir");
-        this.baseDir = projectDir + File.separator + "src" + File.separator + "main" + File.separator +
-                       "java" + File.separator + "com" + File.separator + "example" + File.separator +
-                       "pbl3_test" + File.separator + "Data";
-        System.out.println("Caminho gerado: " + this.baseDir);
+        this(CAPACIDADE_CACHE_PADRAO, TEMPO_VIDA_CACHE_PADRAO);
     }
 
     /**
-     * Verifica e cria os diretórios necessários para armazenamento de dados.
+     * Construtor da classe que permite configurar o cache de usuários e eventos.
      *
-     * @return {@code true} se os diretórios foram criados ou já existiam; {@code false} em caso de erro.
+     * @param capacidadeCache o número máximo de entidades de cada tipo mantidas em memória
+     * @param tempoVidaCacheMillis o tempo, em milissegundos, que uma entidade permanece válida no cache
      */
-    public boolean verificarExistencia() {
-        File baseDirFile = new File(this.baseDir);
-        File usuariosDir = new File(this.baseDir + File.separator + "Usuarios");
-        File eventosDir = new File(this.baseDir + File.separator + "Eventos");
+    public Armazenamento(int capacidadeCache, long tempoVidaCacheMillis) {
+        File baseDir = diretorioPadrao();
+        Registro.depuracao("Caminho gerado: {}", baseDir.getPath());
+        this.motor = MotorArmazenamento.doDiretorio(baseDir, capacidadeCache, tempoVidaCacheMillis);
+        this.travas = travasDoMotor(motor);
+    }
 
-        boolean baseCriado = baseDirFile.exists() || baseDirFile.mkdirs();
-        boolean usuariosCriado = usuariosDir.exists() || usuariosDir.mkdirs();
-        boolean eventosCriado = eventosDir.exists() || eventosDir.mkdirs();
+    /**
+     * Construtor da classe que usa o motor informado, sem consultar a configuração do diretório de dados.
+     *
+     * @param motor o motor de armazenamento
+     */
+    public Armazenamento(MotorArmazenamento motor) {
+        this.motor = motor;
+        this.travas = travasDoMotor(motor);
+    }
 
-        if (baseCriado && usuariosCriado && eventosCriado) {
-            System.out.println("Todos os diretórios estão prontos: " + this.baseDir);
-            return true;
-        } else {
-            System.err.println("Falha ao criar os diretórios necessários!");
-            return false;
-        }
+    private static TravasEntidades travasDoMotor(MotorArmazenamento motor) {
+        return motor instanceof MotorArquivos ? ((MotorArquivos) motor).getTravas() : TravasEntidades.emMemoria();
     }
 
     /**
-     * Armazena os dados de um usuário em um arquivo JSON.
+     * Retorna o diretório de dados da aplicação.
      *
-     * @param usuario o objeto {@code Usuario} a ser armazenado.
+     * @return o diretório {@code Data}, relativo ao diretório do projeto
      */
-    public void armazenarUsuario(Usuario usuario) {
-        Gson gson = new Gson();
-        String json = gson.toJson(usuario);
-        String userCpf = usuario.getCpf().replaceAll("[^a-zA-Z0-9]", "");
-        String caminhoDiretorio = baseDir + File.separator + "Usuarios";
-        criarDiretorioSeNecessario(caminhoDiretorio);
+    public static File diretorioPadrao() {
+        String projectDir = System.getProperty("user.dir");
+        return new File(projectDir + File.separator + "src" + File.separator + "main" + File.separator +
+                        "java" + File.separator + "com" + File.separator + "example" + File.separator +
+                        "pbl3_test" + File.separator + "Data");
+    }
 
-        String caminhoArquivo = caminhoDiretorio + File.separator + userCpf + ".json";
+    /**
+     * Retorna o motor usado por este armazenamento.
+     *
+     * @return o motor de armazenamento
+     */
+    public MotorArmazenamento getMotor() {
+        return motor;
+    }
 
-        try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(caminhoArquivo), "UTF-8")) {
-            writer.write(json);
-            System.out.println("Dados do usuário armazenados com sucesso!");
-        } catch (IOException e) {
-            System.err.println("Erro ao armazenar os dados do usuário: " + e.getMessage());
-            e.printStackTrace();
+    /**
+     * Retorna as reservas temporárias de ingressos deste armazenamento, criadas no primeiro uso, já com
+     * o armazenamento construído.
+     *
+     * @return as reservas de ingressos
+     */
+    public synchronized ReservasIngressos getReservas() {
+        if (reservas == null) {
+            reservas = new ReservasIngressos(this);
         }
+        return reservas;
     }
 
     /**
-     * Lê os dados de um usuário a partir de um arquivo JSON.
+     * Retorna as travas por entidade deste armazenamento.
      *
-     * @param cpf o CPF do usuário para buscar os dados.
-     * @return o objeto {@code Usuario} lido do arquivo ou {@code null} em caso de erro.
+     * @return as travas do motor
      */
+    public TravasEntidades getTravas() {
+        return travas;
+    }
+
+    @Override
+    public String getNome() {
+        return motor.getNome();
+    }
+
+    @Override
+    public boolean verificarExistencia() {
+        return motor.verificarExistencia();
+    }
+
+    @Override
+    public void armazenarUsuario(Usuario usuario) {
+        try (var _ = travas.travarEscrita(TravasEntidades.chaveUsuario(usuario.getCpf()))) {
+            motor.armazenarUsuario(usuario);
+        }
+    }
+
+    @Override
     public Usuario lerUsuario(String cpf) {
-        Gson gson = new Gson();
-        String caminhoArquivo = baseDir + File.separator + "Usuarios" + File.separator + cpf + ".json";
-        File arquivo = new File(caminhoArquivo);
+        try (var _ = travas.travarLeitura(TravasEntidades.chaveUsuario(cpf))) {
+            return motor.lerUsuario(cpf);
+        }
+    }
 
-        if (!arquivo.exists()) {
-            System.out.println("Arquivo não encontrado: " + caminhoArquivo);
-            return null;
+    @Override
+    public void registrarCompra(Usuario usuario, List<Ingresso> ingressos, List<Recibo> recibos) {
+        try (var _ = travas.travarEscrita(TravasEntidades.chaveUsuario(usuario.getCpf()))) {
+            motor.registrarCompra(usuario, ingressos, recibos);
         }
+    }
 
-        try (InputStreamReader reader = new InputStreamReader(new FileInputStream(caminhoArquivo), "UTF-8")) {
-            Usuario usuario = gson.fromJson(reader, Usuario.class);
-            System.out.println("Dados do usuário lidos com sucesso!");
-            return usuario;
-        } catch (IOException | JsonSyntaxException e) {
-            System.err.println("Erro ao ler os dados do usuário: " + e.getMessage());
-            e.printStackTrace();
-            return null;
+    @Override
+    public void registrarCancelamento(Usuario usuario, Ingresso ingresso) {
+        try (var _ = travas.travarEscrita(TravasEntidades.chaveUsuario(usuario.getCpf()))) {
+            motor.registrarCancelamento(usuario, ingresso);
         }
     }
 
-    /**
-     * Armazena os dados de um evento em um arquivo JSON.
-     *
-     * @param evento o objeto {@code Evento} a ser armazenado.
-     */
-    public void armazenarEvento(Evento evento) {
-        if (!verificarExistencia()) {
-            System.err.println("Erro: Não foi possível preparar os diretórios para salvar o evento.");
-            return;
+    @Override
+    public boolean existeUsuario(String cpf) {
+        return motor.existeUsuario(cpf);
+    }
+
+    @Override
+    public Map<String, String> lerCamposUsuario(String cpf, String... campos) {
+        try (var _ = travas.travarLeitura(TravasEntidades.chaveUsuario(cpf))) {
+            return motor.lerCamposUsuario(cpf, campos);
         }
+    }
 
-        Gson gson = new Gson();
-        String json = gson.toJson(evento);
-        String eventoId = evento.getID();
-        String caminhoArquivo = baseDir + File.separator + "Eventos" + File.separator + eventoId + ".json";
+    @Override
+    public String buscarCpfPorLogin(String login) {
+        return motor.buscarCpfPorLogin(login);
+    }
 
-        try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(caminhoArquivo), "UTF-8")) {
-            writer.write(json);
-            System.out.println("Dados do evento armazenados com sucesso!");
-        } catch (IOException e) {
-            System.err.println("Erro ao armazenar os dados do evento: " + e.getMessage());
-            e.printStackTrace();
+    @Override
+    public String buscarCpfPorEmail(String email) {
+        return motor.buscarCpfPorEmail(email);
+    }
+
+    @Override
+    public boolean existeEvento(String eventoId) {
+        return motor.existeEvento(eventoId);
+    }
+
+    @Override
+    public void armazenarEvento(Evento evento) {
+        try (var _ = travas.travarEscrita(TravasEntidades.chaveEvento(evento.getID()))) {
+            motor.armazenarEvento(evento);
         }
     }
 
-    /**
-     * Lê os dados de um evento a partir de um arquivo JSON.
-     *
-     * @param eventoId o ID do evento para buscar os dados.
-     * @return o objeto {@code Evento} lido do arquivo ou {@code null} em caso de erro.
-     */
+    @Override
+    public void armazenarDetalhesEvento(Evento evento) {
+        try (var _ = travas.travarEscrita(TravasEntidades.chaveEvento(evento.getID()))) {
+            motor.armazenarDetalhesEvento(evento);
+        }
+    }
+
+    @Override
     public Evento lerEvento(String eventoId) {
-        Gson gson = new Gson();
-        String caminhoArquivo = baseDir + File.separator + "Eventos" + File.separator + eventoId + ".json";
+        try (var _ = travas.travarLeitura(TravasEntidades.chaveEvento(eventoId))) {
+            return motor.lerEvento(eventoId);
+        }
+    }
 
-        try (InputStreamReader reader = new InputStreamReader(new FileInputStream(caminhoArquivo), "UTF-8")) {
-            Evento evento = gson.fromJson(reader, Evento.class);
-            System.out.println("Dados do evento lidos com sucesso!");
-            return evento;
-        } catch (IOException | JsonSyntaxException e) {
-            System.err.println("Erro ao ler os dados do evento: " + e.getMessage());
-            e.printStackTrace();
-            return null;
+    @Override
+    public int ajustarIngressos(String eventoId, int delta) {
+        try (var _ = travas.travarEscrita(TravasEntidades.chaveEvento(eventoId))) {
+            return motor.ajustarIngressos(eventoId, delta);
         }
     }
 
     /**
-     * Lista todos os eventos futuros, baseando-se nos arquivos JSON na pasta de eventos.
+     * Reserva ingressos sem travar o evento: a operação já é atômica no motor, e as compras
+     * simultâneas do mesmo evento não esperam umas pelas outras.
+     */
+    @Override
+    public int reservarIngressos(String eventoId, int quantidade) {
+        return motor.reservarIngressos(eventoId, quantidade);
+    }
+
+    /**
+     * Lista todos os eventos futuros, em ordem de data.
      *
-     * @return uma lista com os nomes dos eventos futuros.
+     * @return uma lista com os IDs dos eventos futuros.
      */
     public List<String> listarEventosDisponiveis() {
-        List<String> eventosFuturos = new ArrayList<>();
-        File diretorio = new File(baseDir + File.separator + "Eventos");
-        Date dataAtual = new Date();
+        return listarProximosEventos(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<String> listarProximosEventos(int quantidade) {
+        return motor.listarProximosEventos(quantidade);
+    }
 
-        if (diretorio.exists() && diretorio.isDirectory()) {
-            File[] arquivos = diretorio.listFiles((dir, name) -> name.endsWith(".json"));
+    @Override
+    public List<String> listarEventosEntre(Date inicio, Date fim, int pagina, int tamanhoPagina) {
+        return motor.listarEventosEntre(inicio, fim, pagina, tamanhoPagina);
+    }
 
-            if (arquivos != null) {
-                for (File arquivo : arquivos) {
-                    String nomeArquivo = arquivo.getName().replace(".json", "");
+    @Override
+    public void armazenarLoteUsuarios(List<Usuario> usuarios) throws IOException {
+        try (var _ = travas.travarEscrita(chaves(usuarios, usuario -> TravasEntidades.chaveUsuario(usuario.getCpf())))) {
+            motor.armazenarLoteUsuarios(usuarios);
+        }
+    }
 
-                    try {
-                        Date dataArquivo = new SimpleDateFormat("yyMMdd").parse(nomeArquivo.substring(0, 6));
-                        if (dataArquivo.after(dataAtual)) {
-                            eventosFuturos.add(nomeArquivo);
-                        }
-                    } catch (ParseException e) {
-                        System.err.println("Erro ao processar o arquivo " + nomeArquivo + ": " + e.getMessage());
-                    }
-                }
-            }
+    @Override
+    public void armazenarLoteEventos(List<Evento> eventos) throws IOException {
+        try (var _ = travas.travarEscrita(chaves(eventos, evento -> TravasEntidades.chaveEvento(evento.getID())))) {
+            motor.armazenarLoteEventos(eventos);
         }
+    }
+
+    private static <T> List<String> chaves(List<T> entidades, Function<T, String> chave) {
+        List<String> chaves = new ArrayList<>(entidades.size());
+        for (T entidade : entidades) {
+            chaves.add(chave.apply(entidade));
+        }
+        return chaves;
+    }
+
+    @Override
+    public List<Recibo> lerRecibosArquivados(String cpf) {
+        return motor.lerRecibosArquivados(cpf);
+    }
 
-        return eventosFuturos;
+    @Override
+    public List<Evento> lerEventosArquivados() {
+        return motor.lerEventosArquivados();
     }
 
     /**
-     * Cria o diretório especificado, caso ele não exista.
+     * Abre uma visão somente leitura de todos os eventos e usuários. Todas as entidades ficam
+     * travadas para leitura apenas durante a captura; depois disso, a visão pode ser percorrida
+     * sem travar as gravações. O {@link MotorArquivos} trava as entidades por conta própria, e só
+     * depois de ligar os arquivos.
      *
-     * @param caminho o caminho do diretório a ser criado.
+     * @return a visão capturada, que deve ser fechada depois do uso
+     * @throws IOException se a visão não puder ser capturada
+     */
+    @Override
+    public VisaoLeitura abrirVisao() throws IOException {
+        if (motor instanceof MotorArquivos) {
+            return motor.abrirVisao();
+        }
+        try (var _ = travas.travarLeituraTodas()) {
+            return motor.abrirVisao();
+        }
+    }
+
+    /**
+     * Libera as reservas de ingressos pendentes e fecha o motor.
      */
-    private void criarDiretorioSeNecessario(String caminho) {
-        File dir = new File(caminho);
-        if (!dir.exists() && dir.mkdirs()) {
-            System.out.println("Diretório criado: " + caminho);
+    @Override
+    public void fechar() {
+        ReservasIngressos abertas;
+        synchronized (this) {
+            abertas = reservas;
+        }
+        if (abertas != null) {
+            abertas.liberarTodas();
         }
+        motor.fechar();
+    }
+
+    /**
+     * Move os usuários do {@link MotorArquivos} para a organização configurada no {@link LayoutUsuarios}. Não faz
+     * nada nos demais motores.
+     *
+     * @return a quantidade de usuários migrados
+     * @throws IOException se algum arquivo não puder ser movido
+     * @see MotorArquivos#migrarLayoutUsuarios()
+     */
+    public int migrarLayoutUsuarios() throws IOException {
+        return motor instanceof MotorArquivos ? ((MotorArquivos) motor).migrarLayoutUsuarios() : 0;
+    }
+
+    /**
+     * Reúne os documentos do {@link MotorArquivos} no snapshot compactado. Não faz nada nos demais motores.
+     *
+     * @return a quantidade de documentos no snapshot
+     * @throws IOException se o snapshot não puder ser gravado
+     * @see MotorArquivos#compactarDocumentos()
+     */
+    public int compactarDocumentos() throws IOException {
+        return motor instanceof MotorArquivos ? ((MotorArquivos) motor).compactarDocumentos() : 0;
+    }
+
+    /**
+     * Move os eventos antigos do {@link MotorArquivos}, e os recibos das suas compras, para o
+     * {@link ArquivoFrio}. Não faz nada nos demais motores.
+     *
+     * @param idadeDias a idade mínima, em dias, dos eventos arquivados
+     * @return a quantidade de eventos arquivados
+     * @throws IOException se o arquivamento falhar
+     * @see MotorArquivos#arquivarEventosAntigos(int)
+     */
+    public int arquivarEventosAntigos(int idadeDias) throws IOException {
+        return motor instanceof MotorArquivos ? ((MotorArquivos) motor).arquivarEventosAntigos(idadeDias) : 0;
     }
 }
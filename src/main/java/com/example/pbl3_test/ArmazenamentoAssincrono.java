@@ -0,0 +1,446 @@
+package com.example.pbl3_test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Versão assíncrona das operações do {@link Armazenamento}.
+ *
+ * <p>
+ * Cada operação é executada em um executor de E/S dedicado e limitado, compartilhado por todas as
+ * instâncias, e retorna um {@link CompletableFuture}. Assim, as telas podem disparar leituras e
+ * gravações sem bloquear a thread da interface e receber o resultado de volta nela, por exemplo com
+ * {@code thenAcceptAsync(acao, Platform::runLater)}. Quando a fila do executor está cheia, a operação
+ * falha com {@link RejectedExecutionException} em vez de bloquear quem a chamou.
+ * </p>
+ *
+ * <p>
+ * Todas as operações de dados do {@link Armazenamento} têm uma versão aqui. Ficam de fora apenas
+ * {@link Armazenamento#fechar()} e os métodos que retornam partes do armazenamento, como
+ * {@link Armazenamento#getTravas()}, que não fazem E/S.
+ * </p>
+ */
+public class ArmazenamentoAssincrono {
+
+    private static final int THREADS_IO = Math.max(4, Runtime.getRuntime().availableProcessors());
+    private static final int CAPACIDADE_FILA = 1024;
+
+    private static final ThreadPoolExecutor EXECUTOR_IO = criarExecutor();
+
+    private final Armazenamento dados;
+
+    /**
+     * Construtor da classe {@code ArmazenamentoAssincrono}.
+     *
+     * @param dados o armazenamento cujas operações serão executadas de forma assíncrona
+     */
+    public ArmazenamentoAssincrono(Armazenamento dados) {
+        this.dados = dados;
+    }
+
+    private static ThreadPoolExecutor criarExecutor() {
+        AtomicInteger contador = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS_IO, THREADS_IO, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(CAPACIDADE_FILA), tarefa -> {
+                    Thread thread = new Thread(tarefa, "armazenamento-io-" + contador.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Retorna o executor de E/S compartilhado pelas operações assíncronas.
+     *
+     * @return o executor de E/S
+     */
+    public static Executor getExecutor() {
+        return EXECUTOR_IO;
+    }
+
+    /**
+     * Executa uma operação no executor de E/S.
+     *
+     * @param operacao a operação a ser executada
+     * @return o resultado futuro da operação
+     */
+    static <T> CompletableFuture<T> executar(Supplier<T> operacao) {
+        try {
+            return CompletableFuture.supplyAsync(operacao, EXECUTOR_IO);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Executa uma operação que pode lançar {@link IOException} no executor de E/S. A exceção
+     * conclui o futuro com erro.
+     *
+     * @param operacao a operação a ser executada
+     * @return o resultado futuro da operação
+     */
+    static <T> CompletableFuture<T> executarIO(OperacaoIO<T> operacao) {
+        return executar(() -> {
+            try {
+                return operacao.executar();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Operação de armazenamento que pode lançar {@link IOException}.
+     */
+    interface OperacaoIO<T> {
+        T executar() throws IOException;
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#verificarExistencia()}.
+     *
+     * @return {@code true} se os diretórios foram criados ou já existiam
+     */
+    public CompletableFuture<Boolean> verificarExistencia() {
+        return executar(dados::verificarExistencia);
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#armazenarUsuario(Usuario)}.
+     *
+     * @param usuario o usuário a ser armazenado
+     * @return um futuro concluído quando a gravação terminar
+     */
+    public CompletableFuture<Void> armazenarUsuario(Usuario usuario) {
+        return executar(() -> {
+            dados.armazenarUsuario(usuario);
+            return null;
+        });
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#lerUsuario(String)}.
+     *
+     * @param cpf o CPF do usuário
+     * @return o usuário lido ou {@code null} se não existir
+     */
+    public CompletableFuture<Usuario> lerUsuario(String cpf) {
+        return executar(() -> dados.lerUsuario(cpf));
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#registrarCompra(Usuario, List, List)}.
+     *
+     * @param usuario o usuário que realizou a compra
+     * @param ingressos os ingressos comprados
+     * @param recibos os recibos da compra
+     * @return um futuro concluído quando o registro terminar
+     */
+    public CompletableFuture<Void> registrarCompra(Usuario usuario, List<Ingresso> ingressos, List<Recibo> recibos) {
+        return executar(() -> {
+            dados.registrarCompra(usuario, ingressos, recibos);
+            return null;
+        });
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#registrarCancelamento(Usuario, Ingresso)}.
+     *
+     * @param usuario o usuário que cancelou a compra
+     * @param ingresso o ingresso cancelado
+     * @return um futuro concluído quando o registro terminar
+     */
+    public CompletableFuture<Void> registrarCancelamento(Usuario usuario, Ingresso ingresso) {
+        return executar(() -> {
+            dados.registrarCancelamento(usuario, ingresso);
+            return null;
+        });
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#existeUsuario(String)}.
+     *
+     * @param cpf o CPF do usuário
+     * @return {@code true} se o usuário existir
+     */
+    public CompletableFuture<Boolean> existeUsuario(String cpf) {
+        return executar(() -> dados.existeUsuario(cpf));
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#lerCamposUsuario(String, String...)}.
+     *
+     * @param cpf o CPF do usuário
+     * @param campos os nomes dos campos no documento
+     * @return os valores encontrados ou {@code null} se o usuário não existir
+     */
+    public CompletableFuture<Map<String, String>> lerCamposUsuario(String cpf, String... campos) {
+        return executar(() -> dados.lerCamposUsuario(cpf, campos));
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#buscarCpfPorLogin(String)}.
+     *
+     * @param login o nome de usuário
+     * @return o CPF do usuário ou {@code null} se nenhum usuário tiver esse nome
+     */
+    public CompletableFuture<String> buscarCpfPorLogin(String login) {
+        return executar(() -> dados.buscarCpfPorLogin(login));
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#buscarCpfPorEmail(String)}.
+     *
+     * @param email o e-mail do usuário
+     * @return o CPF do usuário ou {@code null} se nenhum usuário tiver esse e-mail
+     */
+    public CompletableFuture<String> buscarCpfPorEmail(String email) {
+        return executar(() -> dados.buscarCpfPorEmail(email));
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#existeEvento(String)}.
+     *
+     * @param eventoId o ID do evento
+     * @return {@code true} se o evento existir
+     */
+    public CompletableFuture<Boolean> existeEvento(String eventoId) {
+        return executar(() -> dados.existeEvento(eventoId));
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#armazenarEvento(Evento)}.
+     *
+     * @param evento o evento a ser armazenado
+     * @return um futuro concluído quando a gravação terminar
+     */
+    public CompletableFuture<Void> armazenarEvento(Evento evento) {
+        return executar(() -> {
+            dados.armazenarEvento(evento);
+            return null;
+        });
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#armazenarDetalhesEvento(Evento)}.
+     *
+     * @param evento o evento a ser armazenado, cuja quantidade de ingressos é ignorada
+     * @return um futuro concluído quando a gravação terminar
+     */
+    public CompletableFuture<Void> armazenarDetalhesEvento(Evento evento) {
+        return executar(() -> {
+            dados.armazenarDetalhesEvento(evento);
+            return null;
+        });
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#lerEvento(String)}.
+     *
+     * @param eventoId o ID do evento
+     * @return o evento lido ou {@code null} em caso de erro
+     */
+    public CompletableFuture<Evento> lerEvento(String eventoId) {
+        return executar(() -> dados.lerEvento(eventoId));
+    }
+
+    /**
+     * Lê vários eventos em paralelo no executor de E/S, mantendo a ordem dos IDs informados.
+     * Os IDs são divididos em no máximo uma parte por thread de E/S, de modo que listas longas
+     * não ocupem a fila do executor. Eventos que não puderem ser lidos são omitidos.
+     *
+     * @param eventoIds os IDs dos eventos
+     * @return os eventos lidos
+     */
+    public CompletableFuture<List<Evento>> lerEventos(List<String> eventoIds) {
+        int tamanhoParte = Math.max(1, (eventoIds.size() + THREADS_IO - 1) / THREADS_IO);
+        List<CompletableFuture<List<Evento>>> partes = new ArrayList<>();
+        for (int inicio = 0; inicio < eventoIds.size(); inicio += tamanhoParte) {
+            List<String> parte = eventoIds.subList(inicio, Math.min(eventoIds.size(), inicio + tamanhoParte));
+            partes.add(executar(() -> {
+                List<Evento> lidos = new ArrayList<>(parte.size());
+                for (String eventoId : parte) {
+                    Evento evento = dados.lerEvento(eventoId);
+                    if (evento != null) {
+                        lidos.add(evento);
+                    }
+                }
+                return lidos;
+            }));
+        }
+        return CompletableFuture.allOf(partes.toArray(new CompletableFuture<?>[0])).thenApply(concluido -> {
+            List<Evento> eventos = new ArrayList<>(eventoIds.size());
+            for (CompletableFuture<List<Evento>> parte : partes) {
+                eventos.addAll(parte.join());
+            }
+            return eventos;
+        });
+    }
+
+    /**
+     * Lista os eventos futuros e lê todos eles, em ordem de data.
+     *
+     * @return os eventos disponíveis
+     */
+    public CompletableFuture<List<Evento>> lerEventosDisponiveis() {
+        return listarEventosDisponiveis().thenCompose(this::lerEventos);
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#ajustarIngressos(String, int)}.
+     *
+     * @param eventoId o ID do evento
+     * @param delta o valor a ser somado
+     * @return a nova quantidade de ingressos
+     */
+    public CompletableFuture<Integer> ajustarIngressos(String eventoId, int delta) {
+        return executar(() -> dados.ajustarIngressos(eventoId, delta));
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#reservarIngressos(String, int)}.
+     *
+     * @param eventoId o ID do evento
+     * @param quantidade a quantidade de ingressos
+     * @return a quantidade restante, ou {@code -1} se não houver ingressos suficientes
+     */
+    public CompletableFuture<Integer> reservarIngressos(String eventoId, int quantidade) {
+        return executar(() -> dados.reservarIngressos(eventoId, quantidade));
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#listarEventosDisponiveis()}.
+     *
+     * @return os IDs dos eventos futuros, em ordem de data
+     */
+    public CompletableFuture<List<String>> listarEventosDisponiveis() {
+        return executar(dados::listarEventosDisponiveis);
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#listarProximosEventos(int)}.
+     *
+     * @param quantidade a quantidade máxima de eventos
+     * @return os IDs dos eventos
+     */
+    public CompletableFuture<List<String>> listarProximosEventos(int quantidade) {
+        return executar(() -> dados.listarProximosEventos(quantidade));
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#listarEventosEntre(Date, Date, int, int)}.
+     *
+     * @param inicio a data inicial
+     * @param fim a data final
+     * @param pagina o número da página, começando em zero
+     * @param tamanhoPagina a quantidade máxima de eventos por página
+     * @return os IDs dos eventos da página
+     */
+    public CompletableFuture<List<String>> listarEventosEntre(Date inicio, Date fim, int pagina, int tamanhoPagina) {
+        return executar(() -> dados.listarEventosEntre(inicio, fim, pagina, tamanhoPagina));
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#armazenarLoteUsuarios(List)}.
+     *
+     * @param usuarios os usuários a serem armazenados
+     * @return um futuro concluído quando a gravação terminar
+     */
+    public CompletableFuture<Void> armazenarLoteUsuarios(List<Usuario> usuarios) {
+        return executarIO(() -> {
+            dados.armazenarLoteUsuarios(usuarios);
+            return null;
+        });
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#armazenarLoteEventos(List)}.
+     *
+     * @param eventos os eventos a serem armazenados
+     * @return um futuro concluído quando a gravação terminar
+     */
+    public CompletableFuture<Void> armazenarLoteEventos(List<Evento> eventos) {
+        return executarIO(() -> {
+            dados.armazenarLoteEventos(eventos);
+            return null;
+        });
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#lerRecibosArquivados(String)}.
+     *
+     * @param cpf o CPF do usuário
+     * @return os recibos arquivados do usuário
+     */
+    public CompletableFuture<List<Recibo>> lerRecibosArquivados(String cpf) {
+        return executar(() -> dados.lerRecibosArquivados(cpf));
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#lerEventosArquivados()}.
+     *
+     * @return os eventos arquivados
+     */
+    public CompletableFuture<List<Evento>> lerEventosArquivados() {
+        return executar(dados::lerEventosArquivados);
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#abrirVisao()}. A visão deve ser fechada por quem a recebe.
+     *
+     * @return a visão capturada
+     */
+    public CompletableFuture<VisaoLeitura> abrirVisao() {
+        return executarIO(dados::abrirVisao);
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#migrarLayoutUsuarios()}.
+     *
+     * @return a quantidade de usuários migrados
+     */
+    public CompletableFuture<Integer> migrarLayoutUsuarios() {
+        return executarIO(dados::migrarLayoutUsuarios);
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#compactarDocumentos()}.
+     *
+     * @return a quantidade de documentos no snapshot
+     */
+    public CompletableFuture<Integer> compactarDocumentos() {
+        return executarIO(dados::compactarDocumentos);
+    }
+
+    /**
+     * Versão assíncrona de {@link Armazenamento#arquivarEventosAntigos(int)}.
+     *
+     * @param idadeDias a idade mínima, em dias, dos eventos arquivados
+     * @return a quantidade de eventos arquivados
+     */
+    public CompletableFuture<Integer> arquivarEventosAntigos(int idadeDias) {
+        return executarIO(() -> dados.arquivarEventosAntigos(idadeDias));
+    }
+
+    /**
+     * Retorna o armazenamento síncrono usado por esta instância.
+     *
+     * @return o armazenamento
+     */
+    public Armazenamento getArmazenamento() {
+        return dados;
+    }
+}
@@ -0,0 +1,363 @@
+package com.example.pbl3_test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Camada fria do diretório de dados: segmentos compactados com GZIP que guardam os eventos
+ * antigos e os recibos das compras desses eventos, retirados dos arquivos usados no dia a dia.
+ *
+ * <p>
+ * Cada arquivamento grava, no diretório {@code Arquivo}, um segmento {@code segmento-NNNNNN.gz} e o
+ * seu manifesto {@code segmento-NNNNNN.idx}, com uma linha por evento ({@code E <id>}) e por usuário
+ * ({@code R <cpf>}) incluídos. O manifesto é gravado por último; um segmento sem manifesto, deixado por
+ * um arquivamento interrompido, é ignorado. Os manifestos só são lidos na primeira consulta, e os
+ * segmentos só são descompactados quando um evento arquivado ou os recibos arquivados de um usuário
+ * são pedidos, por exemplo ao abrir o histórico de recibos ou em relatórios.
+ * </p>
+ *
+ * <p>
+ * Formato do segmento, depois de descompactado: assinatura {@code PBLFRIO1}, nome do codec dos eventos
+ * e registros com tipo ({@code byte}), chave (ID do evento ou CPF, em UTF), tamanho ({@code int}) e
+ * conteúdo: o documento do evento no formato do codec ou o JSON do recibo.
+ * </p>
+ */
+public class ArquivoFrio {
+
+    static final String NOME_DIRETORIO = "Arquivo";
+
+    private static final String PREFIXO = "segmento-";
+    private static final String EXTENSAO_SEGMENTO = ".gz";
+    private static final String EXTENSAO_MANIFESTO = ".idx";
+    private static final String ASSINATURA = "PBLFRIO1";
+    private static final byte TIPO_EVENTO = 1;
+    private static final byte TIPO_RECIBO = 2;
+
+    private static final Map<Path, ArquivoFrio> abertos = new ConcurrentHashMap<>();
+
+    private final Path diretorio;
+    private Map<String, Integer> segmentoPorEvento;
+    private Map<String, List<Integer>> segmentosPorUsuario;
+    private int manifestosLidos = -1;
+
+    /**
+     * Construtor privado; use {@link #abrir(Path)} para obter a camada fria de um diretório.
+     */
+    private ArquivoFrio(Path diretorioBase) {
+        this.diretorio = diretorioBase.resolve(NOME_DIRETORIO);
+    }
+
+    /**
+     * Retorna a camada fria do diretório de dados informado. Nenhum arquivo é lido até a primeira consulta.
+     *
+     * @param diretorioBase o diretório de dados
+     * @return a camada fria do diretório
+     */
+    public static ArquivoFrio abrir(Path diretorioBase) {
+        return abertos.computeIfAbsent(diretorioBase.toAbsolutePath().normalize(), ArquivoFrio::new);
+    }
+
+    /**
+     * Grava um novo segmento com os eventos e recibos informados. Quando o método retorna, o segmento
+     * e o manifesto já estão sincronizados no disco.
+     *
+     * @param eventos os documentos dos eventos, por ID
+     * @param recibos os recibos arquivados, por CPF
+     * @param codec o codec dos documentos dos eventos
+     * @return o número do segmento gravado, ou {@code -1} se não havia nada para arquivar
+     * @throws IOException se o segmento não puder ser gravado
+     */
+    public synchronized int arquivar(Map<String, byte[]> eventos, Map<String, List<Recibo>> recibos,
+                                     CodecEntidades codec) throws IOException {
+        if (eventos.isEmpty() && recibos.isEmpty()) {
+            return -1;
+        }
+        carregarManifestos(true);
+        Files.createDirectories(diretorio);
+        int numero = proximoNumero();
+
+        Path segmento = caminho(numero, EXTENSAO_SEGMENTO);
+        Path temporario = segmento.resolveSibling(segmento.getFileName() + ".tmp");
+        try (OutputStream arquivo = Files.newOutputStream(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             DataOutputStream saida = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(arquivo, 64 * 1024)))) {
+            saida.writeUTF(ASSINATURA);
+            saida.writeUTF(codec.getNome());
+            for (Map.Entry<String, byte[]> evento : eventos.entrySet()) {
+                escreverRegistro(saida, TIPO_EVENTO, evento.getKey(), evento.getValue());
+            }
+            for (Map.Entry<String, List<Recibo>> usuario : recibos.entrySet()) {
+                for (Recibo recibo : usuario.getValue()) {
+                    escreverRegistro(saida, TIPO_RECIBO, usuario.getKey(),
+                            SerializadorJson.GSON.toJson(recibo).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        sincronizar(temporario);
+        Files.move(temporario, segmento, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        List<String> linhas = new ArrayList<>(eventos.size() + recibos.size());
+        for (String eventoId : eventos.keySet()) {
+            linhas.add("E " + eventoId);
+        }
+        for (String cpf : recibos.keySet()) {
+            linhas.add("R " + cpf);
+        }
+        Path manifesto = caminho(numero, EXTENSAO_MANIFESTO);
+        Path manifestoTemporario = manifesto.resolveSibling(manifesto.getFileName() + ".tmp");
+        Files.write(manifestoTemporario, linhas, StandardCharsets.UTF_8);
+        sincronizar(manifestoTemporario);
+        Files.move(manifestoTemporario, manifesto, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LogEscrita.sincronizarDiretorio(diretorio);
+
+        incluirManifesto(numero, linhas);
+        manifestosLidos++;
+        return numero;
+    }
+
+    /**
+     * Verifica se um evento está arquivado.
+     *
+     * @param eventoId o ID do evento
+     * @return {@code true} se algum segmento contiver o evento
+     */
+    public synchronized boolean contemEvento(String eventoId) {
+        carregarManifestos(false);
+        return segmentoPorEvento.containsKey(eventoId);
+    }
+
+    /**
+     * Lê um evento arquivado, descompactando o segmento mais recente que o contém.
+     *
+     * @param eventoId o ID do evento
+     * @return o evento ou {@code null} se ele não estiver arquivado
+     * @throws IOException se o segmento não puder ser lido
+     */
+    public Evento lerEvento(String eventoId) throws IOException {
+        Integer numero;
+        synchronized (this) {
+            carregarManifestos(false);
+            numero = segmentoPorEvento.get(eventoId);
+            if (numero == null && carregarManifestos(true)) {
+                numero = segmentoPorEvento.get(eventoId);
+            }
+        }
+        if (numero == null) {
+            return null;
+        }
+        Evento[] encontrado = new Evento[1];
+        percorrer(numero, (tipo, chave, conteudo, codec) -> {
+            if (tipo == TIPO_EVENTO && chave.equals(eventoId)) {
+                encontrado[0] = codec.decodificarEvento(new ByteArrayInputStream(conteudo));
+            }
+        });
+        return encontrado[0];
+    }
+
+    /**
+     * Lê todos os eventos arquivados, na versão mais recente de cada um. Usado em relatórios.
+     *
+     * @return os eventos arquivados, por ID
+     * @throws IOException se algum segmento não puder ser lido
+     */
+    public Map<String, Evento> lerEventos() throws IOException {
+        Map<Integer, List<String>> porSegmento = new HashMap<>();
+        synchronized (this) {
+            carregarManifestos(true);
+            for (Map.Entry<String, Integer> evento : segmentoPorEvento.entrySet()) {
+                porSegmento.computeIfAbsent(evento.getValue(), numero -> new ArrayList<>()).add(evento.getKey());
+            }
+        }
+        Map<String, Evento> eventos = new LinkedHashMap<>();
+        for (Integer numero : new TreeSet<>(porSegmento.keySet())) {
+            List<String> ids = porSegmento.get(numero);
+            percorrer(numero, (tipo, chave, conteudo, codec) -> {
+                if (tipo == TIPO_EVENTO && ids.contains(chave)) {
+                    eventos.put(chave, codec.decodificarEvento(new ByteArrayInputStream(conteudo)));
+                }
+            });
+        }
+        return eventos;
+    }
+
+    /**
+     * Lê os recibos arquivados de um usuário, em ordem de arquivamento.
+     *
+     * @param cpf o CPF do usuário
+     * @return os recibos arquivados, ou uma lista vazia se não houver
+     * @throws IOException se algum segmento não puder ser lido
+     */
+    public List<Recibo> lerRecibos(String cpf) throws IOException {
+        List<Integer> numeros;
+        synchronized (this) {
+            carregarManifestos(false);
+            numeros = new ArrayList<>(segmentosPorUsuario.getOrDefault(cpf, Collections.emptyList()));
+        }
+        List<Recibo> recibos = new ArrayList<>();
+        for (Integer numero : numeros) {
+            percorrer(numero, (tipo, chave, conteudo, codec) -> {
+                if (tipo == TIPO_RECIBO && chave.equals(cpf)) {
+                    recibos.add(SerializadorJson.GSON.fromJson(new String(conteudo, StandardCharsets.UTF_8), Recibo.class));
+                }
+            });
+        }
+        return recibos;
+    }
+
+    /**
+     * Lê os manifestos na primeira consulta ou, quando {@code recarregar} for verdadeiro, sempre que
+     * a quantidade de manifestos no diretório mudar, o que inclui os arquivamentos feitos por outros processos.
+     *
+     * @return {@code true} se os manifestos foram lidos novamente
+     */
+    private boolean carregarManifestos(boolean recarregar) {
+        if (segmentoPorEvento != null && !recarregar) {
+            return false;
+        }
+        List<Integer> numeros = listarManifestos();
+        if (segmentoPorEvento != null && numeros.size() == manifestosLidos) {
+            return false;
+        }
+        segmentoPorEvento = new HashMap<>();
+        segmentosPorUsuario = new HashMap<>();
+        for (Integer numero : numeros) {
+            try {
+                incluirManifesto(numero, Files.readAllLines(caminho(numero, EXTENSAO_MANIFESTO), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                Registro.erro("Erro ao ler o manifesto do segmento {}: {}", numero, e.getMessage());
+            }
+        }
+        manifestosLidos = numeros.size();
+        return true;
+    }
+
+    private void incluirManifesto(int numero, Collection<String> linhas) {
+        for (String linha : linhas) {
+            if (linha.length() < 3) {
+                continue;
+            }
+            String chave = linha.substring(2);
+            if (linha.charAt(0) == 'E') {
+                segmentoPorEvento.merge(chave, numero, Math::max);
+            } else if (linha.charAt(0) == 'R') {
+                List<Integer> segmentos = segmentosPorUsuario.computeIfAbsent(chave, cpf -> new ArrayList<>());
+                if (!segmentos.contains(numero)) {
+                    segmentos.add(numero);
+                    Collections.sort(segmentos);
+                }
+            }
+        }
+    }
+
+    private List<Integer> listarManifestos() {
+        List<Integer> numeros = new ArrayList<>();
+        if (!Files.isDirectory(diretorio)) {
+            return numeros;
+        }
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio, PREFIXO + "*" + EXTENSAO_MANIFESTO)) {
+            for (Path arquivo : arquivos) {
+                String nome = arquivo.getFileName().toString();
+                try {
+                    numeros.add(Integer.parseInt(nome.substring(PREFIXO.length(), nome.length() - EXTENSAO_MANIFESTO.length())));
+                } catch (NumberFormatException e) {
+                    // Arquivo que não segue o padrão de nomes; ignorado
+                }
+            }
+        } catch (IOException e) {
+            Registro.erro("Erro ao listar os segmentos arquivados: {}", e.getMessage());
+        }
+        Collections.sort(numeros);
+        return numeros;
+    }
+
+    private int proximoNumero() {
+        int maior = 0;
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio, PREFIXO + "*")) {
+            for (Path arquivo : arquivos) {
+                String nome = arquivo.getFileName().toString();
+                int fim = nome.indexOf('.');
+                try {
+                    maior = Math.max(maior, Integer.parseInt(nome.substring(PREFIXO.length(), fim < 0 ? nome.length() : fim)));
+                } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                    // Arquivo que não segue o padrão de nomes; ignorado
+                }
+            }
+        } catch (IOException e) {
+            Registro.erro("Erro ao listar os segmentos arquivados: {}", e.getMessage());
+        }
+        return maior + 1;
+    }
+
+    /**
+     * Descompacta um segmento e repassa os seus registros ao visitante.
+     */
+    private void percorrer(int numero, VisitanteRegistro visitante) throws IOException {
+        try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(caminho(numero, EXTENSAO_SEGMENTO)), 64 * 1024)))) {
+            if (!ASSINATURA.equals(entrada.readUTF())) {
+                throw new IOException("Segmento " + numero + " com assinatura inválida.");
+            }
+            CodecEntidades codec = CodecEntidades.porNome(entrada.readUTF());
+            while (true) {
+                byte tipo;
+                try {
+                    tipo = entrada.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                String chave = entrada.readUTF();
+                byte[] conteudo = new byte[entrada.readInt()];
+                entrada.readFully(conteudo);
+                visitante.visitar(tipo, chave, conteudo, codec);
+            }
+        }
+    }
+
+    private static void escreverRegistro(DataOutputStream saida, byte tipo, String chave, byte[] conteudo) throws IOException {
+        saida.writeByte(tipo);
+        saida.writeUTF(chave);
+        saida.writeInt(conteudo.length);
+        saida.write(conteudo);
+    }
+
+    private static void sincronizar(Path arquivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.WRITE)) {
+            canal.force(true);
+        }
+    }
+
+    private Path caminho(int numero, String extensao) {
+        return diretorio.resolve(String.format("%s%06d%s", PREFIXO, numero, extensao));
+    }
+
+    /**
+     * Recebe os registros de um segmento.
+     */
+    private interface VisitanteRegistro {
+        void visitar(byte tipo, String chave, byte[] conteudo, CodecEntidades codec) throws IOException;
+    }
+}
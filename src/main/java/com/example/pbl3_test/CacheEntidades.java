@@ -0,0 +1,202 @@
+package com.example.pbl3_test;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Cache em memória usado pelo {@link Armazenamento} para evitar reler e reprocessar
+ * os arquivos de dados a cada acesso.
+ *
+ * <p>
+ * O cache é limitado por tamanho e por idade: quando a capacidade máxima é atingida,
+ * a entrada usada há mais tempo é descartada (política LRU), e entradas mais antigas
+ * que o tempo de vida configurado são tratadas como ausentes. Também mantém
+ * contadores de acertos, falhas e remoções para acompanhamento.
+ * </p>
+ *
+ * @param <V> o tipo das entidades armazenadas no cache
+ */
+public class CacheEntidades<V> {
+
+    private final int capacidadeMaxima;
+    private final long tempoVidaNanos;
+    private final LinkedHashMap<String, Entrada<V>> entradas;
+
+    private long acertos;
+    private long falhas;
+    private long remocoes;
+
+    /**
+     * Construtor da classe {@code CacheEntidades}.
+     *
+     * @param capacidadeMaxima o número máximo de entradas mantidas no cache
+     * @param tempoVidaMillis o tempo, em milissegundos, após o qual uma entrada expira
+     */
+    public CacheEntidades(int capacidadeMaxima, long tempoVidaMillis) {
+        if (capacidadeMaxima <= 0) {
+            throw new IllegalArgumentException("Erro: A capacidade do cache deve ser positiva.");
+        }
+        this.capacidadeMaxima = capacidadeMaxima;
+        this.tempoVidaNanos = tempoVidaMillis * 1_000_000L;
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Retorna a entidade associada à chave, se estiver presente e dentro do tempo de vida.
+     *
+     * @param chave a chave da entidade
+     * @return a entidade em cache ou {@code null} se estiver ausente ou expirada
+     */
+    public synchronized V obter(String chave) {
+        Entrada<V> entrada = entradas.get(chave);
+        if (entrada == null) {
+            falhas++;
+            return null;
+        }
+        if (expirada(entrada, System.nanoTime())) {
+            entradas.remove(chave);
+            remocoes++;
+            falhas++;
+            return null;
+        }
+        acertos++;
+        return entrada.valor;
+    }
+
+    /**
+     * Insere ou substitui a entidade associada à chave, descartando as entradas
+     * expiradas e, se necessário, as menos usadas recentemente.
+     *
+     * @param chave a chave da entidade
+     * @param valor a entidade a ser armazenada
+     */
+    public synchronized void colocar(String chave, V valor) {
+        if (chave == null || valor == null) {
+            return;
+        }
+        long agora = System.nanoTime();
+        entradas.put(chave, new Entrada<>(valor, agora));
+        removerExcedentes(agora);
+    }
+
+    /**
+     * Remove a entidade associada à chave, caso esteja em cache.
+     *
+     * @param chave a chave da entidade
+     */
+    public synchronized void invalidar(String chave) {
+        if (entradas.remove(chave) != null) {
+            remocoes++;
+        }
+    }
+
+    /**
+     * Remove as entidades cujas chaves atendem ao critério informado.
+     *
+     * @param criterio o critério aplicado às chaves
+     */
+    public synchronized void invalidarSe(Predicate<String> criterio) {
+        Iterator<String> chaves = entradas.keySet().iterator();
+        while (chaves.hasNext()) {
+            if (criterio.test(chaves.next())) {
+                chaves.remove();
+                remocoes++;
+            }
+        }
+    }
+
+    /**
+     * Remove todas as entidades do cache. Os contadores são mantidos.
+     */
+    public synchronized void limpar() {
+        remocoes += entradas.size();
+        entradas.clear();
+    }
+
+    /**
+     * Retorna a quantidade de entradas atualmente em cache.
+     *
+     * @return o tamanho do cache
+     */
+    public synchronized int getTamanho() {
+        return entradas.size();
+    }
+
+    /**
+     * Retorna a quantidade de buscas atendidas pelo cache.
+     *
+     * @return o número de acertos
+     */
+    public synchronized long getAcertos() {
+        return acertos;
+    }
+
+    /**
+     * Retorna a quantidade de buscas que não foram atendidas pelo cache.
+     *
+     * @return o número de falhas
+     */
+    public synchronized long getFalhas() {
+        return falhas;
+    }
+
+    /**
+     * Retorna a quantidade de entradas descartadas por expiração, capacidade ou invalidação.
+     *
+     * @return o número de remoções
+     */
+    public synchronized long getRemocoes() {
+        return remocoes;
+    }
+
+    /**
+     * Retorna um resumo das estatísticas do cache.
+     *
+     * @return uma descrição com tamanho, acertos, falhas e remoções
+     */
+    @Override
+    public synchronized String toString() {
+        return "CacheEntidades[tamanho=" + entradas.size() + ", acertos=" + acertos +
+               ", falhas=" + falhas + ", remocoes=" + remocoes + "]";
+    }
+
+    /**
+     * Descarta as entradas expiradas e as que ultrapassam a capacidade máxima.
+     *
+     * @param agora o instante atual, em nanossegundos
+     */
+    private void removerExcedentes(long agora) {
+        Iterator<Map.Entry<String, Entrada<V>>> iterador = entradas.entrySet().iterator();
+        while (iterador.hasNext()) {
+            Entrada<V> entrada = iterador.next().getValue();
+            if (entradas.size() > capacidadeMaxima || expirada(entrada, agora)) {
+                iterador.remove();
+                remocoes++;
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Verifica se a entrada ultrapassou o tempo de vida configurado.
+     */
+    private boolean expirada(Entrada<V> entrada, long agora) {
+        return agora - entrada.criadaEm > tempoVidaNanos;
+    }
+
+    /**
+     * Entrada do cache, contendo a entidade e o instante em que foi armazenada.
+     */
+    private static final class Entrada<V> {
+        private final V valor;
+        private final long criadaEm;
+
+        private Entrada(V valor, long criadaEm) {
+            this.valor = valor;
+            this.criadaEm = criadaEm;
+        }
+    }
+}
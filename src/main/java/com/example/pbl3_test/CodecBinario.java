@@ -0,0 +1,334 @@
+package com.example.pbl3_test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Codec binário compacto para as entidades.
+ *
+ * <p>
+ * Os inteiros são gravados como varints (com codificação zigzag para valores com sinal), e as datas
+ * dos eventos como dias desde a época. As datas dos recibos, que guardam o horário da compra, são
+ * gravadas em milissegundos. Os textos usam uma tabela de strings por documento: a primeira ocorrência
+ * é gravada por extenso e as seguintes apenas como referência, o que elimina a repetição do nome,
+ * CPF, e-mail e IDs de evento em cada recibo.
+ * </p>
+ *
+ * <p>
+ * Os campos de perfil do usuário ficam no início do documento, de modo que
+ * {@link #lerCamposUsuario(InputStream, Set)} não precisa ler ingressos nem recibos.
+ * </p>
+ */
+public class CodecBinario implements CodecEntidades {
+
+    /**
+     * Nome do codec no arquivo de configuração.
+     */
+    public static final String NOME = "binario";
+
+    private static final int MARCADOR_USUARIO = 'U';
+    private static final int MARCADOR_EVENTO = 'E';
+    private static final int VERSAO = 2;
+    private static final String[] CAMPOS_PERFIL = {"username", "password", "fullName", "cpf", "email"};
+
+    @Override
+    public String getNome() {
+        return NOME;
+    }
+
+    @Override
+    public String getExtensao() {
+        return ".bin";
+    }
+
+    @Override
+    public byte[] codificarUsuario(Usuario usuario) {
+        Escritor saida = new Escritor(MARCADOR_USUARIO);
+        saida.texto(usuario.getLogin());
+        saida.texto(usuario.getSenha());
+        saida.texto(usuario.getNome());
+        saida.texto(usuario.getCpf());
+        saida.texto(usuario.getEmail());
+        saida.booleano(usuario.isAdmin());
+        saida.varlong(usuario.getHistoricoOffset());
+
+        saida.varint(usuario.getIngressos().size());
+        for (Ingresso ingresso : usuario.getIngressos()) {
+            escreverIngresso(saida, ingresso);
+        }
+        saida.varint(usuario.getRecibos().size());
+        for (Recibo recibo : usuario.getRecibos()) {
+            saida.texto(recibo.getFullName());
+            saida.texto(recibo.getCpf());
+            saida.texto(recibo.getEmail());
+            saida.booleano(recibo.getIngresso() != null);
+            if (recibo.getIngresso() != null) {
+                escreverIngresso(saida, recibo.getIngresso());
+            }
+            saida.texto(recibo.getEventoID());
+            saida.texto(recibo.Pagamento());
+            saida.instante(recibo.getData());
+        }
+        return saida.bytes();
+    }
+
+    @Override
+    public Usuario decodificarUsuario(InputStream entrada) throws IOException {
+        Leitor leitor = new Leitor(entrada, MARCADOR_USUARIO);
+        Usuario usuario = new Usuario(leitor.texto(), leitor.texto(), leitor.texto(), leitor.texto(), leitor.texto(), leitor.booleano());
+        if (leitor.versao >= 2) {
+            usuario.setHistoricoOffset(leitor.varlong());
+        }
+
+        int ingressos = leitor.tamanho();
+        for (int i = 0; i < ingressos; i++) {
+            usuario.adicionarIngresso(lerIngresso(leitor));
+        }
+        int recibos = leitor.tamanho();
+        for (int i = 0; i < recibos; i++) {
+            String fullName = leitor.texto();
+            String cpf = leitor.texto();
+            String email = leitor.texto();
+            Ingresso ingresso = leitor.booleano() ? lerIngresso(leitor) : null;
+            String eventoId = leitor.texto();
+            String pagamento = leitor.texto();
+            Date data = leitor.instante();
+            usuario.adicionarRecibo(new Recibo(fullName, cpf, email, ingresso, pagamento, eventoId, data));
+        }
+        return usuario;
+    }
+
+    @Override
+    public Map<String, String> lerCamposUsuario(InputStream entrada, Set<String> campos) throws IOException {
+        Leitor leitor = new Leitor(entrada, MARCADOR_USUARIO);
+        Map<String, String> valores = new HashMap<>();
+        for (String campo : CAMPOS_PERFIL) {
+            String valor = leitor.texto();
+            if (valor != null && campos.contains(campo)) {
+                valores.put(campo, valor);
+            }
+        }
+        if (campos.contains("isAdmin")) {
+            valores.put("isAdmin", String.valueOf(leitor.booleano()));
+        }
+        return valores;
+    }
+
+    @Override
+    public byte[] codificarEvento(Evento evento) {
+        Escritor saida = new Escritor(MARCADOR_EVENTO);
+        saida.texto(evento.getID());
+        saida.texto(evento.getNome());
+        saida.texto(evento.getDescricao());
+        saida.booleano(evento.getData() != null);
+        if (evento.getData() != null) {
+            saida.varlong(zigzag(evento.getData().toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay()));
+        }
+        saida.varlong(zigzag(evento.getIngressos()));
+        saida.decimal(evento.getPreco());
+
+        Map<String, String> avaliacoes = evento.getAvaliacoes() == null ? Map.of() : evento.getAvaliacoes();
+        saida.varint(avaliacoes.size());
+        for (Map.Entry<String, String> avaliacao : avaliacoes.entrySet()) {
+            saida.texto(avaliacao.getKey());
+            saida.texto(avaliacao.getValue());
+        }
+        return saida.bytes();
+    }
+
+    @Override
+    public Evento decodificarEvento(InputStream entrada) throws IOException {
+        Leitor leitor = new Leitor(entrada, MARCADOR_EVENTO);
+        String id = leitor.texto();
+        String nome = leitor.texto();
+        String descricao = leitor.texto();
+        Date data = null;
+        if (leitor.booleano()) {
+            LocalDate dia = LocalDate.ofEpochDay(dezigzag(leitor.varlong()));
+            data = Date.from(dia.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        }
+        int quantidade = (int) dezigzag(leitor.varlong());
+        double preco = leitor.decimal();
+
+        Map<String, String> avaliacoes = new HashMap<>();
+        int totalAvaliacoes = leitor.tamanho();
+        for (int i = 0; i < totalAvaliacoes; i++) {
+            avaliacoes.put(leitor.texto(), leitor.texto());
+        }
+        return new Evento(id, nome, descricao, data, quantidade, avaliacoes, preco);
+    }
+
+    private static void escreverIngresso(Escritor saida, Ingresso ingresso) {
+        saida.texto(ingresso.getEventoID());
+        saida.decimal(ingresso.getPreco());
+        saida.texto(ingresso.getId());
+        saida.booleano(ingresso.isAtivo());
+    }
+
+    private static Ingresso lerIngresso(Leitor leitor) throws IOException {
+        return new Ingresso(leitor.texto(), leitor.decimal(), leitor.texto(), leitor.booleano());
+    }
+
+    private static long zigzag(long valor) {
+        return (valor << 1) ^ (valor >> 63);
+    }
+
+    private static long dezigzag(long valor) {
+        return (valor >>> 1) ^ -(valor & 1);
+    }
+
+    /**
+     * Escreve os valores de um documento, mantendo a tabela de strings já gravadas.
+     * Cada texto é precedido por uma marca: {@code 0} para nulo, ímpar para um texto novo
+     * ({@code tamanho * 2 + 1}) e par para uma referência à tabela ({@code índice * 2}, a partir de 1).
+     */
+    private static final class Escritor {
+        private final ByteArrayOutputStream saida = new ByteArrayOutputStream(256);
+        private final Map<String, Integer> tabela = new HashMap<>();
+
+        private Escritor(int marcador) {
+            saida.write(marcador);
+            saida.write(VERSAO);
+        }
+
+        void varint(int valor) {
+            varlong(valor & 0xFFFFFFFFL);
+        }
+
+        void varlong(long valor) {
+            while ((valor & ~0x7FL) != 0) {
+                saida.write((int) ((valor & 0x7F) | 0x80));
+                valor >>>= 7;
+            }
+            saida.write((int) valor);
+        }
+
+        void booleano(boolean valor) {
+            saida.write(valor ? 1 : 0);
+        }
+
+        void decimal(double valor) {
+            long bits = Double.doubleToLongBits(valor);
+            for (int deslocamento = 56; deslocamento >= 0; deslocamento -= 8) {
+                saida.write((int) (bits >>> deslocamento));
+            }
+        }
+
+        void instante(Date data) {
+            if (data == null) {
+                saida.write(0);
+            } else {
+                saida.write(1);
+                varlong(zigzag(data.getTime()));
+            }
+        }
+
+        void texto(String valor) {
+            if (valor == null) {
+                varint(0);
+                return;
+            }
+            Integer indice = tabela.get(valor);
+            if (indice != null) {
+                varlong((long) indice << 1);
+                return;
+            }
+            byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+            varlong(((long) bytes.length << 1) | 1);
+            saida.write(bytes, 0, bytes.length);
+            tabela.put(valor, tabela.size() + 1);
+        }
+
+        byte[] bytes() {
+            return saida.toByteArray();
+        }
+    }
+
+    /**
+     * Lê os valores de um documento, reconstruindo a tabela de strings à medida que avança.
+     */
+    private static final class Leitor {
+        private final DataInputStream entrada;
+        private final List<String> tabela = new ArrayList<>();
+        private final int versao;
+
+        private Leitor(InputStream entrada, int marcadorEsperado) throws IOException {
+            this.entrada = new DataInputStream(entrada);
+            int marcador = this.entrada.read();
+            this.versao = this.entrada.read();
+            if (marcador != marcadorEsperado || versao < 1 || versao > VERSAO) {
+                throw new IOException("Documento binário inválido ou de versão desconhecida.");
+            }
+        }
+
+        long varlong() throws IOException {
+            long valor = 0;
+            for (int deslocamento = 0; deslocamento < 64; deslocamento += 7) {
+                int b = entrada.read();
+                if (b < 0) {
+                    throw new EOFException("Documento binário truncado.");
+                }
+                valor |= (long) (b & 0x7F) << deslocamento;
+                if ((b & 0x80) == 0) {
+                    return valor;
+                }
+            }
+            throw new IOException("Varint inválido no documento binário.");
+        }
+
+        int tamanho() throws IOException {
+            long valor = varlong();
+            if (valor < 0 || valor > Integer.MAX_VALUE) {
+                throw new IOException("Tamanho inválido no documento binário: " + valor);
+            }
+            return (int) valor;
+        }
+
+        boolean booleano() throws IOException {
+            return entrada.readBoolean();
+        }
+
+        double decimal() throws IOException {
+            return entrada.readDouble();
+        }
+
+        Date instante() throws IOException {
+            return entrada.readBoolean() ? new Date(dezigzag(varlong())) : null;
+        }
+
+        String texto() throws IOException {
+            long marca = varlong();
+            if (marca == 0) {
+                return null;
+            }
+            if ((marca & 1) == 0) {
+                long indice = marca >>> 1;
+                if (indice < 1 || indice > tabela.size()) {
+                    throw new IOException("Referência inválida na tabela de strings: " + indice);
+                }
+                return tabela.get((int) indice - 1);
+            }
+            long tamanho = marca >>> 1;
+            if (tamanho > Integer.MAX_VALUE) {
+                throw new IOException("Texto muito longo no documento binário.");
+            }
+            byte[] bytes = new byte[(int) tamanho];
+            entrada.readFully(bytes);
+            String valor = new String(bytes, StandardCharsets.UTF_8);
+            tabela.add(valor);
+            return valor;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.pbl3_test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Interface que define como as entidades são convertidas para os bytes gravados no diretório de dados.
+ *
+ * <p>
+ * Cada diretório de dados usa um único codec, definido no arquivo {@value #ARQUIVO_CONFIGURACAO}
+ * pela propriedade {@code codec}. Quando o arquivo não existe, é usado o {@link CodecJson}.
+ * A ferramenta {@link ConversorDados} migra um diretório existente de um codec para outro.
+ * </p>
+ */
+public interface CodecEntidades {
+
+    /**
+     * Nome do arquivo, dentro do diretório de dados, que define o codec utilizado.
+     */
+    String ARQUIVO_CONFIGURACAO = "codec.properties";
+
+    /**
+     * Retorna o nome do codec, usado no arquivo de configuração.
+     *
+     * @return o nome do codec
+     */
+    String getNome();
+
+    /**
+     * Retorna a extensão dos arquivos gravados pelo codec, incluindo o ponto.
+     *
+     * @return a extensão dos arquivos
+     */
+    String getExtensao();
+
+    /**
+     * Codifica um usuário.
+     *
+     * @param usuario o usuário a ser codificado
+     * @return os bytes do documento
+     * @throws IOException se a codificação falhar
+     */
+    byte[] codificarUsuario(Usuario usuario) throws IOException;
+
+    /**
+     * Decodifica um usuário.
+     *
+     * @param entrada o fluxo com os bytes do documento
+     * @return o usuário decodificado
+     * @throws IOException se o documento estiver corrompido ou não puder ser lido
+     */
+    Usuario decodificarUsuario(InputStream entrada) throws IOException;
+
+    /**
+     * Lê apenas os campos de perfil informados de um documento de usuário, sem decodificar
+     * ingressos e recibos. Os nomes dos campos são os mesmos do documento JSON
+     * ({@code username}, {@code password}, {@code fullName}, {@code cpf}, {@code email}, {@code isAdmin}).
+     *
+     * @param entrada o fluxo com os bytes do documento
+     * @param campos os campos procurados
+     * @return um mapa com os valores encontrados, em formato de texto
+     * @throws IOException se o documento estiver corrompido ou não puder ser lido
+     */
+    Map<String, String> lerCamposUsuario(InputStream entrada, Set<String> campos) throws IOException;
+
+    /**
+     * Codifica um evento.
+     *
+     * @param evento o evento a ser codificado
+     * @return os bytes do documento
+     * @throws IOException se a codificação falhar
+     */
+    byte[] codificarEvento(Evento evento) throws IOException;
+
+    /**
+     * Decodifica um evento.
+     *
+     * @param entrada o fluxo com os bytes do documento
+     * @return o evento decodificado
+     * @throws IOException se o documento estiver corrompido ou não puder ser lido
+     */
+    Evento decodificarEvento(InputStream entrada) throws IOException;
+
+    /**
+     * Retorna o codec com o nome informado.
+     *
+     * @param nome o nome do codec ({@code json} ou {@code binario})
+     * @return o codec correspondente
+     * @throws IllegalArgumentException se o nome não corresponder a nenhum codec
+     */
+    static CodecEntidades porNome(String nome) {
+        if (CodecJson.NOME.equalsIgnoreCase(nome)) {
+            return new CodecJson();
+        }
+        if (CodecBinario.NOME.equalsIgnoreCase(nome)) {
+            return new CodecBinario();
+        }
+        throw new IllegalArgumentException("Erro: Codec desconhecido: " + nome);
+    }
+
+    /**
+     * Retorna o codec configurado para o diretório de dados informado.
+     *
+     * @param diretorioBase o diretório de dados
+     * @return o codec do diretório, ou o {@link CodecJson} se nenhum estiver configurado
+     */
+    static CodecEntidades doDiretorio(File diretorioBase) {
+        File configuracao = new File(diretorioBase, ARQUIVO_CONFIGURACAO);
+        if (!configuracao.isFile()) {
+            return new CodecJson();
+        }
+        Properties propriedades = new Properties();
+        try (InputStream entrada = new FileInputStream(configuracao)) {
+            propriedades.load(entrada);
+        } catch (IOException e) {
+            Registro.erro("Erro ao ler a configuração do codec: {}", e.getMessage());
+        }
+        return porNome(propriedades.getProperty("codec", CodecJson.NOME));
+    }
+
+    /**
+     * Grava o codec a ser usado pelo diretório de dados informado.
+     *
+     * @param diretorioBase o diretório de dados
+     * @param codec o codec a ser configurado
+     * @throws IOException se o arquivo de configuração não puder ser gravado
+     */
+    static void configurarDiretorio(File diretorioBase, CodecEntidades codec) throws IOException {
+        Properties propriedades = new Properties();
+        propriedades.setProperty("codec", codec.getNome());
+        try (OutputStream saida = new FileOutputStream(new File(diretorioBase, ARQUIVO_CONFIGURACAO))) {
+            propriedades.store(saida, "Codec dos documentos deste diretório de dados");
+        }
+    }
+}
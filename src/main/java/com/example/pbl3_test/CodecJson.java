@@ -0,0 +1,96 @@
+package com.example.pbl3_test;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Codec que grava as entidades como documentos JSON, usando o {@link SerializadorJson}.
+ */
+public class CodecJson implements CodecEntidades {
+
+    /**
+     * Nome do codec no arquivo de configuração.
+     */
+    public static final String NOME = "json";
+
+    @Override
+    public String getNome() {
+        return NOME;
+    }
+
+    @Override
+    public String getExtensao() {
+        return ".json";
+    }
+
+    @Override
+    public byte[] codificarUsuario(Usuario usuario) {
+        return SerializadorJson.GSON.toJson(usuario).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Usuario decodificarUsuario(InputStream entrada) throws IOException {
+        return decodificar(entrada, Usuario.class);
+    }
+
+    /**
+     * Percorre o documento com um {@link JsonReader}, ignorando os valores que não foram pedidos,
+     * como as listas de ingressos e recibos, sem construir nenhum objeto. A leitura termina assim
+     * que todos os campos são encontrados.
+     */
+    @Override
+    public Map<String, String> lerCamposUsuario(InputStream entrada, Set<String> campos) throws IOException {
+        Map<String, String> valores = new HashMap<>();
+        try {
+            JsonReader reader = new JsonReader(new InputStreamReader(entrada, StandardCharsets.UTF_8));
+            reader.beginObject();
+            while (reader.hasNext() && valores.size() < campos.size()) {
+                String nome = reader.nextName();
+                JsonToken tipo = reader.peek();
+                if (!campos.contains(nome) || tipo == JsonToken.BEGIN_ARRAY || tipo == JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                } else if (tipo == JsonToken.NULL) {
+                    reader.nextNull();
+                } else if (tipo == JsonToken.BOOLEAN) {
+                    valores.put(nome, String.valueOf(reader.nextBoolean()));
+                } else {
+                    valores.put(nome, reader.nextString());
+                }
+            }
+            return valores;
+        } catch (IllegalStateException e) {
+            throw new IOException("Documento de usuário inválido: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public byte[] codificarEvento(Evento evento) {
+        return SerializadorJson.GSON.toJson(evento).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Evento decodificarEvento(InputStream entrada) throws IOException {
+        return decodificar(entrada, Evento.class);
+    }
+
+    private <T> T decodificar(InputStream entrada, Class<T> tipo) throws IOException {
+        try {
+            T entidade = SerializadorJson.GSON.fromJson(new InputStreamReader(entrada, StandardCharsets.UTF_8), tipo);
+            if (entidade == null) {
+                throw new IOException("Documento vazio.");
+            }
+            return entidade;
+        } catch (JsonParseException e) {
+            throw new IOException("Documento JSON inválido: " + e.getMessage(), e);
+        }
+    }
+}
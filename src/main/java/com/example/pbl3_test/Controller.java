@@ -2,12 +2,35 @@
 package com.example.pbl3_test;
 
 import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Classe responsável pelo controle de operações relacionadas a eventos, 
  * usuários e ingressos.
+ *
+ * <p>
+ * As operações que leem e alteram usuários e eventos travam para escrita, de uma só vez, todas as
+ * entidades envolvidas nas {@link TravasEntidades} do armazenamento, antes da primeira leitura.
+ * Assim, compras simultâneas do mesmo evento ou do mesmo usuário não perdem alterações, e
+ * operações em entidades diferentes não esperam umas pelas outras.
+ * </p>
+ *
+ * <p>
+ * A compra é a exceção: o ingresso é reservado primeiro por
+ * {@link Armazenamento#reservarIngressos(String, int)}, uma operação atômica que não trava o
+ * evento e nunca vende mais ingressos do que o evento tem, e só então o usuário é travado. Assim,
+ * as compras de um evento concorrido não esperam umas pelas outras, e um evento esgotado é
+ * recusado sem nenhuma leitura.
+ * </p>
  */
 public class Controller {
 
@@ -21,8 +44,33 @@ public class Controller {
  * @param email o e-mail do usuário
  * @param ativo indica se o usuário está ativo
  * @return o objeto {@code Usuario} criado
+ * @throws IllegalArgumentException se algum campo for inválido ou se o CPF, o nome de usuário ou o e-mail já estiverem cadastrados
  */
     public Usuario cadastrarUsuario(String username, String senha, String nome, String cpf, String email, boolean ativo, Armazenamento dados) {
+        Usuario user = novoUsuario(username, senha, nome, cpf, email, ativo);
+
+        // Trava também o nome de usuário e o e-mail, para que dois cadastros simultâneos não os reservem
+        try (var _ = dados.getTravas().travarEscrita(TravasEntidades.chaveUsuario(user.getCpf()),
+                TravasEntidades.chaveLogin(username), TravasEntidades.chaveEmail(email))) {
+            // Verifica se o CPF já existe
+            if (!dados.existeUsuario(user.getCpf())) {
+                verificarLoginEmailLivres(user.getCpf(), username, email, dados);
+                dados.armazenarUsuario(user);
+                Registro.depuracao("Usuário armazenado com sucesso!");
+                return user;
+            } else {
+                throw new IllegalArgumentException("Erro: Usuário com CPF " + user.getCpf() + " já existe.");
+            }
+        }
+    }
+
+    /**
+     * Valida os dados de cadastro e cria o usuário, sem armazená-lo. Também usado pelo {@link ImportadorLote}.
+     *
+     * @return o usuário criado, com o CPF sem pontuação
+     * @throws IllegalArgumentException se algum campo obrigatório estiver vazio ou o CPF for inválido
+     */
+    static Usuario novoUsuario(String username, String senha, String nome, String cpf, String email, boolean admin) {
         // Validação de campos obrigatórios
         if (username == null || username.isEmpty() ||
             senha == null || senha.isEmpty() ||
@@ -39,18 +87,49 @@ public class Controller {
         }
 
         // Criação do objeto usuário
-        Usuario user = new Usuario(username, senha, nome, cpf, email, ativo);
+        return new Usuario(username, senha, nome, cpf, email, admin);
+    }
 
-        // Verifica se o CPF já existe
-        if (dados.lerUsuario(user.getCpf()) == null) {
-            dados.armazenarUsuario(user);
-            System.out.println("Usuário armazenado com sucesso!");
-            return user;
-        } else {
-            throw new IllegalArgumentException("Erro: Usuário com CPF " + user.getCpf() + " já existe.");
+    /**
+     * Verifica, pelos índices do armazenamento, se o nome de usuário e o e-mail não pertencem a outro
+     * usuário. Também usado pelo {@link ImportadorLote}.
+     *
+     * @param cpf o CPF do usuário que vai usar o nome de usuário e o e-mail
+     * @throws IllegalArgumentException se outro usuário já usar o nome de usuário ou o e-mail
+     */
+    static void verificarLoginEmailLivres(String cpf, String username, String email, MotorArmazenamento dados) {
+        String dono = dados.buscarCpfPorLogin(username);
+        if (dono != null && !dono.equals(cpf)) {
+            throw new IllegalArgumentException("Erro: O nome de usuário " + username + " já está em uso.");
+        }
+        dono = dados.buscarCpfPorEmail(email);
+        if (dono != null && !dono.equals(cpf)) {
+            throw new IllegalArgumentException("Erro: O e-mail " + email + " já está cadastrado.");
         }
     }
 
+    /**
+     * Localiza o CPF de um usuário a partir do que ele digitou para entrar: o CPF, com ou sem
+     * pontuação, o nome de usuário ou o e-mail. As buscas por nome de usuário e e-mail usam os
+     * índices do armazenamento.
+     *
+     * @param identificador o CPF, o nome de usuário ou o e-mail
+     * @param dados a instância de {@code Armazenamento} para buscar o usuário
+     * @return o CPF do usuário ou {@code null} se nenhum usuário corresponder ao identificador
+     */
+    public String localizarCpf(String identificador, Armazenamento dados) {
+        if (identificador == null || identificador.trim().isEmpty()) {
+            return null;
+        }
+        String texto = identificador.trim();
+        String cpf = texto.replaceAll("[^a-zA-Z0-9]", "");
+        if (cpf.matches("\\d{11}") && dados.existeUsuario(cpf)) {
+            return cpf;
+        }
+        cpf = dados.buscarCpfPorLogin(texto);
+        return cpf != null ? cpf : dados.buscarCpfPorEmail(texto);
+    }
+
     /**
      * Cadastra um novo evento no sistema, desde que o usuário seja administrador.
      * 
@@ -92,21 +171,198 @@ public class Controller {
      * @param pagamento o método de pagamento usado para a compra
      * @param data a data da compra do ingresso
      * @return o objeto {@code Ingresso} comprado
+     * @throws IllegalArgumentException se o evento não for encontrado
+     * @throws IllegalStateException se os ingressos do evento estiverem esgotados
      */
     public Ingresso comprarIngresso(Usuario usuario, String eventoId, Armazenamento dados, String pagamento, Date data) {
-        Evento EventoAtual = dados.lerEvento(eventoId);
-        Ingresso ingresso = new Ingresso(EventoAtual, EventoAtual.getPreco());
-        Recibo recibo = new Recibo(usuario.getNome(), usuario.getCpf(), usuario.getEmail(), ingresso, pagamento, eventoId, data);
+        // Reserva o lugar antes de travar qualquer entidade: um evento esgotado é recusado sem E/S
+        if (dados.reservarIngressos(eventoId, 1) < 0) {
+            throw new IllegalStateException("Erro: Ingressos esgotados para o evento " + eventoId + ".");
+        }
+        return registrarIngressos(usuario, Map.of(eventoId, 1), dados, pagamento, data).get(0);
+    }
+
+    /**
+     * Reserva ingressos de um evento para um usuário durante a validade informada, sem comprá-los.
+     * Os ingressos ficam indisponíveis para os outros usuários até que a reserva seja confirmada por
+     * {@link #confirmarReserva(Usuario, ReservasIngressos.Reserva, String, Date, Armazenamento)},
+     * liberada por {@link #liberarReserva(Usuario, ReservasIngressos.Reserva, Armazenamento)} ou expire.
+     *
+     * @param usuario o usuário que está reservando os ingressos
+     * @param eventoId o ID do evento
+     * @param quantidade a quantidade de ingressos
+     * @param validadeMillis a validade da reserva, em milissegundos
+     * @param dados a instância de {@code Armazenamento} com os eventos
+     * @return a reserva pendente
+     * @throws IllegalArgumentException se a quantidade ou a validade forem inválidas, ou se o evento não for encontrado
+     * @throws IllegalStateException se o evento não tiver ingressos suficientes
+     */
+    public ReservasIngressos.Reserva reservarIngressos(Usuario usuario, String eventoId, int quantidade, long validadeMillis, Armazenamento dados) {
+        return dados.getReservas().reservar(usuario.getCpf(), eventoId, quantidade, validadeMillis);
+    }
+
+    /**
+     * Confirma uma reserva pendente, comprando os ingressos reservados.
+     *
+     * @param usuario o usuário dono da reserva
+     * @param reserva a reserva
+     * @param pagamento o método de pagamento usado para a compra
+     * @param data a data da compra
+     * @param dados a instância de {@code Armazenamento} para salvar os dados
+     * @return os ingressos comprados
+     * @throws SecurityException se a reserva for de outro usuário
+     * @throws IllegalStateException se a reserva tiver expirado, sido liberada ou já confirmada
+     */
+    public List<Ingresso> confirmarReserva(Usuario usuario, ReservasIngressos.Reserva reserva, String pagamento, Date data, Armazenamento dados) {
+        verificarDonoReserva(usuario, reserva);
+        dados.getReservas().confirmar(reserva);
+        return registrarIngressos(usuario, Map.of(reserva.getEventoId(), reserva.getQuantidade()), dados, pagamento, data);
+    }
+
+    /**
+     * Libera uma reserva pendente, devolvendo os ingressos ao evento.
+     *
+     * @param usuario o usuário dono da reserva
+     * @param reserva a reserva
+     * @param dados a instância de {@code Armazenamento} com os eventos
+     * @return {@code true} se a reserva foi liberada; {@code false} se já não estava pendente
+     * @throws SecurityException se a reserva for de outro usuário
+     */
+    public boolean liberarReserva(Usuario usuario, ReservasIngressos.Reserva reserva, Armazenamento dados) {
+        verificarDonoReserva(usuario, reserva);
+        return dados.getReservas().liberar(reserva);
+    }
+
+    private static void verificarDonoReserva(Usuario usuario, ReservasIngressos.Reserva reserva) {
+        if (!reserva.getCpf().equals(usuario.getCpf())) {
+            throw new SecurityException("A reserva " + reserva.getId() + " pertence a outro usuário.");
+        }
+    }
+
+    /**
+     * Compra vários ingressos de um evento para um usuário, de uma só vez.
+     *
+     * @param usuario o usuário que está comprando os ingressos
+     * @param eventoId o ID do evento
+     * @param quantidade a quantidade de ingressos
+     * @param dados a instância de {@code Armazenamento} para salvar os dados
+     * @param pagamento o método de pagamento usado para a compra
+     * @param data a data da compra
+     * @return os ingressos comprados
+     * @throws IllegalArgumentException se a quantidade não for positiva ou se o evento não for encontrado
+     * @throws IllegalStateException se o evento não tiver ingressos suficientes
+     * @see #comprarIngressos(Usuario, Map, Armazenamento, String, Date)
+     */
+    public List<Ingresso> comprarIngressos(Usuario usuario, String eventoId, int quantidade, Armazenamento dados, String pagamento, Date data) {
+        return comprarIngressos(usuario, Map.of(eventoId, quantidade), dados, pagamento, data);
+    }
+
+    /**
+     * Compra ingressos de um ou mais eventos para um usuário em uma única operação.
+     *
+     * <p>
+     * Os ingressos de todos os eventos são reservados antes de qualquer gravação: se algum evento não
+     * tiver ingressos suficientes, as reservas já feitas são devolvidas e nada é comprado. Em seguida
+     * cada evento é lido uma vez, todos os ingressos e recibos são criados e a compra é registrada no
+     * usuário com uma única gravação, em vez de uma leitura e uma gravação por ingresso.
+     * </p>
+     *
+     * @param usuario o usuário que está comprando os ingressos
+     * @param quantidades a quantidade de ingressos de cada evento, por ID; os ingressos são criados na ordem do mapa
+     * @param dados a instância de {@code Armazenamento} para salvar os dados
+     * @param pagamento o método de pagamento usado para a compra
+     * @param data a data da compra
+     * @return os ingressos comprados, na ordem dos eventos
+     * @throws IllegalArgumentException se não houver eventos, se alguma quantidade não for positiva ou se algum evento não for encontrado
+     * @throws IllegalStateException se algum evento não tiver ingressos suficientes
+     */
+    public List<Ingresso> comprarIngressos(Usuario usuario, Map<String, Integer> quantidades, Armazenamento dados, String pagamento, Date data) {
+        if (quantidades.isEmpty()) {
+            throw new IllegalArgumentException("Erro: Nenhum ingresso informado para a compra.");
+        }
+        for (Map.Entry<String, Integer> linha : quantidades.entrySet()) {
+            if (linha.getValue() == null || linha.getValue() <= 0) {
+                throw new IllegalArgumentException("Erro: A quantidade de ingressos do evento " + linha.getKey() + " deve ser maior que zero.");
+            }
+        }
+
+        // Reserva todos os eventos antes de gravar; uma falha devolve as reservas já feitas
+        Map<String, Integer> reservados = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, Integer> linha : quantidades.entrySet()) {
+                if (dados.reservarIngressos(linha.getKey(), linha.getValue()) < 0) {
+                    throw new IllegalStateException("Erro: Ingressos esgotados para o evento " + linha.getKey() + ".");
+                }
+                reservados.put(linha.getKey(), linha.getValue());
+            }
+        } catch (RuntimeException e) {
+            devolverIngressos(reservados, dados, e);
+            throw e;
+        }
+        return registrarIngressos(usuario, reservados, dados, pagamento, data);
+    }
 
-        EventoAtual.setIngressos(EventoAtual.getIngressos() - 1);
-        usuario.adicionarIngresso(ingresso);
-        usuario.adicionarRecibo(recibo);
+    /**
+     * Cria e registra para o usuário os ingressos e recibos de uma compra cujos ingressos já foram
+     * retirados dos eventos. Cada evento é lido uma vez e a compra é registrada no usuário com uma
+     * única gravação. Se a compra não puder ser concluída, os ingressos voltam para os eventos.
+     */
+    private List<Ingresso> registrarIngressos(Usuario usuario, Map<String, Integer> quantidades, Armazenamento dados, String pagamento, Date data) {
+        List<Ingresso> ingressos = new ArrayList<>();
+        try {
+            // Os eventos são lidos antes de travar o usuário: o cancelamento trava o evento antes
+            // do usuário, e esperar pelo evento com o usuário travado poderia causar um impasse
+            List<Recibo> recibos = new ArrayList<>();
+            for (Map.Entry<String, Integer> linha : quantidades.entrySet()) {
+                String eventoId = linha.getKey();
+                Evento EventoAtual = dados.lerEvento(eventoId);
+                if (EventoAtual == null) {
+                    throw new IllegalArgumentException("Erro: Evento " + eventoId + " não encontrado.");
+                }
+                for (int i = 0; i < linha.getValue(); i++) {
+                    Ingresso ingresso = new Ingresso(EventoAtual, EventoAtual.getPreco());
+                    ingressos.add(ingresso);
+                    recibos.add(new Recibo(usuario.getNome(), usuario.getCpf(), usuario.getEmail(), ingresso, pagamento, eventoId, data));
+                }
+            }
 
-        dados.armazenarUsuario(usuario);
-        dados.armazenarEvento(EventoAtual);
+            try (var _ = dados.getTravas().travarEscrita(TravasEntidades.chaveUsuario(usuario.getCpf()))) {
+                for (int i = 0; i < ingressos.size(); i++) {
+                    usuario.adicionarIngresso(ingressos.get(i));
+                    usuario.adicionarRecibo(recibos.get(i));
+                }
 
-        System.out.println("Recibo enviado para " + usuario.getEmail());
-        return ingresso;
+                try {
+                    dados.registrarCompra(usuario, ingressos, recibos);
+                } catch (RuntimeException e) {
+                    // A compra não foi gravada: o usuário não pode ficar com os ingressos
+                    usuario.getIngressos().removeAll(ingressos);
+                    usuario.getRecibos().removeAll(recibos);
+                    throw e;
+                }
+            }
+        } catch (RuntimeException e) {
+            // Devolve os lugares retirados se a compra não puder ser concluída
+            devolverIngressos(quantidades, dados, e);
+            throw e;
+        }
+
+        Registro.info("Recibo enviado para {}", usuario.getEmail());
+        return ingressos;
+    }
+
+    /**
+     * Devolve aos eventos os ingressos retirados por uma compra que falhou. Falhas na devolução são
+     * anexadas ao erro original.
+     */
+    private static void devolverIngressos(Map<String, Integer> quantidades, Armazenamento dados, RuntimeException erro) {
+        for (Map.Entry<String, Integer> linha : quantidades.entrySet()) {
+            try {
+                dados.ajustarIngressos(linha.getKey(), linha.getValue());
+            } catch (RuntimeException devolucao) {
+                erro.addSuppressed(devolucao);
+            }
+        }
     }
 
     /**
@@ -117,17 +373,31 @@ public class Controller {
      * @param data a data do cancelamento
      * @param dados a instância de {@code Armazenamento} para atualizar os dados
      * @return {@code true} se o cancelamento foi bem-sucedido, {@code false} caso contrário
+     * @throws IllegalArgumentException se o evento do ingresso não for encontrado
+     * @throws IllegalStateException se o cancelamento não puder ser gravado; o ingresso continua com o usuário
      */
     public boolean cancelarCompra(Usuario usuario, Ingresso ingresso, Date data, Armazenamento dados) {
         String eventoId = ingresso.getEventoID();
-        Evento evento = dados.lerEvento(eventoId);
-        if (usuario.removeIngresso(ingresso, evento, data)) {
-            evento.setIngressos(evento.getIngressos() + 1);
-            dados.armazenarEvento(evento);
-            dados.armazenarUsuario(usuario);
-        }
+        try (var _ = dados.getTravas().travarEscrita(TravasEntidades.chaveUsuario(usuario.getCpf()),
+                TravasEntidades.chaveEvento(eventoId))) {
+            Evento evento = dados.lerEvento(eventoId);
+            if (evento == null) {
+                throw new IllegalArgumentException("Erro: Evento " + eventoId + " não encontrado.");
+            }
+            if (usuario.removeIngresso(ingresso, evento, data)) {
+                // O lugar só volta ao evento depois que o cancelamento foi gravado, para que uma falha
+                // na gravação não deixe o mesmo lugar com o usuário e à venda
+                try {
+                    dados.registrarCancelamento(usuario, ingresso);
+                } catch (RuntimeException e) {
+                    usuario.adicionarIngresso(ingresso);
+                    throw e;
+                }
+                evento.setIngressos(dados.ajustarIngressos(eventoId, 1));
+            }
 
-        return usuario.removeIngresso(ingresso, evento, data);
+            return usuario.removeIngresso(ingresso, evento, data);
+        }
     }
 
     /**
@@ -150,6 +420,119 @@ public class Controller {
         return usuario.getRecibos();
     }
 
+    /**
+     * Lista todos os recibos de um usuário, incluindo os que foram arquivados. Os recibos arquivados
+     * são lidos do armazenamento a cada chamada e aparecem antes dos recibos recentes.
+     *
+     * @param usuario o usuário cujos recibos serão listados
+     * @param dados a instância de {@code Armazenamento} para buscar os recibos arquivados
+     * @return a lista completa de recibos do usuário
+     */
+    public List<Recibo> listarRecibos(Usuario usuario, Armazenamento dados) {
+        Set<String> recentes = new HashSet<>();
+        for (Recibo recibo : usuario.getRecibos()) {
+            if (recibo.getIngresso() != null) {
+                recentes.add(recibo.getIngresso().getId());
+            }
+        }
+        List<Recibo> recibos = new ArrayList<>();
+        for (Recibo recibo : dados.lerRecibosArquivados(usuario.getCpf())) {
+            // Um arquivamento interrompido pode deixar o mesmo recibo nas duas camadas
+            if (recibo.getIngresso() == null || !recentes.contains(recibo.getIngresso().getId())) {
+                recibos.add(recibo);
+            }
+        }
+        recibos.addAll(usuario.getRecibos());
+        return recibos;
+    }
+
+    /**
+     * Lista os eventos arquivados, para relatórios de administradores.
+     *
+     * @param admin o usuário que está pedindo o relatório
+     * @param dados a instância de {@code Armazenamento} para buscar os eventos
+     * @return os eventos arquivados
+     * @throws SecurityException se o usuário não for administrador
+     */
+    public List<Evento> listarEventosArquivados(Usuario admin, Armazenamento dados) {
+        if (!admin.isAdmin()) {
+            throw new SecurityException("Somente administradores podem consultar os eventos arquivados.");
+        }
+        return dados.lerEventosArquivados();
+    }
+
+    /**
+     * Conta os ingressos ativos de cada evento, para relatórios de administradores. O relatório
+     * percorre uma {@link VisaoLeitura} do armazenamento e, por isso, não trava as compras feitas
+     * enquanto é gerado, que ficam de fora do resultado.
+     *
+     * @param admin o usuário que está pedindo o relatório
+     * @param dados a instância de {@code Armazenamento} para buscar os dados
+     * @return a quantidade de ingressos ativos por ID de evento, em ordem de ID
+     * @throws IOException se a visão do armazenamento não puder ser aberta
+     * @throws SecurityException se o usuário não for administrador
+     */
+    public Map<String, Integer> relatorioVendasPorEvento(Usuario admin, Armazenamento dados) throws IOException {
+        if (!admin.isAdmin()) {
+            throw new SecurityException("Somente administradores podem consultar os relatórios de vendas.");
+        }
+        Map<String, Integer> vendas = new TreeMap<>();
+        try (VisaoLeitura visao = dados.abrirVisao()) {
+            for (String eventoId : visao.listarIdsEventos()) {
+                vendas.put(eventoId, 0);
+            }
+            for (String cpf : visao.listarCpfs()) {
+                Usuario usuario = visao.lerUsuario(cpf);
+                if (usuario == null) {
+                    continue;
+                }
+                for (Ingresso ingresso : usuario.getIngressos()) {
+                    vendas.merge(ingresso.getEventoID(), 1, Integer::sum);
+                }
+            }
+        }
+        return vendas;
+    }
+
+    /**
+     * Soma a receita das compras de cada dia, para relatórios de administradores. São considerados
+     * os recibos cujo ingresso ainda está ativo, isto é, as compras não canceladas. Como em
+     * {@link #relatorioVendasPorEvento(Usuario, Armazenamento)}, o relatório percorre uma
+     * {@link VisaoLeitura} e não trava as compras.
+     *
+     * @param admin o usuário que está pedindo o relatório
+     * @param dados a instância de {@code Armazenamento} para buscar os dados
+     * @return a receita por dia da compra, em ordem de data
+     * @throws IOException se a visão do armazenamento não puder ser aberta
+     * @throws SecurityException se o usuário não for administrador
+     */
+    public Map<LocalDate, Double> relatorioReceitaPorDia(Usuario admin, Armazenamento dados) throws IOException {
+        if (!admin.isAdmin()) {
+            throw new SecurityException("Somente administradores podem consultar os relatórios de vendas.");
+        }
+        Map<LocalDate, Double> receita = new TreeMap<>();
+        try (VisaoLeitura visao = dados.abrirVisao()) {
+            for (String cpf : visao.listarCpfs()) {
+                Usuario usuario = visao.lerUsuario(cpf);
+                if (usuario == null) {
+                    continue;
+                }
+                Set<String> ativos = new HashSet<>();
+                for (Ingresso ingresso : usuario.getIngressos()) {
+                    ativos.add(ingresso.getId());
+                }
+                for (Recibo recibo : usuario.getRecibos()) {
+                    Ingresso ingresso = recibo.getIngresso();
+                    if (ingresso != null && recibo.getData() != null && ativos.contains(ingresso.getId())) {
+                        LocalDate dia = recibo.getData().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+                        receita.merge(dia, ingresso.getPreco(), Double::sum);
+                    }
+                }
+            }
+        }
+        return receita;
+    }
+
     /**
      * Atualiza os dados de cadastro de um usuário.
      * 
@@ -158,10 +541,15 @@ public class Controller {
      * @param senha a nova senha
      * @param nome o novo nome completo
      * @param email o novo e-mail
+     * @throws IllegalArgumentException se o nome de usuário ou o e-mail já pertencerem a outro usuário
      */
     public void NovoCadastroUsuario(Usuario usuario, String username, String senha, String nome, String email, Armazenamento dados) {
-        usuario.atualizarDados(username, senha, nome, email);
-        ArmazenarDadosUsuario(usuario, dados);
+        try (var _ = dados.getTravas().travarEscrita(TravasEntidades.chaveUsuario(usuario.getCpf()),
+                TravasEntidades.chaveLogin(username), TravasEntidades.chaveEmail(email))) {
+            verificarLoginEmailLivres(usuario.getCpf().replaceAll("[^a-zA-Z0-9]", ""), username, email, dados);
+            usuario.atualizarDados(username, senha, nome, email);
+            ArmazenarDadosUsuario(usuario, dados);
+        }
     }
 
     public void ArmazenarDadosUsuario(Usuario usuario, Armazenamento dados) {
@@ -209,20 +597,24 @@ public class Controller {
      * @throws SecurityException se o usuário não participou do evento
      */
     public void avaliarEvento(Evento evento, Usuario usuario, String avaliacao, Armazenamento dados) {
-        // Verifica se o usuário possui um ingresso para o evento
-       
-        if (usuario.getIngressos().stream().anyMatch(ingresso -> ingresso.getEventoID().equals(evento.getID()))) {
-            evento.adicionarAvaliacao(usuario.getLogin(), avaliacao);
-            dados.armazenarEvento(evento);
-        } else {
-            throw new SecurityException("Apenas usuários que participaram do evento podem avaliar.");
+        try (var _ = dados.getTravas().travarEscrita(TravasEntidades.chaveEvento(evento.getID()),
+                TravasEntidades.chaveUsuario(usuario.getCpf()))) {
+            // Verifica se o usuário possui um ingresso para o evento
+            if (usuario.getIngressos().stream().anyMatch(ingresso -> ingresso.getEventoID().equals(evento.getID()))) {
+                evento.adicionarAvaliacao(usuario.getLogin(), avaliacao);
+                // A avaliação não altera os ingressos, que podem ter sido reservados depois da leitura do evento
+                dados.armazenarDetalhesEvento(evento);
+            } else {
+                throw new SecurityException("Apenas usuários que participaram do evento podem avaliar.");
+            }
         }
     }
 
     /**
-     * Realiza o login do usuário verificando as credenciais fornecidas.
+     * Realiza o login do usuário verificando as credenciais fornecidas. O usuário pode ser
+     * identificado pelo CPF, pelo nome de usuário ou pelo e-mail (veja {@link #localizarCpf(String, Armazenamento)}).
      *
-     * @param CPF       O CPF do usuário que deseja realizar o login.
+     * @param CPF       O CPF, o nome de usuário ou o e-mail do usuário que deseja realizar o login.
      * @param password  A senha do usuário que deseja realizar o login.
      * @param armazenamento O objeto {@code Armazenamento} utilizado para acessar os dados do usuário.
      * @return {@code true} se as credenciais estiverem corretas, {@code false} caso contrário.
@@ -231,18 +623,23 @@ public class Controller {
     
     public boolean loginUsuario(String CPF, String password, Armazenamento armazenamento) throws IOException {
         try {
-            // Obtém os dados do usuário a partir do CPF
-            Usuario verificador = armazenamento.lerUsuario(CPF);
+            String cpf = localizarCpf(CPF, armazenamento);
+            if (cpf == null) {
+                Registro.info("Credenciais inválidas.");
+                return false;
+            }
+            // Lê apenas a senha do usuário, sem carregar ingressos e recibos
+            Map<String, String> verificador = armazenamento.lerCamposUsuario(cpf, "password");
 
             // Verifica se o usuário existe e a senha está correta
-            if (verificador != null && verificador.getSenha().equals(password)) {
+            if (verificador != null && password.equals(verificador.get("password"))) {
                 return true; // Login bem-sucedido
             } else {
-                System.out.println("Credenciais inválidas.");
+                Registro.info("Credenciais inválidas.");
             }
         } catch (Exception e) {
-            // Imprime o erro para depuração
-            e.printStackTrace();
+            // Registra o erro para depuração
+            Registro.erro("Erro ao realizar o login: {}", e.getMessage(), e);
         }
 
         return false; // Retorna falso se algo falhar
@@ -0,0 +1,350 @@
+package com.example.pbl3_test;
+
+import javafx.application.Platform;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Versão assíncrona das operações do {@link Controller}.
+ *
+ * <p>
+ * As operações são executadas no executor de E/S do {@link ArmazenamentoAssincrono} e retornam um
+ * {@link CompletableFuture}. As exceções lançadas pelo {@link Controller}, como
+ * {@link IllegalArgumentException} e {@link SecurityException}, concluem o futuro com erro.
+ * As telas devem tratar o resultado na thread da interface, por exemplo com
+ * {@code whenCompleteAsync(acao, Platform::runLater)}.
+ * </p>
+ *
+ * <p>
+ * O {@link Usuario} informado pela tela não é alterado no executor de E/S, já que a thread da
+ * interface pode estar lendo o mesmo objeto. Cada operação recebe uma cópia, feita na thread que a
+ * chamou, e as alterações da operação (ingressos e recibos comprados, ingresso cancelado, dados do
+ * perfil) são aplicadas ao usuário original no executor de retorno, por padrão a thread da interface,
+ * antes que o futuro retornado seja concluído. Todas as operações do {@link Controller} têm uma versão aqui.
+ * </p>
+ */
+public class ControllerAssincrono {
+
+    private final Controller controller;
+    private final Executor retorno;
+
+    /**
+     * Construtor da classe {@code ControllerAssincrono}, que aplica as alterações dos usuários na
+     * thread da interface.
+     *
+     * @param controller o controlador cujas operações serão executadas de forma assíncrona
+     */
+    public ControllerAssincrono(Controller controller) {
+        this(controller, Platform::runLater);
+    }
+
+    /**
+     * Construtor da classe {@code ControllerAssincrono}.
+     *
+     * @param controller o controlador cujas operações serão executadas de forma assíncrona
+     * @param retorno o executor em que as alterações são aplicadas aos usuários informados pelas telas
+     */
+    public ControllerAssincrono(Controller controller, Executor retorno) {
+        this.controller = controller;
+        this.retorno = retorno;
+    }
+
+    /**
+     * Executa uma operação sobre uma cópia do usuário e, se ela for concluída, aplica o resultado ao
+     * usuário original no executor de retorno.
+     */
+    private <T> CompletableFuture<T> executarNaCopia(Usuario usuario, Function<Usuario, T> operacao,
+                                                     BiConsumer<Usuario, T> aplicar) {
+        Usuario copia = usuario.copiar();
+        return ArmazenamentoAssincrono.executar(() -> operacao.apply(copia)).thenApplyAsync(resultado -> {
+            aplicar.accept(copia, resultado);
+            return resultado;
+        }, retorno);
+    }
+
+    /**
+     * Acrescenta ao usuário original os ingressos comprados na cópia e os recibos correspondentes.
+     */
+    private void aplicarCompra(Usuario usuario, Usuario copia, List<Ingresso> comprados) {
+        Set<Ingresso> novos = Collections.newSetFromMap(new IdentityHashMap<>());
+        novos.addAll(comprados);
+        for (Ingresso ingresso : comprados) {
+            usuario.adicionarIngresso(ingresso);
+        }
+        for (Recibo recibo : copia.getRecibos()) {
+            if (novos.contains(recibo.getIngresso())) {
+                usuario.adicionarRecibo(recibo);
+            }
+        }
+    }
+
+    private static void aplicarPerfil(Usuario usuario, Usuario copia) {
+        usuario.atualizarDados(copia.getLogin(), copia.getSenha(), copia.getNome(), copia.getEmail());
+        usuario.setHistoricoOffset(copia.getHistoricoOffset());
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#cadastrarUsuario(String, String, String, String, String, boolean, Armazenamento)}.
+     *
+     * @return o usuário criado
+     */
+    public CompletableFuture<Usuario> cadastrarUsuario(String username, String senha, String nome, String cpf, String email, boolean ativo, Armazenamento dados) {
+        return ArmazenamentoAssincrono.executar(() -> controller.cadastrarUsuario(username, senha, nome, cpf, email, ativo, dados));
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#cadastrarEvento(Usuario, String, String, Date, int, Armazenamento)}.
+     *
+     * @return o evento criado
+     */
+    public CompletableFuture<Evento> cadastrarEvento(Usuario admin, String nome, String descricao, Date data, int ingressos, Armazenamento dados) {
+        return ArmazenamentoAssincrono.executar(() -> controller.cadastrarEvento(admin, nome, descricao, data, ingressos, dados));
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#cadastrarEvento(Usuario, String, String, Date, int, double, Armazenamento)}.
+     *
+     * @return o evento criado
+     */
+    public CompletableFuture<Evento> cadastrarEvento(Usuario admin, String nome, String descricao, Date data, int ingressos, double preco, Armazenamento dados) {
+        return ArmazenamentoAssincrono.executar(() -> controller.cadastrarEvento(admin, nome, descricao, data, ingressos, preco, dados));
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#comprarIngresso(Usuario, String, Armazenamento, String, Date)}.
+     *
+     * @return o ingresso comprado
+     */
+    public CompletableFuture<Ingresso> comprarIngresso(Usuario usuario, String eventoId, Armazenamento dados, String pagamento, Date data) {
+        return executarNaCopia(usuario, copia -> controller.comprarIngresso(copia, eventoId, dados, pagamento, data),
+                (copia, ingresso) -> aplicarCompra(usuario, copia, List.of(ingresso)));
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#comprarIngressos(Usuario, String, int, Armazenamento, String, Date)}.
+     *
+     * @return os ingressos comprados
+     */
+    public CompletableFuture<List<Ingresso>> comprarIngressos(Usuario usuario, String eventoId, int quantidade, Armazenamento dados, String pagamento, Date data) {
+        return comprarIngressos(usuario, Map.of(eventoId, quantidade), dados, pagamento, data);
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#comprarIngressos(Usuario, Map, Armazenamento, String, Date)}.
+     *
+     * @return os ingressos comprados
+     */
+    public CompletableFuture<List<Ingresso>> comprarIngressos(Usuario usuario, Map<String, Integer> quantidades, Armazenamento dados, String pagamento, Date data) {
+        return executarNaCopia(usuario, copia -> controller.comprarIngressos(copia, quantidades, dados, pagamento, data),
+                (copia, ingressos) -> aplicarCompra(usuario, copia, ingressos));
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#reservarIngressos(Usuario, String, int, long, Armazenamento)}.
+     *
+     * @return a reserva pendente
+     */
+    public CompletableFuture<ReservasIngressos.Reserva> reservarIngressos(Usuario usuario, String eventoId, int quantidade, long validadeMillis, Armazenamento dados) {
+        Usuario copia = usuario.copiar();
+        return ArmazenamentoAssincrono.executar(() -> controller.reservarIngressos(copia, eventoId, quantidade, validadeMillis, dados));
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#confirmarReserva(Usuario, ReservasIngressos.Reserva, String, Date, Armazenamento)}.
+     *
+     * @return os ingressos comprados
+     */
+    public CompletableFuture<List<Ingresso>> confirmarReserva(Usuario usuario, ReservasIngressos.Reserva reserva, String pagamento, Date data, Armazenamento dados) {
+        return executarNaCopia(usuario, copia -> controller.confirmarReserva(copia, reserva, pagamento, data, dados),
+                (copia, ingressos) -> aplicarCompra(usuario, copia, ingressos));
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#liberarReserva(Usuario, ReservasIngressos.Reserva, Armazenamento)}.
+     *
+     * @return {@code true} se a reserva foi liberada
+     */
+    public CompletableFuture<Boolean> liberarReserva(Usuario usuario, ReservasIngressos.Reserva reserva, Armazenamento dados) {
+        Usuario copia = usuario.copiar();
+        return ArmazenamentoAssincrono.executar(() -> controller.liberarReserva(copia, reserva, dados));
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#cancelarCompra(Usuario, Ingresso, Date, Armazenamento)}.
+     *
+     * @return {@code true} se o cancelamento foi realizado
+     */
+    public CompletableFuture<Boolean> cancelarCompra(Usuario usuario, Ingresso ingresso, Date data, Armazenamento dados) {
+        return executarNaCopia(usuario, copia -> controller.cancelarCompra(copia, ingresso, data, dados), (copia, cancelado) -> {
+            // Os ingressos são comparados pelo ID, e a cópia tem objetos próprios
+            if (!copia.getIngressos().contains(ingresso)) {
+                usuario.getIngressos().remove(ingresso);
+            }
+        });
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#listarIngressosComprados(Usuario)}.
+     *
+     * @return os ingressos do usuário
+     */
+    public CompletableFuture<List<Ingresso>> listarIngressosComprados(Usuario usuario) {
+        return CompletableFuture.completedFuture(controller.listarIngressosComprados(usuario));
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#listarRecibos(Usuario)}.
+     *
+     * @return os recibos do usuário
+     */
+    public CompletableFuture<List<Recibo>> listarRecibos(Usuario usuario) {
+        return CompletableFuture.completedFuture(controller.listarRecibos(usuario));
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#listarRecibos(Usuario, Armazenamento)}, que lê os recibos arquivados.
+     *
+     * @return todos os recibos do usuário
+     */
+    public CompletableFuture<List<Recibo>> listarRecibos(Usuario usuario, Armazenamento dados) {
+        Usuario copia = usuario.copiar();
+        return ArmazenamentoAssincrono.executar(() -> controller.listarRecibos(copia, dados));
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#listarEventosArquivados(Usuario, Armazenamento)}.
+     *
+     * @return os eventos arquivados
+     */
+    public CompletableFuture<List<Evento>> listarEventosArquivados(Usuario admin, Armazenamento dados) {
+        return ArmazenamentoAssincrono.executar(() -> controller.listarEventosArquivados(admin, dados));
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#relatorioVendasPorEvento(Usuario, Armazenamento)}.
+     *
+     * @return a quantidade de ingressos vendidos de cada evento
+     */
+    public CompletableFuture<Map<String, Integer>> relatorioVendasPorEvento(Usuario admin, Armazenamento dados) {
+        return ArmazenamentoAssincrono.executarIO(() -> controller.relatorioVendasPorEvento(admin, dados));
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#relatorioReceitaPorDia(Usuario, Armazenamento)}.
+     *
+     * @return a receita de cada dia
+     */
+    public CompletableFuture<Map<LocalDate, Double>> relatorioReceitaPorDia(Usuario admin, Armazenamento dados) {
+        return ArmazenamentoAssincrono.executarIO(() -> controller.relatorioReceitaPorDia(admin, dados));
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#NovoCadastroUsuario(Usuario, String, String, String, String, Armazenamento)}.
+     *
+     * @return um futuro concluído quando a gravação terminar
+     */
+    public CompletableFuture<Void> NovoCadastroUsuario(Usuario usuario, String username, String senha, String nome, String email, Armazenamento dados) {
+        return executarNaCopia(usuario, copia -> {
+            controller.NovoCadastroUsuario(copia, username, senha, nome, email, dados);
+            return null;
+        }, (copia, nada) -> aplicarPerfil(usuario, copia));
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#ArmazenarDadosUsuario(Usuario, Armazenamento)}.
+     *
+     * @return um futuro concluído quando a gravação terminar
+     */
+    public CompletableFuture<Void> ArmazenarDadosUsuario(Usuario usuario, Armazenamento dados) {
+        Usuario copia = usuario.copiar();
+        return ArmazenamentoAssincrono.executar(() -> {
+            controller.ArmazenarDadosUsuario(copia, dados);
+            return null;
+        });
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#LerDadosUsuario(String, Armazenamento)}.
+     *
+     * @return o usuário lido
+     */
+    public CompletableFuture<Usuario> LerDadosUsuario(String cpf, Armazenamento dados) {
+        return ArmazenamentoAssincrono.executar(() -> controller.LerDadosUsuario(cpf, dados));
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#armazenarEvento(Evento, Armazenamento)}.
+     *
+     * @return um futuro concluído quando a gravação terminar
+     */
+    public CompletableFuture<Void> armazenarEvento(Evento evento, Armazenamento dados) {
+        return ArmazenamentoAssincrono.executar(() -> {
+            controller.armazenarEvento(evento, dados);
+            return null;
+        });
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#LerDadosEvento(String, Armazenamento)}.
+     *
+     * @return o evento lido
+     */
+    public CompletableFuture<Evento> LerDadosEvento(String eventoId, Armazenamento dados) {
+        return ArmazenamentoAssincrono.executar(() -> controller.LerDadosEvento(eventoId, dados));
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#avaliarEvento(Evento, Usuario, String, Armazenamento)}.
+     *
+     * @return um futuro concluído quando a avaliação for gravada
+     */
+    public CompletableFuture<Void> avaliarEvento(Evento evento, Usuario usuario, String avaliacao, Armazenamento dados) {
+        Usuario copia = usuario.copiar();
+        return ArmazenamentoAssincrono.executar(() -> {
+            controller.avaliarEvento(evento, copia, avaliacao, dados);
+            return null;
+        });
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#localizarCpf(String, Armazenamento)}.
+     *
+     * @return o CPF do usuário ou {@code null} se nenhum usuário corresponder ao identificador
+     */
+    public CompletableFuture<String> localizarCpf(String identificador, Armazenamento dados) {
+        return ArmazenamentoAssincrono.executar(() -> controller.localizarCpf(identificador, dados));
+    }
+
+    /**
+     * Versão assíncrona de {@link Controller#loginUsuario(String, String, Armazenamento)}.
+     *
+     * @return {@code true} se as credenciais estiverem corretas
+     */
+    public CompletableFuture<Boolean> loginUsuario(String CPF, String password, Armazenamento armazenamento) {
+        return ArmazenamentoAssincrono.executarIO(() -> controller.loginUsuario(CPF, password, armazenamento));
+    }
+
+    /**
+     * Retorna a causa original de uma falha de um futuro, sem os invólucros do {@link CompletableFuture}.
+     *
+     * @param erro o erro recebido pelo futuro
+     * @return a causa original
+     */
+    public static Throwable causa(Throwable erro) {
+        while (erro instanceof CompletionException && erro.getCause() != null) {
+            erro = erro.getCause();
+        }
+        return erro;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.pbl3_test;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Ferramenta de linha de comando que converte um diretório de dados de um codec para outro.
+ *
+ * <p>
+ * Uso: {@code ConversorDados <diretorio-de-dados> <json|binario>}. Cada documento em
+ * {@code Usuarios} e {@code Eventos} é decodificado com o codec atual do diretório, gravado com o
+ * novo codec e, em seguida, o arquivo antigo é removido. Ao final, o arquivo
+ * {@value CodecEntidades#ARQUIVO_CONFIGURACAO} passa a indicar o novo codec. A conversão deve ser
+ * feita com a aplicação parada.
+ * </p>
+ */
+public class ConversorDados {
+
+    /**
+     * Ponto de entrada da ferramenta.
+     *
+     * @param args o diretório de dados e o nome do codec de destino
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Uso: ConversorDados <diretorio-de-dados> <json|binario>");
+            System.exit(1);
+        }
+        try {
+            int convertidos = converter(new File(args[0]), CodecEntidades.porNome(args[1]));
+            System.out.println(convertidos + " documento(s) convertido(s) para " + args[1] + ".");
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Erro ao converter o diretório de dados: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Converte todos os documentos do diretório de dados para o codec de destino.
+     *
+     * @param diretorioBase o diretório de dados
+     * @param destino o codec de destino
+     * @return a quantidade de documentos convertidos
+     * @throws IOException se algum documento não puder ser lido ou gravado
+     */
+    public static int converter(File diretorioBase, CodecEntidades destino) throws IOException {
+        CodecEntidades origem = CodecEntidades.doDiretorio(diretorioBase);
+        if (origem.getNome().equals(destino.getNome())) {
+            return 0;
+        }
+
+        // Garante que gravações pendentes no log sejam aplicadas antes da conversão
+        LogEscrita.abrir(diretorioBase.toPath()).checkpoint();
+        // Os documentos do snapshot compactado voltam a ser arquivos soltos para serem convertidos
+        SnapshotCompactado.abrir(diretorioBase.toPath()).descompactar();
+
+        int convertidos = 0;
+        convertidos += converterDiretorio(new File(diretorioBase, "Usuarios"), origem, destino, true);
+        convertidos += converterDiretorio(new File(diretorioBase, "Eventos"), origem, destino, false);
+        CodecEntidades.configurarDiretorio(diretorioBase, destino);
+        return convertidos;
+    }
+
+    private static int converterDiretorio(File diretorio, CodecEntidades origem, CodecEntidades destino, boolean usuarios) throws IOException {
+        if (!diretorio.isDirectory()) {
+            return 0;
+        }
+        // Os usuários podem estar em subdiretórios (LayoutUsuarios), por isso a busca é recursiva
+        List<File> arquivos;
+        try (Stream<Path> caminhos = Files.walk(diretorio.toPath())) {
+            arquivos = caminhos.filter(Files::isRegularFile)
+                               .filter(caminho -> caminho.getFileName().toString().endsWith(origem.getExtensao()))
+                               .map(Path::toFile)
+                               .collect(Collectors.toList());
+        }
+
+        Set<Path> diretoriosAlterados = new LinkedHashSet<>();
+        for (File arquivo : arquivos) {
+            byte[] convertido;
+            try (InputStream entrada = new BufferedInputStream(new FileInputStream(arquivo))) {
+                convertido = usuarios
+                        ? destino.codificarUsuario(origem.decodificarUsuario(entrada))
+                        : destino.codificarEvento(origem.decodificarEvento(entrada));
+            } catch (IOException e) {
+                throw new IOException("Falha ao converter " + arquivo.getName() + ": " + e.getMessage(), e);
+            }
+
+            String nomeBase = arquivo.getName().substring(0, arquivo.getName().length() - origem.getExtensao().length());
+            File novoArquivo = new File(arquivo.getParentFile(), nomeBase + destino.getExtensao());
+            File temporario = new File(arquivo.getParentFile(), novoArquivo.getName() + ".tmp");
+            Files.write(temporario.toPath(), convertido);
+            try (FileChannel canal = FileChannel.open(temporario.toPath(), StandardOpenOption.WRITE)) {
+                canal.force(true);
+            }
+            Files.move(temporario.toPath(), novoArquivo.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(arquivo.toPath());
+            diretoriosAlterados.add(arquivo.getParentFile().toPath());
+        }
+        for (Path alterado : diretoriosAlterados) {
+            LogEscrita.sincronizarDiretorio(alterado);
+        }
+        return arquivos.size();
+    }
+}
@@ -58,6 +58,37 @@ public class Evento {
         this.Preco = Preco;
     }
 
+    /**
+     * Reconstrói um evento já existente a partir dos dados armazenados, preservando o ID e a data gravados.
+     *
+     * @param ID o ID do evento
+     * @param Nome o nome do evento
+     * @param Descricao a descrição do evento
+     * @param Data a data do evento
+     * @param ingressos a quantidade de ingressos disponíveis
+     * @param avaliacoes as avaliações do evento
+     * @param Preco o preço do ingresso
+     */
+    Evento(String ID, String Nome, String Descricao, Date Data, int ingressos, Map<String, String> avaliacoes, double Preco) {
+        this.ID = ID;
+        this.Nome = Nome;
+        this.Descricao = Descricao;
+        this.Data = Data;
+        this.QuantidadeIngressos = ingressos;
+        this.avaliacoes = avaliacoes;
+        this.Preco = Preco;
+    }
+
+    /**
+     * Cria uma cópia independente do evento, com as suas próprias avaliações.
+     *
+     * @return a cópia do evento
+     */
+    Evento copiar() {
+        return new Evento(ID, Nome, Descricao, Data == null ? null : new Date(Data.getTime()), QuantidadeIngressos,
+                avaliacoes == null ? new HashMap<>() : new HashMap<>(avaliacoes), Preco);
+    }
+
     /**
      * Gera um ID único para o evento com base na data e no nome do evento.
      * 
@@ -177,7 +208,7 @@ public class Evento {
      */
     public void exibirAvaliacoes() {
         for (Map.Entry<String, String> usuario : avaliacoes.entrySet()) {
-            System.out.println("Usuário: " + usuario.getKey() + " - Avaliação: " + usuario.getValue());
+            Registro.info("Usuário: {} - Avaliação: {}", usuario.getKey(), usuario.getValue());
         }
     }
 
@@ -187,7 +218,7 @@ public class Evento {
 
     public void setPreco(double preco){
         this.Preco = preco;
-        System.out.println("Preço atualizado com sucesso!");
+        Registro.depuracao("Preço atualizado com sucesso!");
     }
 
     /**
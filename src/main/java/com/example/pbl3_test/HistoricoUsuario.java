@@ -0,0 +1,348 @@
+package com.example.pbl3_test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Histórico de ingressos e recibos de cada usuário, mantido em um arquivo somente de acréscimo
+ * ({@code <cpf>.historico}) ao lado do documento de perfil, no lugar definido pelo {@link LayoutUsuarios}.
+ *
+ * <p>
+ * Cada compra acrescenta um único bloco de registros ao final do arquivo, sincronizado no disco
+ * com uma chamada a {@code force}, sem regravar o documento do usuário nem os registros anteriores.
+ * Ao carregar o usuário, os registros são reaplicados em ordem para reconstruir as listas de
+ * ingressos e recibos. Um registro final incompleto ou com checksum inválido, deixado por uma
+ * gravação interrompida, é ignorado na leitura; o arquivo só é reparado com a trava de escrita do
+ * usuário, na próxima gravação do histórico, ou pelo {@link VerificadorIntegridade} na abertura do
+ * diretório. Assim, leitores simultâneos nunca truncam o arquivo uns dos outros.
+ * </p>
+ *
+ * <p>
+ * Formato de cada registro: tamanho ({@code int}), tipo ({@code byte}), conteúdo e checksum CRC32
+ * ({@code long}). O conteúdo dos registros de ingresso e recibo é sempre o JSON do
+ * {@link SerializadorJson}, qualquer que seja o {@link CodecEntidades} do diretório: o histórico tem
+ * formato próprio, compartilhado com a tabela de histórico do {@link MotorSql}, e não precisa ser
+ * regravado quando o {@link ConversorDados} troca o codec dos documentos. O conteúdo dos
+ * cancelamentos é o ID do ingresso.
+ * </p>
+ *
+ * <p>
+ * Esta classe não sincroniza o acesso: quem grava o histórico de um usuário deve ter a trava de
+ * escrita do usuário nas {@link TravasEntidades}, e quem o lê, ao menos a de leitura. Assim, gravações
+ * de usuários diferentes não esperam umas pelas outras.
+ * </p>
+ */
+public class HistoricoUsuario {
+
+    static final String EXTENSAO = ".historico";
+
+    static final byte TIPO_INGRESSO = 1;
+    static final byte TIPO_RECIBO = 2;
+    static final byte TIPO_CANCELAMENTO = 3;
+
+    private final LayoutUsuarios layout;
+    private final Set<String> incompletos = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Construtor da classe {@code HistoricoUsuario}.
+     *
+     * @param layout a organização dos arquivos de usuários
+     */
+    public HistoricoUsuario(LayoutUsuarios layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * Verifica se o usuário já possui um arquivo de histórico.
+     *
+     * @param cpf o CPF do usuário
+     * @return {@code true} se o histórico existir
+     */
+    public boolean existe(String cpf) {
+        return arquivo(cpf).isFile();
+    }
+
+    /**
+     * Cria o histórico de um usuário com os ingressos e recibos informados, substituindo-o de forma
+     * atômica. Usado na migração de documentos que ainda guardam o histórico completo.
+     *
+     * @param cpf o CPF do usuário
+     * @param ingressos os ingressos do usuário
+     * @param recibos os recibos do usuário
+     * @return o tamanho do histórico criado, em bytes
+     * @throws IOException se o histórico não puder ser gravado
+     */
+    public long criar(String cpf, List<Ingresso> ingressos, List<Recibo> recibos) throws IOException {
+        Path destino = arquivo(cpf).toPath();
+        Files.createDirectories(destino.getParent());
+        Path temporario = destino.resolveSibling(destino.getFileName() + ".tmp");
+        byte[] registros = codificar(ingressos, recibos);
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            escrever(canal, registros);
+            canal.force(false);
+        }
+        Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LogEscrita.sincronizarDiretorio(destino.getParent());
+        incompletos.remove(cpf);
+        return registros.length;
+    }
+
+    /**
+     * Acrescenta ao histórico os ingressos e recibos de uma compra, em uma única gravação.
+     *
+     * @param cpf o CPF do usuário
+     * @param ingressos os ingressos comprados
+     * @param recibos os recibos da compra
+     * @return o novo tamanho do histórico, em bytes
+     * @throws IOException se a gravação falhar
+     */
+    public long registrarCompra(String cpf, List<Ingresso> ingressos, List<Recibo> recibos) throws IOException {
+        return acrescentar(cpf, codificar(ingressos, recibos));
+    }
+
+    /**
+     * Acrescenta ao histórico o cancelamento de um ingresso.
+     *
+     * @param cpf o CPF do usuário
+     * @param ingressoId o ID do ingresso cancelado
+     * @return o novo tamanho do histórico, em bytes
+     * @throws IOException se a gravação falhar
+     */
+    public long registrarCancelamento(String cpf, String ingressoId) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        escreverRegistro(new DataOutputStream(saida), TIPO_CANCELAMENTO, ingressoId.getBytes(StandardCharsets.UTF_8));
+        return acrescentar(cpf, saida.toByteArray());
+    }
+
+    /**
+     * Remove do histórico os recibos dos ingressos informados, regravando o arquivo apenas com os
+     * ingressos e recibos restantes. Usado ao mover recibos antigos para o {@link ArquivoFrio}.
+     *
+     * @param cpf o CPF do usuário
+     * @param ingressoIds os IDs dos ingressos cujos recibos serão removidos
+     * @return o novo tamanho do histórico, em bytes, ou {@code -1} se nenhum recibo foi removido
+     * @throws IOException se o histórico não puder ser lido ou gravado
+     */
+    public long removerRecibos(String cpf, Set<String> ingressoIds) throws IOException {
+        Usuario atual = new Usuario("", "", "", cpf, "", false);
+        carregar(cpf, atual);
+        List<Recibo> restantes = new ArrayList<>();
+        for (Recibo recibo : atual.getRecibos()) {
+            if (recibo.getIngresso() == null || !ingressoIds.contains(recibo.getIngresso().getId())) {
+                restantes.add(recibo);
+            }
+        }
+        if (restantes.size() == atual.getRecibos().size()) {
+            return -1;
+        }
+        return criar(cpf, atual.getIngressos(), restantes);
+    }
+
+    /**
+     * Reconstrói as listas de ingressos e recibos do usuário a partir do histórico, substituindo
+     * as listas atuais. Um registro final inválido é ignorado e removido do arquivo na próxima
+     * gravação do histórico, já que quem lê tem apenas a trava de leitura do usuário.
+     *
+     * @param cpf o CPF do usuário
+     * @param usuario o usuário cujas listas serão preenchidas
+     * @return o tamanho válido do histórico, em bytes
+     * @throws IOException se o histórico não puder ser lido
+     */
+    public long carregar(String cpf, Usuario usuario) throws IOException {
+        usuario.getIngressos().clear();
+        usuario.getRecibos().clear();
+
+        Path caminho = arquivo(cpf).toPath();
+        ByteBuffer conteudo = ByteBuffer.wrap(Files.readAllBytes(caminho));
+        long valido = percorrer(conteudo, usuario);
+
+        if (valido < conteudo.capacity() && incompletos.add(cpf)) {
+            Registro.aviso("Histórico do usuário {} com registro final inválido; ignorando {} byte(s).",
+                           cpf, conteudo.capacity() - valido);
+        }
+        return valido;
+    }
+
+    /**
+     * Reconstrói as listas de ingressos e recibos do usuário a partir do conteúdo de um histórico,
+     * sem acessar o arquivo. Usado pela {@link VisaoArquivos}, que lê apenas a parte do histórico
+     * existente no momento da captura.
+     *
+     * @param conteudo o conteúdo do histórico
+     * @param usuario o usuário cujas listas serão preenchidas
+     * @return o tamanho válido do conteúdo, em bytes
+     */
+    static long carregarConteudo(byte[] conteudo, Usuario usuario) {
+        usuario.getIngressos().clear();
+        usuario.getRecibos().clear();
+        return percorrer(ByteBuffer.wrap(conteudo), usuario);
+    }
+
+    /**
+     * Retorna o tamanho da parte válida de um histórico, verificando o checksum de cada registro sem
+     * aplicá-los. Usado pelo {@link VerificadorIntegridade}.
+     *
+     * @param conteudo o conteúdo do arquivo de histórico
+     * @return o tamanho, em bytes, até o primeiro registro incompleto ou inválido
+     */
+    static long tamanhoValido(byte[] conteudo) {
+        return percorrer(ByteBuffer.wrap(conteudo), null);
+    }
+
+    /**
+     * Percorre os registros do histórico até o primeiro registro incompleto ou com checksum
+     * inválido, aplicando-os ao usuário, se informado.
+     *
+     * @return o tamanho válido do histórico, em bytes
+     */
+    private static long percorrer(ByteBuffer conteudo, Usuario usuario) {
+        long valido = 0;
+        while (conteudo.remaining() >= Integer.BYTES) {
+            int tamanho = conteudo.getInt();
+            if (tamanho < 1 + Long.BYTES || tamanho > conteudo.remaining()) {
+                break;
+            }
+            byte tipo = conteudo.get();
+            byte[] corpo = new byte[tamanho - 1 - Long.BYTES];
+            conteudo.get(corpo);
+            if (conteudo.getLong() != calcularChecksum(tipo, corpo)) {
+                break;
+            }
+            if (usuario != null) {
+                aplicar(usuario, tipo, new String(corpo, StandardCharsets.UTF_8));
+            }
+            valido = conteudo.position();
+        }
+        return valido;
+    }
+
+    /**
+     * Aplica ao usuário um registro do histórico. Também usado pelo {@link MotorSql}, que guarda
+     * os mesmos registros em uma tabela.
+     *
+     * @param usuario o usuário cujas listas serão alteradas
+     * @param tipo o tipo do registro
+     * @param conteudo o conteúdo do registro
+     */
+    static void aplicar(Usuario usuario, byte tipo, String conteudo) {
+        switch (tipo) {
+            case TIPO_INGRESSO:
+                usuario.adicionarIngresso(SerializadorJson.GSON.fromJson(conteudo, Ingresso.class));
+                break;
+            case TIPO_RECIBO:
+                usuario.adicionarRecibo(SerializadorJson.GSON.fromJson(conteudo, Recibo.class));
+                break;
+            case TIPO_CANCELAMENTO:
+                usuario.getIngressos().removeIf(ingresso -> conteudo.equals(ingresso.getId()));
+                break;
+            default:
+                Registro.aviso("Tipo de registro desconhecido no histórico: {}", tipo);
+        }
+    }
+
+    /**
+     * Acrescenta os registros ao final do histórico. Se a leitura encontrou um registro final
+     * inválido, ele é descartado antes, para que os novos registros não fiquem depois dele; o tamanho
+     * válido é recalculado aqui, com a trava de escrita do usuário. Se a gravação falhar no meio, o
+     * arquivo volta ao tamanho anterior; se nem isso for possível, o usuário é marcado para que a
+     * próxima gravação descarte o registro incompleto.
+     */
+    private long acrescentar(String cpf, byte[] registros) throws IOException {
+        Path caminho = arquivo(cpf).toPath();
+        Files.createDirectories(caminho.getParent());
+        if (incompletos.remove(cpf)) {
+            reparar(cpf, caminho);
+        }
+        try (FileChannel canal = FileChannel.open(caminho, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long tamanhoAnterior = canal.size();
+            try {
+                escrever(canal, registros);
+                canal.force(false);
+            } catch (IOException e) {
+                desfazer(cpf, canal, tamanhoAnterior, e);
+                throw e;
+            }
+            return canal.size();
+        }
+    }
+
+    private void desfazer(String cpf, FileChannel canal, long tamanhoAnterior, IOException erro) {
+        try {
+            canal.truncate(tamanhoAnterior);
+            canal.force(false);
+        } catch (IOException e) {
+            erro.addSuppressed(e);
+            incompletos.add(cpf);
+        }
+    }
+
+    private static void reparar(String cpf, Path caminho) throws IOException {
+        if (!Files.exists(caminho)) {
+            return;
+        }
+        byte[] conteudo = Files.readAllBytes(caminho);
+        long valido = tamanhoValido(conteudo);
+        if (valido < conteudo.length) {
+            Registro.aviso("Descartando {} byte(s) inválido(s) no final do histórico do usuário {}.",
+                           conteudo.length - valido, cpf);
+            try (FileChannel canal = FileChannel.open(caminho, StandardOpenOption.WRITE)) {
+                canal.truncate(valido);
+                canal.force(false);
+            }
+        }
+    }
+
+    private static void escrever(FileChannel canal, byte[] registros) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(registros);
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+    }
+
+    private static byte[] codificar(List<Ingresso> ingressos, List<Recibo> recibos) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        DataOutputStream dados = new DataOutputStream(saida);
+        for (Ingresso ingresso : ingressos == null ? Collections.<Ingresso>emptyList() : ingressos) {
+            escreverRegistro(dados, TIPO_INGRESSO, SerializadorJson.GSON.toJson(ingresso).getBytes(StandardCharsets.UTF_8));
+        }
+        for (Recibo recibo : recibos == null ? Collections.<Recibo>emptyList() : recibos) {
+            escreverRegistro(dados, TIPO_RECIBO, SerializadorJson.GSON.toJson(recibo).getBytes(StandardCharsets.UTF_8));
+        }
+        return saida.toByteArray();
+    }
+
+    private static void escreverRegistro(DataOutputStream saida, byte tipo, byte[] corpo) throws IOException {
+        saida.writeInt(1 + corpo.length + Long.BYTES);
+        saida.writeByte(tipo);
+        saida.write(corpo);
+        saida.writeLong(calcularChecksum(tipo, corpo));
+    }
+
+    private static long calcularChecksum(byte tipo, byte[] corpo) {
+        CRC32 crc = new CRC32();
+        crc.update(tipo);
+        crc.update(corpo);
+        return crc.getValue();
+    }
+
+    private File arquivo(String cpf) {
+        return layout.arquivo(cpf, EXTENSAO);
+    }
+}
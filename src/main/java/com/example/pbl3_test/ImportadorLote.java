@@ -0,0 +1,510 @@
+package com.example.pbl3_test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Importação em lote de usuários e eventos a partir de arquivos CSV ou JSONL.
+ *
+ * <p>
+ * A entrada é lida em blocos de {@link #TAMANHO_LOTE_PADRAO} registros, sem carregar o arquivo inteiro
+ * na memória. Os registros de cada bloco são validados em paralelo, com as mesmas regras do
+ * {@link Controller}, e os válidos são gravados de uma vez por {@link MotorArmazenamento#armazenarLoteUsuarios(List)}
+ * ou {@link MotorArmazenamento#armazenarLoteEventos(List)}. No {@link MotorArquivos}, isso evita
+ * preparar os diretórios a cada entidade e sincroniza o log de escrita uma vez por lote. Registros
+ * inválidos, repetidos no arquivo ou já existentes são rejeitados sem interromper a importação.
+ * </p>
+ *
+ * <p>
+ * Campos dos usuários: {@code username}, {@code password}, {@code fullName}, {@code cpf}, {@code email} e,
+ * opcionalmente, {@code isAdmin}. Campos dos eventos: {@code nome}, {@code descricao}, {@code data}
+ * ({@code yyyy-MM-dd} ou {@code dd/MM/yyyy}), {@code ingressos} e, opcionalmente, {@code preco}. Os nomes
+ * dos campos não diferenciam maiúsculas de minúsculas. No CSV, a primeira linha é o cabeçalho e o
+ * separador pode ser vírgula ou ponto e vírgula; no JSONL, cada linha é um objeto JSON.
+ * </p>
+ *
+ * <p>
+ * Uso como ferramenta de linha de comando: {@code ImportadorLote usuarios <arquivo>} ou
+ * {@code ImportadorLote eventos <arquivo> <cpf do administrador>}. Arquivos terminados em {@code .jsonl}
+ * ou {@code .ndjson} são lidos como JSONL; os demais, como CSV.
+ * </p>
+ */
+public class ImportadorLote {
+
+    /**
+     * Formato de entrada com um registro por linha, separado por vírgulas ou ponto e vírgula, com cabeçalho.
+     */
+    public static final String FORMATO_CSV = "csv";
+
+    /**
+     * Formato de entrada com um objeto JSON por linha.
+     */
+    public static final String FORMATO_JSONL = "jsonl";
+
+    /**
+     * Quantidade padrão de registros validados e gravados juntos.
+     */
+    public static final int TAMANHO_LOTE_PADRAO = 256;
+
+    private static final int MAXIMO_REJEICOES_DETALHADAS = 1000;
+    private static final DateTimeFormatter FORMATO_DATA_BR = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final String CARACTERES_PROIBIDOS_NOME = "/\\:*?\"<>|";
+
+    private final Armazenamento dados;
+    private final int tamanhoLote;
+
+    /**
+     * Construtor da classe {@code ImportadorLote}, com o tamanho de lote padrão.
+     *
+     * @param dados o armazenamento que recebe os registros importados
+     */
+    public ImportadorLote(Armazenamento dados) {
+        this(dados, TAMANHO_LOTE_PADRAO);
+    }
+
+    /**
+     * Construtor da classe {@code ImportadorLote}.
+     *
+     * @param dados o armazenamento que recebe os registros importados
+     * @param tamanhoLote a quantidade de registros validados e gravados juntos
+     * @throws IllegalArgumentException se o tamanho do lote não for positivo
+     */
+    public ImportadorLote(Armazenamento dados, int tamanhoLote) {
+        if (tamanhoLote <= 0) {
+            throw new IllegalArgumentException("Erro: O tamanho do lote deve ser positivo.");
+        }
+        this.dados = dados;
+        this.tamanhoLote = tamanhoLote;
+    }
+
+    /**
+     * Ponto de entrada da ferramenta de linha de comando.
+     *
+     * @param args o tipo de registro ({@code usuarios} ou {@code eventos}), o arquivo e, para eventos,
+     *             o CPF de um administrador
+     */
+    public static void main(String[] args) {
+        if (args.length < 2 || !("usuarios".equals(args[0]) || "eventos".equals(args[0]) && args.length > 2)) {
+            System.err.println("Uso: ImportadorLote usuarios <arquivo> | ImportadorLote eventos <arquivo> <cpf do administrador>");
+            System.exit(1);
+        }
+        Path arquivo = Paths.get(args[1]);
+        Armazenamento dados = new Armazenamento();
+        dados.verificarExistencia();
+        ImportadorLote importador = new ImportadorLote(dados);
+        try (BufferedReader leitor = Files.newBufferedReader(arquivo, StandardCharsets.UTF_8)) {
+            Relatorio relatorio;
+            if ("usuarios".equals(args[0])) {
+                relatorio = importador.importarUsuarios(leitor, formatoDoArquivo(arquivo));
+            } else {
+                Usuario admin = dados.lerUsuario(args[2]);
+                if (admin == null) {
+                    throw new IllegalArgumentException("Erro: Administrador " + args[2] + " não encontrado.");
+                }
+                relatorio = importador.importarEventos(admin, leitor, formatoDoArquivo(arquivo));
+            }
+            System.out.println(relatorio);
+            System.exit(0);
+        } catch (IOException | IllegalArgumentException | SecurityException e) {
+            System.err.println("Erro na importação: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Retorna o formato de um arquivo de entrada pela sua extensão.
+     *
+     * @param arquivo o arquivo de entrada
+     * @return {@link #FORMATO_JSONL} para arquivos {@code .jsonl} e {@code .ndjson}; {@link #FORMATO_CSV} para os demais
+     */
+    public static String formatoDoArquivo(Path arquivo) {
+        String nome = arquivo.getFileName().toString().toLowerCase(Locale.ROOT);
+        return nome.endsWith(".jsonl") || nome.endsWith(".ndjson") ? FORMATO_JSONL : FORMATO_CSV;
+    }
+
+    /**
+     * Importa usuários. Usuários com CPF já cadastrado ou repetido na entrada, ou com nome de usuário
+     * ou e-mail de um usuário já cadastrado, são rejeitados.
+     *
+     * @param entrada a entrada com os usuários
+     * @param formato {@link #FORMATO_CSV} ou {@link #FORMATO_JSONL}
+     * @return o relatório da importação
+     * @throws IOException se a entrada não puder ser lida
+     */
+    public Relatorio importarUsuarios(Reader entrada, String formato) throws IOException {
+        return importar(entrada, formato, this::criarUsuario, Usuario::getCpf, dados::existeUsuario,
+                dados::armazenarLoteUsuarios);
+    }
+
+    /**
+     * Importa eventos. Eventos com ID já cadastrado ou repetido na entrada são rejeitados.
+     *
+     * @param admin o usuário que está importando os eventos
+     * @param entrada a entrada com os eventos
+     * @param formato {@link #FORMATO_CSV} ou {@link #FORMATO_JSONL}
+     * @return o relatório da importação
+     * @throws IOException se a entrada não puder ser lida
+     * @throws SecurityException se o usuário não for administrador
+     */
+    public Relatorio importarEventos(Usuario admin, Reader entrada, String formato) throws IOException {
+        if (!admin.isAdmin()) {
+            throw new SecurityException("Somente administradores podem cadastrar eventos.");
+        }
+        return importar(entrada, formato, this::criarEvento, Evento::getID, dados::existeEvento,
+                dados::armazenarLoteEventos);
+    }
+
+    /**
+     * Lê a entrada em blocos, valida cada bloco em paralelo e grava os registros válidos em lote.
+     */
+    private <T> Relatorio importar(Reader entrada, String formato, Function<Map<String, String>, T> conversor,
+                                   Function<T, String> chave, Predicate<String> existe,
+                                   GravacaoLote<T> gravacao) throws IOException {
+        if (!FORMATO_CSV.equals(formato) && !FORMATO_JSONL.equals(formato)) {
+            throw new IllegalArgumentException("Erro: Formato de importação desconhecido: " + formato);
+        }
+        Relatorio relatorio = new Relatorio();
+        long inicio = System.nanoTime();
+        BufferedReader leitor = entrada instanceof BufferedReader ? (BufferedReader) entrada : new BufferedReader(entrada);
+
+        List<String> cabecalho = null;
+        char separador = ',';
+        int numeroLinha = 0;
+        if (FORMATO_CSV.equals(formato)) {
+            String primeira = leitor.readLine();
+            numeroLinha++;
+            if (primeira == null) {
+                return relatorio.concluir(inicio);
+            }
+            // Remove a marca de ordem de bytes deixada por algumas planilhas
+            primeira = primeira.replace("\uFEFF", "");
+            separador = primeira.indexOf(';') >= 0 && primeira.indexOf(',') < 0 ? ';' : ',';
+            cabecalho = new ArrayList<>();
+            for (String campo : dividirCsv(primeira, separador)) {
+                cabecalho.add(campo.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+
+        Set<String> vistos = new HashSet<>();
+        List<Linha> bloco = new ArrayList<>(tamanhoLote);
+        String texto;
+        boolean fim = false;
+        while (!fim) {
+            texto = leitor.readLine();
+            numeroLinha++;
+            if (texto == null) {
+                fim = true;
+            } else if (!texto.trim().isEmpty()) {
+                bloco.add(new Linha(numeroLinha, texto));
+            }
+            if (bloco.size() == tamanhoLote || (fim && !bloco.isEmpty())) {
+                processarBloco(bloco, cabecalho, separador, conversor, chave, existe, gravacao, vistos, relatorio);
+                bloco.clear();
+            }
+        }
+        return relatorio.concluir(inicio);
+    }
+
+    private <T> void processarBloco(List<Linha> bloco, List<String> cabecalho, char separador,
+                                    Function<Map<String, String>, T> conversor, Function<T, String> chave,
+                                    Predicate<String> existe, GravacaoLote<T> gravacao, Set<String> vistos,
+                                    Relatorio relatorio) {
+        relatorio.lidos += bloco.size();
+        // A conversão e a consulta de existência são independentes entre os registros do bloco
+        List<Object> resultados = bloco.parallelStream().map(linha -> {
+            try {
+                Map<String, String> campos = cabecalho != null
+                        ? camposCsv(cabecalho, dividirCsv(linha.texto, separador))
+                        : camposJson(linha.texto);
+                T registro = conversor.apply(campos);
+                if (existe.test(chave.apply(registro))) {
+                    return "já cadastrado: " + chave.apply(registro);
+                }
+                return registro;
+            } catch (IllegalArgumentException | JsonParseException | IllegalStateException e) {
+                return e.getMessage();
+            }
+        }).collect(Collectors.toList());
+
+        List<T> validos = new ArrayList<>(bloco.size());
+        for (int i = 0; i < bloco.size(); i++) {
+            Object resultado = resultados.get(i);
+            if (resultado instanceof String) {
+                relatorio.rejeitar(bloco.get(i).numero, (String) resultado);
+                continue;
+            }
+            @SuppressWarnings("unchecked")
+            T registro = (T) resultado;
+            if (!vistos.add(chave.apply(registro))) {
+                relatorio.rejeitar(bloco.get(i).numero, "repetido na entrada: " + chave.apply(registro));
+                continue;
+            }
+            validos.add(registro);
+        }
+        if (validos.isEmpty()) {
+            return;
+        }
+        try {
+            gravacao.gravar(validos);
+            relatorio.importados += validos.size();
+            relatorio.lotes++;
+        } catch (IOException | RuntimeException e) {
+            relatorio.rejeitar(bloco.get(0).numero, "lote de " + validos.size() + " registro(s) não gravado: " + e.getMessage());
+        }
+    }
+
+    private Usuario criarUsuario(Map<String, String> campos) {
+        Usuario usuario = Controller.novoUsuario(campos.get("username"), campos.get("password"), campos.get("fullname"),
+                campos.get("cpf"), campos.get("email"), Boolean.parseBoolean(campos.get("isadmin")));
+        Controller.verificarLoginEmailLivres(usuario.getCpf(), usuario.getLogin(), usuario.getEmail(), dados);
+        return usuario;
+    }
+
+    private Evento criarEvento(Map<String, String> campos) {
+        String nome = campos.get("nome");
+        String descricao = campos.get("descricao");
+        if (nome == null || nome.trim().isEmpty() || descricao == null || campos.get("data") == null
+                || campos.get("ingressos") == null) {
+            throw new IllegalArgumentException("Erro: Os campos nome, descricao, data e ingressos são obrigatórios.");
+        }
+        nome = nome.trim();
+        for (char proibido : CARACTERES_PROIBIDOS_NOME.toCharArray()) {
+            if (nome.indexOf(proibido) >= 0) {
+                throw new IllegalArgumentException("Erro: O nome do evento não pode conter '" + proibido + "'.");
+            }
+        }
+        int ingressos;
+        double preco;
+        try {
+            ingressos = Integer.parseInt(campos.get("ingressos").trim());
+            preco = campos.get("preco") == null || campos.get("preco").trim().isEmpty()
+                    ? 0.0 : Double.parseDouble(campos.get("preco").trim().replace(',', '.'));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Erro: Quantidade de ingressos ou preço inválido.");
+        }
+        if (ingressos < 0 || preco < 0) {
+            throw new IllegalArgumentException("Erro: Quantidade de ingressos e preço não podem ser negativos.");
+        }
+        Date data = Date.from(lerData(campos.get("data").trim()).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        return new Evento(nome, descricao, data, ingressos, preco);
+    }
+
+    private static LocalDate lerData(String texto) {
+        try {
+            return texto.contains("/") ? LocalDate.parse(texto, FORMATO_DATA_BR) : LocalDate.parse(texto);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Erro: Data inválida: " + texto);
+        }
+    }
+
+    private static Map<String, String> camposCsv(List<String> cabecalho, List<String> valores) {
+        if (valores.size() != cabecalho.size()) {
+            throw new IllegalArgumentException("Erro: Esperados " + cabecalho.size() + " campo(s), encontrados " + valores.size() + ".");
+        }
+        Map<String, String> campos = new HashMap<>();
+        for (int i = 0; i < cabecalho.size(); i++) {
+            campos.put(cabecalho.get(i), valores.get(i));
+        }
+        return campos;
+    }
+
+    private static Map<String, String> camposJson(String texto) {
+        JsonElement elemento = JsonParser.parseString(texto);
+        if (!elemento.isJsonObject()) {
+            throw new IllegalArgumentException("Erro: A linha não contém um objeto JSON.");
+        }
+        Map<String, String> campos = new HashMap<>();
+        for (Map.Entry<String, JsonElement> campo : ((JsonObject) elemento).entrySet()) {
+            JsonElement valor = campo.getValue();
+            campos.put(campo.getKey().toLowerCase(Locale.ROOT), valor.isJsonNull() ? null : valor.getAsString());
+        }
+        return campos;
+    }
+
+    /**
+     * Divide uma linha CSV nos seus campos. Campos entre aspas podem conter o separador, e aspas
+     * duplicadas dentro deles representam uma aspa.
+     */
+    static List<String> dividirCsv(String linha, char separador) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder atual = new StringBuilder();
+        boolean entreAspas = false;
+        for (int i = 0; i < linha.length(); i++) {
+            char c = linha.charAt(i);
+            if (entreAspas) {
+                if (c == '"' && i + 1 < linha.length() && linha.charAt(i + 1) == '"') {
+                    atual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreAspas = false;
+                } else {
+                    atual.append(c);
+                }
+            } else if (c == '"') {
+                entreAspas = true;
+            } else if (c == separador) {
+                campos.add(atual.toString());
+                atual.setLength(0);
+            } else {
+                atual.append(c);
+            }
+        }
+        if (entreAspas) {
+            throw new IllegalArgumentException("Erro: Aspas não fechadas na linha.");
+        }
+        campos.add(atual.toString());
+        return campos;
+    }
+
+    /**
+     * Linha da entrada, com o seu número para o relatório de rejeições.
+     */
+    private static final class Linha {
+        private final int numero;
+        private final String texto;
+
+        private Linha(int numero, String texto) {
+            this.numero = numero;
+            this.texto = texto;
+        }
+    }
+
+    /**
+     * Gravação de um lote de registros válidos.
+     */
+    private interface GravacaoLote<T> {
+        void gravar(List<T> registros) throws IOException;
+    }
+
+    /**
+     * Resultado de uma importação: quantidades lidas, importadas e rejeitadas, motivo das rejeições e vazão.
+     */
+    public static final class Relatorio {
+
+        private long lidos;
+        private long importados;
+        private long rejeitados;
+        private long lotes;
+        private long millis;
+        private final List<String> rejeicoes = new ArrayList<>();
+
+        private Relatorio() {
+        }
+
+        /**
+         * Retorna a quantidade de registros lidos da entrada, sem contar linhas vazias e o cabeçalho.
+         *
+         * @return a quantidade de registros lidos
+         */
+        public long getLidos() {
+            return lidos;
+        }
+
+        /**
+         * Retorna a quantidade de registros gravados.
+         *
+         * @return a quantidade de registros importados
+         */
+        public long getImportados() {
+            return importados;
+        }
+
+        /**
+         * Retorna a quantidade de registros rejeitados.
+         *
+         * @return a quantidade de registros rejeitados
+         */
+        public long getRejeitados() {
+            return rejeitados;
+        }
+
+        /**
+         * Retorna a quantidade de lotes gravados.
+         *
+         * @return a quantidade de lotes
+         */
+        public long getLotes() {
+            return lotes;
+        }
+
+        /**
+         * Retorna a duração da importação, em milissegundos.
+         *
+         * @return a duração da importação
+         */
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * Retorna a vazão da importação, em registros importados por segundo.
+         *
+         * @return os registros importados por segundo
+         */
+        public double getRegistrosPorSegundo() {
+            return millis == 0 ? importados : importados * 1000.0 / millis;
+        }
+
+        /**
+         * Retorna o motivo das primeiras rejeições, no formato {@code linha N: motivo}.
+         *
+         * @return as rejeições detalhadas
+         */
+        public List<String> getRejeicoes() {
+            return Collections.unmodifiableList(rejeicoes);
+        }
+
+        private void rejeitar(int linha, String motivo) {
+            rejeitados++;
+            if (rejeicoes.size() < MAXIMO_REJEICOES_DETALHADAS) {
+                rejeicoes.add("linha " + linha + ": " + motivo);
+            }
+        }
+
+        private Relatorio concluir(long inicioNanos) {
+            millis = (System.nanoTime() - inicioNanos) / 1_000_000;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder texto = new StringBuilder(String.format(Locale.ROOT,
+                    "Importação: %d registro(s) lido(s), %d importado(s) em %d lote(s), %d rejeitado(s); %d ms (%.0f registros/s).",
+                    lidos, importados, lotes, rejeitados, millis, getRegistrosPorSegundo()));
+            for (String rejeicao : rejeicoes) {
+                texto.append(System.lineSeparator()).append("  Rejeitado: ").append(rejeicao);
+            }
+            if (rejeitados > rejeicoes.size()) {
+                texto.append(System.lineSeparator()).append("  ... e mais ").append(rejeitados - rejeicoes.size())
+                     .append(" rejeição(ões).");
+            }
+            return texto.toString();
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.example.pbl3_test;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Índice persistente dos eventos, ordenado pela data do evento.
+ *
+ * <p>
+ * Mantém em memória um conjunto ordenado de pares (data, ID) que permite consultas por intervalo
+ * de datas e pelos próximos eventos sem listar o diretório {@code Eventos}. As alterações são
+ * acrescentadas ao arquivo {@code indice_eventos.idx}, uma por linha ({@code +dia ID} para inclusões
+ * e {@code -dia ID} para remoções, com o dia contado desde a época), e o arquivo é compactado quando
+ * acumula muitas linhas obsoletas. Se o arquivo não existir, o índice é reconstruído a partir dos
+ * IDs dos eventos existentes, cujo prefixo {@code yyMMdd} indica a data.
+ * </p>
+ *
+ * <p>
+ * O índice criado por {@link #emMemoria()} tem o mesmo comportamento, mas não é gravado em arquivo.
+ * </p>
+ */
+public class IndiceEventos {
+
+    private static final String NOME_ARQUIVO = "indice_eventos.idx";
+    private static final DateTimeFormatter FORMATO_PREFIXO = DateTimeFormatter.ofPattern("yyMMdd");
+
+    private static final Map<Path, IndiceEventos> abertos = new ConcurrentHashMap<>();
+
+    private final Path arquivo;
+    private final NavigableSet<Entrada> entradas = new TreeSet<>();
+    private final Map<String, Long> diasPorEvento = new HashMap<>();
+    private final ReadWriteLock trava = new ReentrantReadWriteLock();
+    private int linhasGravadas;
+
+    /**
+     * Construtor privado; use {@link #abrir(File, Supplier)} para obter o índice de um diretório.
+     */
+    private IndiceEventos(File diretorioBase, Supplier<Collection<String>> eventos) throws IOException {
+        this.arquivo = diretorioBase.toPath().resolve(NOME_ARQUIVO);
+        if (Files.exists(arquivo)) {
+            carregar();
+        } else {
+            reconstruir(eventos.get());
+        }
+    }
+
+    /**
+     * Construtor privado do índice em memória.
+     */
+    private IndiceEventos() {
+        this.arquivo = null;
+    }
+
+    /**
+     * Cria um índice vazio mantido apenas em memória, sem arquivo associado.
+     *
+     * @return o índice criado
+     */
+    public static IndiceEventos emMemoria() {
+        return new IndiceEventos();
+    }
+
+    /**
+     * Retorna o índice de eventos do diretório de dados informado, abrindo-o se necessário.
+     *
+     * @param diretorioBase o diretório de dados
+     * @param eventos fornece os IDs de todos os eventos, usados para reconstruir o índice
+     * @return o índice de eventos do diretório
+     * @throws IOException se o índice não puder ser carregado nem reconstruído
+     */
+    public static IndiceEventos abrir(File diretorioBase, Supplier<Collection<String>> eventos) throws IOException {
+        Path chave = diretorioBase.toPath().toAbsolutePath().normalize();
+        try {
+            return abertos.computeIfAbsent(chave, caminho -> {
+                try {
+                    return new IndiceEventos(caminho.toFile(), eventos);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Inclui ou atualiza um evento no índice. Não faz nada se o evento já estiver indexado com a mesma data.
+     *
+     * @param eventoId o ID do evento
+     * @param data a data do evento
+     */
+    public void registrar(String eventoId, LocalDate data) {
+        registrarTodos(Collections.singletonMap(eventoId, data));
+    }
+
+    /**
+     * Inclui ou atualiza vários eventos no índice, acrescentando todas as alterações ao arquivo de uma vez.
+     *
+     * @param datas a data de cada evento, pelo ID
+     */
+    public void registrarTodos(Map<String, LocalDate> datas) {
+        trava.writeLock().lock();
+        try {
+            List<String> linhas = new ArrayList<>(datas.size());
+            for (Map.Entry<String, LocalDate> evento : datas.entrySet()) {
+                String eventoId = evento.getKey();
+                long dia = evento.getValue().toEpochDay();
+                Long diaAnterior = diasPorEvento.get(eventoId);
+                if (diaAnterior != null && diaAnterior == dia) {
+                    continue;
+                }
+                if (diaAnterior != null) {
+                    entradas.remove(new Entrada(diaAnterior, eventoId));
+                    linhas.add("-" + diaAnterior + " " + eventoId);
+                }
+                entradas.add(new Entrada(dia, eventoId));
+                diasPorEvento.put(eventoId, dia);
+                linhas.add("+" + dia + " " + eventoId);
+            }
+            if (!linhas.isEmpty()) {
+                acrescentar(linhas);
+            }
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove um evento do índice.
+     *
+     * @param eventoId o ID do evento
+     */
+    public void remover(String eventoId) {
+        trava.writeLock().lock();
+        try {
+            Long dia = diasPorEvento.remove(eventoId);
+            if (dia != null) {
+                entradas.remove(new Entrada(dia, eventoId));
+                acrescentar(Collections.singletonList("-" + dia + " " + eventoId));
+            }
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Lista, em ordem de data, uma página dos eventos entre as datas informadas (inclusive).
+     *
+     * @param inicio a data inicial
+     * @param fim a data final
+     * @param pagina o número da página, começando em zero
+     * @param tamanhoPagina a quantidade máxima de eventos por página
+     * @return os IDs dos eventos da página
+     */
+    public List<String> listarEntre(LocalDate inicio, LocalDate fim, int pagina, int tamanhoPagina) {
+        if (pagina < 0 || tamanhoPagina <= 0) {
+            throw new IllegalArgumentException("Erro: Página e tamanho de página inválidos.");
+        }
+        trava.readLock().lock();
+        try {
+            List<String> resultado = new ArrayList<>(Math.min(tamanhoPagina, 64));
+            long ignorar = (long) pagina * tamanhoPagina;
+            for (Entrada entrada : intervalo(inicio.toEpochDay(), fim.toEpochDay())) {
+                if (ignorar > 0) {
+                    ignorar--;
+                } else if (resultado.size() < tamanhoPagina) {
+                    resultado.add(entrada.eventoId);
+                } else {
+                    break;
+                }
+            }
+            return resultado;
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lista, em ordem de data, os próximos eventos a partir da data informada (inclusive).
+     *
+     * @param aPartirDe a data inicial
+     * @param quantidade a quantidade máxima de eventos; {@link Integer#MAX_VALUE} para todos
+     * @return os IDs dos eventos
+     */
+    public List<String> proximos(LocalDate aPartirDe, int quantidade) {
+        trava.readLock().lock();
+        try {
+            List<String> resultado = new ArrayList<>();
+            for (Entrada entrada : entradas.tailSet(new Entrada(aPartirDe.toEpochDay(), ""), true)) {
+                if (resultado.size() >= quantidade) {
+                    break;
+                }
+                resultado.add(entrada.eventoId);
+            }
+            return resultado;
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retorna a quantidade de eventos indexados.
+     *
+     * @return o tamanho do índice
+     */
+    public int getTamanho() {
+        trava.readLock().lock();
+        try {
+            return entradas.size();
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reconstrói o índice a partir dos IDs informados e regrava o arquivo do índice.
+     *
+     * @param eventoIds os IDs de todos os eventos
+     * @throws IOException se o arquivo do índice não puder ser gravado
+     */
+    public void reconstruir(Collection<String> eventoIds) throws IOException {
+        Map<String, LocalDate> datas = new HashMap<>();
+        for (String eventoId : eventoIds) {
+            datas.put(eventoId, dataDoId(eventoId));
+        }
+        reconstruir(datas);
+    }
+
+    /**
+     * Reconstrói o índice a partir das datas informadas para cada evento e regrava o arquivo do índice.
+     * Eventos sem data são indexados pela data do prefixo do ID.
+     *
+     * @param datas a data de cada evento, pelo ID
+     * @throws IOException se o arquivo do índice não puder ser gravado
+     */
+    public void reconstruir(Map<String, LocalDate> datas) throws IOException {
+        trava.writeLock().lock();
+        try {
+            entradas.clear();
+            diasPorEvento.clear();
+            for (Map.Entry<String, LocalDate> evento : datas.entrySet()) {
+                String eventoId = evento.getKey();
+                LocalDate data = evento.getValue() != null ? evento.getValue() : dataDoId(eventoId);
+                if (data == null) {
+                    Registro.erro("Erro ao indexar o evento {}: ID sem data.", eventoId);
+                    continue;
+                }
+                entradas.add(new Entrada(data.toEpochDay(), eventoId));
+                diasPorEvento.put(eventoId, data.toEpochDay());
+            }
+            compactar();
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Extrai a data do prefixo {@code yyMMdd} do ID de um evento.
+     *
+     * @param eventoId o ID do evento
+     * @return a data do evento ou {@code null} se o ID não começar por uma data válida
+     */
+    static LocalDate dataDoId(String eventoId) {
+        if (eventoId == null || eventoId.length() < 6) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(eventoId.substring(0, 6), FORMATO_PREFIXO);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private Iterable<Entrada> intervalo(long inicio, long fim) {
+        if (fim < inicio) {
+            return Collections.emptyList();
+        }
+        return entradas.subSet(new Entrada(inicio, ""), true, new Entrada(fim + 1, ""), false);
+    }
+
+    private void carregar() throws IOException {
+        try (BufferedReader leitor = Files.newBufferedReader(arquivo, StandardCharsets.UTF_8)) {
+            String linha;
+            while ((linha = leitor.readLine()) != null) {
+                int espaco = linha.indexOf(' ');
+                if (linha.length() < 3 || espaco < 2) {
+                    continue;
+                }
+                long dia;
+                try {
+                    dia = Long.parseLong(linha.substring(1, espaco));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                String eventoId = linha.substring(espaco + 1);
+                if (linha.charAt(0) == '+') {
+                    Long anterior = diasPorEvento.put(eventoId, dia);
+                    if (anterior != null) {
+                        entradas.remove(new Entrada(anterior, eventoId));
+                    }
+                    entradas.add(new Entrada(dia, eventoId));
+                } else if (linha.charAt(0) == '-' && diasPorEvento.remove(eventoId, dia)) {
+                    entradas.remove(new Entrada(dia, eventoId));
+                }
+                linhasGravadas++;
+            }
+        }
+    }
+
+    /**
+     * Acrescenta linhas ao arquivo do índice e compacta o arquivo quando houver muitas linhas obsoletas.
+     * Deve ser chamado com a trava de escrita.
+     */
+    private void acrescentar(List<String> linhas) {
+        if (arquivo == null) {
+            return;
+        }
+        try {
+            if (linhasGravadas > 1024 && linhasGravadas > 2 * entradas.size()) {
+                compactar();
+                return;
+            }
+            Files.write(arquivo, linhas, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            linhasGravadas += linhas.size();
+        } catch (IOException e) {
+            Registro.erro("Erro ao atualizar o índice de eventos: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Regrava o arquivo do índice apenas com as entradas atuais. Deve ser chamado com a trava de escrita.
+     */
+    private void compactar() throws IOException {
+        if (arquivo == null) {
+            return;
+        }
+        Files.createDirectories(arquivo.getParent());
+        Path temporario = arquivo.resolveSibling(NOME_ARQUIVO + ".tmp");
+        try (BufferedWriter escritor = Files.newBufferedWriter(temporario, StandardCharsets.UTF_8)) {
+            for (Entrada entrada : entradas) {
+                escritor.write("+" + entrada.dia + " " + entrada.eventoId);
+                escritor.newLine();
+            }
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        linhasGravadas = entradas.size();
+    }
+
+    /**
+     * Entrada do índice, ordenada pela data e, em seguida, pelo ID do evento.
+     */
+    private static final class Entrada implements Comparable<Entrada> {
+        private final long dia;
+        private final String eventoId;
+
+        private Entrada(long dia, String eventoId) {
+            this.dia = dia;
+            this.eventoId = eventoId;
+        }
+
+        @Override
+        public int compareTo(Entrada outra) {
+            int comparacao = Long.compare(dia, outra.dia);
+            return comparacao != 0 ? comparacao : eventoId.compareTo(outra.eventoId);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Entrada))
+                return false;
+            Entrada other = (Entrada) obj;
+            return dia == other.dia && eventoId.equals(other.eventoId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(dia) + eventoId.hashCode();
+        }
+    }
+}
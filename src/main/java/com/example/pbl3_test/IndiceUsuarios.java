@@ -0,0 +1,314 @@
+package com.example.pbl3_test;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Índices secundários persistentes dos usuários, do nome de usuário e do e-mail para o CPF.
+ *
+ * <p>
+ * Mantém em memória duas tabelas hash, que permitem localizar um usuário pelo nome de usuário ou
+ * pelo e-mail sem percorrer o diretório {@code Usuarios}, e o perfil indexado de cada CPF, usado para
+ * remover as chaves antigas quando o usuário altera esses campos. As chaves são comparadas sem
+ * diferenciar maiúsculas de minúsculas e sem os espaços das extremidades. As alterações são
+ * acrescentadas ao arquivo {@code indice_usuarios.idx}, uma por linha ({@code +cpf<TAB>usuario<TAB>email}
+ * para inclusões e alterações e {@code -cpf} para remoções), e o arquivo é compactado quando acumula
+ * muitas linhas obsoletas. Se o arquivo não existir, o índice é reconstruído a partir dos perfis existentes.
+ * </p>
+ *
+ * <p>
+ * O índice criado por {@link #emMemoria()} tem o mesmo comportamento, mas não é gravado em arquivo.
+ * </p>
+ */
+public class IndiceUsuarios {
+
+    private static final String NOME_ARQUIVO = "indice_usuarios.idx";
+
+    private static final Map<Path, IndiceUsuarios> abertos = new ConcurrentHashMap<>();
+
+    private final Path arquivo;
+    private final Map<String, String> cpfPorLogin = new HashMap<>();
+    private final Map<String, String> cpfPorEmail = new HashMap<>();
+    private final Map<String, String[]> chavesPorCpf = new HashMap<>();
+    private final ReadWriteLock trava = new ReentrantReadWriteLock();
+    private int linhasGravadas;
+
+    /**
+     * Construtor privado; use {@link #abrir(File, Supplier)} para obter o índice de um diretório.
+     */
+    private IndiceUsuarios(File diretorioBase, Supplier<Collection<Usuario>> perfis) throws IOException {
+        this.arquivo = diretorioBase.toPath().resolve(NOME_ARQUIVO);
+        if (Files.exists(arquivo)) {
+            carregar();
+        } else {
+            reconstruir(perfis.get());
+        }
+    }
+
+    /**
+     * Construtor privado do índice em memória.
+     */
+    private IndiceUsuarios() {
+        this.arquivo = null;
+    }
+
+    /**
+     * Cria um índice vazio mantido apenas em memória, sem arquivo associado.
+     *
+     * @return o índice criado
+     */
+    public static IndiceUsuarios emMemoria() {
+        return new IndiceUsuarios();
+    }
+
+    /**
+     * Retorna o índice de usuários do diretório de dados informado, abrindo-o se necessário.
+     *
+     * @param diretorioBase o diretório de dados
+     * @param perfis fornece o CPF, o nome de usuário e o e-mail de todos os usuários, usados para reconstruir o índice
+     * @return o índice de usuários do diretório
+     * @throws IOException se o índice não puder ser carregado nem reconstruído
+     */
+    public static IndiceUsuarios abrir(File diretorioBase, Supplier<Collection<Usuario>> perfis) throws IOException {
+        Path chave = diretorioBase.toPath().toAbsolutePath().normalize();
+        try {
+            return abertos.computeIfAbsent(chave, caminho -> {
+                try {
+                    return new IndiceUsuarios(caminho.toFile(), perfis);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Inclui ou atualiza as chaves de um usuário, removendo as chaves anteriores do mesmo CPF.
+     * Não faz nada se o nome de usuário e o e-mail não mudaram.
+     *
+     * @param cpf o CPF do usuário
+     * @param login o nome de usuário
+     * @param email o e-mail
+     */
+    public void registrar(String cpf, String login, String email) {
+        String[] chaves = {normalizar(login), normalizar(email)};
+        trava.writeLock().lock();
+        try {
+            String[] anteriores = chavesPorCpf.get(cpf);
+            if (anteriores != null && anteriores[0].equals(chaves[0]) && anteriores[1].equals(chaves[1])) {
+                return;
+            }
+            aplicar(cpf, chaves);
+            acrescentar("+" + cpf + "\t" + chaves[0] + "\t" + chaves[1]);
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove as chaves de um usuário.
+     *
+     * @param cpf o CPF do usuário
+     */
+    public void remover(String cpf) {
+        trava.writeLock().lock();
+        try {
+            if (chavesPorCpf.containsKey(cpf)) {
+                aplicar(cpf, null);
+                acrescentar("-" + cpf);
+            }
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retorna o CPF do usuário com o nome de usuário informado.
+     *
+     * @param login o nome de usuário
+     * @return o CPF ou {@code null} se nenhum usuário tiver esse nome de usuário
+     */
+    public String buscarPorLogin(String login) {
+        return buscar(cpfPorLogin, login);
+    }
+
+    /**
+     * Retorna o CPF do usuário com o e-mail informado.
+     *
+     * @param email o e-mail
+     * @return o CPF ou {@code null} se nenhum usuário tiver esse e-mail
+     */
+    public String buscarPorEmail(String email) {
+        return buscar(cpfPorEmail, email);
+    }
+
+    /**
+     * Retorna a quantidade de usuários indexados.
+     *
+     * @return a quantidade de usuários no índice
+     */
+    public int getTamanho() {
+        trava.readLock().lock();
+        try {
+            return chavesPorCpf.size();
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reconstrói o índice a partir dos perfis informados e regrava o arquivo do índice. Quando dois
+     * usuários têm a mesma chave, prevalece o último e o conflito é exibido.
+     *
+     * @param perfis o CPF, o nome de usuário e o e-mail de todos os usuários
+     * @throws IOException se o arquivo do índice não puder ser gravado
+     */
+    public void reconstruir(Collection<Usuario> perfis) throws IOException {
+        trava.writeLock().lock();
+        try {
+            cpfPorLogin.clear();
+            cpfPorEmail.clear();
+            chavesPorCpf.clear();
+            for (Usuario perfil : perfis) {
+                String[] chaves = {normalizar(perfil.getLogin()), normalizar(perfil.getEmail())};
+                String outroLogin = cpfPorLogin.get(chaves[0]);
+                String outroEmail = cpfPorEmail.get(chaves[1]);
+                if (outroLogin != null && !outroLogin.equals(perfil.getCpf()) && !chaves[0].isEmpty()
+                        || outroEmail != null && !outroEmail.equals(perfil.getCpf()) && !chaves[1].isEmpty()) {
+                    Registro.aviso("Usuário {} tem o nome de usuário ou o e-mail de outro usuário.", perfil.getCpf());
+                }
+                aplicar(perfil.getCpf(), chaves);
+            }
+            compactar();
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Normaliza uma chave: sem espaços nas extremidades, em letras minúsculas e sem separadores de linha e campo.
+     *
+     * @param valor o nome de usuário ou o e-mail
+     * @return a chave normalizada, vazia se o valor for {@code null}
+     */
+    static String normalizar(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        return valor.trim().toLowerCase(Locale.ROOT).replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private String buscar(Map<String, String> tabela, String valor) {
+        String chave = normalizar(valor);
+        if (chave.isEmpty()) {
+            return null;
+        }
+        trava.readLock().lock();
+        try {
+            return tabela.get(chave);
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Troca as chaves do CPF nas tabelas, ou apenas as remove se {@code chaves} for {@code null}.
+     * Deve ser chamado com a trava de escrita.
+     */
+    private void aplicar(String cpf, String[] chaves) {
+        String[] anteriores = chaves == null ? chavesPorCpf.remove(cpf) : chavesPorCpf.put(cpf, chaves);
+        if (anteriores != null) {
+            cpfPorLogin.remove(anteriores[0], cpf);
+            cpfPorEmail.remove(anteriores[1], cpf);
+        }
+        if (chaves != null) {
+            if (!chaves[0].isEmpty()) {
+                cpfPorLogin.put(chaves[0], cpf);
+            }
+            if (!chaves[1].isEmpty()) {
+                cpfPorEmail.put(chaves[1], cpf);
+            }
+        }
+    }
+
+    private void carregar() throws IOException {
+        try (BufferedReader leitor = Files.newBufferedReader(arquivo, StandardCharsets.UTF_8)) {
+            String linha;
+            while ((linha = leitor.readLine()) != null) {
+                if (linha.length() < 2) {
+                    continue;
+                }
+                if (linha.charAt(0) == '+') {
+                    String[] campos = linha.substring(1).split("\t", -1);
+                    if (campos.length == 3) {
+                        aplicar(campos[0], new String[]{campos[1], campos[2]});
+                    }
+                } else if (linha.charAt(0) == '-') {
+                    aplicar(linha.substring(1), null);
+                }
+                linhasGravadas++;
+            }
+        }
+    }
+
+    /**
+     * Acrescenta uma linha ao arquivo do índice e compacta o arquivo quando houver muitas linhas obsoletas.
+     * Deve ser chamado com a trava de escrita.
+     */
+    private void acrescentar(String linha) {
+        if (arquivo == null) {
+            return;
+        }
+        try {
+            if (linhasGravadas > 1024 && linhasGravadas > 2 * chavesPorCpf.size()) {
+                compactar();
+                return;
+            }
+            Files.write(arquivo, Collections.singletonList(linha), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            linhasGravadas++;
+        } catch (IOException e) {
+            Registro.erro("Erro ao atualizar o índice de usuários: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Regrava o arquivo do índice apenas com as entradas atuais. Deve ser chamado com a trava de escrita.
+     */
+    private void compactar() throws IOException {
+        if (arquivo == null) {
+            return;
+        }
+        Files.createDirectories(arquivo.getParent());
+        Path temporario = arquivo.resolveSibling(NOME_ARQUIVO + ".tmp");
+        try (BufferedWriter escritor = Files.newBufferedWriter(temporario, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String[]> entrada : chavesPorCpf.entrySet()) {
+                escritor.write("+" + entrada.getKey() + "\t" + entrada.getValue()[0] + "\t" + entrada.getValue()[1]);
+                escritor.newLine();
+            }
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        linhasGravadas = chavesPorCpf.size();
+    }
+}
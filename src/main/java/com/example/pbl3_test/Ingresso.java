@@ -41,6 +41,30 @@ public class Ingresso {
         this.IngressoID = gerarId(evento);
     }
 
+    /**
+     * Reconstrói um ingresso já existente a partir dos dados armazenados.
+     *
+     * @param eventoId o ID do evento associado ao ingresso
+     * @param Preco o preço do ingresso
+     * @param ingressoId o ID do ingresso
+     * @param status o status do ingresso
+     */
+    Ingresso(String eventoId, double Preco, String ingressoId, boolean status) {
+        this.EventoID = eventoId;
+        this.Preco = Preco;
+        this.IngressoID = ingressoId;
+        this.Status = status;
+    }
+
+    /**
+     * Cria uma cópia independente do ingresso, com o mesmo ID e status.
+     *
+     * @return a cópia do ingresso
+     */
+    Ingresso copiar() {
+        return new Ingresso(EventoID, Preco, IngressoID, Status);
+    }
+
     /**
      * Gera um ID único para o ingresso, com base na data do evento e um UUID.
      * 
@@ -0,0 +1,358 @@
+package com.example.pbl3_test;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Inventário de ingressos mantido em um arquivo mapeado em memória ({@code inventario.dat}).
+ *
+ * <p>
+ * Cada evento ocupa uma posição de tamanho fixo no arquivo, contendo a quantidade de ingressos
+ * restantes e o ID do evento. Uma compra ou um cancelamento altera apenas os bytes do contador,
+ * sem desserializar nem regravar o documento do evento. Os contadores alterados são reconciliados
+ * com os documentos {@link Evento} periodicamente, em segundo plano.
+ * </p>
+ *
+ * <p>
+ * Os contadores são alterados por operações atômicas de comparação e troca (CAS) diretamente na
+ * memória mapeada, sem travas: {@link #reservar(String, int)} retira ingressos apenas se houver
+ * quantidade suficiente, de modo que um evento nunca fica com quantidade negativa, e recusa a
+ * reserva de um evento esgotado sem nenhuma operação de E/S. Como o mapeamento é compartilhado, as
+ * operações sobre os contadores também são atômicas entre processos que usam o mesmo arquivo.
+ * </p>
+ *
+ * <p>
+ * Apenas o registro de eventos novos, que ocupa a próxima posição livre e pode aumentar o arquivo, é
+ * serializado: no processo, pelo monitor do inventário, e entre processos, por um {@link FileLock} sobre a
+ * primeira posição do arquivo. Com a trava obtida, as posições gravadas por outros processos são
+ * recarregadas antes da escolha, de modo que dois processos nunca ocupam a mesma posição nem registram
+ * o mesmo evento em posições diferentes.
+ * </p>
+ *
+ * <p>
+ * Layout de cada posição ({@value #TAMANHO_POSICAO} bytes): quantidade ({@code int}),
+ * tamanho do ID ({@code short}) e o ID em UTF-8. Eventos cujo ID não cabe na posição não são
+ * mantidos no inventário e continuam sendo atualizados pelo documento.
+ * </p>
+ */
+public class InventarioMapeado {
+
+    static final int TAMANHO_POSICAO = 128;
+    private static final int DESLOCAMENTO_ID = Integer.BYTES + Short.BYTES;
+    private static final int TAMANHO_MAXIMO_ID = TAMANHO_POSICAO - DESLOCAMENTO_ID;
+    private static final int POSICOES_POR_BLOCO = 1024;
+    private static final long INTERVALO_RECONCILIACAO_SEGUNDOS = 5;
+
+    private static final Map<Path, InventarioMapeado> abertos = new ConcurrentHashMap<>();
+
+    /**
+     * Acesso atômico aos contadores, na mesma ordem de bytes de {@link MappedByteBuffer#getInt(int)}.
+     */
+    private static final VarHandle CONTADOR = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final FileChannel canal;
+    private final Map<String, Integer> posicoes = new ConcurrentHashMap<>();
+    private final Set<String> alterados = ConcurrentHashMap.newKeySet();
+    private volatile MappedByteBuffer mapa;
+    private int capacidade;
+    private ScheduledExecutorService reconciliador;
+
+    /**
+     * Construtor privado; use {@link #abrir(Path)} para obter o inventário de um diretório.
+     *
+     * @param arquivo o arquivo de inventário
+     * @throws IOException se o arquivo não puder ser aberto ou mapeado
+     */
+    private InventarioMapeado(Path arquivo) throws IOException {
+        Files.createDirectories(arquivo.getParent());
+        this.canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long posicoesExistentes = canal.size() / TAMANHO_POSICAO;
+        mapear((int) Math.max(POSICOES_POR_BLOCO, arredondarBloco(posicoesExistentes)));
+        carregarPosicoes(0);
+    }
+
+    /**
+     * Retorna o inventário do diretório de dados informado, abrindo-o se necessário.
+     * Todas as instâncias de {@link Armazenamento} do processo compartilham o mesmo inventário.
+     *
+     * @param diretorioBase o diretório de dados
+     * @return o inventário do diretório
+     * @throws IOException se o inventário não puder ser aberto
+     */
+    public static InventarioMapeado abrir(Path diretorioBase) throws IOException {
+        Path arquivo = diretorioBase.toAbsolutePath().normalize().resolve("inventario.dat");
+        try {
+            return abertos.computeIfAbsent(arquivo, caminho -> {
+                try {
+                    return new InventarioMapeado(caminho);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Verifica se o ID do evento pode ser mantido no inventário.
+     *
+     * @param eventoId o ID do evento
+     * @return {@code true} se o ID cabe em uma posição do arquivo
+     */
+    public static boolean suportado(String eventoId) {
+        return eventoId != null && eventoId.getBytes(StandardCharsets.UTF_8).length <= TAMANHO_MAXIMO_ID;
+    }
+
+    /**
+     * Retorna a quantidade de ingressos restantes de um evento.
+     *
+     * @param eventoId o ID do evento
+     * @return a quantidade registrada ou {@code null} se o evento não estiver no inventário
+     */
+    public Integer obter(String eventoId) {
+        Integer posicao = posicoes.get(eventoId);
+        return posicao == null ? null : (int) CONTADOR.getVolatile(mapa, posicao * TAMANHO_POSICAO);
+    }
+
+    /**
+     * Registra um evento no inventário com a quantidade informada, caso ainda não esteja registrado.
+     *
+     * @param eventoId o ID do evento
+     * @param quantidade a quantidade inicial de ingressos
+     * @return a quantidade registrada para o evento
+     * @throws IllegalArgumentException se o ID não couber em uma posição do arquivo
+     */
+    public synchronized int registrar(String eventoId, int quantidade) {
+        Integer existente = obter(eventoId);
+        if (existente != null) {
+            return existente;
+        }
+        return alocar(eventoId, quantidade) ? quantidade : obter(eventoId);
+    }
+
+    /**
+     * Define a quantidade de ingressos de um evento, registrando-o se ainda não estiver no
+     * inventário. Usado quando o evento é armazenado com uma nova quantidade, que substitui a do contador.
+     *
+     * @param eventoId o ID do evento
+     * @param quantidade a nova quantidade de ingressos
+     * @throws IllegalArgumentException se o ID não couber em uma posição do arquivo
+     */
+    public synchronized void definir(String eventoId, int quantidade) {
+        if (obter(eventoId) == null && alocar(eventoId, quantidade)) {
+            return;
+        }
+        CONTADOR.setVolatile(mapa, inicio(eventoId), quantidade);
+    }
+
+    /**
+     * Ocupa a próxima posição livre com o evento, com a primeira posição do arquivo travada para os
+     * demais processos. As posições registradas por outros processos são recarregadas antes, e o
+     * evento não é registrado outra vez se um deles já o tiver registrado.
+     *
+     * @return {@code true} se o evento foi registrado com a quantidade informada, ou {@code false}
+     *         se já estava registrado
+     * @throws IllegalArgumentException se o ID não couber em uma posição do arquivo
+     */
+    private boolean alocar(String eventoId, int quantidade) {
+        if (!suportado(eventoId)) {
+            throw new IllegalArgumentException("Erro: ID de evento muito longo para o inventário: " + eventoId);
+        }
+        FileLock trava;
+        try {
+            trava = canal.lock(0, TAMANHO_POSICAO, false);
+        } catch (IOException e) {
+            throw new IllegalStateException("Erro ao travar o arquivo de inventário: " + e.getMessage(), e);
+        }
+        try {
+            recarregarPosicoes();
+            if (posicoes.containsKey(eventoId)) {
+                return false;
+            }
+            int posicao = posicoes.size();
+            if (posicao >= capacidade) {
+                mapear(capacidade + POSICOES_POR_BLOCO);
+            }
+            byte[] id = eventoId.getBytes(StandardCharsets.UTF_8);
+            int inicio = posicao * TAMANHO_POSICAO;
+            // O tamanho do ID é gravado por último: é ele que marca a posição como ocupada
+            mapa.put(inicio + DESLOCAMENTO_ID, id);
+            CONTADOR.setVolatile(mapa, inicio, quantidade);
+            mapa.putShort(inicio + Integer.BYTES, (short) id.length);
+            posicoes.put(eventoId, posicao);
+            return true;
+        } finally {
+            try {
+                trava.release();
+            } catch (IOException e) {
+                Registro.erro("Erro ao liberar a trava do arquivo de inventário: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Soma {@code delta} à quantidade de ingressos de um evento já registrado, alterando o
+     * contador diretamente no arquivo mapeado.
+     *
+     * @param eventoId o ID do evento
+     * @param delta o valor a ser somado (negativo para compras, positivo para cancelamentos)
+     * @return a nova quantidade de ingressos
+     * @throws IllegalArgumentException se o evento não estiver registrado
+     */
+    public int ajustar(String eventoId, int delta) {
+        int inicio = inicio(eventoId);
+        int novaQuantidade = (int) CONTADOR.getAndAdd(mapa, inicio, delta) + delta;
+        alterados.add(eventoId);
+        return novaQuantidade;
+    }
+
+    /**
+     * Retira {@code quantidade} ingressos de um evento já registrado, se houver ingressos suficientes.
+     * A verificação e a retirada são uma única operação atômica: reservas simultâneas nunca retiram
+     * mais ingressos do que o evento tem.
+     *
+     * @param eventoId o ID do evento
+     * @param quantidade a quantidade de ingressos, maior que zero
+     * @return a quantidade restante depois da reserva, ou {@code -1} se não houver ingressos suficientes
+     * @throws IllegalArgumentException se o evento não estiver registrado
+     */
+    public int reservar(String eventoId, int quantidade) {
+        int inicio = inicio(eventoId);
+        while (true) {
+            MappedByteBuffer atual = mapa;
+            int disponivel = (int) CONTADOR.getVolatile(atual, inicio);
+            if (disponivel < quantidade) {
+                return -1;
+            }
+            if (CONTADOR.compareAndSet(atual, inicio, disponivel, disponivel - quantidade)) {
+                alterados.add(eventoId);
+                return disponivel - quantidade;
+            }
+        }
+    }
+
+    private int inicio(String eventoId) {
+        Integer posicao = posicoes.get(eventoId);
+        if (posicao == null) {
+            throw new IllegalArgumentException("Erro: Evento não registrado no inventário: " + eventoId);
+        }
+        return posicao * TAMANHO_POSICAO;
+    }
+
+    /**
+     * Inicia a reconciliação periódica dos contadores alterados com os documentos dos eventos.
+     * Chamadas repetidas não têm efeito.
+     *
+     * @param reconciliar ação que recebe o ID do evento e a quantidade atual do contador
+     */
+    public synchronized void iniciarReconciliacao(BiConsumer<String, Integer> reconciliar) {
+        if (reconciliador != null) {
+            return;
+        }
+        reconciliador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "reconciliacao-inventario");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconciliador.scheduleWithFixedDelay(() -> reconciliar(reconciliar),
+                INTERVALO_RECONCILIACAO_SEGUNDOS, INTERVALO_RECONCILIACAO_SEGUNDOS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Reconcilia imediatamente os contadores alterados desde a última reconciliação.
+     *
+     * @param reconciliar ação que recebe o ID do evento e a quantidade atual do contador
+     */
+    public void reconciliar(BiConsumer<String, Integer> reconciliar) {
+        Map<String, Integer> pendentes = new HashMap<>();
+        for (String eventoId : alterados) {
+            // Remove antes de ler: uma alteração feita depois da leitura marca o evento outra vez
+            alterados.remove(eventoId);
+            pendentes.put(eventoId, obter(eventoId));
+        }
+        synchronized (this) {
+            mapa.force();
+        }
+        for (Map.Entry<String, Integer> pendente : pendentes.entrySet()) {
+            try {
+                reconciliar.accept(pendente.getKey(), pendente.getValue());
+            } catch (RuntimeException e) {
+                Registro.erro("Erro ao reconciliar o evento {}: {}", pendente.getKey(), e.getMessage());
+                alterados.add(pendente.getKey());
+            }
+        }
+    }
+
+    /**
+     * Mapeia o arquivo com a capacidade informada, aumentando-o se necessário.
+     */
+    private void mapear(int novaCapacidade) {
+        try {
+            if (mapa != null) {
+                mapa.force();
+            }
+            mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, (long) novaCapacidade * TAMANHO_POSICAO);
+            capacidade = novaCapacidade;
+        } catch (IOException e) {
+            throw new IllegalStateException("Erro ao mapear o arquivo de inventário: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lê as posições ocupadas por outros processos desde a última leitura, mapeando novamente o
+     * arquivo se ele tiver sido aumentado.
+     */
+    private void recarregarPosicoes() {
+        try {
+            long posicoesArquivo = canal.size() / TAMANHO_POSICAO;
+            if (posicoesArquivo > capacidade) {
+                mapear((int) arredondarBloco(posicoesArquivo));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Erro ao ler o tamanho do arquivo de inventário: " + e.getMessage(), e);
+        }
+        carregarPosicoes(posicoes.size());
+    }
+
+    /**
+     * Lê as posições ocupadas do arquivo a partir da posição informada. A primeira posição com ID
+     * vazio marca o fim dos registros.
+     */
+    private void carregarPosicoes(int primeira) {
+        for (int posicao = primeira; posicao < capacidade; posicao++) {
+            int inicio = posicao * TAMANHO_POSICAO;
+            int tamanhoId = mapa.getShort(inicio + Integer.BYTES);
+            if (tamanhoId <= 0 || tamanhoId > TAMANHO_MAXIMO_ID) {
+                break;
+            }
+            byte[] id = new byte[tamanhoId];
+            mapa.get(inicio + DESLOCAMENTO_ID, id);
+            posicoes.put(new String(id, StandardCharsets.UTF_8), posicao);
+        }
+    }
+
+    private static long arredondarBloco(long posicoes) {
+        return ((posicoes + POSICOES_POR_BLOCO - 1) / POSICOES_POR_BLOCO) * POSICOES_POR_BLOCO;
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.pbl3_test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Organização dos arquivos de usuários no diretório {@code Usuarios}.
+ *
+ * <p>
+ * Por padrão, os arquivos de todos os usuários ficam direto em {@code Usuarios}. Com a propriedade
+ * {@code usuarios.layout=subdiretorios} no {@value MotorArmazenamento#ARQUIVO_CONFIGURACAO} do diretório
+ * de dados, os arquivos de cada usuário ficam em {@code Usuarios/xx/yy/}, onde {@code xx} e {@code yy}
+ * são os dois primeiros bytes, em hexadecimal, do CRC32 do CPF. A organização em subdiretórios
+ * limita a quantidade de arquivos por diretório, o que pode ajudar em sistemas de arquivos sem
+ * índice de diretórios. No ext4, o {@code BenchmarkLayoutUsuarios} do perfil {@code jmh} mediu a
+ * leitura de um usuário sorteado, com 5 milhões de usuários, em 64 µs direto em {@code Usuarios} e
+ * 196 µs em subdiretórios, e a busca por um CPF ausente em 10 µs e 15 µs. Só a regravação foi mais
+ * rápida em subdiretórios (560 µs contra 760 µs, com variação alta). Como as leituras são as
+ * operações mais frequentes, a organização em subdiretórios não é o padrão.
+ * </p>
+ *
+ * <p>
+ * Quando a organização configurada muda, os arquivos que ainda estão na outra organização são movidos
+ * no primeiro acesso ({@link #localizar(String, String)}) ou de uma só vez por {@link #migrarTodos(String)},
+ * com a aplicação em funcionamento.
+ * </p>
+ */
+public class LayoutUsuarios {
+
+    /**
+     * Valor da propriedade {@code usuarios.layout} que ativa a organização em subdiretórios.
+     */
+    public static final String SUBDIRETORIOS = "subdiretorios";
+
+    private final File diretorio;
+    private final boolean subdividido;
+
+    /**
+     * Construtor da classe {@code LayoutUsuarios}, com todos os arquivos direto no diretório.
+     *
+     * @param diretorio o diretório {@code Usuarios}
+     */
+    public LayoutUsuarios(File diretorio) {
+        this(diretorio, false);
+    }
+
+    /**
+     * Construtor da classe {@code LayoutUsuarios}.
+     *
+     * @param diretorio o diretório {@code Usuarios}
+     * @param subdividido indica se os arquivos ficam em subdiretórios derivados do CPF
+     */
+    public LayoutUsuarios(File diretorio, boolean subdividido) {
+        this.diretorio = diretorio;
+        this.subdividido = subdividido;
+    }
+
+    /**
+     * Retorna a organização configurada para o diretório de dados informado.
+     *
+     * @param diretorioBase o diretório de dados
+     * @return a organização do diretório {@code Usuarios}, direto no diretório se nenhuma estiver configurada
+     */
+    static LayoutUsuarios doDiretorio(File diretorioBase) {
+        Properties propriedades = new Properties();
+        File configuracao = new File(diretorioBase, MotorArmazenamento.ARQUIVO_CONFIGURACAO);
+        if (configuracao.isFile()) {
+            try (InputStream entrada = new FileInputStream(configuracao)) {
+                propriedades.load(entrada);
+            } catch (IOException e) {
+                Registro.erro("Erro ao ler a organização dos usuários: {}", e.getMessage());
+            }
+        }
+        boolean subdividido = SUBDIRETORIOS.equalsIgnoreCase(propriedades.getProperty("usuarios.layout", "").trim());
+        return new LayoutUsuarios(new File(diretorioBase, "Usuarios"), subdividido);
+    }
+
+    /**
+     * Indica se os arquivos ficam em subdiretórios derivados do CPF.
+     *
+     * @return {@code true} na organização em subdiretórios
+     */
+    public boolean isSubdividido() {
+        return subdividido;
+    }
+
+    /**
+     * Retorna o subdiretório de um CPF, relativo ao diretório {@code Usuarios}.
+     *
+     * @param cpf o CPF do usuário
+     * @return o subdiretório, no formato {@code xx/yy}
+     */
+    public static String subdiretorio(String cpf) {
+        CRC32 crc = new CRC32();
+        crc.update(cpf.getBytes(StandardCharsets.UTF_8));
+        long hash = crc.getValue();
+        return String.format("%02x%s%02x", (hash >>> 24) & 0xFF, File.separator, (hash >>> 16) & 0xFF);
+    }
+
+    /**
+     * Retorna o caminho de um arquivo de usuário relativo ao diretório de dados, como usado pelo {@link LogEscrita}.
+     *
+     * @param cpf o CPF do usuário
+     * @param extensao a extensão do arquivo
+     * @return o caminho relativo, começando por {@code Usuarios}
+     */
+    public String caminhoRelativo(String cpf, String extensao) {
+        String subdiretorio = subdividido ? subdiretorio(cpf) + File.separator : "";
+        return diretorio.getName() + File.separator + subdiretorio + cpf + extensao;
+    }
+
+    /**
+     * Retorna o arquivo de um usuário na organização configurada, sem verificar se existe.
+     *
+     * @param cpf o CPF do usuário
+     * @param extensao a extensão do arquivo
+     * @return o arquivo do usuário
+     */
+    public File arquivo(String cpf, String extensao) {
+        return arquivo(cpf, extensao, subdividido);
+    }
+
+    private File arquivo(String cpf, String extensao, boolean emSubdiretorio) {
+        File pasta = emSubdiretorio ? new File(diretorio, subdiretorio(cpf)) : diretorio;
+        return new File(pasta, cpf + extensao);
+    }
+
+    /**
+     * Retorna o arquivo de um usuário, movendo antes para a organização configurada os arquivos do
+     * usuário que ainda estiverem na outra organização.
+     *
+     * @param cpf o CPF do usuário
+     * @param extensao a extensão do documento do usuário
+     * @return o arquivo do usuário, que pode não existir
+     */
+    public File localizar(String cpf, String extensao) {
+        File arquivo = arquivo(cpf, extensao);
+        File anterior = arquivo(cpf, extensao, !subdividido);
+        if (!arquivo.isFile() && anterior.isFile()) {
+            try {
+                migrar(cpf, extensao);
+            } catch (IOException e) {
+                Registro.erro("Erro ao mover os arquivos do usuário {}: {}", cpf, e.getMessage());
+                return anterior;
+            }
+        }
+        return arquivo;
+    }
+
+    /**
+     * Move os arquivos de um usuário da outra organização para a configurada. O histórico é movido
+     * antes do documento, de modo que quem encontra o documento no novo lugar também encontra o histórico.
+     *
+     * @param cpf o CPF do usuário
+     * @param extensao a extensão do documento do usuário
+     * @return {@code true} se algum arquivo foi movido
+     * @throws IOException se algum arquivo não puder ser movido
+     */
+    public synchronized boolean migrar(String cpf, String extensao) throws IOException {
+        boolean historicoMovido = mover(cpf, HistoricoUsuario.EXTENSAO);
+        boolean documentoMovido = mover(cpf, extensao);
+        if (historicoMovido || documentoMovido) {
+            LogEscrita.sincronizarDiretorio(arquivo(cpf, extensao, true).getParentFile().toPath());
+            LogEscrita.sincronizarDiretorio(diretorio.toPath());
+        }
+        return historicoMovido || documentoMovido;
+    }
+
+    /**
+     * Move para a organização configurada todos os usuários que ainda estão na outra organização.
+     *
+     * @param extensao a extensão dos documentos de usuários
+     * @return a quantidade de usuários migrados
+     * @throws IOException se algum arquivo não puder ser movido
+     */
+    public int migrarTodos(String extensao) throws IOException {
+        if (!diretorio.isDirectory()) {
+            return 0;
+        }
+        // Na organização direta, os arquivos a mover estão nos subdiretórios xx/yy
+        List<Path> arquivos;
+        try (Stream<Path> caminhos = Files.walk(diretorio.toPath(), subdividido ? 1 : 3)) {
+            arquivos = caminhos.filter(Files::isRegularFile)
+                    .filter(caminho -> (caminho.getNameCount() - diretorio.toPath().getNameCount() == 1) == subdividido)
+                    .collect(Collectors.toList());
+        }
+        int migrados = 0;
+        for (Path arquivo : arquivos) {
+            String nome = arquivo.getFileName().toString();
+            if (!nome.endsWith(extensao) && !nome.endsWith(HistoricoUsuario.EXTENSAO)) {
+                continue;
+            }
+            String sufixo = nome.endsWith(extensao) ? extensao : HistoricoUsuario.EXTENSAO;
+            if (migrar(nome.substring(0, nome.length() - sufixo.length()), extensao)) {
+                migrados++;
+            }
+        }
+        return migrados;
+    }
+
+    /**
+     * Move um arquivo do usuário para a organização configurada. Se ela já tiver uma versão do arquivo,
+     * essa versão prevalece e o arquivo da outra organização é removido.
+     */
+    private boolean mover(String cpf, String extensao) throws IOException {
+        Path antigo = arquivo(cpf, extensao, !subdividido).toPath();
+        if (!Files.isRegularFile(antigo)) {
+            return false;
+        }
+        Path novo = arquivo(cpf, extensao).toPath();
+        Files.createDirectories(novo.getParent());
+        if (Files.exists(novo)) {
+            Files.delete(antigo);
+        } else {
+            Files.move(antigo, novo, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return true;
+    }
+}
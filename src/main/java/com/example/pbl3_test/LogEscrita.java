@@ -0,0 +1,517 @@
+package com.example.pbl3_test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * Log de escrita antecipada (write-ahead log) compartilhado pelas gravações do {@link Armazenamento}.
+ *
+ * <p>
+ * Cada gravação de documento é primeiro anexada ao arquivo {@code escrita.log} do diretório de dados
+ * e só depois aplicada ao documento de destino, por meio de um arquivo temporário seguido de uma
+ * renomeação atômica. As gravações concorrentes são agrupadas por uma única thread
+ * ({@code commit em grupo}): um lote inteiro de registros é gravado e sincronizado no disco com uma
+ * única chamada a {@code force}, e somente então os escritores são liberados.
+ * </p>
+ *
+ * <p>
+ * Quando o log ultrapassa um tamanho limite, é feito um checkpoint: os documentos registrados no log
+ * são sincronizados no disco e o log é truncado. Ao abrir o log, os registros ainda presentes são
+ * reaplicados, recuperando gravações interrompidas por uma queda do processo.
+ * </p>
+ *
+ * <p>
+ * O arquivo de log pode ser compartilhado por vários processos que usam o mesmo diretório de dados.
+ * A gravação de cada lote, a aplicação dos seus documentos, os checkpoints e a recuperação são
+ * feitos com o arquivo travado por um {@link FileLock}, de modo que os registros de processos
+ * diferentes não se misturam e um checkpoint só descarta registros já aplicados. Como o checkpoint
+ * sincroniza todos os documentos presentes no log, inclusive os gravados por outros processos, a
+ * durabilidade não depende de qual processo trunca o log.
+ * </p>
+ */
+public class LogEscrita {
+
+    private static final String NOME_ARQUIVO = "escrita.log";
+    private static final long LIMITE_CHECKPOINT = 4L * 1024 * 1024;
+    private static final int TAMANHO_MAXIMO_LOTE = 256;
+
+    private static final Map<Path, LogEscrita> abertos = new ConcurrentHashMap<>();
+
+    private final Path diretorioBase;
+    private final FileChannel canal;
+    private final BlockingQueue<Pendente> fila = new LinkedBlockingQueue<>();
+    private final Thread gravador;
+    private volatile Pendente encerramento;
+
+    private volatile long lotesGravados;
+    private volatile long registrosGravados;
+    private volatile long checkpointsRealizados;
+
+    /**
+     * Construtor privado; use {@link #abrir(Path)} para obter o log de um diretório.
+     *
+     * @param diretorioBase o diretório de dados onde o log é mantido
+     * @throws IOException se o arquivo de log não puder ser aberto ou recuperado
+     */
+    private LogEscrita(Path diretorioBase) throws IOException {
+        this.diretorioBase = diretorioBase;
+        Files.createDirectories(diretorioBase);
+        this.canal = FileChannel.open(diretorioBase.resolve(NOME_ARQUIVO),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try (var _ = canal.lock()) {
+            recuperar();
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+
+        this.gravador = new Thread(this::executarGravador, "log-escrita");
+        gravador.setDaemon(true);
+        gravador.start();
+    }
+
+    /**
+     * Retorna o log do diretório informado, abrindo-o e recuperando-o se ainda não estiver aberto.
+     * Todas as instâncias de {@link Armazenamento} do processo que usam o mesmo diretório
+     * compartilham o mesmo log.
+     *
+     * @param diretorioBase o diretório de dados
+     * @return o log de escrita do diretório
+     * @throws IOException se o log não puder ser aberto
+     */
+    public static LogEscrita abrir(Path diretorioBase) throws IOException {
+        Path chave = diretorioBase.toAbsolutePath().normalize();
+        try {
+            return abertos.computeIfAbsent(chave, caminho -> {
+                try {
+                    return new LogEscrita(caminho);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Fecha o log do diretório informado, se estiver aberto: as gravações já enfileiradas são
+     * concluídas, é feito um checkpoint e a thread gravadora termina. Uma chamada posterior a
+     * {@link #abrir(Path)} abre o log novamente.
+     *
+     * @param diretorioBase o diretório de dados
+     * @throws IOException se o checkpoint final falhar
+     */
+    static void fechar(Path diretorioBase) throws IOException {
+        LogEscrita log = abertos.remove(diretorioBase.toAbsolutePath().normalize());
+        if (log != null) {
+            log.encerrar();
+        }
+    }
+
+    /**
+     * Grava um documento de forma durável. O método retorna somente depois que o registro foi
+     * sincronizado no log e aplicado ao arquivo de destino.
+     *
+     * @param caminhoRelativo o caminho do documento, relativo ao diretório de dados
+     * @param conteudo o conteúdo completo do documento
+     * @throws IOException se a gravação no log ou no documento falhar
+     */
+    public void gravar(String caminhoRelativo, byte[] conteudo) throws IOException {
+        aguardar(enfileirar(new Pendente(caminhoRelativo, conteudo, null)));
+    }
+
+    /**
+     * Grava vários documentos de forma durável. Os registros são enfileirados juntos, de modo que a
+     * thread gravadora os sincroniza no log em poucos lotes, em vez de um lote por documento.
+     *
+     * @param documentos o conteúdo de cada documento, pelo caminho relativo ao diretório de dados
+     * @throws IOException se a gravação de algum documento falhar
+     */
+    public void gravarLote(Map<String, byte[]> documentos) throws IOException {
+        List<Pendente> pendentes = new ArrayList<>(documentos.size());
+        for (Map.Entry<String, byte[]> documento : documentos.entrySet()) {
+            pendentes.add(new Pendente(documento.getKey(), documento.getValue(), null));
+        }
+        synchronized (fila) {
+            for (Pendente pendente : pendentes) {
+                enfileirar(pendente);
+            }
+        }
+        for (Pendente pendente : pendentes) {
+            aguardar(pendente.concluido);
+        }
+    }
+
+    /**
+     * Força um checkpoint: sincroniza os documentos alterados e trunca o log.
+     *
+     * @throws IOException se o checkpoint falhar
+     */
+    public void checkpoint() throws IOException {
+        aguardar(enfileirar(new Pendente(null, null, null)));
+    }
+
+    /**
+     * Executa uma ação na thread gravadora, depois das gravações já enfileiradas. Nenhum documento
+     * é aplicado enquanto a ação é executada, o que permite remover ou substituir documentos sem
+     * disputar com as gravações concorrentes.
+     *
+     * @param acao a ação a ser executada
+     * @throws IOException se a ação falhar
+     */
+    void executarExclusivo(AcaoExclusiva acao) throws IOException {
+        aguardar(enfileirar(new Pendente(null, null, acao)));
+    }
+
+    /**
+     * Retorna o número de lotes sincronizados no disco desde a abertura do log.
+     *
+     * @return a quantidade de lotes gravados
+     */
+    public long getLotesGravados() {
+        return lotesGravados;
+    }
+
+    /**
+     * Retorna o número de registros gravados desde a abertura do log.
+     *
+     * @return a quantidade de registros gravados
+     */
+    public long getRegistrosGravados() {
+        return registrosGravados;
+    }
+
+    /**
+     * Retorna o número de checkpoints realizados desde a abertura do log.
+     *
+     * @return a quantidade de checkpoints
+     */
+    public long getCheckpointsRealizados() {
+        return checkpointsRealizados;
+    }
+
+    private CompletableFuture<Void> enfileirar(Pendente pendente) {
+        synchronized (fila) {
+            if (encerramento != null) {
+                pendente.concluido.completeExceptionally(new IOException("O log de escrita foi fechado."));
+            } else {
+                fila.add(pendente);
+            }
+        }
+        return pendente.concluido;
+    }
+
+    /**
+     * Enfileira um último pedido de checkpoint, recusa as gravações seguintes e aguarda o fim da
+     * thread gravadora, que fecha o arquivo de log.
+     */
+    private void encerrar() throws IOException {
+        Pendente ultimo = new Pendente(null, null, null);
+        synchronized (fila) {
+            if (encerramento != null) {
+                return;
+            }
+            // Publicado antes de enfileirar: a thread gravadora pode retirar o pedido imediatamente
+            encerramento = ultimo;
+            fila.add(ultimo);
+        }
+        try {
+            aguardar(ultimo.concluido);
+        } finally {
+            try {
+                gravador.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void aguardar(CompletableFuture<Void> concluido) throws IOException {
+        try {
+            concluido.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Gravação interrompida.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Laço da thread gravadora: agrupa os registros pendentes, grava o lote com uma única
+     * sincronização, aplica os documentos na ordem do log e libera os escritores.
+     */
+    private void executarGravador() {
+        List<Pendente> lote = new ArrayList<>();
+        boolean encerrado = false;
+        while (!encerrado) {
+            try {
+                lote.add(fila.take());
+                fila.drainTo(lote, TAMANHO_MAXIMO_LOTE - 1);
+                processarLote(lote);
+                // Nada é enfileirado depois do pedido de encerramento, que é sempre o último do lote
+                encerrado = lote.get(lote.size() - 1) == encerramento;
+            } catch (InterruptedException e) {
+                encerrado = true;
+            } finally {
+                lote.clear();
+            }
+        }
+        try {
+            canal.close();
+        } catch (IOException e) {
+            Registro.erro("Erro ao fechar o log de escrita: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Processa um lote com o arquivo de log travado para os outros processos. Uma falha ao gravar ou
+     * sincronizar o lote no log faz falhar todo o lote; depois disso, cada registro já está no log e
+     * só falha se o seu próprio documento não puder ser aplicado.
+     */
+    private void processarLote(List<Pendente> lote) {
+        List<Pendente> gravacoes = new ArrayList<>(lote.size());
+        boolean checkpointSolicitado = false;
+        for (Pendente pendente : lote) {
+            if (pendente.acao != null) {
+                // As ações podem remover documentos, que não devem ser reaplicados a partir do log
+                checkpointSolicitado = true;
+            } else if (pendente.caminhoRelativo == null) {
+                checkpointSolicitado = true;
+            } else {
+                gravacoes.add(pendente);
+            }
+        }
+
+        try (var _ = canal.lock()) {
+            if (!gravacoes.isEmpty()) {
+                for (Pendente pendente : gravacoes) {
+                    ByteBuffer registro = codificar(pendente.caminhoRelativo, pendente.conteudo);
+                    canal.position(canal.size());
+                    while (registro.hasRemaining()) {
+                        canal.write(registro);
+                    }
+                }
+                canal.force(false);
+                lotesGravados++;
+                registrosGravados += gravacoes.size();
+
+                for (Pendente pendente : gravacoes) {
+                    try {
+                        aplicar(pendente.caminhoRelativo, pendente.conteudo);
+                        pendente.concluido.complete(null);
+                    } catch (IOException | RuntimeException e) {
+                        Registro.erro("Erro ao aplicar {} a partir do log de escrita: {}",
+                                pendente.caminhoRelativo, e.getMessage());
+                        pendente.concluido.completeExceptionally(e);
+                    }
+                }
+            }
+            if (checkpointSolicitado || canal.size() > LIMITE_CHECKPOINT) {
+                realizarCheckpoint();
+            }
+            for (Pendente pendente : lote) {
+                if (pendente.acao != null) {
+                    executarAcao(pendente);
+                } else {
+                    pendente.concluido.complete(null);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Registro.erro("Erro ao gravar o lote no log de escrita: {}", e.getMessage());
+            // Os registros já concluídos não são afetados
+            for (Pendente pendente : lote) {
+                pendente.concluido.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static void executarAcao(Pendente pendente) {
+        try {
+            pendente.acao.executar();
+            pendente.concluido.complete(null);
+        } catch (IOException | RuntimeException e) {
+            pendente.concluido.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Substitui o documento de destino por meio de um arquivo temporário e uma renomeação atômica.
+     * A sincronização do documento no disco fica para o próximo checkpoint, já que o log garante
+     * a durabilidade até lá.
+     */
+    private void aplicar(String caminhoRelativo, byte[] conteudo) throws IOException {
+        Path destino = diretorioBase.resolve(caminhoRelativo);
+        Files.createDirectories(destino.getParent());
+        Path temporario = destino.resolveSibling(destino.getFileName() + ".tmp");
+        Files.write(temporario, conteudo);
+        Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Sincroniza no disco todos os documentos registrados no log, inclusive os aplicados por outros
+     * processos, e trunca o log. Deve ser chamado com o arquivo de log travado.
+     */
+    private void realizarCheckpoint() throws IOException {
+        Set<Path> documentos = new LinkedHashSet<>();
+        for (Map.Entry<String, byte[]> registro : lerRegistros()) {
+            documentos.add(diretorioBase.resolve(registro.getKey()));
+        }
+        Set<Path> diretorios = new LinkedHashSet<>();
+        for (Path documento : documentos) {
+            if (Files.exists(documento)) {
+                try (FileChannel arquivo = FileChannel.open(documento, StandardOpenOption.READ)) {
+                    arquivo.force(true);
+                }
+            }
+            diretorios.add(documento.getParent());
+        }
+        for (Path diretorio : diretorios) {
+            sincronizarDiretorio(diretorio);
+        }
+        canal.truncate(0);
+        canal.force(true);
+        checkpointsRealizados++;
+    }
+
+    /**
+     * Reaplica os registros válidos encontrados no log e faz um checkpoint. Deve ser chamado com o
+     * arquivo de log travado.
+     */
+    private void recuperar() throws IOException {
+        if (canal.size() == 0) {
+            return;
+        }
+
+        List<Map.Entry<String, byte[]>> registros = lerRegistros();
+        for (Map.Entry<String, byte[]> registro : registros) {
+            aplicar(registro.getKey(), registro.getValue());
+        }
+
+        realizarCheckpoint();
+        Registro.info("Log de escrita recuperado: {} registro(s) reaplicado(s).", registros.size());
+    }
+
+    /**
+     * Lê os registros válidos do log, na ordem em que foram gravados. A leitura para no primeiro
+     * registro incompleto ou com checksum inválido, que corresponde a uma gravação interrompida antes
+     * de ser confirmada.
+     *
+     * @return o caminho relativo e o conteúdo de cada registro
+     */
+    private List<Map.Entry<String, byte[]>> lerRegistros() throws IOException {
+        List<Map.Entry<String, byte[]>> registros = new ArrayList<>();
+        long tamanho = canal.size();
+        if (tamanho == 0) {
+            return registros;
+        }
+
+        ByteBuffer conteudoLog = ByteBuffer.allocate((int) tamanho);
+        canal.read(conteudoLog, 0);
+        conteudoLog.flip();
+
+        while (conteudoLog.remaining() >= Integer.BYTES) {
+            int tamanhoRegistro = conteudoLog.getInt();
+            if (tamanhoRegistro <= Long.BYTES || tamanhoRegistro > conteudoLog.remaining()) {
+                break;
+            }
+            byte[] corpo = new byte[tamanhoRegistro - Long.BYTES];
+            conteudoLog.get(corpo);
+            long checksum = conteudoLog.getLong();
+            if (checksum != calcularChecksum(corpo)) {
+                break;
+            }
+
+            ByteBuffer leitor = ByteBuffer.wrap(corpo);
+            byte[] caminho = new byte[leitor.getShort() & 0xFFFF];
+            leitor.get(caminho);
+            byte[] documento = new byte[leitor.remaining()];
+            leitor.get(documento);
+            registros.add(new AbstractMap.SimpleImmutableEntry<>(new String(caminho, StandardCharsets.UTF_8), documento));
+        }
+        return registros;
+    }
+
+    /**
+     * Codifica um registro no formato: tamanho, caminho, conteúdo e checksum CRC32.
+     */
+    private static ByteBuffer codificar(String caminhoRelativo, byte[] conteudo) {
+        byte[] caminho = caminhoRelativo.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer corpo = ByteBuffer.allocate(Short.BYTES + caminho.length + conteudo.length);
+        corpo.putShort((short) caminho.length).put(caminho).put(conteudo);
+
+        ByteBuffer registro = ByteBuffer.allocate(Integer.BYTES + corpo.capacity() + Long.BYTES);
+        registro.putInt(corpo.capacity() + Long.BYTES);
+        registro.put(corpo.array());
+        registro.putLong(calcularChecksum(corpo.array()));
+        registro.flip();
+        return registro;
+    }
+
+    private static long calcularChecksum(byte[] dados) {
+        CRC32 crc = new CRC32();
+        crc.update(dados);
+        return crc.getValue();
+    }
+
+    /**
+     * Sincroniza a entrada de diretório no disco, garantindo que as renomeações sobrevivam a uma queda.
+     */
+    static void sincronizarDiretorio(Path diretorio) {
+        try (FileChannel canalDiretorio = FileChannel.open(diretorio, StandardOpenOption.READ)) {
+            canalDiretorio.force(true);
+        } catch (IOException e) {
+            // Nem todos os sistemas permitem sincronizar diretórios; nesses casos a renomeação já basta.
+        }
+    }
+
+    /**
+     * Ação executada na thread gravadora por {@link #executarExclusivo(AcaoExclusiva)}.
+     */
+    interface AcaoExclusiva {
+        void executar() throws IOException;
+    }
+
+    /**
+     * Gravação aguardando a thread gravadora. Um caminho nulo sem ação representa um pedido de checkpoint.
+     */
+    private static final class Pendente {
+        private final String caminhoRelativo;
+        private final byte[] conteudo;
+        private final AcaoExclusiva acao;
+        private final CompletableFuture<Void> concluido = new CompletableFuture<>();
+
+        private Pendente(String caminhoRelativo, byte[] conteudo, AcaoExclusiva acao) {
+            this.caminhoRelativo = caminhoRelativo;
+            this.conteudo = conteudo;
+            this.acao = acao;
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package com.example.pbl3_test;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Monitor das alterações nos diretórios {@code Eventos} e {@code Usuarios}, baseado em um
+ * {@link WatchService}.
+ *
+ * <p>
+ * As criações, alterações e remoções de arquivos são repassadas aos ouvintes registrados, que
+ * atualizam seus caches e índices sem reler o catálogo inteiro. Isso inclui as gravações de outras
+ * instâncias de {@link Armazenamento} do mesmo processo e de outros processos que compartilham o
+ * diretório de dados. Quando o {@link WatchService} perde eventos ({@code OVERFLOW}), os ouvintes
+ * recebem um pedido de recarga completa do diretório afetado.
+ * </p>
+ *
+ * <p>
+ * As gravações feitas pela própria instância são informadas por {@link #registrarGravacao(Ouvinte, Path)}
+ * e não são repassadas de volta a ela. Arquivos temporários ({@code .tmp}) são ignorados. Os ouvintes
+ * são mantidos por referência fraca, de modo que o monitor não impede a coleta de instâncias descartadas.
+ * </p>
+ *
+ * <p>
+ * Há um monitor por diretório de dados, compartilhado pelas instâncias que o abrem. Cada
+ * {@link #abrir(Path)} conta uma referência, liberada por {@link #fechar(Ouvinte)}; quando a última é
+ * liberada, o {@link WatchService} é fechado e a thread do monitor termina.
+ * </p>
+ */
+public class MonitorCatalogo {
+
+    private static final String[] DIRETORIOS = {"Eventos", "Usuarios"};
+    private static final int LIMITE_GRAVACOES_PROPRIAS = 10_000;
+    private static final long ESPERA_AGRUPAMENTO_MILLIS = 20;
+    private static final int MAXIMO_CHAVES_POR_LOTE = 256;
+
+    private static final Map<Path, MonitorCatalogo> abertos = new ConcurrentHashMap<>();
+
+    /**
+     * Ouvinte das alterações do catálogo.
+     */
+    public interface Ouvinte {
+
+        /**
+         * Chamado quando um arquivo é criado ou alterado.
+         *
+         * @param diretorio o diretório do catálogo ({@code Eventos} ou {@code Usuarios})
+         * @param nomeArquivo o nome do arquivo alterado
+         */
+        void alterado(String diretorio, String nomeArquivo);
+
+        /**
+         * Chamado quando um arquivo é removido.
+         *
+         * @param diretorio o diretório do catálogo ({@code Eventos} ou {@code Usuarios})
+         * @param nomeArquivo o nome do arquivo removido
+         */
+        void removido(String diretorio, String nomeArquivo);
+
+        /**
+         * Chamado quando eventos foram perdidos e o diretório precisa ser relido por completo.
+         *
+         * @param diretorio o diretório do catálogo ({@code Eventos} ou {@code Usuarios})
+         */
+        void recarregar(String diretorio);
+    }
+
+    private final Path diretorioBase;
+    private final WatchService servico;
+    private final Thread thread;
+    private int referencias;
+    private volatile boolean fechado;
+    private final Map<WatchKey, Path> diretoriosMonitorados = new ConcurrentHashMap<>();
+    private final Set<Ouvinte> ouvintes = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private final Map<Path, GravacaoPropria> gravacoesProprias = new LinkedHashMap<Path, GravacaoPropria>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, GravacaoPropria> maisAntiga) {
+            return size() > LIMITE_GRAVACOES_PROPRIAS;
+        }
+    };
+
+    /**
+     * Construtor privado; use {@link #abrir(Path)} para obter o monitor de um diretório.
+     *
+     * @param diretorioBase o diretório de dados
+     * @throws IOException se o {@link WatchService} não puder ser criado
+     */
+    private MonitorCatalogo(Path diretorioBase) throws IOException {
+        this.diretorioBase = diretorioBase;
+        this.servico = FileSystems.getDefault().newWatchService();
+        for (String diretorio : DIRETORIOS) {
+            Path caminho = diretorioBase.resolve(diretorio);
+            Files.createDirectories(caminho);
+            registrarArvore(caminho, null);
+        }
+        this.thread = new Thread(this::executar, "monitor-catalogo");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Retorna o monitor do diretório de dados informado, iniciando-o se necessário. Cada chamada deve
+     * ser seguida, depois do uso, por {@link #fechar(Ouvinte)}.
+     *
+     * @param diretorioBase o diretório de dados
+     * @return o monitor do diretório
+     * @throws IOException se o monitor não puder ser iniciado
+     */
+    public static MonitorCatalogo abrir(Path diretorioBase) throws IOException {
+        Path chave = diretorioBase.toAbsolutePath().normalize();
+        try {
+            return abertos.compute(chave, (caminho, atual) -> {
+                try {
+                    MonitorCatalogo monitor = atual != null ? atual : new MonitorCatalogo(caminho);
+                    monitor.referencias++;
+                    return monitor;
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Registra um ouvinte. O ouvinte é mantido por referência fraca; quem o registra deve guardar
+     * uma referência a ele enquanto quiser receber as alterações.
+     *
+     * @param ouvinte o ouvinte a ser registrado
+     */
+    public void adicionarOuvinte(Ouvinte ouvinte) {
+        ouvintes.add(ouvinte);
+    }
+
+    /**
+     * Remove o ouvinte e libera a referência de quem o registrou. Quando não há mais referências, o
+     * monitor é encerrado e removido dos monitores abertos. Chamadas repetidas com o mesmo ouvinte
+     * não têm efeito.
+     *
+     * @param ouvinte o ouvinte registrado por quem abriu o monitor
+     */
+    public void fechar(Ouvinte ouvinte) {
+        if (!ouvintes.remove(ouvinte)) {
+            return;
+        }
+        abertos.computeIfPresent(diretorioBase, (caminho, atual) -> {
+            if (atual != this || --referencias > 0) {
+                return atual;
+            }
+            encerrar();
+            return null;
+        });
+    }
+
+    /**
+     * Fecha o {@link WatchService}, o que faz a thread do monitor terminar sem repassar as alterações pendentes.
+     */
+    private void encerrar() {
+        fechado = true;
+        try {
+            servico.close();
+        } catch (IOException e) {
+            Registro.erro("Erro ao fechar o monitor do catálogo: {}", e.getMessage());
+        }
+        thread.interrupt();
+    }
+
+    /**
+     * Informa que um arquivo acabou de ser gravado pelo ouvinte, para que os eventos correspondentes
+     * a essa gravação não sejam repassados a ele.
+     *
+     * @param origem o ouvinte que fez a gravação
+     * @param arquivo o arquivo gravado
+     */
+    public void registrarGravacao(Ouvinte origem, Path arquivo) {
+        Object identificacao = identificar(arquivo);
+        if (identificacao == null) {
+            return;
+        }
+        synchronized (gravacoesProprias) {
+            gravacoesProprias.put(arquivo.toAbsolutePath().normalize(), new GravacaoPropria(origem, identificacao));
+        }
+    }
+
+    /**
+     * Laço da thread do monitor: agrupa os eventos recebidos por arquivo e os repassa aos ouvintes.
+     */
+    private void executar() {
+        while (true) {
+            WatchKey chave;
+            try {
+                chave = servico.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            Map<Path, WatchEvent.Kind<?>> alteracoes = new LinkedHashMap<>();
+            Set<String> recarregar = new HashSet<>();
+            int chavesColetadas = 0;
+            do {
+                coletar(chave, alteracoes, recarregar);
+                if (++chavesColetadas >= MAXIMO_CHAVES_POR_LOTE) {
+                    break;
+                }
+                try {
+                    chave = servico.poll(ESPERA_AGRUPAMENTO_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    return;
+                }
+            } while (chave != null);
+
+            if (fechado) {
+                return;
+            }
+            for (String diretorio : recarregar) {
+                notificar(ouvinte -> ouvinte.recarregar(diretorio), null);
+            }
+            for (Map.Entry<Path, WatchEvent.Kind<?>> alteracao : alteracoes.entrySet()) {
+                try {
+                    despachar(alteracao.getKey(), alteracao.getValue(), recarregar);
+                } catch (RuntimeException e) {
+                    Registro.erro("Erro ao processar a alteração de {}: {}", alteracao.getKey(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Lê os eventos de uma chave, guardando o último tipo de evento de cada arquivo.
+     */
+    private void coletar(WatchKey chave, Map<Path, WatchEvent.Kind<?>> alteracoes, Set<String> recarregar) {
+        Path diretorio = diretoriosMonitorados.get(chave);
+        for (WatchEvent<?> evento : chave.pollEvents()) {
+            if (diretorio == null) {
+                continue;
+            }
+            if (evento.kind() == StandardWatchEventKinds.OVERFLOW) {
+                recarregar.add(diretorioCatalogo(diretorio));
+                continue;
+            }
+            Path arquivo = diretorio.resolve((Path) evento.context());
+            if (arquivo.getFileName().toString().endsWith(".tmp")) {
+                continue;
+            }
+            if (evento.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(arquivo, LinkOption.NOFOLLOW_LINKS)) {
+                // Arquivos criados antes do registro do novo diretório não geram eventos
+                try {
+                    registrarArvore(arquivo, alteracoes);
+                } catch (IOException e) {
+                    Registro.erro("Erro ao monitorar o diretório {}: {}", arquivo, e.getMessage());
+                    recarregar.add(diretorioCatalogo(diretorio));
+                }
+                continue;
+            }
+            alteracoes.remove(arquivo);
+            alteracoes.put(arquivo, evento.kind());
+        }
+        if (!chave.reset()) {
+            diretoriosMonitorados.remove(chave);
+        }
+    }
+
+    /**
+     * Repassa a alteração de um arquivo aos ouvintes, exceto ao que fez a própria gravação.
+     */
+    private void despachar(Path arquivo, WatchEvent.Kind<?> tipo, Set<String> recarregados) {
+        String diretorio = diretorioCatalogo(arquivo.getParent());
+        if (recarregados.contains(diretorio)) {
+            return;
+        }
+        String nome = arquivo.getFileName().toString();
+        if (tipo == StandardWatchEventKinds.ENTRY_DELETE && !Files.exists(arquivo)) {
+            synchronized (gravacoesProprias) {
+                gravacoesProprias.remove(arquivo);
+            }
+            notificar(ouvinte -> ouvinte.removido(diretorio, nome), null);
+            return;
+        }
+
+        Ouvinte origem = null;
+        GravacaoPropria gravacao;
+        synchronized (gravacoesProprias) {
+            gravacao = gravacoesProprias.get(arquivo);
+        }
+        if (gravacao != null && gravacao.identificacao.equals(identificar(arquivo))) {
+            origem = gravacao.origem.get();
+        }
+        notificar(ouvinte -> ouvinte.alterado(diretorio, nome), origem);
+    }
+
+    private void notificar(Consumer<Ouvinte> acao, Ouvinte ignorado) {
+        if (fechado) {
+            return;
+        }
+        List<Ouvinte> atuais;
+        synchronized (ouvintes) {
+            atuais = new ArrayList<>(ouvintes);
+        }
+        for (Ouvinte ouvinte : atuais) {
+            if (ouvinte == ignorado) {
+                continue;
+            }
+            try {
+                acao.accept(ouvinte);
+            } catch (RuntimeException e) {
+                Registro.erro("Erro ao aplicar alteração do catálogo: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Registra um diretório e todos os seus subdiretórios no {@link WatchService}. Arquivos que
+     * desaparecem durante a varredura, como os temporários, são ignorados.
+     *
+     * @param raiz o diretório a ser registrado
+     * @param existentes se não for nulo, recebe os arquivos já existentes na árvore como criações
+     */
+    private void registrarArvore(Path raiz, Map<Path, WatchEvent.Kind<?>> existentes) throws IOException {
+        Files.walkFileTree(raiz, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path diretorio, BasicFileAttributes atributos) throws IOException {
+                WatchKey chave = diretorio.register(servico, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                diretoriosMonitorados.put(chave, diretorio);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) {
+                if (existentes != null && atributos.isRegularFile() && !arquivo.getFileName().toString().endsWith(".tmp")) {
+                    existentes.put(arquivo, StandardWatchEventKinds.ENTRY_CREATE);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path arquivo, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Retorna o diretório do catálogo ({@code Eventos} ou {@code Usuarios}) que contém o caminho informado.
+     */
+    private String diretorioCatalogo(Path caminho) {
+        Path relativo = diretorioBase.relativize(caminho);
+        return relativo.getNameCount() == 0 ? "" : relativo.getName(0).toString();
+    }
+
+    /**
+     * Identifica a versão atual de um arquivo pelo inode, tamanho e data de modificação.
+     *
+     * @return a identificação ou {@code null} se o arquivo não existir
+     */
+    private static Object identificar(Path arquivo) {
+        try {
+            BasicFileAttributes atributos = Files.readAttributes(arquivo, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            return List.of(Objects.toString(atributos.fileKey()), atributos.size(), atributos.lastModifiedTime());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gravação feita por um ouvinte, identificada pela versão do arquivo resultante.
+     */
+    private static final class GravacaoPropria {
+        private final WeakReference<Ouvinte> origem;
+        private final Object identificacao;
+
+        private GravacaoPropria(Ouvinte origem, Object identificacao) {
+            this.origem = new WeakReference<>(origem);
+            this.identificacao = identificacao;
+        }
+    }
+}
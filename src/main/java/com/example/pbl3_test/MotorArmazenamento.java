@@ -0,0 +1,319 @@
+package com.example.pbl3_test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Interface que define as operações de persistência de usuários e eventos usadas pelo {@link Armazenamento}.
+ *
+ * <p>
+ * Cada diretório de dados usa um único motor, definido no arquivo {@value #ARQUIVO_CONFIGURACAO}
+ * pela propriedade {@code motor}. Quando o arquivo não existe, é usado o {@link MotorArquivos}, que
+ * grava um arquivo por entidade. O {@link MotorMemoria} mantém tudo apenas em memória, e o
+ * {@link MotorSql} usa um banco SQL embutido, acessado por JDBC, cujo endereço é definido pela
+ * propriedade {@code sql.url}. No {@link MotorArquivos}, a propriedade {@code arquivo.idadeDias} ativa o
+ * arquivamento diário dos eventos mais antigos que essa quantidade de dias. Todos os motores devem
+ * ter o mesmo comportamento, conferido pelos testes de conformidade que executam os mesmos casos em cada um.
+ * </p>
+ *
+ * <p>
+ * Relatórios que percorrem todos os dados usam a {@link VisaoLeitura} de {@link #abrirVisao()}, que
+ * não trava as entidades enquanto é percorrida.
+ * </p>
+ */
+public interface MotorArmazenamento {
+
+    /**
+     * Nome do arquivo, dentro do diretório de dados, que define o motor utilizado.
+     */
+    String ARQUIVO_CONFIGURACAO = "armazenamento.properties";
+
+    /**
+     * Retorna o nome do motor, usado no arquivo de configuração.
+     *
+     * @return o nome do motor
+     */
+    String getNome();
+
+    /**
+     * Prepara o motor para receber dados, criando diretórios ou tabelas que ainda não existam.
+     *
+     * @return {@code true} se o motor estiver pronto
+     */
+    boolean verificarExistencia();
+
+    /**
+     * Armazena os dados de perfil de um usuário. Se o usuário ainda não tiver histórico, ele é criado
+     * com os ingressos e recibos atuais.
+     *
+     * @param usuario o usuário a ser armazenado
+     */
+    void armazenarUsuario(Usuario usuario);
+
+    /**
+     * Lê um usuário, com seus ingressos e recibos.
+     *
+     * @param cpf o CPF do usuário
+     * @return o usuário ou {@code null} se não existir ou não puder ser lido
+     */
+    Usuario lerUsuario(String cpf);
+
+    /**
+     * Registra no histórico do usuário os ingressos e recibos de uma compra. Os objetos já devem ter
+     * sido adicionados ao usuário.
+     *
+     * @param usuario o usuário que realizou a compra
+     * @param ingressos os ingressos comprados
+     * @param recibos os recibos da compra
+     * @throws IllegalStateException se a compra não puder ser gravada
+     */
+    void registrarCompra(Usuario usuario, List<Ingresso> ingressos, List<Recibo> recibos);
+
+    /**
+     * Registra no histórico do usuário o cancelamento de um ingresso. O ingresso já deve ter sido
+     * removido do usuário.
+     *
+     * @param usuario o usuário que cancelou a compra
+     * @param ingresso o ingresso cancelado
+     * @throws IllegalStateException se o cancelamento não puder ser gravado
+     */
+    void registrarCancelamento(Usuario usuario, Ingresso ingresso);
+
+    /**
+     * Verifica se existe um usuário cadastrado com o CPF informado.
+     *
+     * @param cpf o CPF do usuário
+     * @return {@code true} se o usuário existir
+     */
+    boolean existeUsuario(String cpf);
+
+    /**
+     * Lê apenas os campos de perfil informados de um usuário. Os nomes dos campos são os mesmos do
+     * documento JSON ({@code username}, {@code password}, {@code fullName}, {@code cpf}, {@code email}, {@code isAdmin}).
+     *
+     * @param cpf o CPF do usuário
+     * @param campos os nomes dos campos
+     * @return um mapa com os valores encontrados, em formato de texto, ou {@code null} se o usuário não existir
+     */
+    Map<String, String> lerCamposUsuario(String cpf, String... campos);
+
+    /**
+     * Localiza o CPF do usuário com o nome de usuário informado, sem diferenciar maiúsculas de
+     * minúsculas, por meio de um índice, sem percorrer os usuários armazenados.
+     *
+     * @param login o nome de usuário
+     * @return o CPF do usuário ou {@code null} se nenhum usuário tiver esse nome de usuário
+     */
+    String buscarCpfPorLogin(String login);
+
+    /**
+     * Localiza o CPF do usuário com o e-mail informado, sem diferenciar maiúsculas de minúsculas,
+     * por meio de um índice, sem percorrer os usuários armazenados.
+     *
+     * @param email o e-mail
+     * @return o CPF do usuário ou {@code null} se nenhum usuário tiver esse e-mail
+     */
+    String buscarCpfPorEmail(String email);
+
+    /**
+     * Verifica se existe um evento com o ID informado.
+     *
+     * @param eventoId o ID do evento
+     * @return {@code true} se o evento existir
+     */
+    boolean existeEvento(String eventoId);
+
+    /**
+     * Armazena os dados de um evento, inclusive a quantidade de ingressos, que passa a ser a do
+     * evento informado.
+     *
+     * @param evento o evento a ser armazenado
+     */
+    void armazenarEvento(Evento evento);
+
+    /**
+     * Armazena os dados de um evento mantendo a quantidade de ingressos já armazenada, que pode ter
+     * sido alterada por reservas feitas depois que o evento foi lido. Usado em alterações que não
+     * mexem nos ingressos, como as avaliações. Um evento ainda não armazenado é gravado com a
+     * quantidade informada.
+     *
+     * @param evento o evento a ser armazenado, que recebe a quantidade atual de ingressos
+     */
+    void armazenarDetalhesEvento(Evento evento);
+
+    /**
+     * Lê um evento, com a quantidade atual de ingressos.
+     *
+     * @param eventoId o ID do evento
+     * @return o evento ou {@code null} se não existir ou não puder ser lido
+     */
+    Evento lerEvento(String eventoId);
+
+    /**
+     * Soma {@code delta} à quantidade de ingressos de um evento.
+     *
+     * @param eventoId o ID do evento
+     * @param delta o valor a ser somado (negativo para compras, positivo para cancelamentos)
+     * @return a nova quantidade de ingressos
+     * @throws IllegalArgumentException se o evento não for encontrado
+     */
+    int ajustarIngressos(String eventoId, int delta);
+
+    /**
+     * Retira {@code quantidade} ingressos de um evento, apenas se houver ingressos suficientes. A
+     * verificação e a retirada são atômicas no motor: reservas simultâneas do mesmo evento nunca
+     * deixam a quantidade negativa, mesmo sem as {@link TravasEntidades}.
+     *
+     * @param eventoId o ID do evento
+     * @param quantidade a quantidade de ingressos, maior que zero
+     * @return a quantidade restante depois da reserva, ou {@code -1} se não houver ingressos
+     *         suficientes, caso em que nada é alterado
+     * @throws IllegalArgumentException se o evento não for encontrado
+     */
+    int reservarIngressos(String eventoId, int quantidade);
+
+    /**
+     * Lista, em ordem de data, os próximos eventos a partir do dia seguinte.
+     *
+     * @param quantidade a quantidade máxima de eventos
+     * @return uma lista com os IDs dos eventos
+     */
+    List<String> listarProximosEventos(int quantidade);
+
+    /**
+     * Lista, em ordem de data e de ID, uma página dos eventos entre as datas informadas (inclusive).
+     *
+     * @param inicio a data inicial
+     * @param fim a data final
+     * @param pagina o número da página, começando em zero
+     * @param tamanhoPagina a quantidade máxima de eventos por página
+     * @return uma lista com os IDs dos eventos da página
+     * @throws IllegalArgumentException se a página ou o tamanho da página forem inválidos
+     */
+    List<String> listarEventosEntre(Date inicio, Date fim, int pagina, int tamanhoPagina);
+
+    /**
+     * Armazena um lote de usuários novos, como os de uma importação. A implementação padrão armazena
+     * um usuário por vez; os motores podem agrupar as gravações do lote.
+     *
+     * @param usuarios os usuários, que ainda não podem existir no armazenamento
+     * @throws IOException se o lote não puder ser gravado
+     */
+    default void armazenarLoteUsuarios(List<Usuario> usuarios) throws IOException {
+        for (Usuario usuario : usuarios) {
+            armazenarUsuario(usuario);
+        }
+    }
+
+    /**
+     * Armazena um lote de eventos novos, como os de uma importação. A implementação padrão armazena
+     * um evento por vez; os motores podem agrupar as gravações do lote.
+     *
+     * @param eventos os eventos, que ainda não podem existir no armazenamento
+     * @throws IOException se o lote não puder ser gravado
+     */
+    default void armazenarLoteEventos(List<Evento> eventos) throws IOException {
+        for (Evento evento : eventos) {
+            armazenarEvento(evento);
+        }
+    }
+
+    /**
+     * Lê os recibos do usuário que foram movidos para uma camada de arquivamento e, por isso, não
+     * estão mais em {@link Usuario#getRecibos()}.
+     *
+     * @param cpf o CPF do usuário
+     * @return os recibos arquivados; uma lista vazia nos motores sem arquivamento
+     */
+    default List<Recibo> lerRecibosArquivados(String cpf) {
+        return new ArrayList<>();
+    }
+
+    /**
+     * Lê todos os eventos movidos para uma camada de arquivamento, para uso em relatórios.
+     *
+     * @return os eventos arquivados; uma lista vazia nos motores sem arquivamento
+     */
+    default List<Evento> lerEventosArquivados() {
+        return new ArrayList<>();
+    }
+
+    /**
+     * Abre uma visão somente leitura de todos os eventos e usuários, como estão agora, para
+     * relatórios. A visão não é afetada pelas gravações posteriores e deve ser fechada depois do uso.
+     * O {@link Armazenamento} trava todas as entidades para leitura durante a captura, para que ela
+     * não inclua gravações pela metade, exceto no {@link MotorArquivos}, que só as trava no fim da
+     * captura, para conferir as entidades gravadas enquanto os arquivos eram ligados.
+     *
+     * @return a visão capturada
+     * @throws IOException se a visão não puder ser capturada
+     */
+    VisaoLeitura abrirVisao() throws IOException;
+
+    /**
+     * Libera os recursos do motor, como conexões com o banco. O motor não deve ser usado depois disso.
+     */
+    default void fechar() {
+    }
+
+    /**
+     * Cria o motor com o nome informado para o diretório de dados.
+     *
+     * @param nome o nome do motor ({@code arquivos}, {@code memoria} ou {@code sql})
+     * @param diretorioBase o diretório de dados
+     * @param configuracao as demais propriedades do arquivo de configuração
+     * @param capacidadeCache o número máximo de entidades de cada tipo mantidas no cache do {@link MotorArquivos}
+     * @param tempoVidaCacheMillis o tempo de vida das entidades no cache do {@link MotorArquivos}
+     * @return o motor criado
+     * @throws IllegalArgumentException se o nome não corresponder a nenhum motor
+     */
+    static MotorArmazenamento porNome(String nome, File diretorioBase, Properties configuracao,
+                                      int capacidadeCache, long tempoVidaCacheMillis) {
+        if (MotorArquivos.NOME.equalsIgnoreCase(nome)) {
+            MotorArquivos motor = new MotorArquivos(diretorioBase, capacidadeCache, tempoVidaCacheMillis);
+            String idadeArquivamento = configuracao.getProperty("arquivo.idadeDias");
+            if (idadeArquivamento != null) {
+                motor.iniciarArquivamento(Integer.parseInt(idadeArquivamento.trim()));
+            }
+            return motor;
+        }
+        if (MotorMemoria.NOME.equalsIgnoreCase(nome)) {
+            return new MotorMemoria();
+        }
+        if (MotorSql.NOME.equalsIgnoreCase(nome)) {
+            return new MotorSql(configuracao.getProperty("sql.url", MotorSql.urlPadrao(diretorioBase)),
+                    configuracao.getProperty("sql.usuario", ""), configuracao.getProperty("sql.senha", ""),
+                    CodecEntidades.doDiretorio(diretorioBase));
+        }
+        throw new IllegalArgumentException("Erro: Motor de armazenamento desconhecido: " + nome);
+    }
+
+    /**
+     * Cria o motor configurado para o diretório de dados informado.
+     *
+     * @param diretorioBase o diretório de dados
+     * @param capacidadeCache o número máximo de entidades de cada tipo mantidas no cache do {@link MotorArquivos}
+     * @param tempoVidaCacheMillis o tempo de vida das entidades no cache do {@link MotorArquivos}
+     * @return o motor do diretório, ou o {@link MotorArquivos} se nenhum estiver configurado
+     */
+    static MotorArmazenamento doDiretorio(File diretorioBase, int capacidadeCache, long tempoVidaCacheMillis) {
+        Properties propriedades = new Properties();
+        File configuracao = new File(diretorioBase, ARQUIVO_CONFIGURACAO);
+        if (configuracao.isFile()) {
+            try (InputStream entrada = new FileInputStream(configuracao)) {
+                propriedades.load(entrada);
+            } catch (IOException e) {
+                Registro.erro("Erro ao ler a configuração do armazenamento: {}", e.getMessage());
+            }
+        }
+        return porNome(propriedades.getProperty("motor", MotorArquivos.NOME), diretorioBase, propriedades,
+                capacidadeCache, tempoVidaCacheMillis);
+    }
+}
@@ -0,0 +1,1390 @@
+package com.example.pbl3_test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Motor de armazenamento padrão, que grava um arquivo por entidade no diretório de dados. O formato
+ * dos arquivos é definido pelo {@link CodecEntidades} configurado no diretório (JSON por padrão).
+ *
+ * <p>
+ * As leituras passam por um cache em memória ({@link CacheEntidades}), e as escritas
+ * atualizam o cache após gravar o arquivo, de modo que leituras repetidas da mesma
+ * entidade não precisam reabrir e reprocessar o documento. O cache guarda cópias próprias das
+ * entidades e cada leitura retorna uma nova cópia, de modo que as alterações feitas por quem leu
+ * só chegam ao cache quando a entidade é gravada.
+ * </p>
+ *
+ * <p>
+ * As gravações são registradas no {@link LogEscrita} antes de substituir os arquivos, o que
+ * permite recuperar gravações interrompidas e sincronizar várias gravações de uma só vez.
+ * A quantidade de ingressos dos eventos é mantida no {@link InventarioMapeado}, que evita
+ * regravar o documento do evento a cada compra.
+ * </p>
+ *
+ * <p>
+ * As listagens de eventos usam o {@link IndiceEventos}, ordenado por data e atualizado a cada
+ * gravação de evento, em vez de percorrer o diretório de eventos. Da mesma forma, o {@link IndiceUsuarios}
+ * localiza os usuários pelo nome de usuário e pelo e-mail. O {@link MonitorCatalogo} repassa
+ * as alterações feitas por outras instâncias e processos no mesmo diretório de dados, que atualizam
+ * os caches e os índices de forma incremental.
+ * </p>
+ *
+ * <p>
+ * Os documentos podem ser reunidos em um {@link SnapshotCompactado} por {@link #compactarDocumentos()}.
+ * Os arquivos soltos gravados depois da compactação têm precedência sobre o snapshot, que só é
+ * aberto quando um documento não é encontrado entre os arquivos soltos.
+ * </p>
+ *
+ * <p>
+ * Os eventos antigos e os recibos das suas compras podem ser movidos para o {@link ArquivoFrio} por
+ * {@link #arquivarEventosAntigos(int)}, o que mantém pequenos os históricos lidos a cada acesso de um
+ * usuário. Eventos arquivados continuam sendo encontrados por {@link #lerEvento(String)}, e os recibos
+ * arquivados só são lidos por {@link #lerRecibosArquivados(String)}.
+ * </p>
+ *
+ * <p>
+ * A primeira instância criada no processo para um diretório executa o {@link VerificadorIntegridade},
+ * que recupera o log de escrita, move os documentos corrompidos para a quarentena e reconstrói o
+ * índice de eventos antes que o diretório seja usado.
+ * </p>
+ *
+ * <p>
+ * As {@link TravasEntidades} do diretório são usadas pelo {@link Armazenamento} em todas as
+ * operações e, dentro do motor, pela reconciliação do inventário e pelo arquivamento, que alteram
+ * eventos e históricos em segundo plano. Por isso o {@link HistoricoUsuario} não serializa as
+ * gravações de usuários diferentes.
+ * </p>
+ *
+ * <p>
+ * As visões de leitura ({@link VisaoArquivos}) aproveitam o fato de os documentos nunca serem
+ * alterados no lugar: a captura apenas liga os arquivos atuais, sem copiar o seu conteúdo.
+ * </p>
+ */
+public final class MotorArquivos implements MotorArmazenamento {
+
+    /**
+     * Nome do motor no arquivo de configuração.
+     */
+    public static final String NOME = "arquivos";
+
+    private final String baseDir;
+    private final CacheEntidades<Usuario> cacheUsuarios;
+    private final CacheEntidades<Evento> cacheEventos;
+    private final InventarioMapeado inventario;
+    private final CodecEntidades codec;
+    private final LayoutUsuarios layoutUsuarios;
+    private final HistoricoUsuario historico;
+    private final IndiceEventos indiceEventos;
+    private final IndiceUsuarios indiceUsuarios;
+    private final OuvinteCatalogo ouvinteCatalogo = new OuvinteCatalogo();
+    private final TravasEntidades.Ouvinte ouvinteTravas = this::descartarFaixa;
+    private final MonitorCatalogo monitorCatalogo;
+    private final SnapshotCompactado snapshot;
+    private final ArquivoFrio arquivoFrio;
+    private final TravasEntidades travas;
+    private ScheduledExecutorService arquivador;
+
+    /**
+     * Construtor da classe {@code MotorArquivos}.
+     *
+     * @param diretorioBase o diretório de dados
+     * @param capacidadeCache o número máximo de entidades de cada tipo mantidas em memória
+     * @param tempoVidaCacheMillis o tempo, em milissegundos, que uma entidade permanece válida no cache
+     */
+    public MotorArquivos(File diretorioBase, int capacidadeCache, long tempoVidaCacheMillis) {
+        this.cacheUsuarios = new CacheEntidades<>(capacidadeCache, tempoVidaCacheMillis);
+        this.cacheEventos = new CacheEntidades<>(capacidadeCache, tempoVidaCacheMillis);
+        this.baseDir = diretorioBase.getPath();
+        this.codec = CodecEntidades.doDiretorio(new File(this.baseDir));
+        this.layoutUsuarios = LayoutUsuarios.doDiretorio(new File(this.baseDir));
+        this.historico = new HistoricoUsuario(layoutUsuarios);
+        // As travas são abertas antes da verificação, que as usa para não reparar arquivos em uso por outros processos
+        this.travas = abrirTravas();
+        // Recupera o diretório antes de abrir o inventário e o índice, que dependem dos documentos válidos
+        VerificadorIntegridade.verificarNaInicializacao(Paths.get(baseDir), codec, travas);
+        VisaoArquivos.removerAbandonadas(Paths.get(baseDir));
+        this.snapshot = SnapshotCompactado.abrir(Paths.get(baseDir));
+        this.arquivoFrio = ArquivoFrio.abrir(Paths.get(baseDir));
+        this.inventario = abrirInventario();
+        this.indiceEventos = abrirIndiceEventos();
+        this.indiceUsuarios = abrirIndiceUsuarios();
+        this.monitorCatalogo = abrirMonitorCatalogo();
+        // A reconciliação usa os índices e o monitor, por isso só começa com o motor construído
+        if (inventario != null) {
+            inventario.iniciarReconciliacao(this::reconciliarEvento);
+        }
+    }
+
+    /**
+     * Abre as travas por entidade do diretório de dados, compartilhadas com os outros processos
+     * pelo arquivo de travas.
+     *
+     * @return as travas do diretório ou, se o arquivo não puder ser aberto, travas válidas apenas neste processo
+     */
+    private TravasEntidades abrirTravas() {
+        try {
+            TravasEntidades abertas = TravasEntidades.abrir(Paths.get(baseDir));
+            abertas.adicionarOuvinte(ouvinteTravas);
+            return abertas;
+        } catch (IOException | RuntimeException e) {
+            Registro.erro("Erro ao abrir o arquivo de travas: {}", e.getMessage());
+            return TravasEntidades.emMemoria();
+        }
+    }
+
+    /**
+     * Descarta do cache os usuários e eventos de uma faixa de travas alterada por outro processo, que
+     * podem estar desatualizados. Chamado antes que a operação que obteve a trava leia a entidade.
+     *
+     * @param faixa o índice da faixa
+     */
+    private void descartarFaixa(int faixa) {
+        cacheUsuarios.invalidarSe(cpf -> TravasEntidades.faixa(TravasEntidades.chaveUsuario(cpf)) == faixa);
+        cacheEventos.invalidarSe(eventoId -> TravasEntidades.faixa(TravasEntidades.chaveEvento(eventoId)) == faixa);
+    }
+
+    /**
+     * Abre o inventário mapeado em memória do diretório de dados. A reconciliação periódica dos
+     * contadores com os documentos dos eventos é iniciada no fim do construtor.
+     *
+     * @return o inventário aberto ou {@code null} se não for possível abri-lo
+     */
+    private InventarioMapeado abrirInventario() {
+        try {
+            return InventarioMapeado.abrir(Paths.get(baseDir));
+        } catch (IOException | RuntimeException e) {
+            Registro.erro("Erro ao abrir o inventário de ingressos: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Abre o índice de eventos do diretório de dados, reconstruindo-o a partir dos arquivos
+     * de eventos se ainda não existir.
+     *
+     * @return o índice aberto ou {@code null} se não for possível abri-lo
+     */
+    private IndiceEventos abrirIndiceEventos() {
+        try {
+            return IndiceEventos.abrir(new File(baseDir), this::listarIdsEventos);
+        } catch (IOException | RuntimeException e) {
+            Registro.erro("Erro ao abrir o índice de eventos: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Abre o índice de usuários por nome de usuário e e-mail, reconstruindo-o a partir dos
+     * documentos dos usuários se ainda não existir.
+     *
+     * @return o índice aberto ou {@code null} se não for possível abri-lo
+     */
+    private IndiceUsuarios abrirIndiceUsuarios() {
+        try {
+            return IndiceUsuarios.abrir(new File(baseDir), this::listarPerfisUsuarios);
+        } catch (IOException | RuntimeException e) {
+            Registro.erro("Erro ao abrir o índice de usuários: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Abre o monitor de alterações do diretório de dados e registra esta instância como ouvinte.
+     *
+     * @return o monitor aberto ou {@code null} se não for possível abri-lo
+     */
+    private MonitorCatalogo abrirMonitorCatalogo() {
+        try {
+            MonitorCatalogo aberto = MonitorCatalogo.abrir(Paths.get(baseDir));
+            aberto.adicionarOuvinte(ouvinteCatalogo);
+            return aberto;
+        } catch (IOException | RuntimeException e) {
+            Registro.erro("Erro ao iniciar o monitor do catálogo: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public String getNome() {
+        return NOME;
+    }
+
+    /**
+     * Verifica e cria os diretórios necessários para armazenamento de dados.
+     *
+     * @return {@code true} se os diretórios foram criados ou já existiam; {@code false} em caso de erro.
+     */
+    @Override
+    public boolean verificarExistencia() {
+        File baseDirFile = new File(this.baseDir);
+        File usuariosDir = new File(this.baseDir + File.separator + "Usuarios");
+        File eventosDir = new File(this.baseDir + File.separator + "Eventos");
+
+        boolean baseCriado = baseDirFile.exists() || baseDirFile.mkdirs();
+        boolean usuariosCriado = usuariosDir.exists() || usuariosDir.mkdirs();
+        boolean eventosCriado = eventosDir.exists() || eventosDir.mkdirs();
+
+        if (baseCriado && usuariosCriado && eventosCriado) {
+            Registro.depuracao("Todos os diretórios estão prontos: {}", this.baseDir);
+            return true;
+        } else {
+            Registro.erro("Falha ao criar os diretórios necessários!");
+            return false;
+        }
+    }
+
+    /**
+     * Armazena os dados de perfil de um usuário em um arquivo, no formato do codec do diretório. A gravação
+     * passa pelo log de escrita e substitui o arquivo de forma atômica. Os ingressos e recibos ficam no
+     * {@link HistoricoUsuario}; se o usuário ainda não tiver um histórico, ele é criado com as listas atuais.
+     * Se o histórico já existir, as listas do usuário informado são ignoradas, e a próxima leitura as
+     * reconstrói a partir do histórico.
+     *
+     * @param usuario o objeto {@code Usuario} a ser armazenado.
+     */
+    @Override
+    public void armazenarUsuario(Usuario usuario) {
+        try {
+            gravarUsuario(usuario);
+        } catch (IOException e) {
+            Registro.erro("Erro ao armazenar os dados do usuário: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Grava o perfil do usuário como {@link #armazenarUsuario(Usuario)}, mas repassa a falha a quem chamou.
+     * Usado quando a gravação faz parte de uma compra ou de um cancelamento, que precisam ser desfeitos se ela falhar.
+     *
+     * @param usuario o usuário a ser gravado
+     * @throws IOException se o perfil ou o histórico não puderem ser gravados
+     */
+    private void gravarUsuario(Usuario usuario) throws IOException {
+        String userCpf = usuario.getCpf().replaceAll("[^a-zA-Z0-9]", "");
+        String caminhoDiretorio = baseDir + File.separator + "Usuarios";
+        criarDiretorioSeNecessario(caminhoDiretorio);
+        arquivoUsuario(userCpf);
+
+        try {
+            File arquivoHistorico = layoutUsuarios.arquivo(userCpf, HistoricoUsuario.EXTENSAO);
+            boolean historicoExistente = historico.existe(userCpf);
+            long offset = historicoExistente
+                    ? arquivoHistorico.length()
+                    : historico.criar(userCpf, usuario.getIngressos(), usuario.getRecibos());
+            usuario.setHistoricoOffset(offset);
+            registrarGravacaoPropria(arquivoHistorico);
+
+            Usuario perfil = new Usuario(usuario.getLogin(), usuario.getSenha(), usuario.getNome(),
+                                         usuario.getCpf(), usuario.getEmail(), usuario.isAdmin());
+            perfil.setHistoricoOffset(offset);
+            gravarDocumento(layoutUsuarios.caminhoRelativo(userCpf, codec.getExtensao()), codec.codificarUsuario(perfil));
+            if (historicoExistente) {
+                // As listas de quem gravou o perfil podem não ter as compras feitas por outra sessão
+                cacheUsuarios.invalidar(userCpf);
+            } else {
+                cacheUsuarios.colocar(userCpf, usuario.copiar());
+            }
+            indexarUsuario(userCpf, usuario.getLogin(), usuario.getEmail());
+            Registro.depuracao("Dados do usuário armazenados com sucesso!");
+        } catch (IOException e) {
+            cacheUsuarios.invalidar(userCpf);
+            throw e;
+        }
+    }
+
+    /**
+     * Lê os dados de um usuário a partir do seu arquivo ou do cache.
+     *
+     * @param cpf o CPF do usuário para buscar os dados.
+     * @return uma cópia do usuário, que pode ser alterada por quem a leu, ou {@code null} em caso de erro.
+     */
+    @Override
+    public Usuario lerUsuario(String cpf) {
+        Usuario emCache = cacheUsuarios.obter(cpf);
+        if (emCache != null) {
+            return emCache.copiar();
+        }
+
+        File arquivo = arquivoUsuario(cpf);
+
+        try (InputStream entrada = abrirDocumento(arquivo, layoutUsuarios.caminhoRelativo(cpf, codec.getExtensao()))) {
+            if (entrada == null) {
+                Registro.info("Arquivo não encontrado: {}", arquivo.getPath());
+                return null;
+            }
+            Usuario usuario = codec.decodificarUsuario(entrada);
+            carregarHistorico(cpf, usuario);
+            cacheUsuarios.colocar(cpf, usuario);
+            Registro.depuracao("Dados do usuário lidos com sucesso!");
+            return usuario.copiar();
+        } catch (IOException e) {
+            Registro.erro("Erro ao ler os dados do usuário: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Registra no histórico do usuário os ingressos e recibos de uma compra, acrescentando-os ao
+     * arquivo de histórico sem regravar o perfil. Os objetos já devem ter sido adicionados ao usuário.
+     *
+     * @param usuario o usuário que realizou a compra
+     * @param ingressos os ingressos comprados
+     * @param recibos os recibos da compra
+     * @throws IllegalStateException se o histórico não puder ser gravado
+     */
+    @Override
+    public void registrarCompra(Usuario usuario, List<Ingresso> ingressos, List<Recibo> recibos) {
+        String userCpf = usuario.getCpf().replaceAll("[^a-zA-Z0-9]", "");
+        arquivoUsuario(userCpf);
+        try {
+            if (!historico.existe(userCpf)) {
+                // Sem histórico, a compra é gravada com o perfil, que cria o histórico com as listas atuais
+                gravarUsuario(usuario);
+                return;
+            }
+            usuario.setHistoricoOffset(historico.registrarCompra(userCpf, ingressos, recibos));
+            registrarGravacaoPropria(layoutUsuarios.arquivo(userCpf, HistoricoUsuario.EXTENSAO));
+            atualizarEmCache(userCpf, usuario.getHistoricoOffset(), emCache -> {
+                for (Ingresso ingresso : ingressos) {
+                    emCache.adicionarIngresso(ingresso.copiar());
+                }
+                for (Recibo recibo : recibos) {
+                    emCache.adicionarRecibo(recibo.copiar(recibo.getIngresso() == null ? null : recibo.getIngresso().copiar()));
+                }
+            });
+            Registro.depuracao("Compra registrada no histórico do usuário.");
+        } catch (IOException e) {
+            cacheUsuarios.invalidar(userCpf);
+            throw new IllegalStateException("Erro ao registrar a compra no histórico: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Registra no histórico do usuário o cancelamento de um ingresso. O ingresso já deve ter sido
+     * removido do usuário.
+     *
+     * @param usuario o usuário que cancelou a compra
+     * @param ingresso o ingresso cancelado
+     * @throws IllegalStateException se o histórico não puder ser gravado
+     */
+    @Override
+    public void registrarCancelamento(Usuario usuario, Ingresso ingresso) {
+        String userCpf = usuario.getCpf().replaceAll("[^a-zA-Z0-9]", "");
+        arquivoUsuario(userCpf);
+        try {
+            if (!historico.existe(userCpf)) {
+                // Sem histórico, o cancelamento é gravado com o perfil, que cria o histórico sem o ingresso
+                gravarUsuario(usuario);
+                return;
+            }
+            usuario.setHistoricoOffset(historico.registrarCancelamento(userCpf, ingresso.getId()));
+            registrarGravacaoPropria(layoutUsuarios.arquivo(userCpf, HistoricoUsuario.EXTENSAO));
+            atualizarEmCache(userCpf, usuario.getHistoricoOffset(),
+                    emCache -> emCache.getIngressos().removeIf(atual -> atual.getId().equals(ingresso.getId())));
+        } catch (IOException e) {
+            cacheUsuarios.invalidar(userCpf);
+            throw new IllegalStateException("Erro ao registrar o cancelamento no histórico: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Aplica ao usuário em cache um registro acrescentado ao histórico, como a releitura do histórico
+     * faria. O usuário informado pelo chamador pode não ter as compras feitas em outra leitura, por
+     * isso não substitui o que está em cache. A alteração é feita em uma cópia, que substitui a
+     * entrada, para não afetar quem estiver copiando a entrada atual; quem grava o histórico tem a
+     * trava de escrita do usuário, então as alterações do mesmo usuário não concorrem entre si.
+     *
+     * @param cpf o CPF do usuário
+     * @param offset o novo tamanho do histórico
+     * @param alteracao a alteração das listas de ingressos e recibos
+     */
+    private void atualizarEmCache(String cpf, long offset, Consumer<Usuario> alteracao) {
+        Usuario emCache = cacheUsuarios.obter(cpf);
+        if (emCache == null) {
+            return;
+        }
+        Usuario atualizado = emCache.copiar();
+        alteracao.accept(atualizado);
+        atualizado.setHistoricoOffset(offset);
+        cacheUsuarios.colocar(cpf, atualizado);
+    }
+
+    /**
+     * Substitui os ingressos e recibos do usuário pelos registrados no seu histórico, quando existir.
+     * Documentos antigos, que ainda guardam as listas completas, são mantidos como estão até a próxima gravação.
+     *
+     * @param cpf o CPF do usuário
+     * @param usuario o usuário lido do documento de perfil
+     * @throws IOException se o histórico não puder ser lido
+     */
+    private void carregarHistorico(String cpf, Usuario usuario) throws IOException {
+        if (!historico.existe(cpf)) {
+            return;
+        }
+        long valido = historico.carregar(cpf, usuario);
+        if (valido < usuario.getHistoricoOffset()) {
+            Registro.aviso("Histórico do usuário {} menor que o registrado no perfil: {} de {} byte(s).",
+                           cpf, valido, usuario.getHistoricoOffset());
+        }
+        usuario.setHistoricoOffset(valido);
+    }
+
+    /**
+     * Verifica se existe um usuário cadastrado com o CPF informado, sem ler o seu documento.
+     *
+     * @param cpf o CPF do usuário
+     * @return {@code true} se o usuário existir
+     */
+    @Override
+    public boolean existeUsuario(String cpf) {
+        if (cacheUsuarios.obter(cpf) != null) {
+            return true;
+        }
+        return arquivoUsuario(cpf).isFile() || snapshot.contem(layoutUsuarios.caminhoRelativo(cpf, codec.getExtensao()));
+    }
+
+    /**
+     * Lê apenas os campos informados do documento de um usuário. O codec percorre somente o
+     * necessário para encontrar os campos, sem construir os ingressos e recibos.
+     *
+     * @param cpf o CPF do usuário
+     * @param campos os nomes dos campos no documento (por exemplo, {@code "password"})
+     * @return um mapa com os valores encontrados, em formato de texto, ou {@code null} se o usuário não existir
+     */
+    @Override
+    public Map<String, String> lerCamposUsuario(String cpf, String... campos) {
+        Set<String> procurados = new HashSet<>(Arrays.asList(campos));
+
+        Usuario emCache = cacheUsuarios.obter(cpf);
+        if (emCache != null) {
+            Map<String, String> valores = new HashMap<>();
+            for (String campo : procurados) {
+                String valor = valorCampo(emCache, campo);
+                if (valor != null) {
+                    valores.put(campo, valor);
+                }
+            }
+            return valores;
+        }
+
+        File arquivo = arquivoUsuario(cpf);
+        try (InputStream entrada = abrirDocumento(arquivo, layoutUsuarios.caminhoRelativo(cpf, codec.getExtensao()))) {
+            if (entrada == null) {
+                return null;
+            }
+            return codec.lerCamposUsuario(entrada, procurados);
+        } catch (IOException e) {
+            Registro.erro("Erro ao ler os campos do usuário: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Retorna o valor de um campo do documento a partir de um usuário já carregado.
+     */
+    static String valorCampo(Usuario usuario, String campo) {
+        switch (campo) {
+            case "username":
+                return usuario.getLogin();
+            case "password":
+                return usuario.getSenha();
+            case "fullName":
+                return usuario.getNome();
+            case "cpf":
+                return usuario.getCpf();
+            case "email":
+                return usuario.getEmail();
+            case "isAdmin":
+                return String.valueOf(usuario.isAdmin());
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Localiza o CPF do usuário com o nome de usuário informado no {@link IndiceUsuarios}.
+     *
+     * @param login o nome de usuário
+     * @return o CPF do usuário ou {@code null} se nenhum usuário tiver esse nome de usuário
+     */
+    @Override
+    public String buscarCpfPorLogin(String login) {
+        return indiceUsuarios != null ? indiceUsuarios.buscarPorLogin(login) : null;
+    }
+
+    /**
+     * Localiza o CPF do usuário com o e-mail informado no {@link IndiceUsuarios}.
+     *
+     * @param email o e-mail
+     * @return o CPF do usuário ou {@code null} se nenhum usuário tiver esse e-mail
+     */
+    @Override
+    public String buscarCpfPorEmail(String email) {
+        return indiceUsuarios != null ? indiceUsuarios.buscarPorEmail(email) : null;
+    }
+
+    /**
+     * Atualiza o nome de usuário e o e-mail de um usuário no índice de usuários.
+     */
+    private void indexarUsuario(String cpf, String login, String email) {
+        if (indiceUsuarios != null) {
+            indiceUsuarios.registrar(cpf, login, email);
+        }
+    }
+
+    /**
+     * Armazena os dados de um evento em um arquivo, no formato do codec do diretório. A gravação
+     * passa pelo log de escrita e substitui o arquivo de forma atômica. A quantidade de ingressos do
+     * evento substitui a do contador no inventário mapeado em memória.
+     *
+     * @param evento o objeto {@code Evento} a ser armazenado.
+     */
+    @Override
+    public void armazenarEvento(Evento evento) {
+        definirQuantidade(evento);
+        gravarEvento(evento);
+    }
+
+    /**
+     * Armazena os dados de um evento com a quantidade de ingressos do inventário mapeado em memória,
+     * sem alterar o contador.
+     *
+     * @param evento o objeto {@code Evento} a ser armazenado, que recebe a quantidade do inventário
+     */
+    @Override
+    public void armazenarDetalhesEvento(Evento evento) {
+        sincronizarQuantidade(evento);
+        gravarEvento(evento);
+    }
+
+    /**
+     * Grava o documento do evento e atualiza o cache e o índice de eventos.
+     *
+     * @param evento o evento, já com a quantidade de ingressos a ser gravada
+     */
+    private void gravarEvento(Evento evento) {
+        if (!verificarExistencia()) {
+            Registro.erro("Erro: Não foi possível preparar os diretórios para salvar o evento.");
+            return;
+        }
+
+        String eventoId = evento.getID();
+        try {
+            gravarDocumento(caminhoEvento(eventoId), codec.codificarEvento(evento));
+            cacheEventos.colocar(eventoId, evento.copiar());
+            indexarEvento(evento);
+            Registro.depuracao("Dados do evento armazenados com sucesso!");
+        } catch (IOException e) {
+            cacheEventos.invalidar(eventoId);
+            Registro.erro("Erro ao armazenar os dados do evento: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Verifica se existe um evento com o ID informado, solto, no snapshot ou no arquivo, sem ler o seu documento.
+     *
+     * @param eventoId o ID do evento
+     * @return {@code true} se o evento existir
+     */
+    @Override
+    public boolean existeEvento(String eventoId) {
+        if (cacheEventos.obter(eventoId) != null) {
+            return true;
+        }
+        return arquivoEvento(eventoId).isFile() || snapshot.contem(caminhoEvento(eventoId))
+               || arquivoFrio.contemEvento(eventoId);
+    }
+
+    /**
+     * Armazena um lote de usuários novos. Os documentos de perfil são gravados juntos no log de
+     * escrita, que os sincroniza em poucos lotes. Usuários sem ingressos nem recibos não recebem um
+     * histórico, que é criado na primeira compra. Os usuários do lote não são colocados no cache.
+     *
+     * @param usuarios os usuários, que ainda não podem existir no armazenamento
+     * @throws IOException se algum documento ou histórico não puder ser gravado
+     */
+    @Override
+    public void armazenarLoteUsuarios(List<Usuario> usuarios) throws IOException {
+        criarDiretorioSeNecessario(baseDir + File.separator + "Usuarios");
+        Map<String, byte[]> documentos = new LinkedHashMap<>();
+        for (Usuario usuario : usuarios) {
+            String userCpf = usuario.getCpf().replaceAll("[^a-zA-Z0-9]", "");
+            long offset = 0;
+            if (!usuario.getIngressos().isEmpty() || !usuario.getRecibos().isEmpty()) {
+                offset = historico.criar(userCpf, usuario.getIngressos(), usuario.getRecibos());
+                registrarGravacaoPropria(layoutUsuarios.arquivo(userCpf, HistoricoUsuario.EXTENSAO));
+            }
+            usuario.setHistoricoOffset(offset);
+            Usuario perfil = new Usuario(usuario.getLogin(), usuario.getSenha(), usuario.getNome(),
+                                         usuario.getCpf(), usuario.getEmail(), usuario.isAdmin());
+            perfil.setHistoricoOffset(offset);
+            documentos.put(layoutUsuarios.caminhoRelativo(userCpf, codec.getExtensao()), codec.codificarUsuario(perfil));
+        }
+        gravarDocumentos(documentos);
+        for (Usuario usuario : usuarios) {
+            indexarUsuario(usuario.getCpf().replaceAll("[^a-zA-Z0-9]", ""), usuario.getLogin(), usuario.getEmail());
+        }
+        Registro.info("{} usuário(s) armazenado(s) em lote.", usuarios.size());
+    }
+
+    /**
+     * Armazena um lote de eventos novos. Os documentos são gravados juntos no log de escrita, e as
+     * datas são acrescentadas ao índice de eventos de uma só vez. Os eventos do lote não são colocados no cache.
+     *
+     * @param eventos os eventos, que ainda não podem existir no armazenamento
+     * @throws IOException se algum documento não puder ser gravado
+     */
+    @Override
+    public void armazenarLoteEventos(List<Evento> eventos) throws IOException {
+        criarDiretorioSeNecessario(baseDir + File.separator + "Eventos");
+        Map<String, byte[]> documentos = new LinkedHashMap<>();
+        Map<String, LocalDate> datas = new LinkedHashMap<>();
+        for (Evento evento : eventos) {
+            definirQuantidade(evento);
+            documentos.put(caminhoEvento(evento.getID()), codec.codificarEvento(evento));
+            LocalDate data = dataDoEvento(evento);
+            if (data != null) {
+                datas.put(evento.getID(), data);
+            }
+        }
+        gravarDocumentos(documentos);
+        if (indiceEventos != null) {
+            indiceEventos.registrarTodos(datas);
+        }
+        Registro.info("{} evento(s) armazenado(s) em lote.", eventos.size());
+    }
+
+    /**
+     * Lê os dados de um evento a partir do seu arquivo ou do cache, com a quantidade de ingressos do inventário.
+     *
+     * @param eventoId o ID do evento para buscar os dados.
+     * @return uma cópia do evento, que pode ser alterada por quem a leu, ou {@code null} em caso de erro.
+     */
+    @Override
+    public Evento lerEvento(String eventoId) {
+        Evento emCache = cacheEventos.obter(eventoId);
+        if (emCache != null) {
+            Evento copia = emCache.copiar();
+            sincronizarQuantidade(copia);
+            return copia;
+        }
+
+        try (InputStream entrada = abrirDocumento(arquivoEvento(eventoId), caminhoEvento(eventoId))) {
+            if (entrada == null) {
+                Evento arquivado = arquivoFrio.lerEvento(eventoId);
+                if (arquivado != null) {
+                    cacheEventos.colocar(eventoId, arquivado);
+                    return arquivado.copiar();
+                }
+                throw new FileNotFoundException(arquivoEvento(eventoId).getPath() + " (arquivo não encontrado)");
+            }
+            Evento evento = codec.decodificarEvento(entrada);
+            sincronizarQuantidade(evento);
+            cacheEventos.colocar(eventoId, evento);
+            Registro.depuracao("Dados do evento lidos com sucesso!");
+            return evento.copiar();
+        } catch (IOException e) {
+            Registro.erro("Erro ao ler os dados do evento: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Soma {@code delta} à quantidade de ingressos de um evento. Quando o evento está no inventário
+     * mapeado em memória, apenas o contador é alterado e o documento é reconciliado em segundo plano;
+     * o evento em cache não é alterado, porque as leituras já tomam a quantidade do inventário. Caso
+     * contrário, o documento do evento é lido, alterado e regravado.
+     *
+     * @param eventoId o ID do evento
+     * @param delta o valor a ser somado (negativo para compras, positivo para cancelamentos)
+     * @return a nova quantidade de ingressos
+     * @throws IllegalArgumentException se o evento não for encontrado
+     */
+    @Override
+    public int ajustarIngressos(String eventoId, int delta) {
+        if (inventario != null && inventario.obter(eventoId) == null) {
+            lerEvento(eventoId);
+        }
+        if (inventario != null && inventario.obter(eventoId) != null) {
+            return inventario.ajustar(eventoId, delta);
+        }
+
+        Evento evento = lerEvento(eventoId);
+        if (evento == null) {
+            throw new IllegalArgumentException("Erro: Evento " + eventoId + " não encontrado.");
+        }
+        evento.setIngressos(evento.getIngressos() + delta);
+        armazenarEvento(evento);
+        return evento.getIngressos();
+    }
+
+    /**
+     * Reserva ingressos de um evento. Quando o evento está no inventário mapeado em memória, a
+     * reserva é uma operação atômica sobre o contador, sem travas e sem E/S, e um evento esgotado é
+     * recusado imediatamente; caso contrário, o documento é lido, verificado e regravado com o
+     * evento travado para escrita.
+     *
+     * @param eventoId o ID do evento
+     * @param quantidade a quantidade de ingressos, maior que zero
+     * @return a quantidade restante ou {@code -1} se não houver ingressos suficientes
+     * @throws IllegalArgumentException se o evento não for encontrado
+     */
+    @Override
+    public int reservarIngressos(String eventoId, int quantidade) {
+        if (inventario != null && inventario.obter(eventoId) == null) {
+            lerEvento(eventoId);
+        }
+        if (inventario != null && inventario.obter(eventoId) != null) {
+            return inventario.reservar(eventoId, quantidade);
+        }
+
+        try (var _ = travas.travarEscrita(TravasEntidades.chaveEvento(eventoId))) {
+            Evento evento = lerEvento(eventoId);
+            if (evento == null) {
+                throw new IllegalArgumentException("Erro: Evento " + eventoId + " não encontrado.");
+            }
+            if (evento.getIngressos() < quantidade) {
+                return -1;
+            }
+            evento.setIngressos(evento.getIngressos() - quantidade);
+            armazenarEvento(evento);
+            return evento.getIngressos();
+        }
+    }
+
+    /**
+     * Alinha a quantidade de ingressos do evento com o inventário mapeado em memória. O contador
+     * do inventário prevalece; eventos ainda não registrados são registrados com a quantidade atual.
+     *
+     * @param evento o evento a ser sincronizado
+     */
+    private void sincronizarQuantidade(Evento evento) {
+        if (inventario == null || evento == null || !InventarioMapeado.suportado(evento.getID())) {
+            return;
+        }
+        evento.setIngressos(inventario.registrar(evento.getID(), evento.getIngressos()));
+    }
+
+    /**
+     * Grava a quantidade de ingressos do evento no inventário mapeado em memória, registrando o
+     * evento se necessário.
+     *
+     * @param evento o evento armazenado
+     */
+    private void definirQuantidade(Evento evento) {
+        if (inventario == null || !InventarioMapeado.suportado(evento.getID())) {
+            return;
+        }
+        inventario.definir(evento.getID(), evento.getIngressos());
+    }
+
+    /**
+     * Regrava o documento de um evento com a quantidade de ingressos do inventário, sem alterar o
+     * contador, que pode ter recebido reservas depois da leitura.
+     *
+     * @param eventoId o ID do evento
+     * @param quantidade a quantidade atual no inventário
+     */
+    private void reconciliarEvento(String eventoId, Integer quantidade) {
+        try (var _ = travas.travarEscrita(TravasEntidades.chaveEvento(eventoId))) {
+            Evento evento = lerEvento(eventoId);
+            if (evento != null) {
+                armazenarDetalhesEvento(evento);
+            }
+        }
+    }
+
+    /**
+     * Inclui o evento no índice de eventos, usando a data do evento ou, na falta dela, a data do ID.
+     *
+     * @param evento o evento gravado
+     */
+    private void indexarEvento(Evento evento) {
+        if (indiceEventos == null) {
+            return;
+        }
+        LocalDate data = dataDoEvento(evento);
+        if (data != null) {
+            indiceEventos.registrar(evento.getID(), data);
+        }
+    }
+
+    /**
+     * Retorna a data usada no índice de eventos: a data do evento ou, na falta dela, a data do ID.
+     *
+     * @param evento o evento
+     * @return a data do evento ou {@code null} se não for possível determiná-la
+     */
+    private static LocalDate dataDoEvento(Evento evento) {
+        return evento.getData() != null
+                ? evento.getData().toInstant().atZone(ZoneId.systemDefault()).toLocalDate()
+                : IndiceEventos.dataDoId(evento.getID());
+    }
+
+    /**
+     * Lista, em ordem de data, os próximos eventos a partir do dia seguinte.
+     *
+     * @param quantidade a quantidade máxima de eventos
+     * @return uma lista com os IDs dos eventos
+     */
+    @Override
+    public List<String> listarProximosEventos(int quantidade) {
+        if (indiceEventos == null) {
+            return new ArrayList<>();
+        }
+        return indiceEventos.proximos(LocalDate.now().plusDays(1), quantidade);
+    }
+
+    /**
+     * Lista, em ordem de data, uma página dos eventos entre as datas informadas (inclusive).
+     *
+     * @param inicio a data inicial
+     * @param fim a data final
+     * @param pagina o número da página, começando em zero
+     * @param tamanhoPagina a quantidade máxima de eventos por página
+     * @return uma lista com os IDs dos eventos da página
+     * @throws IllegalArgumentException se a página ou o tamanho da página forem inválidos
+     */
+    @Override
+    public List<String> listarEventosEntre(Date inicio, Date fim, int pagina, int tamanhoPagina) {
+        if (indiceEventos == null) {
+            return new ArrayList<>();
+        }
+        ZoneId zona = ZoneId.systemDefault();
+        return indiceEventos.listarEntre(inicio.toInstant().atZone(zona).toLocalDate(),
+                fim.toInstant().atZone(zona).toLocalDate(), pagina, tamanhoPagina);
+    }
+
+    /**
+     * Grava um documento no diretório de dados por meio do log de escrita, que garante a
+     * durabilidade e agrupa a sincronização com as gravações concorrentes.
+     *
+     * @param caminhoRelativo o caminho do documento, relativo ao diretório de dados
+     * @param conteudo o conteúdo do documento
+     * @throws IOException se a gravação falhar
+     */
+    private void gravarDocumento(String caminhoRelativo, byte[] conteudo) throws IOException {
+        LogEscrita.abrir(Paths.get(baseDir)).gravar(caminhoRelativo, conteudo);
+        registrarGravacaoPropria(new File(baseDir, caminhoRelativo));
+    }
+
+    /**
+     * Grava vários documentos no diretório de dados por meio do log de escrita, em uma única chamada.
+     *
+     * @param documentos o conteúdo de cada documento, pelo caminho relativo ao diretório de dados
+     * @throws IOException se a gravação de algum documento falhar
+     */
+    private void gravarDocumentos(Map<String, byte[]> documentos) throws IOException {
+        LogEscrita.abrir(Paths.get(baseDir)).gravarLote(documentos);
+        for (String caminhoRelativo : documentos.keySet()) {
+            registrarGravacaoPropria(new File(baseDir, caminhoRelativo));
+        }
+    }
+
+    /**
+     * Informa ao monitor do catálogo que o arquivo foi gravado por esta instância, para que a
+     * alteração não invalide o cache que acabou de ser atualizado.
+     *
+     * @param arquivo o arquivo gravado
+     */
+    private void registrarGravacaoPropria(File arquivo) {
+        if (monitorCatalogo != null) {
+            monitorCatalogo.registrarGravacao(ouvinteCatalogo, arquivo.toPath());
+        }
+    }
+
+    /**
+     * Retorna o arquivo do documento de um usuário na organização do {@link LayoutUsuarios}, movendo
+     * para lá os arquivos do usuário que ainda estiverem na outra organização.
+     *
+     * @param cpf o CPF do usuário
+     * @return o arquivo do usuário
+     */
+    private File arquivoUsuario(String cpf) {
+        return layoutUsuarios.localizar(cpf, codec.getExtensao());
+    }
+
+    /**
+     * Move para a organização configurada no {@link LayoutUsuarios} todos os usuários que ainda estão
+     * na outra organização. Pode ser executado com a aplicação em funcionamento;
+     * os usuários ainda não migrados continuam sendo encontrados e são migrados no primeiro acesso.
+     *
+     * @return a quantidade de usuários migrados
+     * @throws IOException se algum arquivo não puder ser movido
+     */
+    public int migrarLayoutUsuarios() throws IOException {
+        // Aplica as gravações pendentes no log antes de mover os arquivos
+        LogEscrita.abrir(Paths.get(baseDir)).checkpoint();
+        return layoutUsuarios.migrarTodos(codec.getExtensao());
+    }
+
+    /**
+     * Retorna o caminho do documento de um evento, relativo ao diretório de dados.
+     *
+     * @param eventoId o ID do evento
+     * @return o caminho do evento
+     */
+    private String caminhoEvento(String eventoId) {
+        return "Eventos" + File.separator + eventoId + codec.getExtensao();
+    }
+
+    /**
+     * Abre um documento, dando precedência ao arquivo solto sobre o snapshot compactado.
+     *
+     * @param arquivo o arquivo solto do documento
+     * @param caminhoRelativo o caminho do documento, relativo ao diretório de dados
+     * @return o conteúdo do documento ou {@code null} se ele não existir
+     */
+    private InputStream abrirDocumento(File arquivo, String caminhoRelativo) {
+        try {
+            return new BufferedInputStream(new FileInputStream(arquivo));
+        } catch (FileNotFoundException e) {
+            // O arquivo pode não existir ou ter sido incluído no snapshot
+        }
+        byte[] conteudo = snapshot.ler(caminhoRelativo);
+        return conteudo == null ? null : new ByteArrayInputStream(conteudo);
+    }
+
+    /**
+     * Retorna os IDs de todos os eventos, soltos ou no snapshot compactado.
+     *
+     * @return os IDs dos eventos
+     */
+    private Collection<String> listarIdsEventos() {
+        String extensao = codec.getExtensao();
+        Set<String> ids = new HashSet<>();
+        File[] arquivos = new File(baseDir + File.separator + "Eventos").listFiles((dir, nome) -> nome.endsWith(extensao));
+        if (arquivos != null) {
+            for (File arquivo : arquivos) {
+                ids.add(arquivo.getName().substring(0, arquivo.getName().length() - extensao.length()));
+            }
+        }
+        for (String caminho : snapshot.listar("Eventos/")) {
+            if (caminho.endsWith(extensao)) {
+                ids.add(caminho.substring("Eventos/".length(), caminho.length() - extensao.length()));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Reúne os documentos de usuários e eventos no snapshot compactado do diretório de dados,
+     * reduzindo a quantidade de arquivos abertos na inicialização e nas primeiras consultas.
+     * Pode ser executado com a aplicação em funcionamento.
+     *
+     * @return a quantidade de documentos no snapshot
+     * @throws IOException se o snapshot não puder ser gravado
+     */
+    public int compactarDocumentos() throws IOException {
+        migrarLayoutUsuarios();
+        return snapshot.compactar(codec.getExtensao());
+    }
+
+    /**
+     * Move para o {@link ArquivoFrio} os eventos com data anterior à idade informada e os recibos das
+     * compras desses eventos. O segmento arquivado é gravado e sincronizado antes que os históricos
+     * dos usuários sejam regravados sem esses recibos e que os documentos dos eventos sejam removidos,
+     * de modo que uma interrupção no meio do processo não perde dados. Pode ser executado com a
+     * aplicação em funcionamento.
+     *
+     * @param idadeDias a idade mínima, em dias, dos eventos arquivados
+     * @return a quantidade de eventos arquivados
+     * @throws IOException se o segmento não puder ser gravado ou algum histórico não puder ser lido
+     * @throws IllegalArgumentException se a idade for negativa
+     */
+    public synchronized int arquivarEventosAntigos(int idadeDias) throws IOException {
+        if (idadeDias < 0) {
+            throw new IllegalArgumentException("Erro: A idade de arquivamento não pode ser negativa.");
+        }
+        if (indiceEventos == null) {
+            return 0;
+        }
+        // Aplica as gravações pendentes e move os históricos da organização antiga antes de percorrê-los
+        migrarLayoutUsuarios();
+        LocalDate limite = LocalDate.now().minusDays(idadeDias);
+        Map<String, byte[]> eventos = new LinkedHashMap<>();
+        for (String eventoId : indiceEventos.listarEntre(LocalDate.MIN, limite.minusDays(1), 0, Integer.MAX_VALUE)) {
+            Evento evento = lerEvento(eventoId);
+            if (evento != null) {
+                eventos.put(eventoId, codec.codificarEvento(evento));
+            }
+        }
+        if (eventos.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, List<Recibo>> recibos = new LinkedHashMap<>();
+        for (String cpf : listarCpfsComHistorico()) {
+            Usuario atual = new Usuario("", "", "", cpf, "", false);
+            try (var _ = travas.travarLeitura(TravasEntidades.chaveUsuario(cpf))) {
+                historico.carregar(cpf, atual);
+            }
+            List<Recibo> antigos = atual.getRecibos().stream()
+                    .filter(recibo -> recibo.getIngresso() != null && eventos.containsKey(recibo.getEventoID()))
+                    .collect(Collectors.toList());
+            if (!antigos.isEmpty()) {
+                recibos.put(cpf, antigos);
+            }
+        }
+        arquivoFrio.arquivar(eventos, recibos, codec);
+
+        for (Map.Entry<String, List<Recibo>> usuario : recibos.entrySet()) {
+            String cpf = usuario.getKey();
+            Set<String> ingressoIds = usuario.getValue().stream()
+                    .map(recibo -> recibo.getIngresso().getId()).collect(Collectors.toSet());
+            // Impede que uma compra do usuário seja acrescentada ao histórico durante a regravação
+            try (var _ = travas.travarEscrita(TravasEntidades.chaveUsuario(cpf))) {
+                if (historico.removerRecibos(cpf, ingressoIds) >= 0) {
+                    registrarGravacaoPropria(layoutUsuarios.arquivo(cpf, HistoricoUsuario.EXTENSAO));
+                    atualizarOffsetPerfil(cpf);
+                }
+            }
+        }
+
+        Set<String> caminhos = new HashSet<>();
+        boolean noSnapshot = false;
+        for (String eventoId : eventos.keySet()) {
+            indiceEventos.remover(eventoId);
+            cacheEventos.invalidar(eventoId);
+            caminhos.add(caminhoEvento(eventoId));
+            noSnapshot |= snapshot.contem(caminhoEvento(eventoId));
+        }
+        // A remoção roda na thread do log, depois de qualquer gravação pendente dos mesmos eventos
+        LogEscrita.abrir(Paths.get(baseDir)).executarExclusivo(() -> {
+            for (String eventoId : eventos.keySet()) {
+                Files.deleteIfExists(arquivoEvento(eventoId).toPath());
+            }
+        });
+        if (noSnapshot) {
+            snapshot.compactar(codec.getExtensao(), caminhos);
+        }
+        Registro.info("{} evento(s) e os recibos de {} usuário(s) movidos para o arquivo.",
+                      eventos.size(), recibos.size());
+        return eventos.size();
+    }
+
+    /**
+     * Inicia o arquivamento diário dos eventos mais antigos que a idade informada, em segundo plano.
+     * Chamadas repetidas não têm efeito.
+     *
+     * @param idadeDias a idade mínima, em dias, dos eventos arquivados
+     */
+    public synchronized void iniciarArquivamento(int idadeDias) {
+        if (arquivador != null) {
+            return;
+        }
+        arquivador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "arquivamento-eventos");
+            thread.setDaemon(true);
+            return thread;
+        });
+        arquivador.scheduleWithFixedDelay(() -> {
+            try {
+                arquivarEventosAntigos(idadeDias);
+            } catch (IOException | RuntimeException e) {
+                Registro.erro("Erro ao arquivar os eventos antigos: {}", e.getMessage());
+            }
+        }, 1, TimeUnit.DAYS.toMinutes(1), TimeUnit.MINUTES);
+    }
+
+    /**
+     * Interrompe o arquivamento diário, libera o monitor do catálogo e fecha o log de escrita do
+     * diretório de dados, concluindo as gravações já enfileiradas com um checkpoint.
+     */
+    @Override
+    public synchronized void fechar() {
+        if (arquivador != null) {
+            arquivador.shutdownNow();
+            arquivador = null;
+        }
+        if (monitorCatalogo != null) {
+            monitorCatalogo.fechar(ouvinteCatalogo);
+        }
+        try {
+            LogEscrita.fechar(Paths.get(baseDir));
+        } catch (IOException e) {
+            Registro.erro("Erro ao fechar o log de escrita: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Lê os recibos do usuário que foram movidos para o {@link ArquivoFrio}. Os recibos ainda no
+     * histórico continuam em {@link Usuario#getRecibos()}.
+     *
+     * @param cpf o CPF do usuário
+     * @return os recibos arquivados, ou uma lista vazia se não houver ou não puderem ser lidos
+     */
+    @Override
+    public List<Recibo> lerRecibosArquivados(String cpf) {
+        try {
+            return arquivoFrio.lerRecibos(cpf);
+        } catch (IOException e) {
+            Registro.erro("Erro ao ler os recibos arquivados: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Lê todos os eventos movidos para o {@link ArquivoFrio}, para uso em relatórios.
+     *
+     * @return os eventos arquivados, ou uma lista vazia se não puderem ser lidos
+     */
+    @Override
+    public List<Evento> lerEventosArquivados() {
+        try {
+            return new ArrayList<>(arquivoFrio.lerEventos().values());
+        } catch (IOException e) {
+            Registro.erro("Erro ao ler os eventos arquivados: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Retorna o CPF, o nome de usuário e o e-mail de todos os usuários, soltos ou no snapshot, para
+     * reconstruir o índice de usuários. Lê apenas esses campos de cada documento.
+     */
+    private Collection<Usuario> listarPerfisUsuarios() {
+        String extensao = codec.getExtensao();
+        Set<String> cpfs = new HashSet<>();
+        Path usuarios = Paths.get(baseDir, "Usuarios");
+        if (Files.isDirectory(usuarios)) {
+            try (Stream<Path> caminhos = Files.walk(usuarios)) {
+                caminhos.map(caminho -> caminho.getFileName().toString())
+                        .filter(nome -> nome.endsWith(extensao))
+                        .forEach(nome -> cpfs.add(nome.substring(0, nome.length() - extensao.length())));
+            } catch (IOException e) {
+                Registro.erro("Erro ao listar os usuários: {}", e.getMessage());
+            }
+        }
+        for (String caminho : snapshot.listar("Usuarios/")) {
+            if (caminho.endsWith(extensao)) {
+                String nome = caminho.substring(caminho.lastIndexOf('/') + 1);
+                cpfs.add(nome.substring(0, nome.length() - extensao.length()));
+            }
+        }
+        List<Usuario> perfis = new ArrayList<>();
+        for (String cpf : cpfs) {
+            Map<String, String> campos = lerCamposUsuario(cpf, "username", "email");
+            if (campos != null) {
+                perfis.add(new Usuario(campos.get("username"), null, null, cpf, campos.get("email"), false));
+            }
+        }
+        return perfis;
+    }
+
+    /**
+     * Abre uma {@link VisaoArquivos}, que liga os documentos, os históricos e o snapshot compactado
+     * atuais em um subdiretório de {@value VisaoArquivos#DIRETORIO} e copia as quantidades do inventário.
+     * As entidades são travadas apenas para conferir as gravadas durante a captura; o chamador não deve
+     * ter nenhuma trava.
+     *
+     * @return a visão capturada
+     * @throws IOException se a visão não puder ser capturada
+     */
+    @Override
+    public VisaoLeitura abrirVisao() throws IOException {
+        return VisaoArquivos.capturar(Paths.get(baseDir), codec, inventario, layoutUsuarios, travas);
+    }
+
+    /**
+     * Retorna os CPFs de todos os usuários com arquivo de histórico.
+     */
+    private List<String> listarCpfsComHistorico() throws IOException {
+        Path usuarios = Paths.get(baseDir, "Usuarios");
+        if (!Files.isDirectory(usuarios)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> caminhos = Files.walk(usuarios)) {
+            return caminhos.map(caminho -> caminho.getFileName().toString())
+                    .filter(nome -> nome.endsWith(HistoricoUsuario.EXTENSAO))
+                    .map(nome -> nome.substring(0, nome.length() - HistoricoUsuario.EXTENSAO.length()))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Regrava o documento de perfil do usuário com o tamanho atual do histórico, depois que o
+     * histórico foi regravado menor, e descarta o usuário do cache.
+     */
+    private void atualizarOffsetPerfil(String cpf) throws IOException {
+        cacheUsuarios.invalidar(cpf);
+        String caminho = layoutUsuarios.caminhoRelativo(cpf, codec.getExtensao());
+        Usuario perfil;
+        try (InputStream entrada = abrirDocumento(arquivoUsuario(cpf), caminho)) {
+            if (entrada == null) {
+                return;
+            }
+            perfil = codec.decodificarUsuario(entrada);
+        }
+        Usuario atualizado = new Usuario(perfil.getLogin(), perfil.getSenha(), perfil.getNome(),
+                                         perfil.getCpf(), perfil.getEmail(), perfil.isAdmin());
+        atualizado.setHistoricoOffset(layoutUsuarios.arquivo(cpf, HistoricoUsuario.EXTENSAO).length());
+        gravarDocumento(caminho, codec.codificarUsuario(atualizado));
+        cacheUsuarios.invalidar(cpf);
+    }
+
+    /**
+     * Retorna o arquivo do documento de um evento.
+     *
+     * @param eventoId o ID do evento
+     * @return o arquivo do evento
+     */
+    private File arquivoEvento(String eventoId) {
+        return new File(baseDir + File.separator + "Eventos" + File.separator + eventoId + codec.getExtensao());
+    }
+
+    /**
+     * Retorna o codec usado pelos documentos do diretório de dados.
+     *
+     * @return o codec do diretório
+     */
+    public CodecEntidades getCodec() {
+        return codec;
+    }
+
+    /**
+     * Retorna as travas por entidade do diretório de dados, usadas pelo {@link Armazenamento}.
+     *
+     * @return as travas do diretório
+     */
+    public TravasEntidades getTravas() {
+        return travas;
+    }
+
+    /**
+     * Retorna o cache de usuários, permitindo consultar suas estatísticas.
+     *
+     * @return o cache de usuários
+     */
+    public CacheEntidades<Usuario> getCacheUsuarios() {
+        return cacheUsuarios;
+    }
+
+    /**
+     * Retorna o cache de eventos, permitindo consultar suas estatísticas.
+     *
+     * @return o cache de eventos
+     */
+    public CacheEntidades<Evento> getCacheEventos() {
+        return cacheEventos;
+    }
+
+    /**
+     * Cria o diretório especificado, caso ele não exista.
+     *
+     * @param caminho o caminho do diretório a ser criado.
+     */
+    private void criarDiretorioSeNecessario(String caminho) {
+        File dir = new File(caminho);
+        if (!dir.exists() && dir.mkdirs()) {
+            Registro.depuracao("Diretório criado: {}", caminho);
+        }
+    }
+
+    /**
+     * Aplica aos caches e aos índices de eventos e de usuários as alterações do catálogo feitas fora desta instância.
+     */
+    private class OuvinteCatalogo implements MonitorCatalogo.Ouvinte {
+
+        @Override
+        public void alterado(String diretorio, String nomeArquivo) {
+            if ("Eventos".equals(diretorio)) {
+                String eventoId = removerExtensao(nomeArquivo, codec.getExtensao());
+                if (eventoId != null) {
+                    cacheEventos.invalidar(eventoId);
+                    LocalDate data = IndiceEventos.dataDoId(eventoId);
+                    if (indiceEventos != null && data != null) {
+                        indiceEventos.registrar(eventoId, data);
+                    }
+                }
+            } else if ("Usuarios".equals(diretorio)) {
+                String cpf = invalidarUsuario(nomeArquivo);
+                if (cpf != null && nomeArquivo.endsWith(codec.getExtensao()) && indiceUsuarios != null) {
+                    Map<String, String> campos = lerCamposUsuario(cpf, "username", "email");
+                    if (campos != null) {
+                        indiceUsuarios.registrar(cpf, campos.get("username"), campos.get("email"));
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void removido(String diretorio, String nomeArquivo) {
+            if ("Eventos".equals(diretorio)) {
+                String eventoId = removerExtensao(nomeArquivo, codec.getExtensao());
+                if (eventoId != null) {
+                    cacheEventos.invalidar(eventoId);
+                    // Arquivos incluídos no snapshot são removidos pela compactação, mas o evento continua existindo
+                    if (indiceEventos != null && !snapshot.contem(caminhoEvento(eventoId))) {
+                        indiceEventos.remover(eventoId);
+                    }
+                }
+            } else if ("Usuarios".equals(diretorio)) {
+                String cpf = invalidarUsuario(nomeArquivo);
+                // Documentos movidos para o snapshot ou para outro subdiretório continuam existindo
+                if (cpf != null && nomeArquivo.endsWith(codec.getExtensao()) && indiceUsuarios != null
+                        && !existeUsuario(cpf)) {
+                    indiceUsuarios.remover(cpf);
+                }
+            }
+        }
+
+        @Override
+        public void recarregar(String diretorio) {
+            if ("Eventos".equals(diretorio)) {
+                cacheEventos.limpar();
+                if (indiceEventos != null) {
+                    try {
+                        indiceEventos.reconstruir(listarIdsEventos());
+                    } catch (IOException e) {
+                        Registro.erro("Erro ao reconstruir o índice de eventos: {}", e.getMessage());
+                    }
+                }
+            } else if ("Usuarios".equals(diretorio)) {
+                cacheUsuarios.limpar();
+                if (indiceUsuarios != null) {
+                    try {
+                        indiceUsuarios.reconstruir(listarPerfisUsuarios());
+                    } catch (IOException e) {
+                        Registro.erro("Erro ao reconstruir o índice de usuários: {}", e.getMessage());
+                    }
+                }
+            }
+        }
+
+        private String invalidarUsuario(String nomeArquivo) {
+            String cpf = removerExtensao(nomeArquivo, codec.getExtensao());
+            if (cpf == null) {
+                cpf = removerExtensao(nomeArquivo, HistoricoUsuario.EXTENSAO);
+            }
+            if (cpf != null) {
+                cacheUsuarios.invalidar(cpf);
+            }
+            return cpf;
+        }
+
+        private String removerExtensao(String nomeArquivo, String extensao) {
+            return nomeArquivo.endsWith(extensao) ? nomeArquivo.substring(0, nomeArquivo.length() - extensao.length()) : null;
+        }
+    }
+}
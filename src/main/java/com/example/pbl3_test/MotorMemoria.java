@@ -0,0 +1,231 @@
+package com.example.pbl3_test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Motor de armazenamento que mantém usuários e eventos apenas em memória.
+ *
+ * <p>
+ * Nada é gravado em disco: os dados são perdidos quando a aplicação termina. Útil para
+ * demonstrações e como referência nos testes de conformidade entre os motores.
+ * Os eventos são ordenados por data em um {@link IndiceEventos} e os usuários são localizados por
+ * nome de usuário e e-mail em um {@link IndiceUsuarios}, ambos sem arquivo associado. As visões de
+ * leitura são cópias completas dos dados ({@link VisaoMemoria}). Como no {@link MotorArquivos}, as
+ * entidades são guardadas e retornadas como cópias, e as alterações de quem leu só valem depois de gravadas.
+ * </p>
+ */
+public class MotorMemoria implements MotorArmazenamento {
+
+    /**
+     * Nome do motor no arquivo de configuração.
+     */
+    public static final String NOME = "memoria";
+
+    private final Map<String, Usuario> usuarios = new ConcurrentHashMap<>();
+    private final Map<String, Evento> eventos = new ConcurrentHashMap<>();
+    private final IndiceEventos indiceEventos = IndiceEventos.emMemoria();
+    private final IndiceUsuarios indiceUsuarios = IndiceUsuarios.emMemoria();
+
+    @Override
+    public String getNome() {
+        return NOME;
+    }
+
+    @Override
+    public boolean verificarExistencia() {
+        return true;
+    }
+
+    /**
+     * Guarda uma cópia de um usuário novo. Se o usuário já estiver guardado, atualiza apenas os dados
+     * de perfil e mantém os ingressos e recibos guardados, como o {@link MotorSql}: o usuário informado
+     * pode não ter as compras feitas a partir de outra leitura.
+     */
+    @Override
+    public void armazenarUsuario(Usuario usuario) {
+        String cpf = usuario.getCpf().replaceAll("[^a-zA-Z0-9]", "");
+        alterarUsuario(usuario, atual -> {
+            atual.atualizarDados(usuario.getLogin(), usuario.getSenha(), usuario.getNome(), usuario.getEmail());
+            atual.setAdmin(usuario.isAdmin());
+        });
+        indiceUsuarios.registrar(cpf, usuario.getLogin(), usuario.getEmail());
+    }
+
+    @Override
+    public Usuario lerUsuario(String cpf) {
+        Usuario usuario = usuarios.get(cpf);
+        return usuario == null ? null : usuario.copiar();
+    }
+
+    /**
+     * Acrescenta a compra ao usuário guardado, sem substituí-lo pelo usuário informado, que pode não
+     * ter as compras feitas a partir de outra leitura.
+     */
+    @Override
+    public void registrarCompra(Usuario usuario, List<Ingresso> ingressos, List<Recibo> recibos) {
+        alterarUsuario(usuario, atual -> {
+            for (Ingresso ingresso : ingressos) {
+                atual.adicionarIngresso(ingresso.copiar());
+            }
+            for (Recibo recibo : recibos) {
+                atual.adicionarRecibo(recibo.copiar(recibo.getIngresso() == null ? null : recibo.getIngresso().copiar()));
+            }
+        });
+    }
+
+    /**
+     * Remove o ingresso cancelado do usuário guardado, sem substituí-lo pelo usuário informado.
+     */
+    @Override
+    public void registrarCancelamento(Usuario usuario, Ingresso ingresso) {
+        alterarUsuario(usuario, atual -> atual.getIngressos().removeIf(outro -> outro.getId().equals(ingresso.getId())));
+    }
+
+    /**
+     * Aplica a alteração a uma cópia do usuário guardado, que o substitui de forma atômica. Se o
+     * usuário ainda não estiver guardado, guarda uma cópia do usuário informado.
+     */
+    private void alterarUsuario(Usuario usuario, Consumer<Usuario> alteracao) {
+        String cpf = usuario.getCpf().replaceAll("[^a-zA-Z0-9]", "");
+        usuarios.compute(cpf, (id, atual) -> {
+            if (atual == null) {
+                return usuario.copiar();
+            }
+            Usuario alterado = atual.copiar();
+            alteracao.accept(alterado);
+            return alterado;
+        });
+    }
+
+    @Override
+    public boolean existeUsuario(String cpf) {
+        return usuarios.containsKey(cpf);
+    }
+
+    @Override
+    public Map<String, String> lerCamposUsuario(String cpf, String... campos) {
+        Usuario usuario = usuarios.get(cpf);
+        if (usuario == null) {
+            return null;
+        }
+        Map<String, String> valores = new HashMap<>();
+        for (String campo : Arrays.asList(campos)) {
+            String valor = MotorArquivos.valorCampo(usuario, campo);
+            if (valor != null) {
+                valores.put(campo, valor);
+            }
+        }
+        return valores;
+    }
+
+    @Override
+    public String buscarCpfPorLogin(String login) {
+        return indiceUsuarios.buscarPorLogin(login);
+    }
+
+    @Override
+    public String buscarCpfPorEmail(String email) {
+        return indiceUsuarios.buscarPorEmail(email);
+    }
+
+    @Override
+    public void armazenarEvento(Evento evento) {
+        gravarEvento(evento, true);
+    }
+
+    @Override
+    public void armazenarDetalhesEvento(Evento evento) {
+        gravarEvento(evento, false);
+    }
+
+    private void gravarEvento(Evento evento, boolean definirQuantidade) {
+        eventos.compute(evento.getID(), (id, atual) -> {
+            if (atual != null && !definirQuantidade) {
+                evento.setIngressos(atual.getIngressos());
+            }
+            return evento.copiar();
+        });
+        LocalDate data = evento.getData() != null
+                ? evento.getData().toInstant().atZone(ZoneId.systemDefault()).toLocalDate()
+                : IndiceEventos.dataDoId(evento.getID());
+        if (data != null) {
+            indiceEventos.registrar(evento.getID(), data);
+        }
+    }
+
+    @Override
+    public boolean existeEvento(String eventoId) {
+        return eventos.containsKey(eventoId);
+    }
+
+    @Override
+    public Evento lerEvento(String eventoId) {
+        Evento evento = eventos.get(eventoId);
+        return evento == null ? null : evento.copiar();
+    }
+
+    @Override
+    public int ajustarIngressos(String eventoId, int delta) {
+        int[] novaQuantidade = new int[1];
+        Evento evento = eventos.computeIfPresent(eventoId, (id, atual) -> {
+            atual.setIngressos(atual.getIngressos() + delta);
+            novaQuantidade[0] = atual.getIngressos();
+            return atual;
+        });
+        if (evento == null) {
+            throw new IllegalArgumentException("Erro: Evento " + eventoId + " não encontrado.");
+        }
+        return novaQuantidade[0];
+    }
+
+    @Override
+    public int reservarIngressos(String eventoId, int quantidade) {
+        int[] restantes = new int[1];
+        Evento evento = eventos.computeIfPresent(eventoId, (id, atual) -> {
+            if (atual.getIngressos() < quantidade) {
+                restantes[0] = -1;
+            } else {
+                atual.setIngressos(atual.getIngressos() - quantidade);
+                restantes[0] = atual.getIngressos();
+            }
+            return atual;
+        });
+        if (evento == null) {
+            throw new IllegalArgumentException("Erro: Evento " + eventoId + " não encontrado.");
+        }
+        return restantes[0];
+    }
+
+    @Override
+    public List<String> listarProximosEventos(int quantidade) {
+        return indiceEventos.proximos(LocalDate.now().plusDays(1), quantidade);
+    }
+
+    @Override
+    public List<String> listarEventosEntre(Date inicio, Date fim, int pagina, int tamanhoPagina) {
+        ZoneId zona = ZoneId.systemDefault();
+        return indiceEventos.listarEntre(inicio.toInstant().atZone(zona).toLocalDate(),
+                fim.toInstant().atZone(zona).toLocalDate(), pagina, tamanhoPagina);
+    }
+
+    /**
+     * Abre uma {@link VisaoMemoria} com uma cópia de todos os eventos e usuários.
+     *
+     * @return a visão capturada
+     */
+    @Override
+    public VisaoLeitura abrirVisao() {
+        VisaoMemoria visao = new VisaoMemoria();
+        eventos.values().forEach(visao::incluirEvento);
+        usuarios.forEach(visao::incluirUsuario);
+        return visao;
+    }
+}
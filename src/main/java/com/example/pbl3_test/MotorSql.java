@@ -0,0 +1,762 @@
+package com.example.pbl3_test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Motor de armazenamento que usa um banco SQL embutido, acessado por JDBC.
+ *
+ * <p>
+ * Por padrão é usado um banco H2 em arquivo no diretório de dados ({@code banco.mv.db}); outro banco
+ * pode ser usado definindo a propriedade {@code sql.url} no {@value MotorArmazenamento#ARQUIVO_CONFIGURACAO}.
+ * O driver JDBC do banco precisa estar disponível na aplicação.
+ * </p>
+ *
+ * <p>
+ * Tabelas:
+ * <ul>
+ *   <li>{@code usuarios}: chave primária no CPF, campos de perfil em colunas próprias (lidas por
+ *       {@link #lerCamposUsuario(String, String...)}), o nome de usuário e o e-mail normalizados em
+ *       colunas indexadas, para {@link #buscarCpfPorLogin(String)} e {@link #buscarCpfPorEmail(String)},
+ *       e o documento de perfil no formato do codec;</li>
+ *   <li>{@code eventos}: chave primária no ID, índice por data e ID para as listagens e a quantidade
+ *       de ingressos em uma coluna, alterada por {@link #ajustarIngressos(String, int)} sem regravar o documento;</li>
+ *   <li>{@code historico}: os mesmos registros do {@link HistoricoUsuario}, um por linha, com índice por CPF.</li>
+ * </ul>
+ * A conexão é única e as operações são serializadas; cada operação é executada em uma transação.
+ * As visões de leitura são cópias completas dos dados ({@link VisaoMemoria}).
+ * </p>
+ */
+public class MotorSql implements MotorArmazenamento {
+
+    /**
+     * Nome do motor no arquivo de configuração.
+     */
+    public static final String NOME = "sql";
+
+    private static final String[] ESQUEMA = {
+        "CREATE TABLE IF NOT EXISTS usuarios (" +
+            "cpf VARCHAR(32) PRIMARY KEY, username VARCHAR(255) NOT NULL, senha VARCHAR(255) NOT NULL, " +
+            "nome VARCHAR(255) NOT NULL, email VARCHAR(255) NOT NULL, admin BOOLEAN NOT NULL, documento BLOB NOT NULL)",
+        "CREATE TABLE IF NOT EXISTS eventos (" +
+            "id VARCHAR(255) PRIMARY KEY, data DATE, ingressos INT NOT NULL, documento BLOB NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS idx_eventos_data ON eventos (data, id)",
+        "CREATE TABLE IF NOT EXISTS historico (" +
+            "seq BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, cpf VARCHAR(32) NOT NULL, " +
+            "tipo SMALLINT NOT NULL, conteudo CLOB NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS idx_historico_cpf ON historico (cpf, seq)",
+        // Chaves normalizadas do nome de usuário e do e-mail, como no IndiceUsuarios
+        "ALTER TABLE usuarios ADD COLUMN IF NOT EXISTS username_chave VARCHAR(255)",
+        "ALTER TABLE usuarios ADD COLUMN IF NOT EXISTS email_chave VARCHAR(255)",
+        "UPDATE usuarios SET username_chave = LOWER(TRIM(username)), email_chave = LOWER(TRIM(email)) " +
+            "WHERE username_chave IS NULL OR email_chave IS NULL",
+        "CREATE INDEX IF NOT EXISTS idx_usuarios_username ON usuarios (username_chave)",
+        "CREATE INDEX IF NOT EXISTS idx_usuarios_email ON usuarios (email_chave)"
+    };
+
+    private final Connection conexao;
+    private final CodecEntidades codec;
+
+    /**
+     * Construtor da classe {@code MotorSql}, que abre a conexão e cria as tabelas que ainda não existirem.
+     *
+     * @param url o endereço JDBC do banco
+     * @param usuario o usuário do banco
+     * @param senha a senha do banco
+     * @param codec o codec dos documentos de perfil e de eventos
+     * @throws IllegalStateException se o banco não puder ser aberto
+     */
+    public MotorSql(String url, String usuario, String senha, CodecEntidades codec) {
+        this.codec = codec;
+        try {
+            this.conexao = DriverManager.getConnection(url, usuario, senha);
+            conexao.setAutoCommit(false);
+            criarTabelas();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Erro ao abrir o banco de dados " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Retorna o endereço do banco H2 padrão do diretório de dados.
+     *
+     * @param diretorioBase o diretório de dados
+     * @return o endereço JDBC
+     */
+    static String urlPadrao(File diretorioBase) {
+        return "jdbc:h2:" + new File(diretorioBase, "banco").getAbsolutePath();
+    }
+
+    @Override
+    public String getNome() {
+        return NOME;
+    }
+
+    @Override
+    public synchronized boolean verificarExistencia() {
+        try {
+            criarTabelas();
+            return true;
+        } catch (SQLException e) {
+            Registro.erro("Erro ao criar as tabelas: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void criarTabelas() throws SQLException {
+        try (Statement comando = conexao.createStatement()) {
+            for (String sql : ESQUEMA) {
+                comando.execute(sql);
+            }
+        }
+        conexao.commit();
+    }
+
+    @Override
+    public synchronized void armazenarUsuario(Usuario usuario) {
+        try {
+            gravarUsuario(usuario);
+        } catch (IOException | SQLException e) {
+            Registro.erro("Erro ao armazenar os dados do usuário: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Grava o perfil do usuário como {@link #armazenarUsuario(Usuario)}, mas repassa a falha a quem chamou.
+     */
+    private void gravarUsuario(Usuario usuario) throws IOException, SQLException {
+        String userCpf = usuario.getCpf().replaceAll("[^a-zA-Z0-9]", "");
+        Usuario perfil = new Usuario(usuario.getLogin(), usuario.getSenha(), usuario.getNome(),
+                                     usuario.getCpf(), usuario.getEmail(), usuario.isAdmin());
+        byte[] documento = codec.codificarUsuario(perfil);
+        executar(() -> {
+            int alterados;
+            try (PreparedStatement comando = conexao.prepareStatement(
+                    "UPDATE usuarios SET username = ?, senha = ?, nome = ?, email = ?, admin = ?, documento = ?, " +
+                    "username_chave = ?, email_chave = ? WHERE cpf = ?")) {
+                preencherPerfil(comando, usuario, documento);
+                comando.setString(9, userCpf);
+                alterados = comando.executeUpdate();
+            }
+            if (alterados == 0) {
+                try (PreparedStatement comando = conexao.prepareStatement(
+                        "INSERT INTO usuarios (username, senha, nome, email, admin, documento, username_chave, email_chave, cpf) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                    preencherPerfil(comando, usuario, documento);
+                    comando.setString(9, userCpf);
+                    comando.executeUpdate();
+                }
+                if (!possuiHistorico(userCpf)) {
+                    acrescentarHistorico(userCpf, usuario.getIngressos(), usuario.getRecibos());
+                }
+            }
+            return null;
+        });
+        Registro.depuracao("Dados do usuário armazenados com sucesso!");
+    }
+
+    private void preencherPerfil(PreparedStatement comando, Usuario usuario, byte[] documento) throws SQLException {
+        comando.setString(1, usuario.getLogin());
+        comando.setString(2, usuario.getSenha());
+        comando.setString(3, usuario.getNome());
+        comando.setString(4, usuario.getEmail());
+        comando.setBoolean(5, usuario.isAdmin());
+        comando.setBytes(6, documento);
+        comando.setString(7, IndiceUsuarios.normalizar(usuario.getLogin()));
+        comando.setString(8, IndiceUsuarios.normalizar(usuario.getEmail()));
+    }
+
+    @Override
+    public synchronized Usuario lerUsuario(String cpf) {
+        try {
+            return executar(() -> {
+                Usuario usuario;
+                try (PreparedStatement comando = conexao.prepareStatement("SELECT documento FROM usuarios WHERE cpf = ?")) {
+                    comando.setString(1, cpf);
+                    try (ResultSet resultado = comando.executeQuery()) {
+                        if (!resultado.next()) {
+                            Registro.info("Usuário não encontrado: {}", cpf);
+                            return null;
+                        }
+                        usuario = codec.decodificarUsuario(new ByteArrayInputStream(resultado.getBytes(1)));
+                    }
+                }
+                try (PreparedStatement comando = conexao.prepareStatement(
+                        "SELECT tipo, conteudo FROM historico WHERE cpf = ? ORDER BY seq")) {
+                    comando.setString(1, cpf);
+                    try (ResultSet resultado = comando.executeQuery()) {
+                        if (resultado.next()) {
+                            // O histórico substitui as listas do documento, como no HistoricoUsuario
+                            usuario.getIngressos().clear();
+                            usuario.getRecibos().clear();
+                            do {
+                                HistoricoUsuario.aplicar(usuario, (byte) resultado.getShort(1), resultado.getString(2));
+                            } while (resultado.next());
+                        }
+                    }
+                }
+                Registro.depuracao("Dados do usuário lidos com sucesso!");
+                return usuario;
+            });
+        } catch (IOException | SQLException e) {
+            Registro.erro("Erro ao ler os dados do usuário: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void registrarCompra(Usuario usuario, List<Ingresso> ingressos, List<Recibo> recibos) {
+        String userCpf = usuario.getCpf().replaceAll("[^a-zA-Z0-9]", "");
+        try {
+            if (!existeUsuario(userCpf)) {
+                gravarUsuario(usuario);
+                return;
+            }
+            executar(() -> {
+                acrescentarHistorico(userCpf, ingressos, recibos);
+                return null;
+            });
+            Registro.depuracao("Compra registrada no histórico do usuário.");
+        } catch (IOException | SQLException e) {
+            throw new IllegalStateException("Erro ao registrar a compra no histórico: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void registrarCancelamento(Usuario usuario, Ingresso ingresso) {
+        String userCpf = usuario.getCpf().replaceAll("[^a-zA-Z0-9]", "");
+        try {
+            if (!existeUsuario(userCpf)) {
+                gravarUsuario(usuario);
+                return;
+            }
+            executar(() -> {
+                try (PreparedStatement comando = conexao.prepareStatement(
+                        "INSERT INTO historico (cpf, tipo, conteudo) VALUES (?, ?, ?)")) {
+                    comando.setString(1, userCpf);
+                    comando.setShort(2, HistoricoUsuario.TIPO_CANCELAMENTO);
+                    comando.setString(3, ingresso.getId());
+                    comando.executeUpdate();
+                }
+                return null;
+            });
+        } catch (IOException | SQLException e) {
+            throw new IllegalStateException("Erro ao registrar o cancelamento no histórico: " + e.getMessage(), e);
+        }
+    }
+
+    private boolean possuiHistorico(String cpf) throws SQLException {
+        try (PreparedStatement comando = conexao.prepareStatement("SELECT 1 FROM historico WHERE cpf = ? LIMIT 1")) {
+            comando.setString(1, cpf);
+            try (ResultSet resultado = comando.executeQuery()) {
+                return resultado.next();
+            }
+        }
+    }
+
+    private void acrescentarHistorico(String cpf, List<Ingresso> ingressos, List<Recibo> recibos) throws SQLException {
+        try (PreparedStatement comando = conexao.prepareStatement(
+                "INSERT INTO historico (cpf, tipo, conteudo) VALUES (?, ?, ?)")) {
+            for (Ingresso ingresso : ingressos == null ? Collections.<Ingresso>emptyList() : ingressos) {
+                adicionarRegistro(comando, cpf, HistoricoUsuario.TIPO_INGRESSO, SerializadorJson.GSON.toJson(ingresso));
+            }
+            for (Recibo recibo : recibos == null ? Collections.<Recibo>emptyList() : recibos) {
+                adicionarRegistro(comando, cpf, HistoricoUsuario.TIPO_RECIBO, SerializadorJson.GSON.toJson(recibo));
+            }
+            comando.executeBatch();
+        }
+    }
+
+    private void adicionarRegistro(PreparedStatement comando, String cpf, byte tipo, String conteudo) throws SQLException {
+        comando.setString(1, cpf);
+        comando.setShort(2, tipo);
+        comando.setString(3, conteudo);
+        comando.addBatch();
+    }
+
+    @Override
+    public synchronized boolean existeUsuario(String cpf) {
+        try {
+            return executar(() -> {
+                try (PreparedStatement comando = conexao.prepareStatement("SELECT 1 FROM usuarios WHERE cpf = ?")) {
+                    comando.setString(1, cpf);
+                    try (ResultSet resultado = comando.executeQuery()) {
+                        return resultado.next();
+                    }
+                }
+            });
+        } catch (IOException | SQLException e) {
+            Registro.erro("Erro ao verificar o usuário: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized Map<String, String> lerCamposUsuario(String cpf, String... campos) {
+        try {
+            return executar(() -> {
+                try (PreparedStatement comando = conexao.prepareStatement(
+                        "SELECT username, senha, nome, cpf, email, admin FROM usuarios WHERE cpf = ?")) {
+                    comando.setString(1, cpf);
+                    try (ResultSet resultado = comando.executeQuery()) {
+                        if (!resultado.next()) {
+                            return null;
+                        }
+                        Map<String, String> valores = new HashMap<>();
+                        for (String campo : campos) {
+                            String coluna = colunaDoCampo(campo);
+                            if (coluna != null) {
+                                valores.put(campo, resultado.getString(coluna));
+                            }
+                        }
+                        return valores;
+                    }
+                }
+            });
+        } catch (IOException | SQLException e) {
+            Registro.erro("Erro ao ler os campos do usuário: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public String buscarCpfPorLogin(String login) {
+        return buscarCpfPorChave("username_chave", login);
+    }
+
+    @Override
+    public String buscarCpfPorEmail(String email) {
+        return buscarCpfPorChave("email_chave", email);
+    }
+
+    /**
+     * Localiza o CPF pela coluna de chave normalizada informada, usando o índice da coluna.
+     */
+    private synchronized String buscarCpfPorChave(String coluna, String valor) {
+        String chave = IndiceUsuarios.normalizar(valor);
+        if (chave.isEmpty()) {
+            return null;
+        }
+        try {
+            return executar(() -> {
+                try (PreparedStatement comando = conexao.prepareStatement(
+                        "SELECT cpf FROM usuarios WHERE " + coluna + " = ? ORDER BY cpf LIMIT 1")) {
+                    comando.setString(1, chave);
+                    try (ResultSet resultado = comando.executeQuery()) {
+                        return resultado.next() ? resultado.getString(1) : null;
+                    }
+                }
+            });
+        } catch (IOException | SQLException e) {
+            Registro.erro("Erro ao localizar o usuário: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Retorna a coluna da tabela {@code usuarios} correspondente a um campo do documento.
+     */
+    private static String colunaDoCampo(String campo) {
+        switch (campo) {
+            case "username":
+                return "username";
+            case "password":
+                return "senha";
+            case "fullName":
+                return "nome";
+            case "cpf":
+                return "cpf";
+            case "email":
+                return "email";
+            case "isAdmin":
+                return "admin";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Armazena os dados de um evento, gravando a sua quantidade de ingressos na coluna {@code ingressos}.
+     *
+     * @param evento o evento a ser armazenado
+     */
+    @Override
+    public synchronized void armazenarEvento(Evento evento) {
+        gravarEvento(evento, true);
+    }
+
+    /**
+     * Armazena os dados de um evento sem alterar a coluna {@code ingressos} de um evento já
+     * cadastrado, cujo valor é copiado para o objeto informado.
+     *
+     * @param evento o evento a ser armazenado
+     */
+    @Override
+    public synchronized void armazenarDetalhesEvento(Evento evento) {
+        gravarEvento(evento, false);
+    }
+
+    private void gravarEvento(Evento evento, boolean definirQuantidade) {
+        try {
+            byte[] documento = codec.codificarEvento(evento);
+            LocalDate data = evento.getData() != null
+                    ? evento.getData().toInstant().atZone(ZoneId.systemDefault()).toLocalDate()
+                    : IndiceEventos.dataDoId(evento.getID());
+            executar(() -> {
+                int alterados;
+                try (PreparedStatement comando = conexao.prepareStatement(definirQuantidade
+                        ? "UPDATE eventos SET data = ?, documento = ?, ingressos = ? WHERE id = ?"
+                        : "UPDATE eventos SET data = ?, documento = ? WHERE id = ?")) {
+                    comando.setDate(1, data == null ? null : java.sql.Date.valueOf(data));
+                    comando.setBytes(2, documento);
+                    if (definirQuantidade) {
+                        comando.setInt(3, evento.getIngressos());
+                        comando.setString(4, evento.getID());
+                    } else {
+                        comando.setString(3, evento.getID());
+                    }
+                    alterados = comando.executeUpdate();
+                }
+                if (alterados == 0) {
+                    try (PreparedStatement comando = conexao.prepareStatement(
+                            "INSERT INTO eventos (id, data, ingressos, documento) VALUES (?, ?, ?, ?)")) {
+                        comando.setString(1, evento.getID());
+                        comando.setDate(2, data == null ? null : java.sql.Date.valueOf(data));
+                        comando.setInt(3, evento.getIngressos());
+                        comando.setBytes(4, documento);
+                        comando.executeUpdate();
+                    }
+                } else if (!definirQuantidade) {
+                    evento.setIngressos(quantidadeIngressos(evento.getID()));
+                }
+                return null;
+            });
+            Registro.depuracao("Dados do evento armazenados com sucesso!");
+        } catch (IOException | SQLException e) {
+            Registro.erro("Erro ao armazenar os dados do evento: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized boolean existeEvento(String eventoId) {
+        try {
+            return executar(() -> {
+                try (PreparedStatement comando = conexao.prepareStatement("SELECT 1 FROM eventos WHERE id = ?")) {
+                    comando.setString(1, eventoId);
+                    try (ResultSet resultado = comando.executeQuery()) {
+                        return resultado.next();
+                    }
+                }
+            });
+        } catch (IOException | SQLException e) {
+            Registro.erro("Erro ao verificar o evento: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Insere os usuários do lote com um único comando em lote e uma única transação.
+     *
+     * @param usuarios os usuários, que ainda não podem existir no banco
+     * @throws IOException se o lote não puder ser gravado; nesse caso nenhum usuário do lote é gravado
+     */
+    @Override
+    public synchronized void armazenarLoteUsuarios(List<Usuario> usuarios) throws IOException {
+        try {
+            executar(() -> {
+                try (PreparedStatement comando = conexao.prepareStatement(
+                        "INSERT INTO usuarios (username, senha, nome, email, admin, documento, username_chave, email_chave, cpf) " +
+                            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                    for (Usuario usuario : usuarios) {
+                        Usuario perfil = new Usuario(usuario.getLogin(), usuario.getSenha(), usuario.getNome(),
+                                                     usuario.getCpf(), usuario.getEmail(), usuario.isAdmin());
+                        preencherPerfil(comando, usuario, codec.codificarUsuario(perfil));
+                        comando.setString(9, usuario.getCpf().replaceAll("[^a-zA-Z0-9]", ""));
+                        comando.addBatch();
+                    }
+                    comando.executeBatch();
+                }
+                for (Usuario usuario : usuarios) {
+                    if (!usuario.getIngressos().isEmpty() || !usuario.getRecibos().isEmpty()) {
+                        acrescentarHistorico(usuario.getCpf().replaceAll("[^a-zA-Z0-9]", ""),
+                                usuario.getIngressos(), usuario.getRecibos());
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new IOException("Erro ao armazenar o lote de usuários: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Insere os eventos do lote com um único comando em lote e uma única transação.
+     *
+     * @param eventos os eventos, que ainda não podem existir no banco
+     * @throws IOException se o lote não puder ser gravado; nesse caso nenhum evento do lote é gravado
+     */
+    @Override
+    public synchronized void armazenarLoteEventos(List<Evento> eventos) throws IOException {
+        try {
+            executar(() -> {
+                try (PreparedStatement comando = conexao.prepareStatement(
+                        "INSERT INTO eventos (id, data, ingressos, documento) VALUES (?, ?, ?, ?)")) {
+                    for (Evento evento : eventos) {
+                        LocalDate data = evento.getData() != null
+                                ? evento.getData().toInstant().atZone(ZoneId.systemDefault()).toLocalDate()
+                                : IndiceEventos.dataDoId(evento.getID());
+                        comando.setString(1, evento.getID());
+                        comando.setDate(2, data == null ? null : java.sql.Date.valueOf(data));
+                        comando.setInt(3, evento.getIngressos());
+                        comando.setBytes(4, codec.codificarEvento(evento));
+                        comando.addBatch();
+                    }
+                    comando.executeBatch();
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new IOException("Erro ao armazenar o lote de eventos: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized Evento lerEvento(String eventoId) {
+        try {
+            return executar(() -> {
+                try (PreparedStatement comando = conexao.prepareStatement(
+                        "SELECT ingressos, documento FROM eventos WHERE id = ?")) {
+                    comando.setString(1, eventoId);
+                    try (ResultSet resultado = comando.executeQuery()) {
+                        if (!resultado.next()) {
+                            Registro.erro("Erro ao ler os dados do evento: evento {} não encontrado.", eventoId);
+                            return null;
+                        }
+                        Evento evento = codec.decodificarEvento(new ByteArrayInputStream(resultado.getBytes(2)));
+                        evento.setIngressos(resultado.getInt(1));
+                        Registro.depuracao("Dados do evento lidos com sucesso!");
+                        return evento;
+                    }
+                }
+            });
+        } catch (IOException | SQLException e) {
+            Registro.erro("Erro ao ler os dados do evento: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized int ajustarIngressos(String eventoId, int delta) {
+        try {
+            Integer novaQuantidade = executar(() -> {
+                try (PreparedStatement comando = conexao.prepareStatement(
+                        "UPDATE eventos SET ingressos = ingressos + ? WHERE id = ?")) {
+                    comando.setInt(1, delta);
+                    comando.setString(2, eventoId);
+                    if (comando.executeUpdate() == 0) {
+                        return null;
+                    }
+                }
+                return quantidadeIngressos(eventoId);
+            });
+            if (novaQuantidade == null) {
+                throw new IllegalArgumentException("Erro: Evento " + eventoId + " não encontrado.");
+            }
+            return novaQuantidade;
+        } catch (IOException | SQLException e) {
+            throw new IllegalStateException("Erro ao ajustar os ingressos do evento " + eventoId + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reserva ingressos com um único {@code UPDATE} condicional: a linha só é alterada se ainda
+     * houver ingressos suficientes, de modo que o banco nunca fica com quantidade negativa.
+     */
+    @Override
+    public synchronized int reservarIngressos(String eventoId, int quantidade) {
+        try {
+            Integer restantes = executar(() -> {
+                try (PreparedStatement comando = conexao.prepareStatement(
+                        "UPDATE eventos SET ingressos = ingressos - ? WHERE id = ? AND ingressos >= ?")) {
+                    comando.setInt(1, quantidade);
+                    comando.setString(2, eventoId);
+                    comando.setInt(3, quantidade);
+                    if (comando.executeUpdate() > 0) {
+                        return quantidadeIngressos(eventoId);
+                    }
+                }
+                return existeLinhaEvento(eventoId) ? -1 : null;
+            });
+            if (restantes == null) {
+                throw new IllegalArgumentException("Erro: Evento " + eventoId + " não encontrado.");
+            }
+            return restantes;
+        } catch (IOException | SQLException e) {
+            throw new IllegalStateException("Erro ao reservar os ingressos do evento " + eventoId + ": " + e.getMessage(), e);
+        }
+    }
+
+    private boolean existeLinhaEvento(String eventoId) throws SQLException {
+        try (PreparedStatement comando = conexao.prepareStatement("SELECT 1 FROM eventos WHERE id = ?")) {
+            comando.setString(1, eventoId);
+            try (ResultSet resultado = comando.executeQuery()) {
+                return resultado.next();
+            }
+        }
+    }
+
+    private int quantidadeIngressos(String eventoId) throws SQLException {
+        try (PreparedStatement comando = conexao.prepareStatement("SELECT ingressos FROM eventos WHERE id = ?")) {
+            comando.setString(1, eventoId);
+            try (ResultSet resultado = comando.executeQuery()) {
+                return resultado.next() ? resultado.getInt(1) : 0;
+            }
+        }
+    }
+
+    @Override
+    public synchronized List<String> listarProximosEventos(int quantidade) {
+        return listarIds("SELECT id FROM eventos WHERE data >= ? ORDER BY data, id LIMIT ?",
+                java.sql.Date.valueOf(LocalDate.now().plusDays(1)), null, quantidade, 0);
+    }
+
+    @Override
+    public synchronized List<String> listarEventosEntre(Date inicio, Date fim, int pagina, int tamanhoPagina) {
+        if (pagina < 0 || tamanhoPagina <= 0) {
+            throw new IllegalArgumentException("Erro: Página e tamanho de página inválidos.");
+        }
+        ZoneId zona = ZoneId.systemDefault();
+        return listarIds("SELECT id FROM eventos WHERE data >= ? AND data <= ? ORDER BY data, id LIMIT ? OFFSET ?",
+                java.sql.Date.valueOf(inicio.toInstant().atZone(zona).toLocalDate()),
+                java.sql.Date.valueOf(fim.toInstant().atZone(zona).toLocalDate()),
+                tamanhoPagina, (long) pagina * tamanhoPagina);
+    }
+
+    private List<String> listarIds(String sql, java.sql.Date inicio, java.sql.Date fim, int limite, long deslocamento) {
+        try {
+            return executar(() -> {
+                try (PreparedStatement comando = conexao.prepareStatement(sql)) {
+                    int parametro = 1;
+                    comando.setDate(parametro++, inicio);
+                    if (fim != null) {
+                        comando.setDate(parametro++, fim);
+                    }
+                    comando.setInt(parametro++, limite);
+                    if (fim != null) {
+                        comando.setLong(parametro, deslocamento);
+                    }
+                    List<String> ids = new ArrayList<>();
+                    try (ResultSet resultado = comando.executeQuery()) {
+                        while (resultado.next()) {
+                            ids.add(resultado.getString(1));
+                        }
+                    }
+                    return ids;
+                }
+            });
+        } catch (IOException | SQLException e) {
+            Registro.erro("Erro ao listar os eventos: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Abre uma {@link VisaoMemoria} com todos os eventos e usuários, lidos em uma única transação
+     * com três consultas, sem uma consulta por entidade.
+     *
+     * @return a visão capturada
+     * @throws IOException se os dados não puderem ser lidos
+     */
+    @Override
+    public synchronized VisaoLeitura abrirVisao() throws IOException {
+        try {
+            return executar(() -> {
+                VisaoMemoria visao = new VisaoMemoria();
+                try (Statement comando = conexao.createStatement()) {
+                    try (ResultSet resultado = comando.executeQuery("SELECT ingressos, documento FROM eventos")) {
+                        while (resultado.next()) {
+                            Evento evento = codec.decodificarEvento(new ByteArrayInputStream(resultado.getBytes(2)));
+                            evento.setIngressos(resultado.getInt(1));
+                            visao.incluirEvento(evento);
+                        }
+                    }
+                    Map<String, Usuario> usuarios = new HashMap<>();
+                    try (ResultSet resultado = comando.executeQuery("SELECT cpf, documento FROM usuarios")) {
+                        while (resultado.next()) {
+                            usuarios.put(resultado.getString(1),
+                                    codec.decodificarUsuario(new ByteArrayInputStream(resultado.getBytes(2))));
+                        }
+                    }
+                    try (ResultSet resultado = comando.executeQuery(
+                            "SELECT cpf, tipo, conteudo FROM historico ORDER BY cpf, seq")) {
+                        String cpfAnterior = null;
+                        while (resultado.next()) {
+                            String cpf = resultado.getString(1);
+                            Usuario usuario = usuarios.get(cpf);
+                            if (usuario == null) {
+                                continue;
+                            }
+                            if (!cpf.equals(cpfAnterior)) {
+                                // O histórico substitui as listas do documento, como em lerUsuario
+                                usuario.getIngressos().clear();
+                                usuario.getRecibos().clear();
+                                cpfAnterior = cpf;
+                            }
+                            HistoricoUsuario.aplicar(usuario, (byte) resultado.getShort(2), resultado.getString(3));
+                        }
+                    }
+                    usuarios.forEach(visao::incluirUsuario);
+                }
+                return visao;
+            });
+        } catch (SQLException e) {
+            throw new IOException("Erro ao abrir a visão de leitura: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void fechar() {
+        try {
+            conexao.close();
+        } catch (SQLException e) {
+            Registro.erro("Erro ao fechar o banco de dados: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Executa uma operação em uma transação, confirmada ao final ou desfeita em caso de erro.
+     * Deve ser chamado com o monitor desta instância.
+     */
+    private <T> T executar(OperacaoSql<T> operacao) throws SQLException, IOException {
+        try {
+            T resultado = operacao.executar();
+            conexao.commit();
+            return resultado;
+        } catch (SQLException | IOException | RuntimeException e) {
+            conexao.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Operação executada na conexão do banco.
+     */
+    private interface OperacaoSql<T> {
+        T executar() throws SQLException, IOException;
+    }
+}
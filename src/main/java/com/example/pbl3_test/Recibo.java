@@ -38,6 +38,16 @@ public class Recibo {
         this.data = data;    
     }
 
+    /**
+     * Cria uma cópia do recibo associada ao ingresso informado, em geral uma cópia do ingresso original.
+     *
+     * @param ingresso o ingresso da cópia
+     * @return a cópia do recibo
+     */
+    Recibo copiar(Ingresso ingresso) {
+        return new Recibo(fullName, cpf, email, ingresso, Pagamento, eventoId, data == null ? null : new Date(data.getTime()));
+    }
+
     /**
      * Retorna o nome completo do comprador.
      *
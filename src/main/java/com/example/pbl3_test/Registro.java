@@ -0,0 +1,477 @@
+package com.example.pbl3_test;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Registro de mensagens das classes de modelo e de armazenamento, gravadas no console em segundo plano.
+ *
+ * <p>
+ * As mensagens são colocadas em um buffer circular de tamanho fixo, sem travas, e uma thread
+ * escritora as formata e imprime em lotes, com uma única chamada ao console por lote. Assim, quem
+ * registra uma mensagem não espera pelo console. As mensagens de {@link Nivel#AVISO} e
+ * {@link Nivel#ERRO} vão para {@code System.err}; as demais, para {@code System.out}.
+ * </p>
+ *
+ * <p>
+ * As mensagens usam {@code {}} no lugar de cada argumento, que só é convertido em texto pela
+ * thread escritora. Um argumento {@link Throwable} sem {@code {}} correspondente tem a pilha de
+ * chamadas impressa depois da mensagem. Mensagens abaixo do nível mínimo, definido pela
+ * propriedade de sistema {@code pbl3.registro.nivel} ({@code INFO} por padrão), são descartadas
+ * antes de qualquer alocação, desde que sejam no máximo três argumentos, passados separadamente e
+ * não concatenados à mensagem; com quatro ou mais, o vetor dos argumentos é criado na chamada. Quando o buffer está cheio, as mensagens de depuração e informação
+ * são descartadas e contadas; as de aviso e erro esperam a thread escritora liberar espaço.
+ * </p>
+ *
+ * <p>
+ * As mensagens pendentes são impressas ao encerrar a aplicação ou por {@link #descarregar()}.
+ * </p>
+ */
+public final class Registro {
+
+    /**
+     * Níveis das mensagens, em ordem crescente de gravidade.
+     */
+    public enum Nivel {
+        DEPURACAO, INFO, AVISO, ERRO
+    }
+
+    private static final int CAPACIDADE = 8192;
+    private static final int MASCARA = CAPACIDADE - 1;
+    private static final long INTERVALO_ESCRITA_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final DateTimeFormatter FORMATO_HORA =
+            DateTimeFormatter.ofPattern("HH:mm:ss.SSS", Locale.ROOT).withZone(ZoneId.systemDefault());
+
+    private static final Entrada[] entradas = new Entrada[CAPACIDADE];
+    private static final AtomicLongArray publicadas = new AtomicLongArray(CAPACIDADE);
+    private static final AtomicLong proxima = new AtomicLong();
+    private static final AtomicLong descartadas = new AtomicLong();
+    private static final Object escrita = new Object();
+    private static volatile long lidas;
+    private static long descartesInformados;
+    private static volatile int nivelMinimo = nivelConfigurado().ordinal();
+    private static final Thread escritora;
+
+    static {
+        for (int i = 0; i < CAPACIDADE; i++) {
+            entradas[i] = new Entrada();
+            publicadas.set(i, -1);
+        }
+        escritora = new Thread(Registro::escrever, "registro-escritor");
+        escritora.setDaemon(true);
+        escritora.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Registro::descarregar, "registro-descarga"));
+    }
+
+    private Registro() {
+    }
+
+    /**
+     * Retorna o nível mínimo das mensagens registradas.
+     *
+     * @return o nível mínimo
+     */
+    public static Nivel getNivel() {
+        return Nivel.values()[nivelMinimo];
+    }
+
+    /**
+     * Define o nível mínimo das mensagens registradas.
+     *
+     * @param nivel o nível mínimo
+     */
+    public static void setNivel(Nivel nivel) {
+        nivelMinimo = nivel.ordinal();
+    }
+
+    /**
+     * Verifica se as mensagens do nível informado estão sendo registradas, para evitar montar
+     * argumentos caros de mensagens que seriam descartadas.
+     *
+     * @param nivel o nível da mensagem
+     * @return {@code true} se o nível estiver ativo
+     */
+    public static boolean ativo(Nivel nivel) {
+        return nivel.ordinal() >= nivelMinimo;
+    }
+
+    /**
+     * Registra uma mensagem de depuração.
+     *
+     * @param mensagem a mensagem
+     */
+    public static void depuracao(String mensagem) {
+        registrar(Nivel.DEPURACAO, 0, mensagem, null, null, null, null);
+    }
+
+    /**
+     * Registra uma mensagem de depuração com um argumento.
+     *
+     * @param mensagem a mensagem, com {@code {}} no lugar do argumento
+     * @param arg1 o argumento
+     */
+    public static void depuracao(String mensagem, Object arg1) {
+        registrar(Nivel.DEPURACAO, 1, mensagem, arg1, null, null, null);
+    }
+
+    /**
+     * Registra uma mensagem de depuração com dois argumentos.
+     *
+     * @param mensagem a mensagem, com {@code {}} no lugar de cada argumento
+     * @param arg1 o primeiro argumento
+     * @param arg2 o segundo argumento
+     */
+    public static void depuracao(String mensagem, Object arg1, Object arg2) {
+        registrar(Nivel.DEPURACAO, 2, mensagem, arg1, arg2, null, null);
+    }
+
+    /**
+     * Registra uma mensagem de depuração com três argumentos.
+     *
+     * @param mensagem a mensagem, com {@code {}} no lugar de cada argumento
+     * @param arg1 o primeiro argumento
+     * @param arg2 o segundo argumento
+     * @param arg3 o terceiro argumento
+     */
+    public static void depuracao(String mensagem, Object arg1, Object arg2, Object arg3) {
+        registrar(Nivel.DEPURACAO, 3, mensagem, arg1, arg2, arg3, null);
+    }
+
+    /**
+     * Registra uma mensagem de depuração com quatro ou mais argumentos.
+     *
+     * @param mensagem a mensagem, com {@code {}} no lugar de cada argumento
+     * @param argumentos os argumentos
+     */
+    public static void depuracao(String mensagem, Object... argumentos) {
+        registrar(Nivel.DEPURACAO, argumentos.length, mensagem, null, null, null, argumentos);
+    }
+
+    /**
+     * Registra uma mensagem informativa.
+     *
+     * @param mensagem a mensagem
+     */
+    public static void info(String mensagem) {
+        registrar(Nivel.INFO, 0, mensagem, null, null, null, null);
+    }
+
+    /**
+     * Registra uma mensagem informativa com um argumento.
+     *
+     * @param mensagem a mensagem, com {@code {}} no lugar do argumento
+     * @param arg1 o argumento
+     */
+    public static void info(String mensagem, Object arg1) {
+        registrar(Nivel.INFO, 1, mensagem, arg1, null, null, null);
+    }
+
+    /**
+     * Registra uma mensagem informativa com dois argumentos.
+     *
+     * @param mensagem a mensagem, com {@code {}} no lugar de cada argumento
+     * @param arg1 o primeiro argumento
+     * @param arg2 o segundo argumento
+     */
+    public static void info(String mensagem, Object arg1, Object arg2) {
+        registrar(Nivel.INFO, 2, mensagem, arg1, arg2, null, null);
+    }
+
+    /**
+     * Registra uma mensagem informativa com três argumentos.
+     *
+     * @param mensagem a mensagem, com {@code {}} no lugar de cada argumento
+     * @param arg1 o primeiro argumento
+     * @param arg2 o segundo argumento
+     * @param arg3 o terceiro argumento
+     */
+    public static void info(String mensagem, Object arg1, Object arg2, Object arg3) {
+        registrar(Nivel.INFO, 3, mensagem, arg1, arg2, arg3, null);
+    }
+
+    /**
+     * Registra uma mensagem informativa com quatro ou mais argumentos.
+     *
+     * @param mensagem a mensagem, com {@code {}} no lugar de cada argumento
+     * @param argumentos os argumentos
+     */
+    public static void info(String mensagem, Object... argumentos) {
+        registrar(Nivel.INFO, argumentos.length, mensagem, null, null, null, argumentos);
+    }
+
+    /**
+     * Registra um aviso.
+     *
+     * @param mensagem a mensagem
+     */
+    public static void aviso(String mensagem) {
+        registrar(Nivel.AVISO, 0, mensagem, null, null, null, null);
+    }
+
+    /**
+     * Registra um aviso com um argumento.
+     *
+     * @param mensagem a mensagem, com {@code {}} no lugar do argumento
+     * @param arg1 o argumento
+     */
+    public static void aviso(String mensagem, Object arg1) {
+        registrar(Nivel.AVISO, 1, mensagem, arg1, null, null, null);
+    }
+
+    /**
+     * Registra um aviso com dois argumentos.
+     *
+     * @param mensagem a mensagem, com {@code {}} no lugar de cada argumento
+     * @param arg1 o primeiro argumento
+     * @param arg2 o segundo argumento
+     */
+    public static void aviso(String mensagem, Object arg1, Object arg2) {
+        registrar(Nivel.AVISO, 2, mensagem, arg1, arg2, null, null);
+    }
+
+    /**
+     * Registra um aviso com três argumentos.
+     *
+     * @param mensagem a mensagem, com {@code {}} no lugar de cada argumento
+     * @param arg1 o primeiro argumento
+     * @param arg2 o segundo argumento
+     * @param arg3 o terceiro argumento
+     */
+    public static void aviso(String mensagem, Object arg1, Object arg2, Object arg3) {
+        registrar(Nivel.AVISO, 3, mensagem, arg1, arg2, arg3, null);
+    }
+
+    /**
+     * Registra um aviso com quatro ou mais argumentos.
+     *
+     * @param mensagem a mensagem, com {@code {}} no lugar de cada argumento
+     * @param argumentos os argumentos
+     */
+    public static void aviso(String mensagem, Object... argumentos) {
+        registrar(Nivel.AVISO, argumentos.length, mensagem, null, null, null, argumentos);
+    }
+
+    /**
+     * Registra um erro.
+     *
+     * @param mensagem a mensagem
+     */
+    public static void erro(String mensagem) {
+        registrar(Nivel.ERRO, 0, mensagem, null, null, null, null);
+    }
+
+    /**
+     * Registra um erro com um argumento.
+     *
+     * @param mensagem a mensagem, com {@code {}} no lugar do argumento
+     * @param arg1 o argumento ou a exceção, cuja pilha de chamadas é impressa
+     */
+    public static void erro(String mensagem, Object arg1) {
+        registrar(Nivel.ERRO, 1, mensagem, arg1, null, null, null);
+    }
+
+    /**
+     * Registra um erro com dois argumentos.
+     *
+     * @param mensagem a mensagem, com {@code {}} no lugar de cada argumento
+     * @param arg1 o primeiro argumento
+     * @param arg2 o segundo argumento ou a exceção, cuja pilha de chamadas é impressa
+     */
+    public static void erro(String mensagem, Object arg1, Object arg2) {
+        registrar(Nivel.ERRO, 2, mensagem, arg1, arg2, null, null);
+    }
+
+    /**
+     * Registra um erro com três argumentos.
+     *
+     * @param mensagem a mensagem, com {@code {}} no lugar de cada argumento
+     * @param arg1 o primeiro argumento
+     * @param arg2 o segundo argumento
+     * @param arg3 o terceiro argumento ou a exceção, cuja pilha de chamadas é impressa
+     */
+    public static void erro(String mensagem, Object arg1, Object arg2, Object arg3) {
+        registrar(Nivel.ERRO, 3, mensagem, arg1, arg2, arg3, null);
+    }
+
+    /**
+     * Registra um erro com quatro ou mais argumentos.
+     *
+     * @param mensagem a mensagem, com {@code {}} no lugar de cada argumento
+     * @param argumentos os argumentos; o último pode ser a exceção, cuja pilha de chamadas é impressa
+     */
+    public static void erro(String mensagem, Object... argumentos) {
+        registrar(Nivel.ERRO, argumentos.length, mensagem, null, null, null, argumentos);
+    }
+
+    /**
+     * Imprime todas as mensagens registradas até agora, sem esperar a thread escritora. Usado antes
+     * de imprimir resultados no console, para que não se misturem com as mensagens pendentes.
+     */
+    public static void descarregar() {
+        escreverPendentes();
+    }
+
+    /**
+     * Retorna a quantidade de mensagens descartadas por falta de espaço no buffer desde o início.
+     *
+     * @return a quantidade de mensagens descartadas
+     */
+    public static long getDescartadas() {
+        return descartadas.get();
+    }
+
+    private static void registrar(Nivel nivel, int quantidade, String mensagem, Object arg1, Object arg2, Object arg3, Object[] outros) {
+        if (nivel.ordinal() < nivelMinimo) {
+            return;
+        }
+        long sequencia;
+        while (true) {
+            sequencia = proxima.get();
+            if (sequencia - lidas >= CAPACIDADE) {
+                if (nivel.ordinal() < Nivel.AVISO.ordinal()) {
+                    descartadas.incrementAndGet();
+                    return;
+                }
+                // Avisos e erros não são descartados: espera a thread escritora liberar espaço
+                LockSupport.unpark(escritora);
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+                continue;
+            }
+            if (proxima.compareAndSet(sequencia, sequencia + 1)) {
+                break;
+            }
+        }
+        int posicao = (int) (sequencia & MASCARA);
+        Entrada entrada = entradas[posicao];
+        entrada.nivel = nivel;
+        entrada.momento = System.currentTimeMillis();
+        entrada.thread = Thread.currentThread().getName();
+        entrada.mensagem = mensagem;
+        entrada.quantidade = quantidade;
+        entrada.arg1 = arg1;
+        entrada.arg2 = arg2;
+        entrada.arg3 = arg3;
+        entrada.outros = outros;
+        // A escrita volátil publica os campos da entrada para a thread escritora
+        publicadas.set(posicao, sequencia);
+        if (sequencia - lidas >= CAPACIDADE / 2) {
+            LockSupport.unpark(escritora);
+        }
+    }
+
+    private static void escrever() {
+        while (true) {
+            escreverPendentes();
+            LockSupport.parkNanos(INTERVALO_ESCRITA_NANOS);
+        }
+    }
+
+    /**
+     * Formata e imprime as entradas publicadas, em ordem, até a primeira ainda não publicada.
+     */
+    private static void escreverPendentes() {
+        synchronized (escrita) {
+            StringBuilder saida = new StringBuilder();
+            StringBuilder erros = new StringBuilder();
+            long descartes = descartadas.get() - descartesInformados;
+            if (descartes > 0) {
+                descartesInformados += descartes;
+                erros.append(descartes).append(" mensagem(ns) de registro descartada(s): buffer cheio.").append(System.lineSeparator());
+            }
+            long sequencia = lidas;
+            while (true) {
+                int posicao = (int) (sequencia & MASCARA);
+                if (publicadas.get(posicao) != sequencia) {
+                    break;
+                }
+                Entrada entrada = entradas[posicao];
+                formatar(entrada, entrada.nivel.ordinal() >= Nivel.AVISO.ordinal() ? erros : saida);
+                entrada.limpar();
+                sequencia++;
+                lidas = sequencia;
+            }
+            imprimir(System.out, saida);
+            imprimir(System.err, erros);
+        }
+    }
+
+    private static void imprimir(PrintStream console, StringBuilder texto) {
+        if (texto.length() > 0) {
+            console.print(texto);
+            console.flush();
+        }
+    }
+
+    private static void formatar(Entrada entrada, StringBuilder destino) {
+        destino.append(FORMATO_HORA.format(Instant.ofEpochMilli(entrada.momento))).append(' ')
+                .append(entrada.nivel).append(" [").append(entrada.thread).append("] ");
+        int quantidade = entrada.quantidade;
+        String mensagem = entrada.mensagem == null ? "null" : entrada.mensagem;
+        int usados = 0;
+        int inicio = 0;
+        int marcador;
+        while (usados < quantidade && (marcador = mensagem.indexOf("{}", inicio)) >= 0) {
+            destino.append(mensagem, inicio, marcador).append(entrada.argumento(usados++));
+            inicio = marcador + 2;
+        }
+        destino.append(mensagem, inicio, mensagem.length()).append(System.lineSeparator());
+        for (int i = usados; i < quantidade; i++) {
+            if (entrada.argumento(i) instanceof Throwable) {
+                StringWriter pilha = new StringWriter();
+                ((Throwable) entrada.argumento(i)).printStackTrace(new PrintWriter(pilha));
+                destino.append(pilha);
+            }
+        }
+    }
+
+    private static Nivel nivelConfigurado() {
+        String nivel = System.getProperty("pbl3.registro.nivel");
+        if (nivel != null) {
+            try {
+                return Nivel.valueOf(nivel.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Nível de registro desconhecido: " + nivel);
+            }
+        }
+        return Nivel.INFO;
+    }
+
+    /**
+     * Posição do buffer circular, reaproveitada a cada volta.
+     */
+    private static final class Entrada {
+        private Nivel nivel;
+        private long momento;
+        private String thread;
+        private String mensagem;
+        private int quantidade;
+        private Object arg1;
+        private Object arg2;
+        private Object arg3;
+        private Object[] outros;
+
+        private Object argumento(int indice) {
+            if (outros != null) {
+                return outros[indice];
+            }
+            return indice == 0 ? arg1 : indice == 1 ? arg2 : arg3;
+        }
+
+        private void limpar() {
+            mensagem = null;
+            arg1 = null;
+            arg2 = null;
+            arg3 = null;
+            outros = null;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.pbl3_test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reservas temporárias de ingressos de um {@link Armazenamento}, obtidas por {@link Armazenamento#getReservas()}.
+ *
+ * <p>
+ * Uma reserva retira os ingressos do evento com {@link MotorArmazenamento#reservarIngressos(String, int)}
+ * e os mantém separados para um usuário durante a validade informada, por exemplo enquanto ele escolhe
+ * a forma de pagamento. A reserva termina de uma de três formas: é concluída pelo
+ * {@link Controller#confirmarReserva(Usuario, Reserva, String, Date, Armazenamento)}, que a
+ * transforma em ingressos e recibos; é liberada; ou expira. Nos dois últimos casos os ingressos
+ * voltam para o evento. A passagem para o estado final é atômica, de modo que uma reserva que
+ * expira enquanto é confirmada termina de uma única forma.
+ * </p>
+ *
+ * <p>
+ * O vencimento de todas as reservas é controlado por uma única {@link RodaTemporizacao}, com passos
+ * de {@value #PASSO_MILLIS} ms, em que agendar e cancelar têm custo constante independentemente da
+ * quantidade de reservas pendentes. As reservas pendentes são liberadas ao encerrar a aplicação;
+ * se o processo for interrompido de forma abrupta, os ingressos reservados precisam ser devolvidos
+ * com {@link Armazenamento#ajustarIngressos(String, int)}.
+ * </p>
+ */
+public class ReservasIngressos {
+
+    /**
+     * Validade padrão de uma reserva, em milissegundos.
+     */
+    public static final long VALIDADE_PADRAO_MILLIS = 5 * 60 * 1000L;
+
+    private static final long PASSO_MILLIS = 100;
+    private static final int POSICOES_RODA = 1024;
+    private static final AtomicLong ids = new AtomicLong();
+
+    private final Armazenamento dados;
+    private final Map<Long, Reserva> pendentes = new ConcurrentHashMap<>();
+    private volatile boolean ganchoRegistrado;
+
+    /**
+     * Estados de uma reserva. Apenas {@link #PENDENTE} pode mudar, e apenas uma vez.
+     */
+    public enum Estado {
+        PENDENTE, CONFIRMADA, LIBERADA, EXPIRADA
+    }
+
+    /**
+     * Roda compartilhada por todos os armazenamentos, criada apenas quando a primeira reserva é feita.
+     */
+    private static final class Roda {
+        private static final RodaTemporizacao INSTANCIA =
+                new RodaTemporizacao("reservas", PASSO_MILLIS, TimeUnit.MILLISECONDS, POSICOES_RODA);
+    }
+
+    /**
+     * Cria o controle de reservas de um armazenamento.
+     *
+     * @param dados o armazenamento cujos eventos terão ingressos reservados
+     */
+    ReservasIngressos(Armazenamento dados) {
+        this.dados = dados;
+    }
+
+    /**
+     * Reserva ingressos de um evento para um usuário.
+     *
+     * @param cpf o CPF do usuário
+     * @param eventoId o ID do evento
+     * @param quantidade a quantidade de ingressos, maior que zero
+     * @param validadeMillis a validade da reserva, em milissegundos
+     * @return a reserva pendente
+     * @throws IllegalArgumentException se a quantidade ou a validade não forem positivas, ou se o evento não for encontrado
+     * @throws IllegalStateException se o evento não tiver ingressos suficientes
+     */
+    public Reserva reservar(String cpf, String eventoId, int quantidade, long validadeMillis) {
+        if (quantidade <= 0) {
+            throw new IllegalArgumentException("Erro: A quantidade de ingressos deve ser maior que zero.");
+        }
+        if (validadeMillis <= 0) {
+            throw new IllegalArgumentException("Erro: A validade da reserva deve ser maior que zero.");
+        }
+        if (dados.reservarIngressos(eventoId, quantidade) < 0) {
+            throw new IllegalStateException("Erro: Ingressos esgotados para o evento " + eventoId + ".");
+        }
+
+        registrarGancho();
+        Reserva reserva = new Reserva(ids.incrementAndGet(), cpf, eventoId, quantidade,
+                new Date(System.currentTimeMillis() + validadeMillis));
+        pendentes.put(reserva.id, reserva);
+        reserva.expiracao = Roda.INSTANCIA.agendar(() -> encerrar(reserva, Estado.EXPIRADA),
+                validadeMillis, TimeUnit.MILLISECONDS);
+        Registro.depuracao("Reserva {} de {} ingresso(s) do evento {} criada.", reserva.id, quantidade, eventoId);
+        return reserva;
+    }
+
+    /**
+     * Marca uma reserva pendente como confirmada. Os ingressos continuam retirados do evento; cabe a
+     * quem confirma registrá-los para o usuário ou devolvê-los se o registro falhar.
+     *
+     * @param reserva a reserva
+     * @throws IllegalStateException se a reserva já tiver expirado, sido liberada ou confirmada
+     */
+    void confirmar(Reserva reserva) {
+        if (!encerrar(reserva, Estado.CONFIRMADA)) {
+            throw new IllegalStateException("Erro: A reserva " + reserva.getId() + " não está mais pendente ("
+                    + reserva.getEstado() + ").");
+        }
+    }
+
+    /**
+     * Libera uma reserva pendente, devolvendo os ingressos ao evento.
+     *
+     * @param reserva a reserva
+     * @return {@code true} se a reserva foi liberada; {@code false} se já não estava pendente
+     */
+    public boolean liberar(Reserva reserva) {
+        return encerrar(reserva, Estado.LIBERADA);
+    }
+
+    /**
+     * Lista as reservas pendentes de um usuário.
+     *
+     * @param cpf o CPF do usuário
+     * @return as reservas pendentes, em ordem de criação
+     */
+    public List<Reserva> listarPendentes(String cpf) {
+        List<Reserva> reservas = new ArrayList<>();
+        for (Reserva reserva : pendentes.values()) {
+            if (reserva.cpf.equals(cpf)) {
+                reservas.add(reserva);
+            }
+        }
+        reservas.sort((a, b) -> Long.compare(a.id, b.id));
+        return reservas;
+    }
+
+    /**
+     * Retorna a quantidade de reservas pendentes deste armazenamento.
+     *
+     * @return a quantidade de reservas pendentes
+     */
+    public int getQuantidadePendentes() {
+        return pendentes.size();
+    }
+
+    /**
+     * Libera todas as reservas pendentes, devolvendo os ingressos aos eventos.
+     *
+     * @return a quantidade de reservas liberadas
+     */
+    public int liberarTodas() {
+        int liberadas = 0;
+        for (Reserva reserva : pendentes.values()) {
+            if (liberar(reserva)) {
+                liberadas++;
+            }
+        }
+        return liberadas;
+    }
+
+    /**
+     * Passa a reserva do estado pendente para o estado final informado. Apenas a primeira chamada
+     * tem efeito; se a reserva terminar sem confirmação, os ingressos voltam para o evento.
+     */
+    private boolean encerrar(Reserva reserva, Estado estadoFinal) {
+        if (!reserva.estado.compareAndSet(Estado.PENDENTE, estadoFinal)) {
+            return false;
+        }
+        pendentes.remove(reserva.id);
+        if (estadoFinal != Estado.EXPIRADA && reserva.expiracao != null) {
+            reserva.expiracao.cancelar();
+        }
+        if (estadoFinal != Estado.CONFIRMADA) {
+            try {
+                dados.ajustarIngressos(reserva.eventoId, reserva.quantidade);
+            } catch (RuntimeException e) {
+                Registro.erro("Erro ao devolver os ingressos da reserva {} do evento {}: {}",
+                        reserva.id, reserva.eventoId, e.getMessage(), e);
+            }
+            Registro.info("Reserva {} do evento {} {}.", reserva.id, reserva.eventoId,
+                    estadoFinal == Estado.EXPIRADA ? "expirou" : "liberada");
+        }
+        return true;
+    }
+
+    private void registrarGancho() {
+        if (ganchoRegistrado) {
+            return;
+        }
+        synchronized (this) {
+            if (!ganchoRegistrado) {
+                Runtime.getRuntime().addShutdownHook(new Thread(this::liberarTodas, "reservas-liberacao"));
+                ganchoRegistrado = true;
+            }
+        }
+    }
+
+    /**
+     * Reserva temporária de ingressos de um evento para um usuário.
+     */
+    public static final class Reserva {
+
+        private final long id;
+        private final String cpf;
+        private final String eventoId;
+        private final int quantidade;
+        private final Date expiraEm;
+        private final AtomicReference<Estado> estado = new AtomicReference<>(Estado.PENDENTE);
+        private volatile RodaTemporizacao.Tarefa expiracao;
+
+        private Reserva(long id, String cpf, String eventoId, int quantidade, Date expiraEm) {
+            this.id = id;
+            this.cpf = cpf;
+            this.eventoId = eventoId;
+            this.quantidade = quantidade;
+            this.expiraEm = expiraEm;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getCpf() {
+            return cpf;
+        }
+
+        public String getEventoId() {
+            return eventoId;
+        }
+
+        public int getQuantidade() {
+            return quantidade;
+        }
+
+        public Date getExpiraEm() {
+            return new Date(expiraEm.getTime());
+        }
+
+        public Estado getEstado() {
+            return estado.get();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.pbl3_test;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Roda de temporização com hash, que executa ações depois de um atraso com custo constante por
+ * ação agendada, independentemente de quantas estão pendentes.
+ *
+ * <p>
+ * O tempo é dividido em passos de duração fixa e a roda tem uma quantidade fixa de posições,
+ * potência de dois. Cada ação é colocada na posição do passo em que vence, com o número de voltas
+ * completas que faltam até lá; a cada passo, uma thread em segundo plano percorre apenas a posição
+ * atual, executa as ações vencidas e decrementa as voltas das demais. Agendar e cancelar apenas
+ * colocam a ação em uma fila sem travas, consumida pela própria thread da roda, de modo que as
+ * posições nunca são acessadas por mais de uma thread.
+ * </p>
+ *
+ * <p>
+ * As ações vencem com a precisão de um passo e são executadas na thread da roda, uma de cada vez;
+ * por isso devem ser curtas. Exceções lançadas por uma ação são registradas e não interrompem a roda.
+ * </p>
+ */
+final class RodaTemporizacao {
+
+    private static final int PENDENTE = 0;
+    private static final int CANCELADA = 1;
+    private static final int EXECUTADA = 2;
+
+    private final long duracaoPassoNanos;
+    private final int mascara;
+    private final Posicao[] posicoes;
+    private final Queue<Tarefa> agendadas = new ConcurrentLinkedQueue<>();
+    private final Queue<Tarefa> canceladas = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendentes = new AtomicInteger();
+    private final long inicio = System.nanoTime();
+    private final Thread thread;
+    private volatile boolean fechada;
+    private long passo;
+
+    /**
+     * Cria a roda e inicia a sua thread, em segundo plano.
+     *
+     * @param nome o nome da roda, usado no nome da thread
+     * @param duracaoPasso a duração de cada passo
+     * @param unidade a unidade de {@code duracaoPasso}
+     * @param quantidadePosicoes a quantidade de posições, arredondada para a próxima potência de dois
+     * @throws IllegalArgumentException se a duração ou a quantidade de posições não forem positivas
+     */
+    RodaTemporizacao(String nome, long duracaoPasso, TimeUnit unidade, int quantidadePosicoes) {
+        if (duracaoPasso <= 0 || quantidadePosicoes <= 0 || quantidadePosicoes > 1 << 30) {
+            throw new IllegalArgumentException("Erro: Duração do passo e quantidade de posições devem ser positivas.");
+        }
+        int tamanho = Integer.highestOneBit(quantidadePosicoes);
+        if (tamanho < quantidadePosicoes) {
+            tamanho <<= 1;
+        }
+        this.duracaoPassoNanos = unidade.toNanos(duracaoPasso);
+        this.mascara = tamanho - 1;
+        this.posicoes = new Posicao[tamanho];
+        for (int i = 0; i < tamanho; i++) {
+            posicoes[i] = new Posicao();
+        }
+        this.thread = new Thread(this::girar, "roda-" + nome);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Agenda uma ação para ser executada depois do atraso informado.
+     *
+     * @param acao a ação
+     * @param atraso o atraso; valores menores que um passo vencem no passo seguinte
+     * @param unidade a unidade de {@code atraso}
+     * @return a tarefa agendada, que pode ser cancelada
+     * @throws IllegalStateException se a roda já tiver sido fechada
+     */
+    Tarefa agendar(Runnable acao, long atraso, TimeUnit unidade) {
+        if (fechada) {
+            throw new IllegalStateException("Erro: A roda de temporização foi fechada.");
+        }
+        Tarefa tarefa = new Tarefa(acao, System.nanoTime() - inicio + unidade.toNanos(Math.max(0, atraso)));
+        pendentes.incrementAndGet();
+        agendadas.add(tarefa);
+        return tarefa;
+    }
+
+    /**
+     * Retorna a quantidade de tarefas agendadas que ainda não foram executadas nem canceladas.
+     *
+     * @return a quantidade de tarefas pendentes
+     */
+    int getPendentes() {
+        return pendentes.get();
+    }
+
+    /**
+     * Para a thread da roda. As tarefas pendentes não são executadas.
+     */
+    void fechar() {
+        fechada = true;
+        thread.interrupt();
+    }
+
+    private void girar() {
+        while (!fechada) {
+            long proximoPasso = (passo + 1) * duracaoPassoNanos;
+            long espera;
+            while ((espera = proximoPasso - (System.nanoTime() - inicio)) > 0) {
+                LockSupport.parkNanos(this, espera);
+                if (fechada) {
+                    return;
+                }
+            }
+            removerCanceladas();
+            distribuirAgendadas();
+            vencer(posicoes[(int) (passo & mascara)]);
+            passo++;
+        }
+    }
+
+    /**
+     * Coloca as tarefas recém-agendadas nas suas posições. Tarefas já vencidas vão para a posição
+     * do passo atual, que é processada em seguida.
+     */
+    private void distribuirAgendadas() {
+        Tarefa tarefa;
+        while ((tarefa = agendadas.poll()) != null) {
+            if (tarefa.estado.get() != PENDENTE) {
+                continue;
+            }
+            long passoVencimento = Math.max(passo, tarefa.vencimentoNanos / duracaoPassoNanos);
+            tarefa.voltas = (passoVencimento - passo) / posicoes.length;
+            tarefa.posicao = posicoes[(int) (passoVencimento & mascara)];
+            tarefa.posicao.adicionar(tarefa);
+        }
+    }
+
+    private void removerCanceladas() {
+        Tarefa tarefa;
+        while ((tarefa = canceladas.poll()) != null) {
+            if (tarefa.posicao != null) {
+                tarefa.posicao.remover(tarefa);
+            }
+        }
+    }
+
+    private void vencer(Posicao posicao) {
+        Tarefa tarefa = posicao.primeira;
+        while (tarefa != null) {
+            Tarefa seguinte = tarefa.proxima;
+            if (tarefa.voltas > 0) {
+                tarefa.voltas--;
+            } else {
+                posicao.remover(tarefa);
+                if (tarefa.estado.compareAndSet(PENDENTE, EXECUTADA)) {
+                    pendentes.decrementAndGet();
+                    try {
+                        tarefa.acao.run();
+                    } catch (RuntimeException e) {
+                        Registro.erro("Erro ao executar uma tarefa da roda de temporização: {}", e.getMessage(), e);
+                    }
+                }
+            }
+            tarefa = seguinte;
+        }
+    }
+
+    /**
+     * Ação agendada na roda.
+     */
+    final class Tarefa {
+
+        private final Runnable acao;
+        private final long vencimentoNanos;
+        private final AtomicInteger estado = new AtomicInteger(PENDENTE);
+        private long voltas;
+        private Posicao posicao;
+        private Tarefa anterior;
+        private Tarefa proxima;
+
+        private Tarefa(Runnable acao, long vencimentoNanos) {
+            this.acao = acao;
+            this.vencimentoNanos = vencimentoNanos;
+        }
+
+        /**
+         * Cancela a tarefa, se ela ainda não tiver sido executada.
+         *
+         * @return {@code true} se a tarefa foi cancelada; {@code false} se já tinha sido executada ou cancelada
+         */
+        boolean cancelar() {
+            if (!estado.compareAndSet(PENDENTE, CANCELADA)) {
+                return false;
+            }
+            pendentes.decrementAndGet();
+            canceladas.add(this);
+            return true;
+        }
+    }
+
+    /**
+     * Lista duplamente encadeada das tarefas de uma posição, acessada apenas pela thread da roda.
+     */
+    private static final class Posicao {
+
+        private Tarefa primeira;
+
+        private void adicionar(Tarefa tarefa) {
+            tarefa.proxima = primeira;
+            if (primeira != null) {
+                primeira.anterior = tarefa;
+            }
+            primeira = tarefa;
+        }
+
+        private void remover(Tarefa tarefa) {
+            if (tarefa.posicao != this) {
+                return;
+            }
+            if (tarefa.anterior != null) {
+                tarefa.anterior.proxima = tarefa.proxima;
+            } else {
+                primeira = tarefa.proxima;
+            }
+            if (tarefa.proxima != null) {
+                tarefa.proxima.anterior = tarefa.anterior;
+            }
+            tarefa.anterior = null;
+            tarefa.proxima = null;
+            tarefa.posicao = null;
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.example.pbl3_test;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sala de espera virtual que controla a entrada dos compradores nas compras de cada evento.
+ *
+ * <p>
+ * Cada evento tem uma fila limitada, em ordem de chegada, com no máximo um lugar por comprador
+ * (identificado pelo CPF). Os compradores são admitidos do início da fila a uma taxa configurável,
+ * por um balde de fichas que acumula no máximo um segundo de admissões, e nunca há mais
+ * compradores admitidos e ainda comprando do que ingressos restantes no evento. Assim, a carga no
+ * {@link Armazenamento} fica limitada pela taxa, qualquer que seja o tamanho da multidão. Quando o
+ * evento esgota, a fila é esvaziada de uma vez e todos os que esperavam recebem a resposta de
+ * esgotado; se ingressos voltarem ao evento, por cancelamento ou compra desfeita, a sala volta a
+ * receber compradores.
+ * </p>
+ *
+ * <p>
+ * A fila avança quando os compradores consultam a sua situação, por {@link #entrar(String, String)}
+ * ou {@link #consultar(String, String)}; não há uma thread para isso. Quem deixa de consultar por
+ * mais que a validade da admissão é considerado desistente e é descartado ao chegar ao início da
+ * fila, sem gastar uma admissão. Um comprador admitido que não conclui a compra dentro da validade
+ * perde a admissão, controlada por uma {@link RodaTemporizacao}.
+ * </p>
+ *
+ * <p>
+ * A configuração padrão pode ser alterada pelas propriedades de sistema
+ * {@code pbl3.salaEspera.taxa} (admissões por segundo), {@code pbl3.salaEspera.capacidade}
+ * (lugares na fila de cada evento) e {@code pbl3.salaEspera.validade} (validade da admissão, em segundos).
+ * </p>
+ */
+public class SalaEspera {
+
+    /**
+     * Situação de um comprador na sala de espera de um evento.
+     */
+    public enum Estado {
+        /** Na fila, esperando a vez. */
+        AGUARDANDO,
+        /** Admitido: pode comprar até a admissão expirar. */
+        ADMITIDO,
+        /** O evento esgotou; a fila foi esvaziada. */
+        ESGOTADO,
+        /** A fila está cheia; o comprador deve tentar de novo mais tarde. */
+        RECUSADO,
+        /** O comprador não está na fila do evento. */
+        AUSENTE
+    }
+
+    /**
+     * Resultado de uma consulta à sala de espera.
+     */
+    public static final class Situacao {
+
+        private final Estado estado;
+        private final long posicao;
+        private final long esperaSegundos;
+
+        private Situacao(Estado estado, long posicao, long esperaSegundos) {
+            this.estado = estado;
+            this.posicao = posicao;
+            this.esperaSegundos = esperaSegundos;
+        }
+
+        /**
+         * Retorna a situação do comprador.
+         *
+         * @return o estado
+         */
+        public Estado getEstado() {
+            return estado;
+        }
+
+        /**
+         * Retorna a posição do comprador na fila, começando em 1, ou {@code 0} se ele não estiver esperando.
+         *
+         * @return a posição na fila
+         */
+        public long getPosicao() {
+            return posicao;
+        }
+
+        /**
+         * Retorna a espera estimada até a admissão, pela posição e pela taxa de admissão.
+         *
+         * @return a espera estimada, em segundos
+         */
+        public long getEsperaSegundos() {
+            return esperaSegundos;
+        }
+    }
+
+    private static final double TAXA_PADRAO = 50;
+    private static final int CAPACIDADE_PADRAO = 10000;
+    private static final long VALIDADE_PADRAO_SEGUNDOS = 60;
+
+    private final Armazenamento dados;
+    private final double taxaPorSegundo;
+    private final int capacidadeFila;
+    private final long validadeAdmissaoMillis;
+    private final Map<String, Sala> salas = new ConcurrentHashMap<>();
+    private final RodaTemporizacao expiracoes = new RodaTemporizacao("sala-espera", 100, TimeUnit.MILLISECONDS, 1024);
+
+    /**
+     * Cria a sala de espera.
+     *
+     * @param dados o armazenamento, usado para consultar os ingressos restantes dos eventos
+     * @param taxaPorSegundo a quantidade de compradores admitidos por segundo em cada evento
+     * @param capacidadeFila a quantidade máxima de compradores esperando em cada evento
+     * @param validadeAdmissaoMillis o tempo que um comprador admitido tem para concluir a compra
+     * @throws IllegalArgumentException se algum valor não for positivo
+     */
+    public SalaEspera(Armazenamento dados, double taxaPorSegundo, int capacidadeFila, long validadeAdmissaoMillis) {
+        if (taxaPorSegundo <= 0 || capacidadeFila <= 0 || validadeAdmissaoMillis <= 0) {
+            throw new IllegalArgumentException("Erro: Taxa, capacidade e validade da sala de espera devem ser positivas.");
+        }
+        this.dados = dados;
+        this.taxaPorSegundo = taxaPorSegundo;
+        this.capacidadeFila = capacidadeFila;
+        this.validadeAdmissaoMillis = validadeAdmissaoMillis;
+    }
+
+    /**
+     * Cria a sala de espera com a configuração das propriedades de sistema ou, na falta delas, a padrão.
+     *
+     * @param dados o armazenamento, usado para consultar os ingressos restantes dos eventos
+     * @return a sala de espera
+     */
+    public static SalaEspera configurada(Armazenamento dados) {
+        return new SalaEspera(dados,
+                propriedade("pbl3.salaEspera.taxa", TAXA_PADRAO),
+                (int) propriedade("pbl3.salaEspera.capacidade", CAPACIDADE_PADRAO),
+                (long) propriedade("pbl3.salaEspera.validade", VALIDADE_PADRAO_SEGUNDOS) * 1000);
+    }
+
+    /**
+     * Coloca o comprador na fila do evento, se ele ainda não estiver nela, e retorna a sua situação.
+     * Chamadas repetidas não mudam a posição do comprador e servem para acompanhar a fila.
+     *
+     * @param eventoId o ID do evento
+     * @param cpf o CPF do comprador
+     * @return a situação do comprador
+     * @throws IllegalArgumentException se o evento não for encontrado
+     */
+    public Situacao entrar(String eventoId, String cpf) {
+        return situacao(eventoId, cpf, true);
+    }
+
+    /**
+     * Retorna a situação do comprador na fila do evento, sem colocá-lo na fila.
+     *
+     * @param eventoId o ID do evento
+     * @param cpf o CPF do comprador
+     * @return a situação do comprador; {@link Estado#AUSENTE} se ele não estiver na fila
+     * @throws IllegalArgumentException se o evento não for encontrado
+     */
+    public Situacao consultar(String eventoId, String cpf) {
+        return situacao(eventoId, cpf, false);
+    }
+
+    /**
+     * Encerra a admissão do comprador depois da compra, com ou sem sucesso, liberando a vez para o
+     * próximo da fila.
+     *
+     * @param eventoId o ID do evento
+     * @param cpf o CPF do comprador
+     * @return {@code true} se o comprador estava admitido
+     */
+    public boolean concluir(String eventoId, String cpf) {
+        Sala sala = salas.get(eventoId);
+        if (sala == null) {
+            return false;
+        }
+        synchronized (sala) {
+            Lugar lugar = sala.porCpf.get(cpf);
+            if (lugar == null || lugar.estado != Estado.ADMITIDO) {
+                return false;
+            }
+            sala.encerrarAdmissao(lugar);
+        }
+        return true;
+    }
+
+    /**
+     * Retorna a quantidade de compradores esperando na fila do evento.
+     *
+     * @param eventoId o ID do evento
+     * @return a quantidade de compradores na fila
+     */
+    public int getTamanhoFila(String eventoId) {
+        Sala sala = salas.get(eventoId);
+        if (sala == null) {
+            return 0;
+        }
+        synchronized (sala) {
+            return sala.fila.size();
+        }
+    }
+
+    /**
+     * Para a roda de expiração das admissões.
+     */
+    public void fechar() {
+        expiracoes.fechar();
+    }
+
+    private Situacao situacao(String eventoId, String cpf, boolean entrar) {
+        // A leitura do evento fica fora da trava da sala; no MotorArquivos ela vem do cache e do inventário
+        Evento evento = dados.lerEvento(eventoId);
+        if (evento == null) {
+            throw new IllegalArgumentException("Erro: Evento " + eventoId + " não encontrado.");
+        }
+        int restantes = evento.getIngressos();
+        long agora = System.currentTimeMillis();
+
+        Sala sala = salas.computeIfAbsent(eventoId, id -> new Sala(agora));
+        synchronized (sala) {
+            sala.avancar(restantes, agora);
+            Lugar lugar = sala.porCpf.get(cpf);
+            if (lugar == null) {
+                if (sala.esgotada(restantes)) {
+                    return new Situacao(Estado.ESGOTADO, 0, 0);
+                }
+                if (!entrar) {
+                    return new Situacao(Estado.AUSENTE, 0, 0);
+                }
+                if (sala.fila.size() >= capacidadeFila) {
+                    return new Situacao(Estado.RECUSADO, 0, 0);
+                }
+                lugar = new Lugar(cpf, ++sala.emitidos, agora);
+                sala.fila.addLast(lugar);
+                sala.porCpf.put(cpf, lugar);
+                sala.avancar(restantes, agora);
+            }
+            lugar.ultimaConsulta = agora;
+            if (lugar.estado != Estado.AGUARDANDO) {
+                return new Situacao(lugar.estado, 0, 0);
+            }
+            long posicao = lugar.numero - sala.atendidos;
+            return new Situacao(Estado.AGUARDANDO, posicao, (long) Math.ceil(posicao / taxaPorSegundo));
+        }
+    }
+
+    private static double propriedade(String nome, double padrao) {
+        String valor = System.getProperty(nome);
+        if (valor != null) {
+            try {
+                return Double.parseDouble(valor.trim());
+            } catch (NumberFormatException e) {
+                Registro.aviso("Valor inválido para {}: {}", nome, valor);
+            }
+        }
+        return padrao;
+    }
+
+    /**
+     * Lugar de um comprador na fila de um evento.
+     */
+    private static final class Lugar {
+        private final String cpf;
+        private final long numero;
+        private Estado estado = Estado.AGUARDANDO;
+        private long ultimaConsulta;
+        private RodaTemporizacao.Tarefa expiracao;
+
+        private Lugar(String cpf, long numero, long agora) {
+            this.cpf = cpf;
+            this.numero = numero;
+            this.ultimaConsulta = agora;
+        }
+    }
+
+    /**
+     * Fila e admissões de um evento, acessadas com a trava do próprio objeto.
+     */
+    private final class Sala {
+        private final ArrayDeque<Lugar> fila = new ArrayDeque<>();
+        private final Map<String, Lugar> porCpf = new HashMap<>();
+        private long emitidos;
+        private long atendidos;
+        private int admitidos;
+        private double fichas;
+        private long ultimaRecarga;
+
+        private Sala(long agora) {
+            this.ultimaRecarga = agora;
+            this.fichas = Math.max(1, taxaPorSegundo);
+        }
+
+        private boolean esgotada(int restantes) {
+            return restantes <= 0;
+        }
+
+        /**
+         * Recarrega as fichas e admite compradores do início da fila enquanto houver fichas e
+         * ingressos para os admitidos. Se o evento estiver esgotado, esvazia a fila.
+         */
+        private void avancar(int restantes, long agora) {
+            fichas = Math.min(Math.max(1, taxaPorSegundo), fichas + (agora - ultimaRecarga) * taxaPorSegundo / 1000);
+            ultimaRecarga = agora;
+
+            if (esgotada(restantes)) {
+                for (Lugar lugar : fila) {
+                    lugar.estado = Estado.ESGOTADO;
+                    porCpf.remove(lugar.cpf);
+                }
+                if (!fila.isEmpty()) {
+                    atendidos = fila.peekLast().numero;
+                    fila.clear();
+                }
+                return;
+            }
+
+            while (!fila.isEmpty() && fichas >= 1 && admitidos < restantes) {
+                Lugar lugar = fila.pollFirst();
+                atendidos = lugar.numero;
+                if (agora - lugar.ultimaConsulta > validadeAdmissaoMillis) {
+                    // Desistente: não consulta a fila há mais que a validade de uma admissão
+                    porCpf.remove(lugar.cpf);
+                    continue;
+                }
+                fichas--;
+                admitidos++;
+                lugar.estado = Estado.ADMITIDO;
+                lugar.expiracao = expiracoes.agendar(() -> expirar(this, lugar), validadeAdmissaoMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void encerrarAdmissao(Lugar lugar) {
+            lugar.estado = Estado.AUSENTE;
+            porCpf.remove(lugar.cpf);
+            admitidos--;
+            if (lugar.expiracao != null) {
+                lugar.expiracao.cancelar();
+            }
+        }
+    }
+
+    private static void expirar(Sala sala, Lugar lugar) {
+        synchronized (sala) {
+            if (lugar.estado == Estado.ADMITIDO && sala.porCpf.get(lugar.cpf) == lugar) {
+                sala.encerrarAdmissao(lugar);
+                Registro.depuracao("Admissão expirada na sala de espera.");
+            }
+        }
+    }
+}
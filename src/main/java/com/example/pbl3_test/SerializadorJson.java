@@ -0,0 +1,400 @@
+package com.example.pbl3_test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Serializador JSON compartilhado pelas classes de armazenamento.
+ *
+ * <p>
+ * Mantém uma única instância de {@link Gson}, que é segura para uso concorrente, com adaptadores
+ * escritos à mão para {@link Usuario}, {@link Evento}, {@link Ingresso} e {@link Recibo}. Os
+ * adaptadores evitam o uso de reflexão e gravam os mesmos nomes de campos usados pelos documentos
+ * existentes. As datas são gravadas em milissegundos desde a época, independentemente da localidade;
+ * datas no formato textual antigo continuam sendo aceitas na leitura.
+ * </p>
+ *
+ * <p>
+ * O {@code BenchmarkSerializador}, em {@code src/jmh/java}, compara os adaptadores com o Gson por
+ * reflexão usado antes; ele é executado pelo perfil {@code jmh} do Maven.
+ * </p>
+ */
+public final class SerializadorJson {
+
+    /**
+     * Instância compartilhada do {@link Gson} com os adaptadores do modelo registrados.
+     */
+    public static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(Date.class, new AdaptadorData().nullSafe())
+            .registerTypeAdapter(Ingresso.class, new AdaptadorIngresso().nullSafe())
+            .registerTypeAdapter(Recibo.class, new AdaptadorRecibo().nullSafe())
+            .registerTypeAdapter(Evento.class, new AdaptadorEvento().nullSafe())
+            .registerTypeAdapter(Usuario.class, new AdaptadorUsuario().nullSafe())
+            .create();
+
+    private static final AdaptadorData DATA = new AdaptadorData();
+    private static final AdaptadorIngresso INGRESSO = new AdaptadorIngresso();
+    private static final AdaptadorRecibo RECIBO = new AdaptadorRecibo();
+
+    /**
+     * Formatos textuais usados pelo Gson padrão em versões anteriores dos documentos.
+     */
+    private static final DateTimeFormatter[] FORMATOS_LEGADOS = {
+            DateTimeFormatter.ofPattern("MMM d, yyyy, h:mm:ss a", Locale.US),
+            DateTimeFormatter.ofPattern("MMM d, yyyy h:mm:ss a", Locale.US)
+    };
+
+    private SerializadorJson() {
+    }
+
+    /**
+     * Lê um texto, aceitando {@code null} no documento.
+     */
+    private static String lerTexto(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    /**
+     * Grava um campo de texto, omitindo-o quando for nulo, como faz o Gson padrão.
+     */
+    private static void gravarTexto(JsonWriter out, String nome, String valor) throws IOException {
+        if (valor != null) {
+            out.name(nome).value(valor);
+        }
+    }
+
+    /**
+     * Adaptador de {@link Date}: grava milissegundos desde a época e lê também o formato textual antigo.
+     */
+    static final class AdaptadorData extends TypeAdapter<Date> {
+        @Override
+        public void write(JsonWriter out, Date data) throws IOException {
+            if (data == null) {
+                out.nullValue();
+            } else {
+                out.value(data.getTime());
+            }
+        }
+
+        @Override
+        public Date read(JsonReader in) throws IOException {
+            JsonToken tipo = in.peek();
+            if (tipo == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            if (tipo == JsonToken.NUMBER) {
+                return new Date(in.nextLong());
+            }
+            String texto = in.nextString().replace('\u202F', ' ').replace('\u00A0', ' ');
+            for (DateTimeFormatter formato : FORMATOS_LEGADOS) {
+                try {
+                    return Date.from(LocalDateTime.parse(texto, formato).atZone(ZoneId.systemDefault()).toInstant());
+                } catch (DateTimeParseException e) {
+                    // Tenta o próximo formato
+                }
+            }
+            throw new JsonParseException("Data em formato desconhecido: " + texto);
+        }
+    }
+
+    /**
+     * Adaptador de {@link Ingresso}.
+     */
+    static final class AdaptadorIngresso extends TypeAdapter<Ingresso> {
+        @Override
+        public void write(JsonWriter out, Ingresso ingresso) throws IOException {
+            out.beginObject();
+            gravarTexto(out, "EventoID", ingresso.getEventoID());
+            out.name("Preco").value(ingresso.getPreco());
+            gravarTexto(out, "IngressoID", ingresso.getId());
+            out.name("Status").value(ingresso.isAtivo());
+            out.endObject();
+        }
+
+        @Override
+        public Ingresso read(JsonReader in) throws IOException {
+            String eventoId = null;
+            String ingressoId = null;
+            double preco = 0.0;
+            boolean status = false;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "EventoID":
+                        eventoId = lerTexto(in);
+                        break;
+                    case "Preco":
+                        preco = in.nextDouble();
+                        break;
+                    case "IngressoID":
+                        ingressoId = lerTexto(in);
+                        break;
+                    case "Status":
+                        status = in.nextBoolean();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return new Ingresso(eventoId, preco, ingressoId, status);
+        }
+    }
+
+    /**
+     * Adaptador de {@link Recibo}. Aceita tanto {@code eventoId} quanto o nome antigo {@code eventoID}.
+     */
+    static final class AdaptadorRecibo extends TypeAdapter<Recibo> {
+        @Override
+        public void write(JsonWriter out, Recibo recibo) throws IOException {
+            out.beginObject();
+            gravarTexto(out, "fullName", recibo.getFullName());
+            gravarTexto(out, "cpf", recibo.getCpf());
+            gravarTexto(out, "email", recibo.getEmail());
+            if (recibo.getIngresso() != null) {
+                out.name("ingresso");
+                INGRESSO.write(out, recibo.getIngresso());
+            }
+            gravarTexto(out, "eventoId", recibo.getEventoID());
+            gravarTexto(out, "Pagamento", recibo.Pagamento());
+            if (recibo.getData() != null) {
+                out.name("data");
+                DATA.write(out, recibo.getData());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public Recibo read(JsonReader in) throws IOException {
+            String fullName = null;
+            String cpf = null;
+            String email = null;
+            Ingresso ingresso = null;
+            String eventoId = null;
+            String pagamento = null;
+            Date data = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "fullName":
+                        fullName = lerTexto(in);
+                        break;
+                    case "cpf":
+                        cpf = lerTexto(in);
+                        break;
+                    case "email":
+                        email = lerTexto(in);
+                        break;
+                    case "ingresso":
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                        } else {
+                            ingresso = INGRESSO.read(in);
+                        }
+                        break;
+                    case "eventoId":
+                    case "eventoID":
+                        eventoId = lerTexto(in);
+                        break;
+                    case "Pagamento":
+                        pagamento = lerTexto(in);
+                        break;
+                    case "data":
+                        data = DATA.read(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return new Recibo(fullName, cpf, email, ingresso, pagamento, eventoId, data);
+        }
+    }
+
+    /**
+     * Adaptador de {@link Evento}.
+     */
+    static final class AdaptadorEvento extends TypeAdapter<Evento> {
+        @Override
+        public void write(JsonWriter out, Evento evento) throws IOException {
+            out.beginObject();
+            gravarTexto(out, "ID", evento.getID());
+            gravarTexto(out, "Nome", evento.getNome());
+            gravarTexto(out, "Descricao", evento.getDescricao());
+            if (evento.getData() != null) {
+                out.name("Data");
+                DATA.write(out, evento.getData());
+            }
+            out.name("QuantidadeIngressos").value(evento.getIngressos());
+            if (evento.getAvaliacoes() != null) {
+                out.name("avaliacoes").beginObject();
+                for (Map.Entry<String, String> avaliacao : evento.getAvaliacoes().entrySet()) {
+                    out.name(avaliacao.getKey()).value(avaliacao.getValue());
+                }
+                out.endObject();
+            }
+            out.name("Preco").value(evento.getPreco());
+            out.endObject();
+        }
+
+        @Override
+        public Evento read(JsonReader in) throws IOException {
+            String id = null;
+            String nome = null;
+            String descricao = null;
+            Date data = null;
+            int quantidade = 0;
+            Map<String, String> avaliacoes = new HashMap<>();
+            double preco = 0.0;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "ID":
+                        id = lerTexto(in);
+                        break;
+                    case "Nome":
+                        nome = lerTexto(in);
+                        break;
+                    case "Descricao":
+                        descricao = lerTexto(in);
+                        break;
+                    case "Data":
+                        data = DATA.read(in);
+                        break;
+                    case "QuantidadeIngressos":
+                        quantidade = in.nextInt();
+                        break;
+                    case "avaliacoes":
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                            break;
+                        }
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            avaliacoes.put(in.nextName(), lerTexto(in));
+                        }
+                        in.endObject();
+                        break;
+                    case "Preco":
+                        preco = in.nextDouble();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return new Evento(id, nome, descricao, data, quantidade, avaliacoes, preco);
+        }
+    }
+
+    /**
+     * Adaptador de {@link Usuario}.
+     */
+    static final class AdaptadorUsuario extends TypeAdapter<Usuario> {
+        @Override
+        public void write(JsonWriter out, Usuario usuario) throws IOException {
+            out.beginObject();
+            gravarTexto(out, "username", usuario.getLogin());
+            gravarTexto(out, "password", usuario.getSenha());
+            gravarTexto(out, "fullName", usuario.getNome());
+            gravarTexto(out, "cpf", usuario.getCpf());
+            gravarTexto(out, "email", usuario.getEmail());
+            out.name("isAdmin").value(usuario.isAdmin());
+            if (usuario.getHistoricoOffset() > 0) {
+                out.name("historicoOffset").value(usuario.getHistoricoOffset());
+            }
+            out.name("Ingressos").beginArray();
+            for (Ingresso ingresso : usuario.getIngressos()) {
+                INGRESSO.write(out, ingresso);
+            }
+            out.endArray();
+            out.name("Recibos").beginArray();
+            for (Recibo recibo : usuario.getRecibos()) {
+                RECIBO.write(out, recibo);
+            }
+            out.endArray();
+            out.endObject();
+        }
+
+        @Override
+        public Usuario read(JsonReader in) throws IOException {
+            Usuario usuario = new Usuario(null, null, null, null, null, false);
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "username":
+                        usuario.setLogin(lerTexto(in));
+                        break;
+                    case "password":
+                        usuario.setSenha(lerTexto(in));
+                        break;
+                    case "fullName":
+                        usuario.setNome(lerTexto(in));
+                        break;
+                    case "cpf":
+                        usuario.setCpf(lerTexto(in));
+                        break;
+                    case "email":
+                        usuario.setEmail(lerTexto(in));
+                        break;
+                    case "isAdmin":
+                        usuario.setAdmin(in.nextBoolean());
+                        break;
+                    case "historicoOffset":
+                        usuario.setHistoricoOffset(in.nextLong());
+                        break;
+                    case "Ingressos":
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                            break;
+                        }
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            usuario.adicionarIngresso(INGRESSO.read(in));
+                        }
+                        in.endArray();
+                        break;
+                    case "Recibos":
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                            break;
+                        }
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            usuario.adicionarRecibo(RECIBO.read(in));
+                        }
+                        in.endArray();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return usuario;
+        }
+    }
+}
@@ -0,0 +1,562 @@
+package com.example.pbl3_test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Servidor HTTP sem interface gráfica, que expõe as operações do {@link Controller} em JSON.
+ *
+ * <p>
+ * Usa o servidor embutido do JDK ({@code com.sun.net.httpserver}) e atende cada requisição em uma
+ * thread virtual, de modo que requisições bloqueadas em E/S ou nas {@link TravasEntidades} não
+ * ocupam threads do sistema. O servidor escuta apenas no endereço de loopback, para testes de
+ * carga na própria máquina; não há TLS. As operações usam o mesmo {@link Controller} e o mesmo
+ * {@link Armazenamento} das telas.
+ * </p>
+ *
+ * <p>
+ * Rotas:
+ * </p>
+ * <ul>
+ *   <li>{@code POST /login} com {@code {"login", "senha"}}: retorna {@code {"token", "cpf", "nome"}};</li>
+ *   <li>{@code GET /eventos[?limite=N]}: lista os eventos disponíveis, em ordem de data;</li>
+ *   <li>{@code POST /compras} com {@code {"eventoId", "quantidade", "pagamento"}} ou
+ *       {@code {"itens": {"eventoId": quantidade, ...}, "pagamento"}}: compra os ingressos de uma vez;</li>
+ *   <li>{@code POST /cancelamentos} com {@code {"ingressoId"}}: cancela a compra de um ingresso;</li>
+ *   <li>{@code GET /recibos}: lista os recibos do usuário, incluindo os arquivados;</li>
+ *   <li>{@code POST /fila} com {@code {"eventoId"}} e {@code GET /fila?eventoId=X}: entra na sala de
+ *       espera do evento ou consulta a situação, com {@code {"estado", "posicao", "esperaSegundos"}}.</li>
+ * </ul>
+ *
+ * <p>
+ * As compras passam pela {@link SalaEspera}: cada evento do pedido coloca o comprador na fila do
+ * evento, e o pedido só é atendido quando ele foi admitido em todos. Enquanto espera, a resposta é
+ * 202, com a posição e a espera estimada de cada evento e o cabeçalho {@code Retry-After}; o cliente
+ * repete o mesmo pedido depois desse tempo. A admissão é encerrada ao fim da compra, com ou sem sucesso.
+ * </p>
+ *
+ * <p>
+ * Exceto o login, as rotas exigem o cabeçalho {@code Authorization: Bearer <token>}. As sessões
+ * ficam em memória e expiram {@value #VALIDADE_SESSAO_MINUTOS} minutos depois do login. Os erros
+ * são retornados como {@code {"erro": mensagem}}, com o status 400 para dados inválidos, 401 sem
+ * sessão válida, 403 para operações não permitidas, 404 para rotas e ingressos inexistentes, 409
+ * para eventos esgotados e 503 quando a fila de um evento está cheia.
+ * </p>
+ */
+public class ServidorHttp {
+
+    /**
+     * Porta usada quando nenhuma é informada.
+     */
+    public static final int PORTA_PADRAO = 8080;
+
+    private static final long VALIDADE_SESSAO_MINUTOS = 30;
+    private static final int BYTES_TOKEN = 24;
+    // Conexões aguardando aceite; o padrão do JDK (50) recusa conexões na abertura de vendas concorridas
+    private static final int FILA_CONEXOES = 1024;
+
+    private final Armazenamento dados;
+    private final Controller controller = new Controller();
+    private final SalaEspera salaEspera;
+    private final HttpServer servidor;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, String> sessoes = new ConcurrentHashMap<>();
+    private final RodaTemporizacao expiracaoSessoes = new RodaTemporizacao("sessoes", 1, TimeUnit.SECONDS, 256);
+    private final SecureRandom aleatorio = new SecureRandom();
+
+    /**
+     * Operação de uma rota, que recebe a requisição e retorna a resposta.
+     */
+    private interface Operacao {
+        Resposta executar(HttpExchange troca) throws IOException;
+    }
+
+    /**
+     * Status e corpo da resposta de uma operação concluída.
+     */
+    private static final class Resposta {
+        private final int status;
+        private final JsonElement corpo;
+
+        private Resposta(int status, JsonElement corpo) {
+            this.status = status;
+            this.corpo = corpo;
+        }
+
+        private static Resposta ok(JsonElement corpo) {
+            return new Resposta(200, corpo);
+        }
+    }
+
+    /**
+     * Erro com o status HTTP a ser retornado.
+     */
+    private static final class ErroHttp extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        private ErroHttp(int status, String mensagem) {
+            super(mensagem);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Cria o servidor no endereço de loopback, sem iniciá-lo, com a sala de espera configurada por
+     * {@link SalaEspera#configurada(Armazenamento)}.
+     *
+     * @param dados o armazenamento usado pelas operações
+     * @param porta a porta; {@code 0} escolhe uma porta livre
+     * @throws IOException se a porta não puder ser aberta
+     */
+    public ServidorHttp(Armazenamento dados, int porta) throws IOException {
+        this(dados, porta, SalaEspera.configurada(dados));
+    }
+
+    /**
+     * Cria o servidor no endereço de loopback, sem iniciá-lo.
+     *
+     * @param dados o armazenamento usado pelas operações
+     * @param porta a porta; {@code 0} escolhe uma porta livre
+     * @param salaEspera a sala de espera das compras
+     * @throws IOException se a porta não puder ser aberta
+     */
+    public ServidorHttp(Armazenamento dados, int porta, SalaEspera salaEspera) throws IOException {
+        this.dados = dados;
+        this.salaEspera = salaEspera;
+        this.servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), porta), FILA_CONEXOES);
+        servidor.setExecutor(executor);
+        rota("/login", "POST", this::login);
+        rota("/eventos", "GET", this::eventos);
+        rota("/compras", "POST", this::comprar);
+        rota("/cancelamentos", "POST", this::cancelar);
+        rota("/recibos", "GET", this::recibos);
+        servidor.createContext("/fila", troca -> {
+            // A fila aceita os dois métodos: POST entra e GET apenas consulta
+            if ("GET".equals(troca.getRequestMethod())) {
+                atender(troca, "/fila", "GET", this::consultarFila);
+            } else {
+                atender(troca, "/fila", "POST", this::entrarFila);
+            }
+        });
+    }
+
+    /**
+     * Inicia o atendimento das requisições.
+     */
+    public void iniciar() {
+        servidor.start();
+        Registro.info("Servidor HTTP ouvindo em http://{}:{}", servidor.getAddress().getHostString(), getPorta());
+    }
+
+    /**
+     * Para o servidor, esperando até {@code esperaSegundos} segundos pelas requisições em andamento.
+     *
+     * @param esperaSegundos o tempo máximo de espera, em segundos
+     */
+    public void parar(int esperaSegundos) {
+        servidor.stop(esperaSegundos);
+        executor.shutdown();
+        expiracaoSessoes.fechar();
+        salaEspera.fechar();
+        sessoes.clear();
+    }
+
+    /**
+     * Retorna a porta em que o servidor escuta.
+     *
+     * @return a porta
+     */
+    public int getPorta() {
+        return servidor.getAddress().getPort();
+    }
+
+    /**
+     * Inicia o servidor com o armazenamento padrão. Uso: {@code ServidorHttp [porta]}.
+     *
+     * @param args a porta, opcional ({@value #PORTA_PADRAO} por padrão)
+     */
+    public static void main(String[] args) {
+        int porta = PORTA_PADRAO;
+        if (args.length > 0) {
+            try {
+                porta = Integer.parseInt(args[0]);
+            } catch (NumberFormatException e) {
+                System.err.println("Uso: ServidorHttp [porta]");
+                System.exit(1);
+            }
+        }
+        Armazenamento dados = new Armazenamento();
+        dados.verificarExistencia();
+        try {
+            ServidorHttp servidor = new ServidorHttp(dados, porta);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                servidor.parar(1);
+                dados.fechar();
+            }, "servidor-http-parada"));
+            servidor.iniciar();
+            System.out.println("Servidor HTTP em http://127.0.0.1:" + servidor.getPorta() + " (Ctrl+C para encerrar)");
+        } catch (IOException e) {
+            System.err.println("Erro ao iniciar o servidor HTTP: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private Resposta login(HttpExchange troca) throws IOException {
+        JsonObject corpo = lerCorpo(troca);
+        String login = texto(corpo, "login");
+        String senha = texto(corpo, "senha");
+        if (!controller.loginUsuario(login, senha, dados)) {
+            throw new ErroHttp(401, "Credenciais inválidas.");
+        }
+        String cpf = controller.localizarCpf(login, dados);
+        Map<String, String> campos = dados.lerCamposUsuario(cpf, "fullName");
+
+        byte[] bytes = new byte[BYTES_TOKEN];
+        aleatorio.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessoes.put(token, cpf);
+        expiracaoSessoes.agendar(() -> sessoes.remove(token), VALIDADE_SESSAO_MINUTOS, TimeUnit.MINUTES);
+
+        JsonObject resposta = new JsonObject();
+        resposta.addProperty("token", token);
+        resposta.addProperty("cpf", cpf);
+        resposta.addProperty("nome", campos == null ? null : campos.get("fullName"));
+        return Resposta.ok(resposta);
+    }
+
+    private Resposta eventos(HttpExchange troca) {
+        String limite = parametro(troca.getRequestURI(), "limite");
+        List<String> ids;
+        try {
+            ids = limite == null ? dados.listarEventosDisponiveis() : dados.listarProximosEventos(Integer.parseInt(limite));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Erro: Limite inválido: " + limite);
+        }
+        JsonArray eventos = new JsonArray();
+        for (String id : ids) {
+            Evento evento = dados.lerEvento(id);
+            if (evento != null) {
+                eventos.add(evento(evento));
+            }
+        }
+        return Resposta.ok(eventos);
+    }
+
+    private Resposta comprar(HttpExchange troca) throws IOException {
+        Usuario usuario = usuarioDaSessao(troca);
+        JsonObject corpo = lerCorpo(troca);
+        String pagamento = texto(corpo, "pagamento");
+
+        Map<String, Integer> quantidades = new LinkedHashMap<>();
+        if (corpo.has("itens")) {
+            if (!corpo.get("itens").isJsonObject()) {
+                throw new IllegalArgumentException("Erro: O campo itens deve ser um objeto.");
+            }
+            for (Map.Entry<String, JsonElement> item : corpo.getAsJsonObject("itens").entrySet()) {
+                quantidades.put(item.getKey(), inteiro(item.getValue(), "itens." + item.getKey()));
+            }
+        } else {
+            quantidades.put(texto(corpo, "eventoId"), corpo.has("quantidade") ? inteiro(corpo.get("quantidade"), "quantidade") : 1);
+        }
+
+        Resposta espera = admitir(troca, usuario.getCpf(), quantidades.keySet());
+        if (espera != null) {
+            return espera;
+        }
+        try {
+            List<Ingresso> ingressos = controller.comprarIngressos(usuario, quantidades, dados, pagamento, new Date());
+            JsonArray resposta = new JsonArray();
+            for (Ingresso ingresso : ingressos) {
+                resposta.add(ingresso(ingresso));
+            }
+            return Resposta.ok(resposta);
+        } finally {
+            concluirTodos(quantidades.keySet(), usuario.getCpf());
+        }
+    }
+
+    private Resposta cancelar(HttpExchange troca) throws IOException {
+        String cpf = cpfDaSessao(troca);
+        String ingressoId = texto(lerCorpo(troca), "ingressoId");
+
+        // O evento só é conhecido depois de localizar o ingresso; a busca é refeita com as travas
+        Ingresso ingresso = localizarIngresso(dados.lerUsuario(cpf), ingressoId);
+        try (var _ = dados.getTravas().travarEscrita(TravasEntidades.chaveUsuario(cpf),
+                TravasEntidades.chaveEvento(ingresso.getEventoID()))) {
+            Usuario usuario = dados.lerUsuario(cpf);
+            ingresso = localizarIngresso(usuario, ingressoId);
+            JsonObject resposta = new JsonObject();
+            resposta.addProperty("cancelado", controller.cancelarCompra(usuario, ingresso, new Date(), dados));
+            return Resposta.ok(resposta);
+        }
+    }
+
+    private Resposta recibos(HttpExchange troca) {
+        String cpf = cpfDaSessao(troca);
+        List<Recibo> recibos;
+        try (var _ = dados.getTravas().travarLeitura(TravasEntidades.chaveUsuario(cpf))) {
+            recibos = controller.listarRecibos(usuario(cpf), dados);
+        }
+        JsonArray resposta = new JsonArray();
+        for (Recibo recibo : recibos) {
+            JsonObject item = new JsonObject();
+            item.addProperty("eventoId", recibo.getEventoID());
+            item.addProperty("pagamento", recibo.Pagamento());
+            item.addProperty("data", recibo.getData() == null ? null : recibo.getData().getTime());
+            if (recibo.getIngresso() != null) {
+                item.add("ingresso", ingresso(recibo.getIngresso()));
+            }
+            resposta.add(item);
+        }
+        return Resposta.ok(resposta);
+    }
+
+    private Resposta entrarFila(HttpExchange troca) throws IOException {
+        String cpf = cpfDaSessao(troca);
+        String eventoId = texto(lerCorpo(troca), "eventoId");
+        return Resposta.ok(situacao(eventoId, salaEspera.entrar(eventoId, cpf)));
+    }
+
+    private Resposta consultarFila(HttpExchange troca) {
+        String cpf = cpfDaSessao(troca);
+        String eventoId = parametro(troca.getRequestURI(), "eventoId");
+        if (eventoId == null || eventoId.isEmpty()) {
+            throw new IllegalArgumentException("Erro: Parâmetro obrigatório ausente: eventoId");
+        }
+        return Resposta.ok(situacao(eventoId, salaEspera.consultar(eventoId, cpf)));
+    }
+
+    /**
+     * Coloca o comprador na sala de espera de cada evento do pedido.
+     *
+     * @return {@code null} se ele foi admitido em todos; caso contrário, a resposta 202 com a situação de cada evento
+     * @throws IllegalStateException se algum evento estiver esgotado
+     */
+    private Resposta admitir(HttpExchange troca, String cpf, Iterable<String> eventoIds) {
+        JsonArray fila = new JsonArray();
+        long espera = 0;
+        for (String eventoId : eventoIds) {
+            SalaEspera.Situacao situacao = salaEspera.entrar(eventoId, cpf);
+            switch (situacao.getEstado()) {
+                case ADMITIDO:
+                    break;
+                case ESGOTADO:
+                    // O pedido não será atendido: libera a vez já obtida nos outros eventos
+                    concluirTodos(eventoIds, cpf);
+                    throw new IllegalStateException("Erro: Ingressos esgotados para o evento " + eventoId + ".");
+                case RECUSADO:
+                    // Idem: a vez obtida nos outros eventos não pode ficar presa até o comprador tentar de novo
+                    concluirTodos(eventoIds, cpf);
+                    troca.getResponseHeaders().set("Retry-After", "5");
+                    throw new ErroHttp(503, "A fila do evento " + eventoId + " está cheia. Tente novamente mais tarde.");
+                default:
+                    fila.add(situacao(eventoId, situacao));
+                    espera = Math.max(espera, situacao.getEsperaSegundos());
+                    break;
+            }
+        }
+        if (fila.size() == 0) {
+            return null;
+        }
+        troca.getResponseHeaders().set("Retry-After", Long.toString(Math.max(1, espera)));
+        JsonObject resposta = new JsonObject();
+        resposta.add("fila", fila);
+        return new Resposta(202, resposta);
+    }
+
+    /**
+     * Encerra a admissão do comprador nos eventos em que ele já foi admitido; os demais são ignorados.
+     */
+    private void concluirTodos(Iterable<String> eventoIds, String cpf) {
+        for (String eventoId : eventoIds) {
+            salaEspera.concluir(eventoId, cpf);
+        }
+    }
+
+    /**
+     * Registra uma rota que aceita apenas o método informado e converte o resultado e as exceções em respostas JSON.
+     */
+    private void rota(String caminho, String metodo, Operacao operacao) {
+        servidor.createContext(caminho, troca -> atender(troca, caminho, metodo, operacao));
+    }
+
+    private static void atender(HttpExchange troca, String caminho, String metodo, Operacao operacao) throws IOException {
+        try (troca) {
+            int status;
+            JsonElement resposta;
+            try {
+                if (!caminho.equals(troca.getRequestURI().getPath())) {
+                    throw new ErroHttp(404, "Rota não encontrada: " + troca.getRequestURI().getPath());
+                }
+                if (!metodo.equals(troca.getRequestMethod())) {
+                    troca.getResponseHeaders().set("Allow", metodo);
+                    throw new ErroHttp(405, "Método não permitido: " + troca.getRequestMethod());
+                }
+                Resposta concluida = operacao.executar(troca);
+                status = concluida.status;
+                resposta = concluida.corpo;
+            } catch (ErroHttp e) {
+                status = e.status;
+                resposta = erro(e.getMessage());
+            } catch (IllegalArgumentException | JsonParseException e) {
+                status = 400;
+                resposta = erro(e.getMessage());
+            } catch (SecurityException e) {
+                status = 403;
+                resposta = erro(e.getMessage());
+            } catch (IllegalStateException e) {
+                status = 409;
+                resposta = erro(e.getMessage());
+            } catch (IOException | RuntimeException e) {
+                Registro.erro("Erro ao atender {} {}: {}", troca.getRequestMethod(), caminho, e.getMessage(), e);
+                status = 500;
+                resposta = erro("Erro interno do servidor.");
+            }
+            responder(troca, status, resposta);
+        }
+    }
+
+    private static void responder(HttpExchange troca, int status, JsonElement resposta) throws IOException {
+        byte[] corpo = SerializadorJson.GSON.toJson(resposta).getBytes(StandardCharsets.UTF_8);
+        troca.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        troca.sendResponseHeaders(status, corpo.length);
+        try (OutputStream saida = troca.getResponseBody()) {
+            saida.write(corpo);
+        }
+    }
+
+    private static JsonObject erro(String mensagem) {
+        JsonObject erro = new JsonObject();
+        erro.addProperty("erro", mensagem);
+        return erro;
+    }
+
+    private String cpfDaSessao(HttpExchange troca) {
+        String autorizacao = troca.getRequestHeaders().getFirst("Authorization");
+        String cpf = autorizacao != null && autorizacao.startsWith("Bearer ")
+                ? sessoes.get(autorizacao.substring("Bearer ".length()).trim())
+                : null;
+        if (cpf == null) {
+            throw new ErroHttp(401, "Sessão inválida ou expirada.");
+        }
+        return cpf;
+    }
+
+    private Usuario usuarioDaSessao(HttpExchange troca) {
+        return usuario(cpfDaSessao(troca));
+    }
+
+    private Usuario usuario(String cpf) {
+        Usuario usuario = dados.lerUsuario(cpf);
+        if (usuario == null) {
+            throw new ErroHttp(401, "Usuário da sessão não encontrado.");
+        }
+        return usuario;
+    }
+
+    private static Ingresso localizarIngresso(Usuario usuario, String ingressoId) {
+        if (usuario != null) {
+            for (Ingresso ingresso : usuario.getIngressos()) {
+                if (ingressoId.equals(ingresso.getId())) {
+                    return ingresso;
+                }
+            }
+        }
+        throw new ErroHttp(404, "Ingresso " + ingressoId + " não encontrado.");
+    }
+
+    private static JsonObject lerCorpo(HttpExchange troca) throws IOException {
+        JsonElement corpo = JsonParser.parseString(new String(troca.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        if (!corpo.isJsonObject()) {
+            throw new IllegalArgumentException("Erro: O corpo da requisição deve ser um objeto JSON.");
+        }
+        return corpo.getAsJsonObject();
+    }
+
+    private static String texto(JsonObject corpo, String campo) {
+        JsonElement valor = corpo.get(campo);
+        if (valor == null || !valor.isJsonPrimitive() || valor.getAsString().isEmpty()) {
+            throw new IllegalArgumentException("Erro: Campo obrigatório ausente: " + campo);
+        }
+        return valor.getAsString();
+    }
+
+    private static int inteiro(JsonElement valor, String campo) {
+        try {
+            return valor.getAsInt();
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Erro: O campo " + campo + " deve ser um número inteiro.");
+        }
+    }
+
+    /**
+     * Retorna o valor decodificado de um parâmetro da consulta; os IDs de eventos têm espaços e acentos.
+     */
+    private static String parametro(URI uri, String nome) {
+        String consulta = uri.getRawQuery();
+        if (consulta == null) {
+            return null;
+        }
+        for (String par : consulta.split("&")) {
+            int igual = par.indexOf('=');
+            if (igual > 0 && URLDecoder.decode(par.substring(0, igual), StandardCharsets.UTF_8).equals(nome)) {
+                return URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static JsonObject evento(Evento evento) {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", evento.getID());
+        json.addProperty("nome", evento.getNome());
+        json.addProperty("descricao", evento.getDescricao());
+        json.addProperty("data", evento.getData() == null ? null : evento.getData().getTime());
+        json.addProperty("preco", evento.getPreco());
+        json.addProperty("ingressos", evento.getIngressos());
+        return json;
+    }
+
+    private static JsonObject ingresso(Ingresso ingresso) {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", ingresso.getId());
+        json.addProperty("eventoId", ingresso.getEventoID());
+        json.addProperty("preco", ingresso.getPreco());
+        json.addProperty("ativo", ingresso.isAtivo());
+        return json;
+    }
+
+    private static JsonObject situacao(String eventoId, SalaEspera.Situacao situacao) {
+        JsonObject json = new JsonObject();
+        json.addProperty("eventoId", eventoId);
+        json.addProperty("estado", situacao.getEstado().name());
+        json.addProperty("posicao", situacao.getPosicao());
+        json.addProperty("esperaSegundos", situacao.getEsperaSegundos());
+        return json;
+    }
+}
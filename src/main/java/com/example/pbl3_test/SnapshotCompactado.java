@@ -0,0 +1,510 @@
+package com.example.pbl3_test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Snapshot compactado dos documentos de usuários e eventos ({@code snapshot.pack}).
+ *
+ * <p>
+ * A compactação ({@link #compactar(String)}) reúne os documentos soltos dos diretórios {@code Eventos}
+ * e {@code Usuarios} em um único arquivo, com uma tabela de posições ordenada pelo caminho de cada
+ * documento, e remove os arquivos soltos que foram incluídos. A leitura é feita por um buffer
+ * mapeado em memória e uma busca binária na tabela, sem carregar a tabela inteira: abrir o snapshot
+ * custa o mesmo para qualquer quantidade de documentos, e o arquivo só é mapeado no primeiro acesso.
+ * </p>
+ *
+ * <p>
+ * As gravações posteriores continuam gerando arquivos soltos, que formam uma camada sobre o snapshot
+ * e têm precedência sobre ele; quem lê deve procurar primeiro o arquivo solto. Os históricos dos
+ * usuários, que recebem acréscimos, não fazem parte do snapshot. A substituição do arquivo por outro
+ * processo é detectada em até {@value #INTERVALO_VERIFICACAO_MILLIS} ms, ou imediatamente quando um
+ * documento não é encontrado.
+ * </p>
+ *
+ * <p>
+ * Formato: cabeçalho de {@value #TAMANHO_CABECALHO} bytes (assinatura, versão, quantidade de
+ * documentos, posição da tabela e data de criação), os documentos em sequência e a tabela, composta
+ * pelas posições ({@code long}) das entradas em ordem de caminho seguidas das entradas: tamanho do
+ * caminho ({@code short}), caminho em UTF-8, posição ({@code long}) e tamanho ({@code int}) do documento.
+ * </p>
+ */
+public class SnapshotCompactado {
+
+    static final String NOME_ARQUIVO = "snapshot.pack";
+    private static final byte[] ASSINATURA = "PBLSNAP1".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSAO = 1;
+    private static final int TAMANHO_CABECALHO = 32;
+    private static final long INTERVALO_VERIFICACAO_MILLIS = 500;
+    private static final String[] DIRETORIOS = {"Eventos", "Usuarios"};
+
+    private static final Map<Path, SnapshotCompactado> abertos = new ConcurrentHashMap<>();
+
+    private final Path diretorioBase;
+    private final Path arquivo;
+    private volatile Pacote atual;
+    private volatile boolean carregado;
+    private volatile long proximaVerificacao;
+
+    /**
+     * Construtor privado; use {@link #abrir(Path)} para obter o snapshot de um diretório.
+     */
+    private SnapshotCompactado(Path diretorioBase) {
+        this.diretorioBase = diretorioBase;
+        this.arquivo = diretorioBase.resolve(NOME_ARQUIVO);
+    }
+
+    /**
+     * Retorna o snapshot do diretório de dados informado. O arquivo só é aberto no primeiro acesso.
+     *
+     * @param diretorioBase o diretório de dados
+     * @return o snapshot do diretório
+     */
+    public static SnapshotCompactado abrir(Path diretorioBase) {
+        return abertos.computeIfAbsent(diretorioBase.toAbsolutePath().normalize(), SnapshotCompactado::new);
+    }
+
+    /**
+     * Fecha o snapshot do diretório informado e o descarta dos snapshots abertos. Usado pela
+     * {@link VisaoArquivos}, cujo diretório é apagado depois do uso.
+     *
+     * @param diretorioBase o diretório do snapshot
+     */
+    static void fechar(Path diretorioBase) {
+        SnapshotCompactado snapshot = abertos.remove(diretorioBase.toAbsolutePath().normalize());
+        if (snapshot == null) {
+            return;
+        }
+        synchronized (abertos) {
+            if (snapshot.atual != null) {
+                snapshot.atual.fechar();
+                snapshot.atual = null;
+            }
+        }
+    }
+
+    /**
+     * Lê um documento do snapshot.
+     *
+     * @param caminhoRelativo o caminho do documento, relativo ao diretório de dados
+     * @return o conteúdo do documento ou {@code null} se não estiver no snapshot
+     */
+    public byte[] ler(String caminhoRelativo) {
+        byte[] chave = normalizar(caminhoRelativo);
+        for (int tentativa = 0; tentativa < 2; tentativa++) {
+            Pacote pacote = pacote(tentativa > 0);
+            if (pacote == null) {
+                return null;
+            }
+            try {
+                long[] entrada = pacote.buscar(chave);
+                if (entrada != null) {
+                    return pacote.ler(entrada[0], (int) entrada[1]);
+                }
+            } catch (IOException e) {
+                // O arquivo pode ter sido substituído durante a leitura; tenta novamente com o atual
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Verifica se um documento está no snapshot.
+     *
+     * @param caminhoRelativo o caminho do documento, relativo ao diretório de dados
+     * @return {@code true} se o documento estiver no snapshot
+     */
+    public boolean contem(String caminhoRelativo) {
+        byte[] chave = normalizar(caminhoRelativo);
+        for (int tentativa = 0; tentativa < 2; tentativa++) {
+            Pacote pacote = pacote(tentativa > 0);
+            if (pacote == null) {
+                return false;
+            }
+            try {
+                if (pacote.buscar(chave) != null) {
+                    return true;
+                }
+            } catch (IOException e) {
+                // Tenta novamente com o arquivo atual
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lista os caminhos dos documentos do snapshot que começam pelo prefixo informado.
+     *
+     * @param prefixo o prefixo dos caminhos, por exemplo {@code "Eventos/"}
+     * @return os caminhos encontrados, em ordem
+     */
+    public List<String> listar(String prefixo) {
+        List<String> caminhos = new ArrayList<>();
+        Pacote pacote = pacote(false);
+        if (pacote == null) {
+            return caminhos;
+        }
+        String procurado = new String(normalizar(prefixo), StandardCharsets.UTF_8);
+        try {
+            for (int i = 0; i < pacote.quantidade; i++) {
+                String caminho = pacote.caminho(i);
+                if (caminho.startsWith(procurado)) {
+                    caminhos.add(caminho);
+                }
+            }
+        } catch (IOException e) {
+            Registro.erro("Erro ao listar o snapshot: {}", e.getMessage());
+        }
+        return caminhos;
+    }
+
+    /**
+     * Retorna a quantidade de documentos no snapshot.
+     *
+     * @return a quantidade de documentos, ou zero se não houver snapshot
+     */
+    public int getQuantidade() {
+        Pacote pacote = pacote(false);
+        return pacote == null ? 0 : pacote.quantidade;
+    }
+
+    /**
+     * Reúne no snapshot os documentos soltos dos diretórios {@code Eventos} e {@code Usuarios} e
+     * os documentos do snapshot anterior, e remove os arquivos soltos incluídos. Os documentos
+     * gravados durante a compactação são mantidos soltos e continuam tendo precedência.
+     *
+     * @param extensao a extensão dos documentos, definida pelo codec do diretório
+     * @return a quantidade de documentos no novo snapshot
+     * @throws IOException se o snapshot não puder ser gravado
+     */
+    public int compactar(String extensao) throws IOException {
+        return compactar(extensao, Collections.emptySet());
+    }
+
+    /**
+     * Compacta o snapshot como {@link #compactar(String)}, deixando de fora os documentos informados,
+     * que são descartados do snapshot anterior e não são incluídos nem removidos se estiverem soltos.
+     *
+     * @param extensao a extensão dos documentos, definida pelo codec do diretório
+     * @param excluidos os caminhos dos documentos excluídos, relativos ao diretório de dados
+     * @return a quantidade de documentos no novo snapshot
+     * @throws IOException se o snapshot não puder ser gravado
+     */
+    public synchronized int compactar(String extensao, Set<String> excluidos) throws IOException {
+        LogEscrita log = LogEscrita.abrir(diretorioBase);
+        log.checkpoint();
+
+        Map<Path, Object> incluidos = new LinkedHashMap<>();
+        TreeMap<byte[], Path> soltos = new TreeMap<>(Arrays::compareUnsigned);
+        for (String diretorio : DIRETORIOS) {
+            Path raiz = diretorioBase.resolve(diretorio);
+            if (!Files.isDirectory(raiz)) {
+                continue;
+            }
+            try (Stream<Path> caminhos = Files.walk(raiz)) {
+                caminhos.filter(Files::isRegularFile)
+                        .filter(caminho -> caminho.getFileName().toString().endsWith(extensao))
+                        .filter(caminho -> !excluidos.contains(diretorioBase.relativize(caminho).toString()))
+                        .forEach(caminho -> soltos.put(normalizar(diretorioBase.relativize(caminho).toString()), caminho));
+            }
+        }
+
+        Pacote anterior = pacote(true);
+        Path temporario = arquivo.resolveSibling(NOME_ARQUIVO + ".tmp");
+        TreeMap<byte[], long[]> tabela = new TreeMap<>(Arrays::compareUnsigned);
+        try (FileChannel saida = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long posicao = TAMANHO_CABECALHO;
+            for (Map.Entry<byte[], Path> solto : soltos.entrySet()) {
+                Object identificacao = identificar(solto.getValue());
+                byte[] conteudo;
+                try {
+                    conteudo = Files.readAllBytes(solto.getValue());
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                escrever(saida, posicao, ByteBuffer.wrap(conteudo));
+                tabela.put(solto.getKey(), new long[]{posicao, conteudo.length});
+                incluidos.put(solto.getValue(), identificacao);
+                posicao += conteudo.length;
+            }
+            if (anterior != null) {
+                for (int i = 0; i < anterior.quantidade; i++) {
+                    byte[] chave = anterior.caminhoBytes(i);
+                    if (tabela.containsKey(chave) || excluidos.contains(anterior.caminho(i).replace('/', File.separatorChar))) {
+                        continue;
+                    }
+                    long[] entrada = anterior.buscar(chave);
+                    byte[] conteudo = anterior.ler(entrada[0], (int) entrada[1]);
+                    escrever(saida, posicao, ByteBuffer.wrap(conteudo));
+                    tabela.put(chave, new long[]{posicao, conteudo.length});
+                    posicao += conteudo.length;
+                }
+            }
+
+            long inicioTabela = posicao;
+            long posicaoEntrada = inicioTabela + (long) tabela.size() * Long.BYTES;
+            ByteBuffer posicoes = ByteBuffer.allocate(tabela.size() * Long.BYTES);
+            List<ByteBuffer> entradas = new ArrayList<>(tabela.size());
+            for (Map.Entry<byte[], long[]> entrada : tabela.entrySet()) {
+                ByteBuffer registro = ByteBuffer.allocate(Short.BYTES + entrada.getKey().length + Long.BYTES + Integer.BYTES);
+                registro.putShort((short) entrada.getKey().length).put(entrada.getKey())
+                        .putLong(entrada.getValue()[0]).putInt((int) entrada.getValue()[1]).flip();
+                posicoes.putLong(posicaoEntrada);
+                posicaoEntrada += registro.remaining();
+                entradas.add(registro);
+            }
+            posicoes.flip();
+            posicao = escrever(saida, inicioTabela, posicoes);
+            for (ByteBuffer registro : entradas) {
+                posicao = escrever(saida, posicao, registro);
+            }
+
+            ByteBuffer cabecalho = ByteBuffer.allocate(TAMANHO_CABECALHO);
+            cabecalho.put(ASSINATURA).putInt(VERSAO).putInt(tabela.size()).putLong(inicioTabela)
+                     .putLong(System.currentTimeMillis()).flip();
+            escrever(saida, 0, cabecalho);
+            saida.force(true);
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LogEscrita.sincronizarDiretorio(diretorioBase);
+        pacote(true);
+
+        // A remoção roda na thread do log, sem disputar com a aplicação de novas gravações
+        log.executarExclusivo(() -> removerSoltos(incluidos));
+        Registro.info("Snapshot compactado com {} documento(s); {} arquivo(s) solto(s) incluído(s).",
+                      tabela.size(), incluidos.size());
+        return tabela.size();
+    }
+
+    /**
+     * Grava de volta como arquivos soltos os documentos do snapshot que não tenham versão solta e
+     * remove o snapshot. Usado antes de operações que percorrem os arquivos soltos, como a conversão de codec.
+     *
+     * @return a quantidade de documentos extraídos
+     * @throws IOException se algum documento não puder ser gravado
+     */
+    public synchronized int descompactar() throws IOException {
+        Pacote pacote = pacote(true);
+        if (pacote == null) {
+            return 0;
+        }
+        int extraidos = 0;
+        Set<Path> diretorios = new LinkedHashSet<>();
+        for (int i = 0; i < pacote.quantidade; i++) {
+            String caminho = pacote.caminho(i);
+            Path destino = diretorioBase.resolve(caminho.replace('/', File.separatorChar));
+            if (Files.exists(destino)) {
+                continue;
+            }
+            long[] entrada = pacote.buscar(pacote.caminhoBytes(i));
+            Files.createDirectories(destino.getParent());
+            Path temporario = destino.resolveSibling(destino.getFileName() + ".tmp");
+            try (FileChannel saida = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                escrever(saida, 0, ByteBuffer.wrap(pacote.ler(entrada[0], (int) entrada[1])));
+                saida.force(true);
+            }
+            Files.move(temporario, destino, StandardCopyOption.ATOMIC_MOVE);
+            diretorios.add(destino.getParent());
+            extraidos++;
+        }
+        for (Path diretorio : diretorios) {
+            LogEscrita.sincronizarDiretorio(diretorio);
+        }
+        Files.deleteIfExists(arquivo);
+        LogEscrita.sincronizarDiretorio(diretorioBase);
+        pacote(true);
+        return extraidos;
+    }
+
+    /**
+     * Remove os arquivos soltos incluídos no snapshot que não foram alterados desde a compactação.
+     */
+    private void removerSoltos(Map<Path, Object> incluidos) throws IOException {
+        Set<Path> diretorios = new LinkedHashSet<>();
+        for (Map.Entry<Path, Object> incluido : incluidos.entrySet()) {
+            if (Objects.equals(incluido.getValue(), identificar(incluido.getKey()))) {
+                Files.deleteIfExists(incluido.getKey());
+                diretorios.add(incluido.getKey().getParent());
+            }
+        }
+        for (Path diretorio : diretorios) {
+            LogEscrita.sincronizarDiretorio(diretorio);
+        }
+    }
+
+    /**
+     * Retorna o pacote atual, reabrindo-o se o arquivo tiver sido substituído. Sem {@code forcar},
+     * a verificação do arquivo é feita no máximo uma vez a cada {@value #INTERVALO_VERIFICACAO_MILLIS} ms.
+     */
+    private Pacote pacote(boolean forcar) {
+        long agora = System.nanoTime();
+        if (carregado && !forcar && agora - proximaVerificacao < 0) {
+            return atual;
+        }
+        synchronized (abertos) {
+            Object identificacao = identificar(arquivo);
+            Pacote pacote = atual;
+            if (pacote == null || !pacote.identificacao.equals(identificacao)) {
+                Pacote novo = null;
+                if (identificacao != null) {
+                    try {
+                        novo = new Pacote(arquivo, identificacao);
+                    } catch (IOException e) {
+                        Registro.erro("Erro ao abrir o snapshot compactado: {}", e.getMessage());
+                    }
+                }
+                atual = novo;
+                if (pacote != null) {
+                    pacote.fechar();
+                }
+            }
+            carregado = true;
+            proximaVerificacao = agora + TimeUnit.MILLISECONDS.toNanos(INTERVALO_VERIFICACAO_MILLIS);
+            return atual;
+        }
+    }
+
+    private static byte[] normalizar(String caminhoRelativo) {
+        return caminhoRelativo.replace(File.separatorChar, '/').getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long escrever(FileChannel canal, long posicao, ByteBuffer dados) throws IOException {
+        while (dados.hasRemaining()) {
+            posicao += canal.write(dados, posicao);
+        }
+        return posicao;
+    }
+
+    /**
+     * Identifica a versão atual de um arquivo pelo inode, tamanho e data de modificação.
+     */
+    private static Object identificar(Path caminho) {
+        try {
+            BasicFileAttributes atributos = Files.readAttributes(caminho, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            return List.of(Objects.toString(atributos.fileKey()), atributos.size(), atributos.lastModifiedTime());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Arquivo de snapshot aberto. Arquivos de até 2 GB são mapeados em memória; os maiores são lidos
+     * por leituras posicionais no canal.
+     */
+    private static final class Pacote {
+        private final FileChannel canal;
+        private final MappedByteBuffer mapa;
+        private final Object identificacao;
+        private final int quantidade;
+        private final long inicioTabela;
+
+        private Pacote(Path arquivo, Object identificacao) throws IOException {
+            this.identificacao = identificacao;
+            this.canal = FileChannel.open(arquivo, StandardOpenOption.READ);
+            long tamanho = canal.size();
+            this.mapa = tamanho <= Integer.MAX_VALUE ? canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanho) : null;
+
+            ByteBuffer cabecalho = ByteBuffer.wrap(ler(0, TAMANHO_CABECALHO));
+            byte[] assinatura = new byte[ASSINATURA.length];
+            cabecalho.get(assinatura);
+            int versao = cabecalho.getInt();
+            this.quantidade = cabecalho.getInt();
+            this.inicioTabela = cabecalho.getLong();
+            if (!Arrays.equals(assinatura, ASSINATURA) || versao != VERSAO || quantidade < 0 ||
+                inicioTabela + (long) quantidade * Long.BYTES > tamanho) {
+                canal.close();
+                throw new IOException("Arquivo de snapshot inválido ou de versão desconhecida.");
+            }
+        }
+
+        /**
+         * Busca binária de um caminho na tabela.
+         *
+         * @return a posição e o tamanho do documento, ou {@code null} se não existir
+         */
+        long[] buscar(byte[] chave) throws IOException {
+            int inicio = 0;
+            int fim = quantidade - 1;
+            while (inicio <= fim) {
+                int meio = (inicio + fim) >>> 1;
+                long posicaoEntrada = lerLong(inicioTabela + (long) meio * Long.BYTES);
+                int tamanhoCaminho = ByteBuffer.wrap(ler(posicaoEntrada, Short.BYTES)).getShort() & 0xFFFF;
+                ByteBuffer entrada = ByteBuffer.wrap(ler(posicaoEntrada + Short.BYTES, tamanhoCaminho + Long.BYTES + Integer.BYTES));
+                byte[] caminho = new byte[tamanhoCaminho];
+                entrada.get(caminho);
+                int comparacao = Arrays.compareUnsigned(caminho, chave);
+                if (comparacao == 0) {
+                    return new long[]{entrada.getLong(), entrada.getInt()};
+                } else if (comparacao < 0) {
+                    inicio = meio + 1;
+                } else {
+                    fim = meio - 1;
+                }
+            }
+            return null;
+        }
+
+        byte[] caminhoBytes(int indice) throws IOException {
+            long posicaoEntrada = lerLong(inicioTabela + (long) indice * Long.BYTES);
+            int tamanhoCaminho = ByteBuffer.wrap(ler(posicaoEntrada, Short.BYTES)).getShort() & 0xFFFF;
+            return ler(posicaoEntrada + Short.BYTES, tamanhoCaminho);
+        }
+
+        String caminho(int indice) throws IOException {
+            return new String(caminhoBytes(indice), StandardCharsets.UTF_8);
+        }
+
+        byte[] ler(long posicao, int tamanho) throws IOException {
+            byte[] dados = new byte[tamanho];
+            if (mapa != null) {
+                mapa.get((int) posicao, dados);
+                return dados;
+            }
+            ByteBuffer destino = ByteBuffer.wrap(dados);
+            while (destino.hasRemaining()) {
+                if (canal.read(destino, posicao + destino.position()) < 0) {
+                    throw new IOException("Snapshot truncado.");
+                }
+            }
+            return dados;
+        }
+
+        private long lerLong(long posicao) throws IOException {
+            return ByteBuffer.wrap(ler(posicao, Long.BYTES)).getLong();
+        }
+
+        void fechar() {
+            try {
+                canal.close();
+            } catch (IOException e) {
+                // O mapeamento continua válido para leituras em andamento
+            }
+        }
+    }
+}
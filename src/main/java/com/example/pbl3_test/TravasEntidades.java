@@ -0,0 +1,506 @@
+package com.example.pbl3_test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Travas de leitura e escrita por entidade, usadas pelo {@link Armazenamento} e pelo {@link Controller}
+ * para que escritas concorrentes no mesmo usuário ou evento não percam alterações.
+ *
+ * <p>
+ * As chaves ({@link #chaveUsuario(String)}, {@link #chaveEvento(String)} etc.) são distribuídas entre
+ * {@value #QUANTIDADE_FAIXAS} faixas, cada uma com um {@link ReentrantReadWriteLock}. Escritas em
+ * entidades diferentes só esperam uma pela outra quando as chaves caem na mesma faixa. Várias chaves
+ * são travadas sempre em ordem crescente de faixa, o que evita impasses entre operações que travam o
+ * mesmo usuário e o mesmo evento. As travas são reentrantes, e uma thread que já tem a trava de escrita
+ * pode obter a de leitura da mesma faixa; o contrário não é permitido.
+ * </p>
+ *
+ * <p>
+ * As travas obtidas por {@link #abrir(Path)} também travam, com {@link FileChannel#lock(long, long, boolean)},
+ * a posição da faixa no arquivo {@code travas.lck} do diretório de dados: exclusiva para escrita e
+ * compartilhada para leitura. Assim, processos diferentes que usam o mesmo diretório também se
+ * excluem. Cada posição guarda um contador de versão, incrementado ao liberar a trava de escrita; se,
+ * ao obter a trava, o contador foi alterado por outro processo, os {@link Ouvinte ouvintes} são avisados
+ * para descartar o que guardam em cache das entidades da faixa. As travas criadas por {@link #emMemoria()}
+ * valem apenas dentro do processo.
+ * </p>
+ *
+ * <p>
+ * Enquanto houver um {@link Alteracoes registro de alterações} aberto, as chaves de cada trava de
+ * escrita são anotadas nele antes de a trava ser liberada. Assim, quem precisa de uma cópia de todas
+ * as entidades pode copiá-las sem travar nada e, depois, travar todas as faixas só para refazer a
+ * cópia das entidades alteradas nesse meio tempo.
+ * </p>
+ */
+public class TravasEntidades {
+
+    /**
+     * Quantidade de faixas de travas.
+     */
+    public static final int QUANTIDADE_FAIXAS = 256;
+
+    private static final String NOME_ARQUIVO = "travas.lck";
+    private static final int TAMANHO_POSICAO = Long.BYTES;
+
+    private static final Map<Path, TravasEntidades> abertos = new ConcurrentHashMap<>();
+
+    private final Faixa[] faixas = new Faixa[QUANTIDADE_FAIXAS];
+    private final FileChannel canal;
+    private final Set<Ouvinte> ouvintes = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private final Set<Alteracoes> registros = new CopyOnWriteArraySet<>();
+
+    /**
+     * Recebe o aviso de que outro processo alterou entidades de uma faixa.
+     */
+    public interface Ouvinte {
+
+        /**
+         * Chamado, na thread que obteve a trava, quando o contador de versão da faixa foi alterado
+         * por outro processo desde a última trava obtida neste processo.
+         *
+         * @param faixa o índice da faixa, como retornado por {@link #faixa(String)}
+         */
+        void faixaAlterada(int faixa);
+    }
+
+    /**
+     * Construtor privado; use {@link #abrir(Path)} ou {@link #emMemoria()}.
+     *
+     * @param canal o canal do arquivo de travas ou {@code null} para travas apenas em memória
+     */
+    private TravasEntidades(FileChannel canal) {
+        this.canal = canal;
+        for (int i = 0; i < faixas.length; i++) {
+            faixas[i] = new Faixa();
+        }
+    }
+
+    /**
+     * Retorna as travas do diretório de dados informado, abrindo o arquivo de travas se necessário.
+     * Todas as instâncias de {@link Armazenamento} do processo compartilham as mesmas travas, já que a
+     * trava de um arquivo pertence ao processo inteiro.
+     *
+     * @param diretorioBase o diretório de dados
+     * @return as travas do diretório
+     * @throws IOException se o arquivo de travas não puder ser aberto
+     */
+    public static TravasEntidades abrir(Path diretorioBase) throws IOException {
+        Path arquivo = diretorioBase.toAbsolutePath().normalize().resolve(NOME_ARQUIVO);
+        try {
+            return abertos.computeIfAbsent(arquivo, caminho -> {
+                try {
+                    Files.createDirectories(caminho.getParent());
+                    return new TravasEntidades(FileChannel.open(caminho, StandardOpenOption.CREATE,
+                            StandardOpenOption.READ, StandardOpenOption.WRITE));
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Cria travas válidas apenas dentro do processo, para os motores que não gravam arquivos
+     * compartilhados.
+     *
+     * @return as travas criadas
+     */
+    public static TravasEntidades emMemoria() {
+        return new TravasEntidades(null);
+    }
+
+    /**
+     * Registra um ouvinte das alterações feitas por outros processos. O ouvinte é mantido por
+     * referência fraca, como no {@link MonitorCatalogo}; quem o registra deve guardar uma referência a ele.
+     *
+     * @param ouvinte o ouvinte
+     */
+    public void adicionarOuvinte(Ouvinte ouvinte) {
+        ouvintes.add(ouvinte);
+    }
+
+    /**
+     * Abre um registro das chaves travadas para escrita a partir de agora, neste processo, e das
+     * faixas alteradas por outros processos.
+     *
+     * @return o registro aberto, que deve ser fechado depois do uso
+     */
+    public Alteracoes registrarAlteracoes() {
+        Alteracoes registro = new Alteracoes();
+        registros.add(registro);
+        return registro;
+    }
+
+    /**
+     * Retorna a chave de um usuário.
+     *
+     * @param cpf o CPF do usuário, com ou sem pontuação
+     * @return a chave do usuário
+     */
+    public static String chaveUsuario(String cpf) {
+        return "usuario:" + cpf.replaceAll("[^a-zA-Z0-9]", "");
+    }
+
+    /**
+     * Retorna a chave de um evento.
+     *
+     * @param eventoId o ID do evento
+     * @return a chave do evento
+     */
+    public static String chaveEvento(String eventoId) {
+        return "evento:" + eventoId;
+    }
+
+    /**
+     * Retorna a chave de um nome de usuário, usada para que dois cadastros não reservem o mesmo nome ao mesmo tempo.
+     *
+     * @param login o nome de usuário
+     * @return a chave do nome de usuário
+     */
+    public static String chaveLogin(String login) {
+        return "login:" + IndiceUsuarios.normalizar(login);
+    }
+
+    /**
+     * Retorna a chave de um e-mail, usada para que dois cadastros não reservem o mesmo e-mail ao mesmo tempo.
+     *
+     * @param email o e-mail
+     * @return a chave do e-mail
+     */
+    public static String chaveEmail(String email) {
+        return "email:" + IndiceUsuarios.normalizar(email);
+    }
+
+    /**
+     * Obtém a trava de escrita das chaves informadas, em ordem de faixa.
+     *
+     * @param chaves as chaves das entidades
+     * @return a trava obtida, que deve ser liberada com {@link Trava#close()}
+     * @throws IllegalStateException se a thread já tiver apenas a trava de leitura de alguma das faixas
+     */
+    public Trava travarEscrita(String... chaves) {
+        return travarEscrita(Arrays.asList(chaves));
+    }
+
+    /**
+     * Obtém a trava de escrita das chaves informadas, em ordem de faixa.
+     *
+     * @param chaves as chaves das entidades
+     * @return a trava obtida, que deve ser liberada com {@link Trava#close()}
+     * @throws IllegalStateException se a thread já tiver apenas a trava de leitura de alguma das faixas
+     */
+    public Trava travarEscrita(Collection<String> chaves) {
+        return travar(chaves, true);
+    }
+
+    /**
+     * Obtém a trava de leitura das chaves informadas, em ordem de faixa.
+     *
+     * @param chaves as chaves das entidades
+     * @return a trava obtida, que deve ser liberada com {@link Trava#close()}
+     */
+    public Trava travarLeitura(String... chaves) {
+        return travar(Arrays.asList(chaves), false);
+    }
+
+    /**
+     * Retorna a faixa de uma chave. O resultado é o mesmo em todos os processos.
+     *
+     * @param chave a chave da entidade
+     * @return o índice da faixa
+     */
+    public static int faixa(String chave) {
+        int hash = chave.hashCode();
+        return ((hash ^ (hash >>> 16)) & 0x7fffffff) % QUANTIDADE_FAIXAS;
+    }
+
+    /**
+     * Obtém a trava de leitura de todas as faixas, em ordem, o que impede qualquer gravação
+     * enquanto a trava for mantida. Usado para capturar uma {@link VisaoLeitura} consistente.
+     *
+     * @return a trava obtida, que deve ser liberada com {@link Trava#close()}
+     */
+    public Trava travarLeituraTodas() {
+        TreeSet<Integer> indices = new TreeSet<>();
+        for (int indice = 0; indice < QUANTIDADE_FAIXAS; indice++) {
+            indices.add(indice);
+        }
+        return travar(indices, false);
+    }
+
+    private Trava travar(Collection<String> chaves, boolean escrita) {
+        TreeSet<Integer> indices = new TreeSet<>();
+        for (String chave : chaves) {
+            indices.add(faixa(chave));
+        }
+        return travar(indices, escrita, chaves);
+    }
+
+    private Trava travar(TreeSet<Integer> indices, boolean escrita) {
+        return travar(indices, escrita, Collections.emptyList());
+    }
+
+    private Trava travar(TreeSet<Integer> indices, boolean escrita, Collection<String> chaves) {
+        Trava trava = new Trava(escrita, indices.size(), chaves);
+        try {
+            for (int indice : indices) {
+                trava.adicionar(indice);
+            }
+        } catch (RuntimeException | Error e) {
+            trava.close();
+            throw e;
+        }
+        return trava;
+    }
+
+    private void avisarOuvintes(int indice) {
+        Ouvinte[] atuais;
+        synchronized (ouvintes) {
+            atuais = ouvintes.toArray(new Ouvinte[0]);
+        }
+        for (Ouvinte ouvinte : atuais) {
+            ouvinte.faixaAlterada(indice);
+        }
+    }
+
+    private long lerVersao(int indice) throws IOException {
+        ByteBuffer versao = ByteBuffer.allocate(TAMANHO_POSICAO);
+        while (versao.hasRemaining() && canal.read(versao, (long) indice * TAMANHO_POSICAO + versao.position()) > 0) {
+            // Continua até ler a posição inteira ou chegar ao fim do arquivo
+        }
+        return versao.hasRemaining() ? 0 : versao.getLong(0);
+    }
+
+    /**
+     * Registro das alterações feitas desde a sua abertura, obtido por {@link #registrarAlteracoes()}.
+     * As chaves gravadas neste processo são anotadas uma a uma; de outros processos, que não informam
+     * as chaves, só se sabe quais faixas tiveram o contador de versão alterado.
+     */
+    public final class Alteracoes implements AutoCloseable {
+
+        private final Set<String> chaves = ConcurrentHashMap.newKeySet();
+        private final long[] versoesIniciais = new long[QUANTIDADE_FAIXAS];
+        private final AtomicLongArray incrementosProprios = new AtomicLongArray(QUANTIDADE_FAIXAS);
+
+        private Alteracoes() {
+            if (canal == null) {
+                return;
+            }
+            for (int indice = 0; indice < QUANTIDADE_FAIXAS; indice++) {
+                try {
+                    versoesIniciais[indice] = lerVersao(indice);
+                } catch (IOException e) {
+                    // Uma versão ilegível faz a faixa ser tratada como alterada por outro processo
+                    versoesIniciais[indice] = -1;
+                }
+            }
+        }
+
+        /**
+         * Retorna as chaves travadas para escrita neste processo desde a abertura do registro, cujas
+         * travas já foram liberadas.
+         *
+         * @return as chaves gravadas
+         */
+        public Set<String> getChaves() {
+            return Collections.unmodifiableSet(chaves);
+        }
+
+        /**
+         * Retorna as faixas cujo contador de versão foi alterado por outros processos desde a abertura
+         * do registro. Deve ser chamado com todas as faixas travadas, para que nenhuma gravação esteja
+         * em andamento.
+         *
+         * @return os índices das faixas alteradas por outros processos; vazio nas travas em memória
+         */
+        public Set<Integer> getFaixasAlteradasPorOutros() {
+            Set<Integer> alteradas = new TreeSet<>();
+            if (canal == null) {
+                return alteradas;
+            }
+            for (int indice = 0; indice < QUANTIDADE_FAIXAS; indice++) {
+                long versao;
+                try {
+                    versao = lerVersao(indice);
+                } catch (IOException e) {
+                    versao = -1;
+                }
+                if (versao < 0 || versao - versoesIniciais[indice] != incrementosProprios.get(indice)) {
+                    alteradas.add(indice);
+                }
+            }
+            return alteradas;
+        }
+
+        /**
+         * Encerra o registro.
+         */
+        @Override
+        public void close() {
+            registros.remove(this);
+        }
+    }
+
+    /**
+     * Uma faixa: a trava do processo, a trava da posição correspondente no arquivo, compartilhada
+     * pelas threads do processo que estão lendo a faixa, e a última versão vista neste processo.
+     */
+    private static final class Faixa {
+        final ReentrantReadWriteLock trava = new ReentrantReadWriteLock();
+        FileLock travaArquivo;
+        int usosArquivo;
+        long versao;
+    }
+
+    /**
+     * Travas obtidas por uma operação, liberadas em ordem inversa por {@link #close()}.
+     */
+    public final class Trava implements AutoCloseable {
+
+        private final boolean escrita;
+        private final Collection<String> chaves;
+        private final int[] indices;
+        private final boolean[] usaArquivo;
+        private int quantidade;
+
+        private Trava(boolean escrita, int capacidade, Collection<String> chaves) {
+            this.escrita = escrita;
+            this.chaves = chaves;
+            this.indices = new int[capacidade];
+            this.usaArquivo = new boolean[capacidade];
+        }
+
+        private void adicionar(int indice) {
+            Faixa faixa = faixas[indice];
+            boolean arquivo;
+            if (escrita) {
+                if (faixa.trava.getReadHoldCount() > 0 && !faixa.trava.isWriteLockedByCurrentThread()) {
+                    throw new IllegalStateException("Trava de leitura não pode ser promovida a trava de escrita.");
+                }
+                faixa.trava.writeLock().lock();
+                arquivo = faixa.trava.getWriteHoldCount() == 1;
+            } else {
+                faixa.trava.readLock().lock();
+                arquivo = !faixa.trava.isWriteLockedByCurrentThread();
+            }
+            indices[quantidade] = indice;
+            quantidade++;
+            if (arquivo && canal != null) {
+                usaArquivo[quantidade - 1] = travarArquivo(indice, faixa);
+            }
+        }
+
+        /**
+         * Trava a posição da faixa no arquivo, se esta for a primeira thread do processo a usá-la, e
+         * avisa os ouvintes se outro processo alterou a faixa. Se o arquivo não puder ser travado, a
+         * operação continua apenas com a trava do processo.
+         *
+         * @return {@code true} se a faixa passou a contar este uso do arquivo
+         */
+        private boolean travarArquivo(int indice, Faixa faixa) {
+            synchronized (faixa) {
+                if (faixa.usosArquivo == 0) {
+                    long versao;
+                    try {
+                        faixa.travaArquivo = canal.lock((long) indice * TAMANHO_POSICAO, TAMANHO_POSICAO, !escrita);
+                        versao = lerVersao(indice);
+                    } catch (IOException e) {
+                        liberarTravaArquivo(faixa);
+                        Registro.erro("Erro ao travar o arquivo de travas: {}", e.getMessage());
+                        return false;
+                    }
+                    if (versao != faixa.versao) {
+                        faixa.versao = versao;
+                        avisarOuvintes(indice);
+                    }
+                }
+                faixa.usosArquivo++;
+                return true;
+            }
+        }
+
+        /**
+         * Libera a posição da faixa no arquivo quando a última thread do processo deixa de usá-la,
+         * incrementando antes o contador de versão se a trava era de escrita.
+         */
+        private void liberarArquivo(int indice, Faixa faixa) {
+            synchronized (faixa) {
+                if (--faixa.usosArquivo > 0 || faixa.travaArquivo == null) {
+                    return;
+                }
+                if (!faixa.travaArquivo.isShared()) {
+                    try {
+                        ByteBuffer versao = ByteBuffer.allocate(TAMANHO_POSICAO).putLong(0, faixa.versao + 1);
+                        canal.write(versao, (long) indice * TAMANHO_POSICAO);
+                        faixa.versao++;
+                        for (Alteracoes registro : registros) {
+                            registro.incrementosProprios.incrementAndGet(indice);
+                        }
+                    } catch (IOException e) {
+                        Registro.erro("Erro ao gravar a versão da trava: {}", e.getMessage());
+                    }
+                }
+                liberarTravaArquivo(faixa);
+            }
+        }
+
+        private void liberarTravaArquivo(Faixa faixa) {
+            if (faixa.travaArquivo == null) {
+                return;
+            }
+            try {
+                faixa.travaArquivo.release();
+            } catch (IOException e) {
+                Registro.erro("Erro ao liberar o arquivo de travas: {}", e.getMessage());
+            }
+            faixa.travaArquivo = null;
+        }
+
+        /**
+         * Libera as travas, na ordem inversa da obtenção. As chaves de uma trava de escrita são anotadas
+         * nos registros de alterações abertos antes da liberação.
+         */
+        @Override
+        public void close() {
+            if (escrita && quantidade > 0) {
+                for (Alteracoes registro : registros) {
+                    registro.chaves.addAll(chaves);
+                }
+            }
+            while (quantidade > 0) {
+                quantidade--;
+                Faixa faixa = faixas[indices[quantidade]];
+                if (usaArquivo[quantidade]) {
+                    liberarArquivo(indices[quantidade], faixa);
+                }
+                if (escrita) {
+                    faixa.trava.writeLock().unlock();
+                } else {
+                    faixa.trava.readLock().unlock();
+                }
+            }
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.example.pbl3_test;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
  * A classe {@code Usuario} representa um usuário do sistema de venda de ingressos.
@@ -18,6 +20,7 @@ public class Usuario {
     private boolean isAdmin;
     private List<Ingresso> Ingressos;
     private List<Recibo> Recibos;
+    private long historicoOffset;
 
     /**
      * Construtor da classe {@code Usuario}.
@@ -227,6 +230,47 @@ public class Usuario {
         return this.Recibos;
     }
 
+    /**
+     * Retorna o tamanho, em bytes, do histórico de ingressos e recibos do usuário conhecido na
+     * última gravação ou leitura do perfil. O histórico fica em um arquivo próprio
+     * (ver {@link HistoricoUsuario}), e este valor é usado para detectar registros perdidos.
+     *
+     * @return o tamanho conhecido do histórico
+     */
+    public long getHistoricoOffset() {
+        return historicoOffset;
+    }
+
+    /**
+     * Define o tamanho conhecido do histórico de ingressos e recibos do usuário.
+     *
+     * @param historicoOffset o tamanho do histórico, em bytes
+     */
+    void setHistoricoOffset(long historicoOffset) {
+        this.historicoOffset = historicoOffset;
+    }
+
+    /**
+     * Cria uma cópia independente do usuário, com listas, ingressos e recibos próprios. Um ingresso
+     * que aparece na lista de ingressos e em um recibo continua sendo um único objeto na cópia.
+     *
+     * @return a cópia do usuário
+     */
+    Usuario copiar() {
+        Usuario copia = new Usuario(username, password, fullName, cpf, email, isAdmin);
+        copia.historicoOffset = historicoOffset;
+        Map<Ingresso, Ingresso> copias = new IdentityHashMap<>();
+        for (Ingresso ingresso : Ingressos) {
+            copia.Ingressos.add(copias.computeIfAbsent(ingresso, Ingresso::copiar));
+        }
+        for (Recibo recibo : Recibos) {
+            Ingresso ingresso = recibo.getIngresso() == null ? null
+                    : copias.computeIfAbsent(recibo.getIngresso(), Ingresso::copiar);
+            copia.Recibos.add(recibo.copiar(ingresso));
+        }
+        return copia;
+    }
+
     /**
      * Gera o código hash baseado no CPF do usuário.
      * 
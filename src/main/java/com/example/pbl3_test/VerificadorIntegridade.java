@@ -0,0 +1,554 @@
+package com.example.pbl3_test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Verificação de integridade e recuperação do diretório de dados do {@link MotorArquivos}, executada
+ * na inicialização.
+ *
+ * <p>
+ * Primeiro, as gravações pendentes no {@link LogEscrita} são reaplicadas. Em seguida, os diretórios
+ * {@code Eventos} e {@code Usuarios} são percorridos em paralelo por tarefas de um {@link ForkJoinPool}:
+ * cada subdiretório é uma tarefa, e diretórios com muitos arquivos são divididos ao meio até que cada
+ * tarefa tenha poucos arquivos. Cada documento é decodificado pelo {@link CodecEntidades} do diretório,
+ * e cada {@link HistoricoUsuario} tem o checksum de todos os registros conferido. Os documentos do
+ * {@link SnapshotCompactado} são verificados da mesma forma.
+ * </p>
+ *
+ * <p>
+ * Documentos que não podem ser decodificados e arquivos temporários abandonados por gravações
+ * interrompidas são movidos para {@code Quarentena/<data e hora>}, mantendo o caminho relativo,
+ * em vez de causarem erros a cada leitura. Os históricos com registros finais inválidos são copiados
+ * para a quarentena e truncados no último registro válido. Os documentos inválidos do snapshot são
+ * copiados para a quarentena e removidos do snapshot, que é recompactado. Por fim, o
+ * {@link IndiceEventos} é reconstruído com as datas dos eventos válidos. O tempo de cada etapa é
+ * registrado no {@link Relatorio}.
+ * </p>
+ *
+ * <p>
+ * Outros processos podem estar usando o diretório durante a verificação. Por isso, antes de truncar um
+ * histórico ou mover um arquivo para a quarentena, a verificação obtém a trava de escrita da entidade nas
+ * {@link TravasEntidades}, a mesma usada pelas gravações, e lê o arquivo outra vez: o reparo só é feito
+ * se o problema continuar depois que a gravação em andamento terminar.
+ * </p>
+ *
+ * <p>
+ * Uso como ferramenta de linha de comando: {@code VerificadorIntegridade [diretorio]}, com o diretório
+ * de dados padrão da aplicação quando nenhum for informado.
+ * </p>
+ */
+public class VerificadorIntegridade {
+
+    static final String DIRETORIO_QUARENTENA = "Quarentena";
+    private static final String[] DIRETORIOS = {"Eventos", "Usuarios"};
+    private static final int ARQUIVOS_POR_TAREFA = 64;
+    private static final long IDADE_MINIMA_TEMPORARIO_MILLIS = 60 * 1000L;
+    private static final DateTimeFormatter FORMATO_QUARENTENA = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private static final Map<Path, Relatorio> verificados = new ConcurrentHashMap<>();
+
+    private final Path diretorioBase;
+    private final CodecEntidades codec;
+    private final TravasEntidades travas;
+    private final Path quarentena;
+    private final long inicio = System.currentTimeMillis();
+    private final Relatorio relatorio = new Relatorio();
+    private final Map<String, LocalDate> eventosValidos = new ConcurrentHashMap<>();
+
+    /**
+     * Construtor da classe {@code VerificadorIntegridade}.
+     *
+     * @param diretorioBase o diretório de dados
+     * @param codec o codec dos documentos do diretório
+     * @param travas as travas por entidade do diretório, obtidas antes de cada reparo
+     */
+    public VerificadorIntegridade(Path diretorioBase, CodecEntidades codec, TravasEntidades travas) {
+        this.diretorioBase = diretorioBase.toAbsolutePath().normalize();
+        this.codec = codec;
+        this.travas = travas;
+        this.quarentena = this.diretorioBase.resolve(DIRETORIO_QUARENTENA)
+                .resolve(LocalDateTime.now().format(FORMATO_QUARENTENA));
+    }
+
+    /**
+     * Verifica o diretório de dados apenas na primeira chamada do processo para esse diretório; as
+     * chamadas seguintes retornam o relatório da primeira. Erros da verificação são exibidos e não
+     * impedem o uso do diretório.
+     *
+     * @param diretorioBase o diretório de dados
+     * @param codec o codec dos documentos do diretório
+     * @param travas as travas por entidade do diretório
+     * @return o relatório da verificação
+     */
+    public static Relatorio verificarNaInicializacao(Path diretorioBase, CodecEntidades codec, TravasEntidades travas) {
+        return verificados.computeIfAbsent(diretorioBase.toAbsolutePath().normalize(), caminho -> {
+            VerificadorIntegridade verificador = new VerificadorIntegridade(caminho, codec, travas);
+            try {
+                Relatorio relatorio = verificador.verificar();
+                Registro.info("{}", relatorio);
+                return relatorio;
+            } catch (IOException | RuntimeException e) {
+                Registro.erro("Erro na verificação de integridade de {}: {}", caminho, e.getMessage());
+                return verificador.relatorio;
+            }
+        });
+    }
+
+    /**
+     * Ponto de entrada da ferramenta de linha de comando.
+     *
+     * @param args o diretório de dados, opcional
+     */
+    public static void main(String[] args) {
+        File diretorio = args.length > 0 ? new File(args[0]) : Armazenamento.diretorioPadrao();
+        if (!diretorio.isDirectory()) {
+            System.err.println("Diretório de dados não encontrado: " + diretorio);
+            System.exit(1);
+        }
+        try {
+            System.out.println(new VerificadorIntegridade(diretorio.toPath(), CodecEntidades.doDiretorio(diretorio),
+                    TravasEntidades.abrir(diretorio.toPath())).verificar());
+            System.exit(0);
+        } catch (IOException e) {
+            System.err.println("Erro na verificação de integridade: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Executa a verificação completa do diretório de dados.
+     *
+     * @return o relatório da verificação
+     * @throws IOException se o log de escrita, o snapshot ou o índice de eventos não puderem ser recuperados
+     */
+    public Relatorio verificar() throws IOException {
+        long etapa = System.nanoTime();
+        LogEscrita.abrir(diretorioBase).checkpoint();
+        relatorio.registrarEtapa("log de escrita", etapa);
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors() * 2));
+        try {
+            etapa = System.nanoTime();
+            List<VerificacaoArquivos> tarefas = new ArrayList<>();
+            for (String nome : DIRETORIOS) {
+                Path diretorio = diretorioBase.resolve(nome);
+                if (Files.isDirectory(diretorio)) {
+                    tarefas.add(new VerificacaoArquivos(this, diretorio));
+                }
+            }
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tarefas);
+                }
+            });
+            relatorio.registrarEtapa("arquivos soltos", etapa);
+
+            etapa = System.nanoTime();
+            SnapshotCompactado snapshot = SnapshotCompactado.abrir(diretorioBase);
+            List<String> caminhos = snapshot.listar("");
+            Set<String> invalidos = ConcurrentHashMap.newKeySet();
+            pool.invoke(new VerificacaoSnapshot(this, snapshot, caminhos, 0, caminhos.size(), invalidos));
+            if (!invalidos.isEmpty()) {
+                snapshot.compactar(codec.getExtensao(), invalidos);
+            }
+            relatorio.registrarEtapa("snapshot", etapa);
+        } finally {
+            pool.shutdown();
+        }
+
+        etapa = System.nanoTime();
+        IndiceEventos indice = IndiceEventos.abrir(diretorioBase.toFile(), () -> new HashSet<>(eventosValidos.keySet()));
+        indice.reconstruir(new LinkedHashMap<>(eventosValidos));
+        relatorio.registrarEtapa("índice de eventos", etapa);
+        return relatorio;
+    }
+
+    /**
+     * Verifica um arquivo solto, movendo-o para a quarentena se for inválido.
+     *
+     * @param arquivo o arquivo a ser verificado
+     */
+    private void verificarArquivo(Path arquivo) {
+        String nome = arquivo.getFileName().toString();
+        try {
+            if (nome.endsWith(".tmp")) {
+                // Temporários recentes podem pertencer a uma gravação em andamento de outro processo
+                if (abandonado(arquivo)) {
+                    try (var _ = travarEntidade(arquivo)) {
+                        if (Files.exists(arquivo) && abandonado(arquivo)) {
+                            moverParaQuarentena(arquivo, "arquivo temporário abandonado");
+                        }
+                    }
+                }
+            } else if (nome.endsWith(HistoricoUsuario.EXTENSAO)) {
+                verificarHistorico(arquivo);
+            } else if (nome.endsWith(codec.getExtensao())) {
+                relatorio.documentos.increment();
+                String caminhoRelativo = diretorioBase.relativize(arquivo).toString();
+                if (validarDocumento(caminhoRelativo, Files.readAllBytes(arquivo), true) == null) {
+                    return;
+                }
+                try (var _ = travarEntidade(arquivo)) {
+                    // Outro processo pode ter regravado o documento enquanto ele era lido
+                    String erro = Files.exists(arquivo) ? validarDocumento(caminhoRelativo, Files.readAllBytes(arquivo), true) : null;
+                    if (erro != null) {
+                        moverParaQuarentena(arquivo, erro);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            relatorio.registrarFalha(diretorioBase.relativize(arquivo) + ": " + e.getMessage());
+        }
+    }
+
+    private boolean abandonado(Path temporario) throws IOException {
+        return Files.getLastModifiedTime(temporario).toMillis() < inicio - IDADE_MINIMA_TEMPORARIO_MILLIS;
+    }
+
+    /**
+     * Confere os checksums de um histórico e trunca os registros finais inválidos, guardando uma cópia
+     * do arquivo original na quarentena. O arquivo é lido outra vez com a trava de escrita do usuário,
+     * já que o registro final pode ser um acréscimo em andamento em outro processo.
+     */
+    private void verificarHistorico(Path arquivo) throws IOException {
+        relatorio.historicos.increment();
+        byte[] conteudo = Files.readAllBytes(arquivo);
+        if (HistoricoUsuario.tamanhoValido(conteudo) == conteudo.length) {
+            return;
+        }
+        try (var _ = travarEntidade(arquivo)) {
+            if (!Files.exists(arquivo)) {
+                return;
+            }
+            conteudo = Files.readAllBytes(arquivo);
+            long valido = HistoricoUsuario.tamanhoValido(conteudo);
+            if (valido == conteudo.length) {
+                return;
+            }
+            Path copia = destinoQuarentena(diretorioBase.relativize(arquivo).toString());
+            Files.copy(arquivo, copia, StandardCopyOption.REPLACE_EXISTING);
+            try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.WRITE)) {
+                canal.truncate(valido);
+                canal.force(false);
+            }
+            relatorio.registrarQuarentena(diretorioBase.relativize(arquivo) + " (truncado em " + valido + " de " +
+                                          conteudo.length + " byte(s))");
+            relatorio.historicosReparados.increment();
+        }
+    }
+
+    /**
+     * Obtém a trava de escrita da entidade a que pertence um arquivo solto: o evento, para os arquivos em
+     * {@code Eventos}, ou o usuário, para os demais. O nome da entidade é o nome do arquivo sem as extensões
+     * conhecidas.
+     */
+    private TravasEntidades.Trava travarEntidade(Path arquivo) {
+        String nome = arquivo.getFileName().toString();
+        if (nome.endsWith(".tmp")) {
+            nome = nome.substring(0, nome.length() - ".tmp".length());
+        }
+        for (String extensao : new String[] {HistoricoUsuario.EXTENSAO, codec.getExtensao()}) {
+            if (nome.endsWith(extensao)) {
+                nome = nome.substring(0, nome.length() - extensao.length());
+                break;
+            }
+        }
+        boolean evento = diretorioBase.relativize(arquivo).startsWith("Eventos");
+        return travas.travarEscrita(evento ? TravasEntidades.chaveEvento(nome) : TravasEntidades.chaveUsuario(nome));
+    }
+
+    /**
+     * Decodifica um documento de evento ou de usuário e, se for um evento válido, registra a sua data.
+     *
+     * @param caminhoRelativo o caminho do documento, relativo ao diretório de dados
+     * @param conteudo o conteúdo do documento
+     * @param registrarData indica se a data de um evento válido deve ser usada no índice
+     * @return a descrição do problema, ou {@code null} se o documento for válido
+     */
+    private String validarDocumento(String caminhoRelativo, byte[] conteudo, boolean registrarData) {
+        boolean evento = caminhoRelativo.startsWith("Eventos");
+        try (InputStream entrada = new ByteArrayInputStream(conteudo)) {
+            if (evento) {
+                Evento lido = codec.decodificarEvento(entrada);
+                if (lido == null || lido.getID() == null) {
+                    return "evento sem ID";
+                }
+                if (registrarData) {
+                    eventosValidos.put(lido.getID(), lido.getData() == null ? IndiceEventos.dataDoId(lido.getID())
+                            : lido.getData().toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
+                }
+            } else {
+                Usuario lido = codec.decodificarUsuario(entrada);
+                if (lido == null || lido.getCpf() == null) {
+                    return "usuário sem CPF";
+                }
+            }
+            return null;
+        } catch (IOException | RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+
+    private void moverParaQuarentena(Path arquivo, String motivo) throws IOException {
+        String caminhoRelativo = diretorioBase.relativize(arquivo).toString();
+        Files.move(arquivo, destinoQuarentena(caminhoRelativo), StandardCopyOption.REPLACE_EXISTING);
+        relatorio.registrarQuarentena(caminhoRelativo + " (" + motivo + ")");
+    }
+
+    private Path destinoQuarentena(String caminhoRelativo) throws IOException {
+        Path destino = quarentena.resolve(caminhoRelativo);
+        Files.createDirectories(destino.getParent());
+        return destino;
+    }
+
+    /**
+     * Tarefa que verifica os arquivos de um diretório, criando uma subtarefa para cada subdiretório
+     * e dividindo a lista de arquivos quando ela é grande. As tarefas nunca são serializadas.
+     */
+    private static final class VerificacaoArquivos extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient VerificadorIntegridade verificador;
+        private final transient Path diretorio;
+        private final transient List<Path> arquivos;
+        private final int inicio;
+        private final int fim;
+
+        VerificacaoArquivos(VerificadorIntegridade verificador, Path diretorio) {
+            this(verificador, diretorio, null, 0, 0);
+        }
+
+        private VerificacaoArquivos(VerificadorIntegridade verificador, Path diretorio, List<Path> arquivos, int inicio, int fim) {
+            this.verificador = verificador;
+            this.diretorio = diretorio;
+            this.arquivos = arquivos;
+            this.inicio = inicio;
+            this.fim = fim;
+        }
+
+        @Override
+        protected void compute() {
+            if (arquivos == null) {
+                listar();
+            } else if (fim - inicio > ARQUIVOS_POR_TAREFA) {
+                int meio = (inicio + fim) >>> 1;
+                invokeAll(new VerificacaoArquivos(verificador, diretorio, arquivos, inicio, meio),
+                          new VerificacaoArquivos(verificador, diretorio, arquivos, meio, fim));
+            } else {
+                for (int i = inicio; i < fim; i++) {
+                    verificador.verificarArquivo(arquivos.get(i));
+                }
+            }
+        }
+
+        private void listar() {
+            List<Path> encontrados = new ArrayList<>();
+            List<VerificacaoArquivos> subtarefas = new ArrayList<>();
+            try (DirectoryStream<Path> conteudo = Files.newDirectoryStream(diretorio)) {
+                for (Path caminho : conteudo) {
+                    if (Files.isDirectory(caminho)) {
+                        subtarefas.add(new VerificacaoArquivos(verificador, caminho));
+                    } else {
+                        encontrados.add(caminho);
+                    }
+                }
+            } catch (IOException e) {
+                verificador.relatorio.registrarFalha(verificador.diretorioBase.relativize(diretorio) + ": " + e.getMessage());
+                return;
+            }
+            subtarefas.add(new VerificacaoArquivos(verificador, diretorio, encontrados, 0, encontrados.size()));
+            invokeAll(subtarefas);
+        }
+    }
+
+    /**
+     * Tarefa que verifica um intervalo dos documentos do snapshot, dividindo-o quando ele é grande.
+     * As tarefas nunca são serializadas.
+     */
+    private static final class VerificacaoSnapshot extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient VerificadorIntegridade verificador;
+        private final transient SnapshotCompactado snapshot;
+        private final transient List<String> caminhos;
+        private final int inicio;
+        private final int fim;
+        private final transient Set<String> invalidos;
+
+        VerificacaoSnapshot(VerificadorIntegridade verificador, SnapshotCompactado snapshot, List<String> caminhos,
+                            int inicio, int fim, Set<String> invalidos) {
+            this.verificador = verificador;
+            this.snapshot = snapshot;
+            this.caminhos = caminhos;
+            this.inicio = inicio;
+            this.fim = fim;
+            this.invalidos = invalidos;
+        }
+
+        @Override
+        protected void compute() {
+            if (fim - inicio > ARQUIVOS_POR_TAREFA) {
+                int meio = (inicio + fim) >>> 1;
+                invokeAll(new VerificacaoSnapshot(verificador, snapshot, caminhos, inicio, meio, invalidos),
+                          new VerificacaoSnapshot(verificador, snapshot, caminhos, meio, fim, invalidos));
+                return;
+            }
+            for (int i = inicio; i < fim; i++) {
+                String caminhoRelativo = caminhos.get(i).replace('/', File.separatorChar);
+                byte[] conteudo = snapshot.ler(caminhoRelativo);
+                if (conteudo == null || !caminhoRelativo.endsWith(verificador.codec.getExtensao())) {
+                    continue;
+                }
+                verificador.relatorio.documentos.increment();
+                // Quando há um arquivo solto, ele tem precedência e a data do índice vem dele
+                boolean sobreposto = Files.exists(verificador.diretorioBase.resolve(caminhoRelativo));
+                String erro = verificador.validarDocumento(caminhoRelativo, conteudo, !sobreposto);
+                if (erro == null) {
+                    continue;
+                }
+                try {
+                    Files.write(verificador.destinoQuarentena(caminhoRelativo), conteudo);
+                    invalidos.add(caminhoRelativo);
+                    verificador.relatorio.registrarQuarentena(caminhoRelativo + " no snapshot (" + erro + ")");
+                } catch (IOException e) {
+                    verificador.relatorio.registrarFalha(caminhoRelativo + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Resultado de uma verificação: quantidades verificadas, arquivos movidos para a quarentena e
+     * tempo de cada etapa.
+     */
+    public static final class Relatorio {
+
+        private final LongAdder documentos = new LongAdder();
+        private final LongAdder historicos = new LongAdder();
+        private final LongAdder historicosReparados = new LongAdder();
+        private final ConcurrentLinkedQueue<String> quarentena = new ConcurrentLinkedQueue<>();
+        private final ConcurrentLinkedQueue<String> falhas = new ConcurrentLinkedQueue<>();
+        private final Map<String, Long> etapas = new LinkedHashMap<>();
+
+        private Relatorio() {
+        }
+
+        /**
+         * Retorna a quantidade de documentos de usuários e eventos verificados, soltos e no snapshot.
+         *
+         * @return a quantidade de documentos verificados
+         */
+        public long getDocumentosVerificados() {
+            return documentos.sum();
+        }
+
+        /**
+         * Retorna a quantidade de históricos de usuários verificados.
+         *
+         * @return a quantidade de históricos verificados
+         */
+        public long getHistoricosVerificados() {
+            return historicos.sum();
+        }
+
+        /**
+         * Retorna a quantidade de históricos truncados no último registro válido.
+         *
+         * @return a quantidade de históricos reparados
+         */
+        public long getHistoricosReparados() {
+            return historicosReparados.sum();
+        }
+
+        /**
+         * Retorna a descrição de cada arquivo movido ou copiado para a quarentena.
+         *
+         * @return os arquivos em quarentena
+         */
+        public List<String> getQuarentena() {
+            return Collections.unmodifiableList(new ArrayList<>(quarentena));
+        }
+
+        /**
+         * Retorna os arquivos que não puderam ser verificados.
+         *
+         * @return as falhas de leitura
+         */
+        public List<String> getFalhas() {
+            return Collections.unmodifiableList(new ArrayList<>(falhas));
+        }
+
+        /**
+         * Retorna o tempo, em milissegundos, de cada etapa da verificação, na ordem de execução.
+         *
+         * @return o tempo de cada etapa
+         */
+        public synchronized Map<String, Long> getEtapas() {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(etapas));
+        }
+
+        private synchronized void registrarEtapa(String nome, long inicioNanos) {
+            etapas.put(nome, (System.nanoTime() - inicioNanos) / 1_000_000);
+        }
+
+        private void registrarQuarentena(String descricao) {
+            quarentena.add(descricao);
+        }
+
+        private void registrarFalha(String descricao) {
+            falhas.add(descricao);
+        }
+
+        @Override
+        public synchronized String toString() {
+            long total = 0;
+            StringBuilder etapasTexto = new StringBuilder();
+            for (Map.Entry<String, Long> etapa : etapas.entrySet()) {
+                total += etapa.getValue();
+                etapasTexto.append(etapasTexto.length() == 0 ? "" : ", ")
+                           .append(etapa.getKey()).append(' ').append(etapa.getValue()).append(" ms");
+            }
+            StringBuilder texto = new StringBuilder("Verificação de integridade: ")
+                    .append(getDocumentosVerificados()).append(" documento(s) e ")
+                    .append(getHistoricosVerificados()).append(" histórico(s) verificados em ")
+                    .append(total).append(" ms (").append(etapasTexto).append("); ")
+                    .append(quarentena.size()).append(" arquivo(s) em quarentena, ")
+                    .append(getHistoricosReparados()).append(" histórico(s) reparado(s).");
+            for (String arquivo : quarentena) {
+                texto.append(System.lineSeparator()).append("  Quarentena: ").append(arquivo);
+            }
+            for (String falha : falhas) {
+                texto.append(System.lineSeparator()).append("  Falha: ").append(falha);
+            }
+            return texto.toString();
+        }
+    }
+}
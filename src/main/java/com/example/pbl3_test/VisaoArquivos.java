@@ -0,0 +1,595 @@
+package com.example.pbl3_test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link VisaoLeitura} do {@link MotorArquivos}, que preserva os arquivos do momento da captura por
+ * ligações físicas (hard links) em um subdiretório de {@value #DIRETORIO}.
+ *
+ * <p>
+ * O motor nunca altera um documento no lugar: cada gravação cria um arquivo novo e o move sobre o
+ * anterior. A ligação feita na captura continua apontando para o conteúdo antigo, de modo que a
+ * cópia só acontece, de fato, quando o documento é regravado. Os históricos, que recebem novos
+ * registros no fim do arquivo, são lidos apenas até o tamanho que tinham na captura. O snapshot
+ * compactado também é ligado, e as quantidades de ingressos do {@link InventarioMapeado} são
+ * copiadas, por serem alteradas no lugar. Quando o sistema de arquivos não aceita ligações, os
+ * arquivos são copiados.
+ * </p>
+ *
+ * <p>
+ * A captura não trava as entidades enquanto liga os arquivos, o que leva tempo proporcional à
+ * quantidade de usuários e eventos. Um {@link TravasEntidades.Alteracoes registro de alterações}
+ * anota as entidades gravadas nesse meio tempo; depois, todas as faixas são travadas para leitura
+ * apenas para ligar outra vez essas entidades e copiar as quantidades do inventário, e a visão fica
+ * igual ao estado desse instante. As gravações esperam só por essa segunda etapa, proporcional às
+ * entidades alteradas; a sua duração é registrada no nível de depuração. Das faixas alteradas por
+ * outros processos, que não informam as chaves, a segunda etapa liga outra vez todas as entidades,
+ * listando os diretórios.
+ * </p>
+ *
+ * <p>
+ * O subdiretório da visão tem o nome {@code <pid>-<geração>} e é apagado por {@link #close()}. Os
+ * subdiretórios deixados por processos encerrados sem fechar as suas visões são apagados por
+ * {@link #removerAbandonadas(Path)}.
+ * </p>
+ */
+final class VisaoArquivos implements VisaoLeitura {
+
+    /**
+     * Nome do diretório das visões, dentro do diretório de dados.
+     */
+    static final String DIRETORIO = "Visoes";
+
+    private static final String PREFIXO_EVENTO = TravasEntidades.chaveEvento("");
+    private static final String PREFIXO_USUARIO = TravasEntidades.chaveUsuario("");
+
+    private static final AtomicLong geracoes = new AtomicLong();
+
+    private final long geracao;
+    private final Date momento = new Date();
+    private final Path diretorio;
+    private final CodecEntidades codec;
+    private final Map<String, Path> eventos = new TreeMap<>();
+    private final Map<String, Path> usuarios = new TreeMap<>();
+    private final Map<String, Path> historicos = new HashMap<>();
+    private final Map<String, Long> tamanhosHistoricos = new HashMap<>();
+    private final Map<String, String> eventosCompactados = new TreeMap<>();
+    private final Map<String, String> usuariosCompactados = new TreeMap<>();
+    private final Map<String, Integer> quantidades = new HashMap<>();
+    private SnapshotCompactado snapshot;
+    private volatile boolean fechada;
+
+    private VisaoArquivos(Path diretorio, long geracao, CodecEntidades codec) {
+        this.diretorio = diretorio;
+        this.geracao = geracao;
+        this.codec = codec;
+    }
+
+    /**
+     * Captura a visão do diretório de dados. Os arquivos são ligados sem travar as entidades; depois,
+     * com todas as faixas travadas para leitura, são ligadas outra vez as entidades gravadas durante
+     * a primeira etapa.
+     *
+     * @param diretorioBase o diretório de dados
+     * @param codec o codec dos documentos do diretório
+     * @param inventario o inventário dos ingressos, ou {@code null} se não estiver disponível
+     * @param layout a organização dos usuários, cujos arquivos têm precedência sobre os da outra organização
+     * @param travas as travas do diretório de dados
+     * @return a visão capturada
+     * @throws IOException se os arquivos não puderem ser ligados nem copiados
+     */
+    static VisaoArquivos capturar(Path diretorioBase, CodecEntidades codec, InventarioMapeado inventario,
+                                  LayoutUsuarios layout, TravasEntidades travas) throws IOException {
+        long geracao = geracoes.incrementAndGet();
+        Path diretorio = diretorioBase.resolve(DIRETORIO).resolve(ProcessHandle.current().pid() + "-" + geracao);
+        Files.createDirectories(diretorio);
+        VisaoArquivos visao = new VisaoArquivos(diretorio, geracao, codec);
+        try (TravasEntidades.Alteracoes alteracoes = travas.registrarAlteracoes()) {
+            visao.ligarDocumentos(diretorioBase, layout);
+            // O snapshot é ligado depois dos arquivos soltos: um documento removido por uma
+            // compactação feita durante a captura já está no snapshot novo
+            visao.ligarSnapshot(diretorioBase);
+
+            try (var _ = travas.travarLeituraTodas()) {
+                long inicio = System.nanoTime();
+                int religadas = visao.religar(diretorioBase, layout, alteracoes);
+                // As quantidades mudam sem trava de escrita do evento, na reserva; como são lidas da
+                // memória, são todas copiadas nesta etapa
+                visao.copiarQuantidades(inventario);
+                Registro.depuracao("Visão {} conferida com as faixas travadas em {} ms; {} entidade(s) ligada(s) outra vez.",
+                                   geracao, (System.nanoTime() - inicio) / 1_000_000, religadas);
+            }
+            return visao;
+        } catch (IOException | RuntimeException e) {
+            visao.close();
+            throw e;
+        }
+    }
+
+    private void copiarQuantidades(InventarioMapeado inventario) {
+        if (inventario == null) {
+            return;
+        }
+        for (String eventoId : listarIdsEventos()) {
+            Integer quantidade = InventarioMapeado.suportado(eventoId) ? inventario.obter(eventoId) : null;
+            if (quantidade != null) {
+                quantidades.put(eventoId, quantidade);
+            }
+        }
+    }
+
+    /**
+     * Liga outra vez as entidades gravadas desde a abertura do registro de alterações e, se o snapshot
+     * compactado foi substituído, também o snapshot. Deve ser chamado com todas as faixas travadas.
+     *
+     * @return a quantidade de entidades ligadas outra vez
+     */
+    private int religar(Path diretorioBase, LayoutUsuarios layout, TravasEntidades.Alteracoes alteracoes) throws IOException {
+        Set<String> eventoIds = new TreeSet<>();
+        Set<String> chavesUsuarios = new HashSet<>();
+        for (String chave : alteracoes.getChaves()) {
+            if (chave.startsWith(PREFIXO_EVENTO)) {
+                eventoIds.add(chave.substring(PREFIXO_EVENTO.length()));
+            } else if (chave.startsWith(PREFIXO_USUARIO)) {
+                chavesUsuarios.add(chave);
+            }
+        }
+        Set<String> cpfs = resolverCpfs(diretorioBase, layout, chavesUsuarios);
+
+        // Outro processo não informa as chaves que gravou: são ligadas outra vez todas as entidades das suas faixas
+        Set<Integer> faixas = alteracoes.getFaixasAlteradasPorOutros();
+        if (!faixas.isEmpty()) {
+            Set<String> candidatos = listarEventos(diretorioBase);
+            candidatos.addAll(eventos.keySet());
+            for (String eventoId : candidatos) {
+                if (faixas.contains(TravasEntidades.faixa(TravasEntidades.chaveEvento(eventoId)))) {
+                    eventoIds.add(eventoId);
+                }
+            }
+            candidatos = listarUsuarios(diretorioBase);
+            candidatos.addAll(usuarios.keySet());
+            candidatos.addAll(historicos.keySet());
+            for (String cpf : candidatos) {
+                if (faixas.contains(TravasEntidades.faixa(TravasEntidades.chaveUsuario(cpf)))) {
+                    cpfs.add(cpf);
+                }
+            }
+        }
+
+        for (String cpf : cpfs) {
+            religarUsuario(diretorioBase, layout, cpf);
+        }
+        for (String eventoId : eventoIds) {
+            religarEvento(diretorioBase, eventoId);
+        }
+        // Como na primeira etapa, o snapshot é conferido depois dos arquivos soltos
+        religarSnapshot(diretorioBase);
+        return cpfs.size() + eventoIds.size();
+    }
+
+    /**
+     * Obtém os CPFs, como aparecem nos nomes dos arquivos, das chaves de usuários informadas. As chaves
+     * não têm a pontuação do CPF; o diretório só é listado se algum CPF não estiver na visão nem existir
+     * sem pontuação.
+     */
+    private Set<String> resolverCpfs(Path diretorioBase, LayoutUsuarios layout, Set<String> chaves) throws IOException {
+        Set<String> cpfs = new TreeSet<>();
+        Set<String> pendentes = new HashSet<>(chaves);
+        Set<String> conhecidos = new HashSet<>(usuarios.keySet());
+        conhecidos.addAll(historicos.keySet());
+        for (String cpf : conhecidos) {
+            if (pendentes.remove(TravasEntidades.chaveUsuario(cpf))) {
+                cpfs.add(cpf);
+            }
+        }
+        for (Iterator<String> iterador = pendentes.iterator(); iterador.hasNext(); ) {
+            String cpf = iterador.next().substring(PREFIXO_USUARIO.length());
+            if (existeUsuario(diretorioBase, layout, cpf)) {
+                cpfs.add(cpf);
+                iterador.remove();
+            }
+        }
+        if (!pendentes.isEmpty()) {
+            for (String cpf : listarUsuarios(diretorioBase)) {
+                if (pendentes.contains(TravasEntidades.chaveUsuario(cpf))) {
+                    cpfs.add(cpf);
+                }
+            }
+        }
+        return cpfs;
+    }
+
+    private boolean existeUsuario(Path diretorioBase, LayoutUsuarios layout, String cpf) {
+        Path origemUsuarios = diretorioBase.resolve("Usuarios");
+        for (boolean subdividido : new boolean[] {layout.isSubdividido(), !layout.isSubdividido()}) {
+            if (Files.exists(origemUsuarios.resolve(relativoUsuario(cpf, codec.getExtensao(), subdividido)))
+                    || Files.exists(origemUsuarios.resolve(relativoUsuario(cpf, HistoricoUsuario.EXTENSAO, subdividido)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void religarUsuario(Path diretorioBase, LayoutUsuarios layout, String cpf) throws IOException {
+        usuarios.remove(cpf);
+        historicos.remove(cpf);
+        tamanhosHistoricos.remove(cpf);
+        Path origemUsuarios = diretorioBase.resolve("Usuarios");
+        // Os arquivos na organização configurada têm precedência sobre os da outra, como no LayoutUsuarios
+        for (boolean subdividido : new boolean[] {layout.isSubdividido(), !layout.isSubdividido()}) {
+            Path documento = relativoUsuario(cpf, codec.getExtensao(), subdividido);
+            Path destino = diretorio.resolve("Usuarios").resolve(documento);
+            if (!usuarios.containsKey(cpf) && religarArquivo(origemUsuarios.resolve(documento), destino)) {
+                usuarios.put(cpf, destino);
+            }
+            Path historico = relativoUsuario(cpf, HistoricoUsuario.EXTENSAO, subdividido);
+            destino = diretorio.resolve("Usuarios").resolve(historico);
+            if (!historicos.containsKey(cpf) && religarArquivo(origemUsuarios.resolve(historico), destino)) {
+                historicos.put(cpf, destino);
+                tamanhosHistoricos.put(cpf, Files.size(destino));
+            }
+        }
+    }
+
+    private void religarEvento(Path diretorioBase, String eventoId) throws IOException {
+        String nome = eventoId + codec.getExtensao();
+        Path destino = diretorio.resolve("Eventos").resolve(nome);
+        eventos.remove(eventoId);
+        if (religarArquivo(diretorioBase.resolve("Eventos").resolve(nome), destino)) {
+            eventos.put(eventoId, destino);
+        }
+    }
+
+    /**
+     * Liga outra vez o snapshot compactado se ele foi substituído por uma compactação depois da primeira etapa.
+     */
+    private void religarSnapshot(Path diretorioBase) throws IOException {
+        Path destino = diretorio.resolve(SnapshotCompactado.NOME_ARQUIVO);
+        if (mesmoArquivo(diretorioBase.resolve(SnapshotCompactado.NOME_ARQUIVO), destino)) {
+            return;
+        }
+        SnapshotCompactado.fechar(diretorio);
+        snapshot = null;
+        eventosCompactados.clear();
+        usuariosCompactados.clear();
+        Files.deleteIfExists(destino);
+        ligarSnapshot(diretorioBase);
+    }
+
+    private static Path relativoUsuario(String cpf, String extensao, boolean subdividido) {
+        return subdividido ? Paths.get(LayoutUsuarios.subdiretorio(cpf), cpf + extensao) : Paths.get(cpf + extensao);
+    }
+
+    private static boolean religarArquivo(Path origem, Path destino) throws IOException {
+        Files.createDirectories(destino.getParent());
+        Files.deleteIfExists(destino);
+        return ligar(origem, destino);
+    }
+
+    /**
+     * Verifica se o destino é uma ligação ao arquivo de origem ou uma cópia dele, ou se os dois não existem.
+     */
+    private static boolean mesmoArquivo(Path origem, Path destino) throws IOException {
+        BasicFileAttributes atributosOrigem;
+        BasicFileAttributes atributosDestino;
+        try {
+            atributosOrigem = Files.readAttributes(origem, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return Files.notExists(destino);
+        }
+        try {
+            atributosDestino = Files.readAttributes(destino, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        if (atributosOrigem.fileKey() != null && atributosOrigem.fileKey().equals(atributosDestino.fileKey())) {
+            return true;
+        }
+        // A cópia, feita quando o sistema de arquivos não aceita ligações, preserva a data de modificação
+        return atributosOrigem.size() == atributosDestino.size()
+                && atributosOrigem.lastModifiedTime().equals(atributosDestino.lastModifiedTime());
+    }
+
+    private Set<String> listarEventos(Path diretorioBase) throws IOException {
+        Set<String> ids = new HashSet<>();
+        Path origemEventos = diretorioBase.resolve("Eventos");
+        if (Files.isDirectory(origemEventos)) {
+            String extensao = codec.getExtensao();
+            try (Stream<Path> caminhos = Files.list(origemEventos)) {
+                caminhos.map(caminho -> caminho.getFileName().toString())
+                        .filter(nome -> nome.endsWith(extensao))
+                        .forEach(nome -> ids.add(nome.substring(0, nome.length() - extensao.length())));
+            }
+        }
+        return ids;
+    }
+
+    private Set<String> listarUsuarios(Path diretorioBase) throws IOException {
+        Set<String> cpfs = new HashSet<>();
+        Path origemUsuarios = diretorioBase.resolve("Usuarios");
+        if (Files.isDirectory(origemUsuarios)) {
+            String extensao = codec.getExtensao();
+            try (Stream<Path> caminhos = Files.walk(origemUsuarios)) {
+                caminhos.map(caminho -> caminho.getFileName().toString()).forEach(nome -> {
+                    if (nome.endsWith(extensao)) {
+                        cpfs.add(nome.substring(0, nome.length() - extensao.length()));
+                    } else if (nome.endsWith(HistoricoUsuario.EXTENSAO)) {
+                        cpfs.add(nome.substring(0, nome.length() - HistoricoUsuario.EXTENSAO.length()));
+                    }
+                });
+            }
+        }
+        return cpfs;
+    }
+
+    private void ligarDocumentos(Path diretorioBase, LayoutUsuarios layout) throws IOException {
+        String extensao = codec.getExtensao();
+        Path origemEventos = diretorioBase.resolve("Eventos");
+        if (Files.isDirectory(origemEventos)) {
+            Files.createDirectories(diretorio.resolve("Eventos"));
+            try (Stream<Path> caminhos = Files.list(origemEventos)) {
+                for (Path origem : caminhos.collect(Collectors.toList())) {
+                    String nome = origem.getFileName().toString();
+                    Path destino = diretorio.resolve("Eventos").resolve(nome);
+                    if (nome.endsWith(extensao) && ligar(origem, destino)) {
+                        eventos.put(nome.substring(0, nome.length() - extensao.length()), destino);
+                    }
+                }
+            }
+        }
+
+        Path origemUsuarios = diretorioBase.resolve("Usuarios");
+        if (Files.isDirectory(origemUsuarios)) {
+            List<Path> arquivos;
+            try (Stream<Path> caminhos = Files.walk(origemUsuarios)) {
+                arquivos = caminhos.filter(Files::isRegularFile).collect(Collectors.toList());
+            }
+            for (Path origem : arquivos) {
+                String nome = origem.getFileName().toString();
+                boolean documento = nome.endsWith(extensao);
+                if (!documento && !nome.endsWith(HistoricoUsuario.EXTENSAO)) {
+                    continue;
+                }
+                Path relativo = origemUsuarios.relativize(origem);
+                Path destino = diretorio.resolve("Usuarios").resolve(relativo);
+                Files.createDirectories(destino.getParent());
+                if (!ligar(origem, destino)) {
+                    continue;
+                }
+                String cpf = nome.substring(0, nome.length() - (documento ? extensao : HistoricoUsuario.EXTENSAO).length());
+                // Os arquivos na organização configurada têm precedência sobre os da outra, como no LayoutUsuarios
+                boolean antigo = (relativo.getNameCount() == 1) == layout.isSubdividido();
+                if (documento) {
+                    if (!antigo || !usuarios.containsKey(cpf)) {
+                        usuarios.put(cpf, destino);
+                    }
+                } else if (!antigo || !historicos.containsKey(cpf)) {
+                    historicos.put(cpf, destino);
+                    tamanhosHistoricos.put(cpf, Files.size(destino));
+                }
+            }
+        }
+    }
+
+    private void ligarSnapshot(Path diretorioBase) throws IOException {
+        Path origem = diretorioBase.resolve(SnapshotCompactado.NOME_ARQUIVO);
+        if (!ligar(origem, diretorio.resolve(SnapshotCompactado.NOME_ARQUIVO))) {
+            return;
+        }
+        snapshot = SnapshotCompactado.abrir(diretorio);
+        String extensao = codec.getExtensao();
+        for (String caminho : snapshot.listar("Eventos/")) {
+            if (caminho.endsWith(extensao)) {
+                eventosCompactados.put(caminho.substring("Eventos/".length(), caminho.length() - extensao.length()), caminho);
+            }
+        }
+        for (String caminho : snapshot.listar("Usuarios/")) {
+            if (caminho.endsWith(extensao)) {
+                String nome = caminho.substring(caminho.lastIndexOf('/') + 1);
+                usuariosCompactados.put(nome.substring(0, nome.length() - extensao.length()), caminho);
+            }
+        }
+    }
+
+    /**
+     * Liga o arquivo de destino ao de origem ou, se o sistema de arquivos não aceitar ligações, copia-o.
+     *
+     * @return {@code false} se o arquivo de origem não existir mais
+     */
+    private static boolean ligar(Path origem, Path destino) throws IOException {
+        try {
+            Files.createLink(destino, origem);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            try {
+                Files.copy(origem, destino, StandardCopyOption.COPY_ATTRIBUTES);
+                return true;
+            } catch (NoSuchFileException ausente) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public long getGeracao() {
+        return geracao;
+    }
+
+    @Override
+    public Date getMomento() {
+        return new Date(momento.getTime());
+    }
+
+    @Override
+    public List<String> listarIdsEventos() {
+        Set<String> ids = new TreeSet<>(eventos.keySet());
+        ids.addAll(eventosCompactados.keySet());
+        return new ArrayList<>(ids);
+    }
+
+    @Override
+    public Evento lerEvento(String eventoId) {
+        verificarAberta();
+        try (InputStream entrada = abrir(eventos.get(eventoId), eventosCompactados.get(eventoId))) {
+            if (entrada == null) {
+                return null;
+            }
+            Evento evento = codec.decodificarEvento(entrada);
+            Integer quantidade = quantidades.get(eventoId);
+            if (quantidade != null) {
+                evento.setIngressos(quantidade);
+            }
+            return evento;
+        } catch (IOException e) {
+            Registro.erro("Erro ao ler o evento {} da visão: {}", eventoId, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public List<String> listarCpfs() {
+        Set<String> cpfs = new TreeSet<>(usuarios.keySet());
+        cpfs.addAll(usuariosCompactados.keySet());
+        return new ArrayList<>(cpfs);
+    }
+
+    @Override
+    public Usuario lerUsuario(String cpf) {
+        verificarAberta();
+        try (InputStream entrada = abrir(usuarios.get(cpf), usuariosCompactados.get(cpf))) {
+            if (entrada == null) {
+                return null;
+            }
+            Usuario usuario = codec.decodificarUsuario(entrada);
+            Path historico = historicos.get(cpf);
+            if (historico != null) {
+                usuario.setHistoricoOffset(HistoricoUsuario.carregarConteudo(
+                        lerInicio(historico, tamanhosHistoricos.get(cpf)), usuario));
+            }
+            return usuario;
+        } catch (IOException e) {
+            Registro.erro("Erro ao ler o usuário {} da visão: {}", cpf, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Abre um documento, dando precedência ao arquivo solto sobre o snapshot compactado, como no {@link MotorArquivos}.
+     */
+    private InputStream abrir(Path solto, String caminhoCompactado) throws IOException {
+        if (solto != null) {
+            return Files.newInputStream(solto);
+        }
+        byte[] conteudo = caminhoCompactado == null || snapshot == null ? null : snapshot.ler(caminhoCompactado);
+        return conteudo == null ? null : new ByteArrayInputStream(conteudo);
+    }
+
+    /**
+     * Lê os primeiros {@code tamanho} bytes do arquivo, ou menos se o arquivo for menor.
+     */
+    private static byte[] lerInicio(Path arquivo, long tamanho) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            ByteBuffer conteudo = ByteBuffer.allocate((int) Math.min(tamanho, canal.size()));
+            while (conteudo.hasRemaining() && canal.read(conteudo) >= 0) {
+                // Lê até completar o tamanho registrado na captura
+            }
+            return conteudo.array();
+        }
+    }
+
+    private void verificarAberta() {
+        if (fechada) {
+            throw new IllegalStateException("Erro: A visão de leitura " + geracao + " já foi fechada.");
+        }
+    }
+
+    @Override
+    public void close() {
+        if (fechada) {
+            return;
+        }
+        fechada = true;
+        if (snapshot != null) {
+            SnapshotCompactado.fechar(diretorio);
+        }
+        try {
+            apagar(diretorio);
+        } catch (IOException e) {
+            Registro.erro("Erro ao apagar a visão de leitura {}: {}", diretorio, e.getMessage());
+        }
+    }
+
+    /**
+     * Apaga os subdiretórios de visões deixados por processos que já terminaram.
+     *
+     * @param diretorioBase o diretório de dados
+     * @return a quantidade de visões apagadas
+     */
+    static int removerAbandonadas(Path diretorioBase) {
+        Path raiz = diretorioBase.resolve(DIRETORIO);
+        if (!Files.isDirectory(raiz)) {
+            return 0;
+        }
+        int removidas = 0;
+        try (Stream<Path> caminhos = Files.list(raiz)) {
+            for (Path visao : caminhos.collect(Collectors.toList())) {
+                String nome = visao.getFileName().toString();
+                int separador = nome.indexOf('-');
+                long pid;
+                try {
+                    pid = Long.parseLong(separador < 0 ? nome : nome.substring(0, separador));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (pid != ProcessHandle.current().pid() && !ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false)) {
+                    apagar(visao);
+                    removidas++;
+                }
+            }
+        } catch (IOException e) {
+            Registro.erro("Erro ao remover as visões de leitura abandonadas: {}", e.getMessage());
+        }
+        return removidas;
+    }
+
+    private static void apagar(Path diretorio) throws IOException {
+        if (!Files.exists(diretorio)) {
+            return;
+        }
+        List<Path> caminhos;
+        try (Stream<Path> percorridos = Files.walk(diretorio)) {
+            caminhos = percorridos.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+        for (Path caminho : caminhos) {
+            Files.deleteIfExists(caminho);
+        }
+    }
+}
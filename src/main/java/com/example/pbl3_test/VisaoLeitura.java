@@ -0,0 +1,73 @@
+package com.example.pbl3_test;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Visão somente leitura de todos os eventos e usuários de um armazenamento, como estavam em um
+ * instante, obtida por {@link MotorArmazenamento#abrirVisao()}.
+ *
+ * <p>
+ * A visão é capturada de uma só vez e não é afetada pelas gravações feitas depois da captura, de
+ * modo que relatórios longos podem percorrê-la sem travar as entidades e sem serem travados pelas
+ * compras em andamento. Cada leitura retorna uma cópia nova da entidade; alterações nessa cópia
+ * não são gravadas. Eventos e recibos movidos para o {@link ArquivoFrio} não fazem parte da visão.
+ * </p>
+ *
+ * <p>
+ * A visão deve ser fechada depois do uso, de preferência com {@code try}-com-recursos, para liberar
+ * os arquivos e a memória que a mantêm.
+ * </p>
+ */
+public interface VisaoLeitura extends AutoCloseable {
+
+    /**
+     * Retorna o número da visão, crescente a cada visão do mesmo tipo aberta no processo.
+     *
+     * @return o número da visão
+     */
+    long getGeracao();
+
+    /**
+     * Retorna o instante da captura.
+     *
+     * @return a data e hora em que a visão foi capturada
+     */
+    Date getMomento();
+
+    /**
+     * Lista os IDs de todos os eventos da visão, em ordem.
+     *
+     * @return os IDs dos eventos
+     */
+    List<String> listarIdsEventos();
+
+    /**
+     * Lê um evento da visão, com a quantidade de ingressos do momento da captura.
+     *
+     * @param eventoId o ID do evento
+     * @return uma cópia do evento ou {@code null} se ele não estiver na visão
+     */
+    Evento lerEvento(String eventoId);
+
+    /**
+     * Lista os CPFs de todos os usuários da visão, em ordem.
+     *
+     * @return os CPFs dos usuários
+     */
+    List<String> listarCpfs();
+
+    /**
+     * Lê um usuário da visão, com os ingressos e recibos do momento da captura.
+     *
+     * @param cpf o CPF do usuário
+     * @return uma cópia do usuário ou {@code null} se ele não estiver na visão
+     */
+    Usuario lerUsuario(String cpf);
+
+    /**
+     * Libera os recursos da visão. A visão não deve ser usada depois disso.
+     */
+    @Override
+    void close();
+}
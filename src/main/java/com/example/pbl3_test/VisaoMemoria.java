@@ -0,0 +1,91 @@
+package com.example.pbl3_test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link VisaoLeitura} materializada em memória, usada pelo {@link MotorMemoria} e pelo {@link MotorSql}.
+ *
+ * <p>
+ * Na captura, cada entidade é serializada em JSON pelo {@link SerializadorJson}; as leituras
+ * desserializam uma cópia nova, de modo que nem as gravações posteriores nem as alterações feitas
+ * nas cópias lidas afetam a visão.
+ * </p>
+ */
+class VisaoMemoria implements VisaoLeitura {
+
+    private static final AtomicLong geracoes = new AtomicLong();
+
+    private final long geracao = geracoes.incrementAndGet();
+    private final Date momento = new Date();
+    private final Map<String, String> eventos = new TreeMap<>();
+    private final Map<String, String> usuarios = new TreeMap<>();
+
+    /**
+     * Cria uma visão vazia; as entidades são incluídas por {@link #incluirEvento(Evento)} e
+     * {@link #incluirUsuario(String, Usuario)} durante a captura.
+     */
+    VisaoMemoria() {
+    }
+
+    /**
+     * Inclui na visão uma cópia do evento, no estado atual.
+     *
+     * @param evento o evento
+     */
+    void incluirEvento(Evento evento) {
+        eventos.put(evento.getID(), SerializadorJson.GSON.toJson(evento, Evento.class));
+    }
+
+    /**
+     * Inclui na visão uma cópia do usuário, no estado atual.
+     *
+     * @param cpf o CPF do usuário
+     * @param usuario o usuário
+     */
+    void incluirUsuario(String cpf, Usuario usuario) {
+        usuarios.put(cpf, SerializadorJson.GSON.toJson(usuario, Usuario.class));
+    }
+
+    @Override
+    public long getGeracao() {
+        return geracao;
+    }
+
+    @Override
+    public Date getMomento() {
+        return new Date(momento.getTime());
+    }
+
+    @Override
+    public List<String> listarIdsEventos() {
+        return new ArrayList<>(eventos.keySet());
+    }
+
+    @Override
+    public Evento lerEvento(String eventoId) {
+        String json = eventos.get(eventoId);
+        return json == null ? null : SerializadorJson.GSON.fromJson(json, Evento.class);
+    }
+
+    @Override
+    public List<String> listarCpfs() {
+        return new ArrayList<>(usuarios.keySet());
+    }
+
+    @Override
+    public Usuario lerUsuario(String cpf) {
+        String json = usuarios.get(cpf);
+        return json == null ? null : SerializadorJson.GSON.fromJson(json, Usuario.class);
+    }
+
+    @Override
+    public void close() {
+        eventos.clear();
+        usuarios.clear();
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.pbl3_test.views;
 
 import com.example.pbl3_test.*;
+import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
@@ -113,33 +114,24 @@ public class AppScreenView {
         Label eventListLabel = new Label("Eventos Disponíveis");
         eventListLabel.setStyle("-fx-font-size: 18; -fx-font-weight: bold; -fx-text-fill: #4caf50;");
 
-        List<String> eventosDisponiveis = armazenamento.listarEventosDisponiveis();
-
-        if (eventosDisponiveis.isEmpty()) {
-            Label noEventsLabel = new Label("Nenhum evento disponível.");
-            eventListBox.getChildren().add(noEventsLabel);
-        } else {
-            for (String eventoId : eventosDisponiveis) {
-                Evento evento = armazenamento.lerEvento(eventoId);
-
-                if (evento != null) {
-                    VBox eventBox = new VBox(10);
-                    eventBox.setStyle("-fx-border-color: #4caf50; -fx-border-width: 1; -fx-padding: 15; -fx-background-color: #e8f5e9; -fx-background-radius: 10;");
-
-                    Label eventName = new Label("Nome: " + evento.getNome());
-                    eventName.setStyle("-fx-font-weight: bold;");
-                    Label eventDescription = new Label("Descrição: " + evento.getDescricao());
-                    Label eventDate = new Label("Data: " + formatDate(evento.getData()));
-                    Label ticketsAvailable = new Label("Ingressos: " + evento.getIngressos());
-
-                    Button buyButton = createStyledButton("Comprar", "#4caf50");
-                    buyButton.setOnAction(e -> openBuyTicketView(evento));
-
-                    eventBox.getChildren().addAll(eventName, eventDescription, eventDate, ticketsAvailable, buyButton);
-                    eventListBox.getChildren().add(eventBox);
-                }
-            }
-        }
+        Label loadingLabel = new Label("Carregando eventos...");
+        eventListBox.getChildren().add(loadingLabel);
+
+        // Lê os eventos fora da thread da interface e monta a lista quando a leitura terminar
+        new ArmazenamentoAssincrono(armazenamento).lerEventosDisponiveis()
+                .whenCompleteAsync((eventos, erro) -> {
+                    eventListBox.getChildren().remove(loadingLabel);
+                    if (erro != null) {
+                        eventListBox.getChildren().add(new Label("Erro ao carregar os eventos: " + ControllerAssincrono.causa(erro).getMessage()));
+                    } else if (eventos.isEmpty()) {
+                        Label noEventsLabel = new Label("Nenhum evento disponível.");
+                        eventListBox.getChildren().add(noEventsLabel);
+                    } else {
+                        for (Evento evento : eventos) {
+                            eventListBox.getChildren().add(createEventBox(evento));
+                        }
+                    }
+                }, Platform::runLater);
 
         ScrollPane scrollPane = new ScrollPane(eventListBox);
         scrollPane.setFitToWidth(true);
@@ -149,6 +141,29 @@ public class AppScreenView {
         return scrollPane;
     }
 
+    /**
+     * Cria o quadro de um evento na lista de eventos disponíveis.
+     *
+     * @param evento Evento a ser exibido.
+     * @return VBox contendo os dados do evento e o botão de compra.
+     */
+    private VBox createEventBox(Evento evento) {
+        VBox eventBox = new VBox(10);
+        eventBox.setStyle("-fx-border-color: #4caf50; -fx-border-width: 1; -fx-padding: 15; -fx-background-color: #e8f5e9; -fx-background-radius: 10;");
+
+        Label eventName = new Label("Nome: " + evento.getNome());
+        eventName.setStyle("-fx-font-weight: bold;");
+        Label eventDescription = new Label("Descrição: " + evento.getDescricao());
+        Label eventDate = new Label("Data: " + formatDate(evento.getData()));
+        Label ticketsAvailable = new Label("Ingressos: " + evento.getIngressos());
+
+        Button buyButton = createStyledButton("Comprar", "#4caf50");
+        buyButton.setOnAction(e -> openBuyTicketView(evento));
+
+        eventBox.getChildren().addAll(eventName, eventDescription, eventDate, ticketsAvailable, buyButton);
+        return eventBox;
+    }
+
     /**
      * Cria o painel lateral direito que exibe notificações do usuário.
      *
@@ -1,6 +1,7 @@
 package com.example.pbl3_test.views;
 
 import com.example.pbl3_test.*;
+import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
@@ -8,10 +9,18 @@ import javafx.scene.layout.*;
 import javafx.stage.Stage;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Classe responsável por exibir a interface de compra de ingressos para um evento.
  * Permite selecionar uma forma de pagamento, confirmar a compra e visualizar os detalhes do evento.
+ *
+ * <p>
+ * Ao abrir a tela, um ingresso é reservado para o usuário por
+ * {@link ReservasIngressos#VALIDADE_PADRAO_MILLIS} milissegundos, enquanto ele escolhe a forma de
+ * pagamento. A confirmação conclui a reserva; cancelar a compra a libera, e uma reserva não
+ * confirmada a tempo expira e devolve o ingresso ao evento.
+ * </p>
  */
 public class ComprarIngressoView {
 
@@ -22,6 +31,7 @@ public class ComprarIngressoView {
     private final Armazenamento armazenamento; // Objeto de armazenamento
     private final Ingresso ingresso; // Ingresso associado ao evento
     private String selectedPaymentMethod; // Método de pagamento selecionado
+    private CompletableFuture<ReservasIngressos.Reserva> reserva; // Reserva do ingresso enquanto a tela está aberta
 
     /**
      * Construtor da classe ComprarIngressoView.
@@ -73,7 +83,11 @@ public class ComprarIngressoView {
         eventDate.setStyle("-fx-font-size: 16px;");
         ticketPrice.setStyle("-fx-font-size: 16px; -fx-text-fill: #1e88e5;");
 
-        eventInfoBox.getChildren().addAll(eventName, eventDescription, eventDate, ticketPrice);
+        Label holdLabel = new Label();
+        holdLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: #757575;");
+
+        eventInfoBox.getChildren().addAll(eventName, eventDescription, eventDate, ticketPrice, holdLabel);
+        reservarIngresso(holdLabel);
 
         // Seleção de forma de pagamento
         Label paymentLabel = new Label(TranslationManager.getInstance().get("select.payment"));
@@ -95,7 +109,7 @@ public class ComprarIngressoView {
         nextButton.setOnAction(e -> handleNext(paymentOptions));
         Button cancelButton = new Button(TranslationManager.getInstance().get("cancel"));
         cancelButton.setStyle("-fx-background-color: #e53935; -fx-text-fill: white; -fx-font-size: 14px; -fx-padding: 10; -fx-border-radius: 5;");
-        cancelButton.setOnAction(e -> new AppScreenView(stage, usuario, controller, armazenamento).show());
+        cancelButton.setOnAction(e -> cancelar());
         HBox buttonBox = new HBox(20, nextButton, cancelButton);
         buttonBox.setAlignment(Pos.CENTER);
 
@@ -108,7 +122,7 @@ public class ComprarIngressoView {
         }
     });
 
-    cancelButton.setOnAction(e -> new AppScreenView(stage, usuario, controller, armazenamento).show());
+    cancelButton.setOnAction(e -> cancelar());
 
     // Centralize tudo
         VBox centerBox = new VBox(20, eventInfoBox, paymentBox, buttonBox);
@@ -129,6 +143,40 @@ public class ComprarIngressoView {
         stage.show();
     }
 
+    /**
+     * Reserva o ingresso na primeira exibição da tela, ou de novo se a reserva anterior tiver expirado. Se o evento estiver esgotado, avisa o usuário
+     * e volta para a tela principal.
+     *
+     * @param holdLabel Label que exibe a validade da reserva.
+     */
+    private void reservarIngresso(Label holdLabel) {
+        // Uma reserva que expirou enquanto a tela estava aberta é refeita
+        if (reserva == null || (reserva.isDone() && !reserva.isCompletedExceptionally()
+                && reserva.join().getEstado() != ReservasIngressos.Estado.PENDENTE)) {
+            reserva = new ControllerAssincrono(controller).reservarIngressos(usuario, evento.getID(), 1,
+                    ReservasIngressos.VALIDADE_PADRAO_MILLIS, armazenamento);
+        }
+        reserva.whenCompleteAsync((reservada, erro) -> {
+            if (erro != null) {
+                showAlert(TranslationManager.getInstance().get("error"), TranslationManager.getInstance().get("purchase.failed") + ": " + ControllerAssincrono.causa(erro).getMessage());
+                new AppScreenView(stage, usuario, controller, armazenamento).show();
+                return;
+            }
+            holdLabel.setText(TranslationManager.getInstance().get("ticket.held.until") + " "
+                    + new SimpleDateFormat("HH:mm").format(reservada.getExpiraEm()));
+        }, Platform::runLater);
+    }
+
+    /**
+     * Libera a reserva do ingresso e volta para a tela principal.
+     */
+    private void cancelar() {
+        if (reserva != null) {
+            reserva.thenComposeAsync(reservada -> new ControllerAssincrono(controller).liberarReserva(usuario, reservada, armazenamento), Platform::runLater);
+        }
+        new AppScreenView(stage, usuario, controller, armazenamento).show();
+    }
+
     /**
      * Manipula a ação do botão "Próximo".
      *
@@ -169,7 +217,7 @@ public class ComprarIngressoView {
 
         Button confirmButton = new Button(TranslationManager.getInstance().get("confirm.purchase"));
         confirmButton.setStyle("-fx-background-color: green; -fx-text-fill: white;");
-        confirmButton.setOnAction(e -> handlePurchase());
+        confirmButton.setOnAction(e -> handlePurchase(confirmButton));
 
         Button cancelButton = new Button(TranslationManager.getInstance().get("cancel"));
         cancelButton.setStyle("-fx-background-color: red; -fx-text-fill: white;");
@@ -183,27 +231,30 @@ public class ComprarIngressoView {
         stage.setScene(scene);
     }
 
-    private void handlePurchase() {
-        try {
-            if (evento.getIngressos() > 0) {
-                controller.comprarIngresso(usuario, evento.getID(), armazenamento, selectedPaymentMethod, new Date());
-
-                String purchaseDetails = TranslationManager.getInstance().get("purchase.success") +
-                        "\n" + TranslationManager.getInstance().get("event.name") + ": " + evento.getNome() +
-                        "\n" + TranslationManager.getInstance().get("payment.method") + ": " + selectedPaymentMethod +
-                        "\n" + TranslationManager.getInstance().get("purchase.date") + ": " + formatDate(new Date()) +
-                        "\n" + TranslationManager.getInstance().get("receipt.sent") + ": " + usuario.getEmail();
-
-                showAlert(TranslationManager.getInstance().get("success"), purchaseDetails);
-                showAlert(TranslationManager.getInstance().get("notification"), TranslationManager.getInstance().get("purchase.success.notification"));
-
-                new AppScreenView(stage, usuario, controller, armazenamento).show();
-            } else {
-                showAlert(TranslationManager.getInstance().get("error"), TranslationManager.getInstance().get("no.tickets"));
-            }
-        } catch (Exception e) {
-            showAlert(TranslationManager.getInstance().get("error"), TranslationManager.getInstance().get("purchase.failed") + ": " + e.getMessage());
-        }
+    private void handlePurchase(Button confirmButton) {
+        // A compra grava em disco; roda fora da thread da interface e o resultado volta para ela.
+        // O ingresso já está reservado: a confirmação só falha se a reserva tiver expirado
+        confirmButton.setDisable(true);
+        Date dataCompra = new Date();
+        reserva.thenComposeAsync(reservada -> new ControllerAssincrono(controller).confirmarReserva(usuario, reservada, selectedPaymentMethod, dataCompra, armazenamento), Platform::runLater)
+                .whenCompleteAsync((comprado, erro) -> {
+                    if (erro != null) {
+                        confirmButton.setDisable(false);
+                        showAlert(TranslationManager.getInstance().get("error"), TranslationManager.getInstance().get("purchase.failed") + ": " + ControllerAssincrono.causa(erro).getMessage());
+                        return;
+                    }
+
+                    String purchaseDetails = TranslationManager.getInstance().get("purchase.success") +
+                            "\n" + TranslationManager.getInstance().get("event.name") + ": " + evento.getNome() +
+                            "\n" + TranslationManager.getInstance().get("payment.method") + ": " + selectedPaymentMethod +
+                            "\n" + TranslationManager.getInstance().get("purchase.date") + ": " + formatDate(dataCompra) +
+                            "\n" + TranslationManager.getInstance().get("receipt.sent") + ": " + usuario.getEmail();
+
+                    showAlert(TranslationManager.getInstance().get("success"), purchaseDetails);
+                    showAlert(TranslationManager.getInstance().get("notification"), TranslationManager.getInstance().get("purchase.success.notification"));
+
+                    new AppScreenView(stage, usuario, controller, armazenamento).show();
+                }, Platform::runLater);
     }
 
     private void showAlert(String title, String message) {
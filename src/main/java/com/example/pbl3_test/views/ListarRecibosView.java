@@ -2,8 +2,10 @@ package com.example.pbl3_test.views;
 
 import com.example.pbl3_test.Armazenamento;
 import com.example.pbl3_test.Controller;
+import com.example.pbl3_test.ControllerAssincrono;
 import com.example.pbl3_test.Recibo;
 import com.example.pbl3_test.Usuario;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -61,21 +63,27 @@ public class ListarRecibosView {
         VBox recibosLayout = new VBox(15);
         recibosLayout.setPadding(new Insets(20));
 
-        // Obtém a lista de recibos do usuário
-        List<Recibo> recibos = controller.listarRecibos(usuario);
-
-        // Verifica se há recibos para exibir
-        if (recibos.isEmpty()) {
-            Label noReceiptsLabel = new Label(TranslationManager.getInstance().get("no.receipts"));
-            noReceiptsLabel.setStyle("-fx-font-size: 16; -fx-text-fill: #555;");
-            recibosLayout.getChildren().add(noReceiptsLabel);
-        } else {
-            // Adiciona cada recibo como um cartão
-            for (Recibo recibo : recibos) {
-                VBox reciboBox = criarCartaoRecibo(recibo);
-                recibosLayout.getChildren().add(reciboBox);
-            }
-        }
+        // Obtém a lista de recibos do usuário, incluindo os arquivados, sem bloquear a interface
+        Label loadingLabel = new Label(TranslationManager.getInstance().get("loading.receipts"));
+        recibosLayout.getChildren().add(loadingLabel);
+        new ControllerAssincrono(controller).listarRecibos(usuario, armazenamento)
+                .whenCompleteAsync((recibos, erro) -> {
+                    recibosLayout.getChildren().remove(loadingLabel);
+                    if (erro != null) {
+                        recibosLayout.getChildren().add(new Label(TranslationManager.getInstance().get("error.loading.receipts") + ": " + ControllerAssincrono.causa(erro).getMessage()));
+                    } else if (recibos.isEmpty()) {
+                        // Verifica se há recibos para exibir
+                        Label noReceiptsLabel = new Label(TranslationManager.getInstance().get("no.receipts"));
+                        noReceiptsLabel.setStyle("-fx-font-size: 16; -fx-text-fill: #555;");
+                        recibosLayout.getChildren().add(noReceiptsLabel);
+                    } else {
+                        // Adiciona cada recibo como um cartão
+                        for (Recibo recibo : recibos) {
+                            VBox reciboBox = criarCartaoRecibo(recibo);
+                            recibosLayout.getChildren().add(reciboBox);
+                        }
+                    }
+                }, Platform::runLater);
 
         // Adiciona rolagem à lista de recibos
         ScrollPane scrollPane = new ScrollPane();
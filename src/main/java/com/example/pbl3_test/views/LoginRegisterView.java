@@ -194,17 +194,18 @@ public class LoginRegisterView {
 
 
     private void handleLogin(TextField userField, PasswordField passField, Label feedbackLabel) {
-        String cpf = userField.getText();
+        String identificador = userField.getText();
         String password = passField.getText();
 
-        if (cpf.isEmpty() || password.isEmpty()) {
+        if (identificador.isEmpty() || password.isEmpty()) {
             feedbackLabel.setText(TranslationManager.getInstance().get("error.empty.fields"));
             return;
         }
 
         try {
-            if (controller.loginUsuario(cpf, password, armazenamentoDados)) {
-                Usuario user = armazenamentoDados.lerUsuario(cpf);
+            // Aceita o CPF, o nome de usuário ou o e-mail
+            if (controller.loginUsuario(identificador, password, armazenamentoDados)) {
+                Usuario user = armazenamentoDados.lerUsuario(controller.localizarCpf(identificador, armazenamentoDados));
                 new AppScreenView(stage, user, controller, armazenamentoDados).show();
             } else {
                 feedbackLabel.setText(TranslationManager.getInstance().get("error.invalid.credentials"));
@@ -6,6 +6,8 @@ module com.example.pbl3_test {
     requires org.controlsfx.controls;
     requires org.kordamp.bootstrapfx.core;
     requires java.prefs;
+    requires java.sql;
+    requires jdk.httpserver;
 
     opens com.example.pbl3_test to javafx.fxml, com.google.gson;
     exports com.example.pbl3_test;
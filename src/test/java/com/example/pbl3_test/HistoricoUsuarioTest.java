@@ -0,0 +1,53 @@
+package com.example.pbl3_test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HistoricoUsuarioTest {
+
+    private static final String CPF = "00000000000";
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void leituraIgnoraRegistroFinalIncompletoEAProximaGravacaoODescarta() throws IOException {
+        LayoutUsuarios layout = new LayoutUsuarios(diretorio.toFile());
+        HistoricoUsuario historico = new HistoricoUsuario(layout);
+        Evento evento = new Evento("Show", "Histórico", new Date(), 10, 50.0);
+        Ingresso primeiro = new Ingresso(evento, 50.0);
+        long tamanho = historico.registrarCompra(CPF, List.of(primeiro), List.of());
+
+        // Uma gravação interrompida deixa apenas o início do próximo registro
+        Path arquivo = layout.arquivo(CPF, HistoricoUsuario.EXTENSAO).toPath();
+        byte[] inicioRegistro = {0, 0, 0, 40, HistoricoUsuario.TIPO_INGRESSO, '{'};
+        Files.write(arquivo, inicioRegistro, StandardOpenOption.APPEND);
+
+        Usuario usuario = new Usuario("comprador", "senha", "Comprador", CPF, "comprador@exemplo.com", false);
+        assertEquals(tamanho, historico.carregar(CPF, usuario));
+        assertEquals(List.of(primeiro.getId()), ids(usuario));
+        // A leitura não trunca o arquivo: quem lê tem apenas a trava de leitura
+        assertEquals(tamanho + inicioRegistro.length, Files.size(arquivo));
+
+        Ingresso segundo = new Ingresso(evento, 50.0);
+        long novoTamanho = historico.registrarCompra(CPF, List.of(segundo), List.of());
+
+        assertEquals(novoTamanho, Files.size(arquivo));
+        assertEquals(novoTamanho, historico.carregar(CPF, usuario));
+        assertEquals(List.of(primeiro.getId(), segundo.getId()), ids(usuario));
+    }
+
+    private static List<String> ids(Usuario usuario) {
+        return usuario.getIngressos().stream().map(Ingresso::getId).collect(Collectors.toList());
+    }
+}
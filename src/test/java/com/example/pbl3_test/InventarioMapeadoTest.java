@@ -0,0 +1,90 @@
+package com.example.pbl3_test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InventarioMapeadoTest {
+
+    private static final int COMPRADORES = 64;
+    private static final int INGRESSOS = 10_000;
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void reservasSimultaneasNuncaVendemAlemDoEstoque() throws Exception {
+        InventarioMapeado inventario = InventarioMapeado.abrir(diretorio);
+        inventario.registrar("evento", INGRESSOS);
+
+        AtomicInteger vendidos = new AtomicInteger();
+        AtomicInteger menorObservado = new AtomicInteger(Integer.MAX_VALUE);
+        AtomicBoolean comprando = new AtomicBoolean(true);
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService compradores = Executors.newFixedThreadPool(COMPRADORES + 1);
+        try {
+            Future<?> observador = compradores.submit(() -> {
+                while (comprando.get()) {
+                    menorObservado.accumulateAndGet(inventario.obter("evento"), Math::min);
+                }
+            });
+            List<Future<?>> compras = new ArrayList<>();
+            for (int i = 0; i < COMPRADORES; i++) {
+                int quantidade = 1 + i % 3;
+                compras.add(compradores.submit(() -> {
+                    largada.await();
+                    int restantes;
+                    while ((restantes = inventario.reservar("evento", quantidade)) != -1) {
+                        vendidos.addAndGet(quantidade);
+                        menorObservado.accumulateAndGet(restantes, Math::min);
+                    }
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> compra : compras) {
+                compra.get(1, TimeUnit.MINUTES);
+            }
+            comprando.set(false);
+            observador.get(1, TimeUnit.MINUTES);
+        } finally {
+            compradores.shutdownNow();
+        }
+
+        // Com pedidos de 1 a 3 ingressos, sobram no máximo 2 que nenhum pedido maior consegue levar
+        int restantes = inventario.obter("evento");
+        assertTrue(restantes >= 0 && restantes < 3, "restantes: " + restantes);
+        assertEquals(INGRESSOS, vendidos.get() + restantes);
+        assertTrue(menorObservado.get() >= 0, "menor quantidade observada: " + menorObservado.get());
+        assertEquals(-1, inventario.reservar("evento", 3));
+    }
+
+    @Test
+    void registroMantemAQuantidadeDoEventoJaRegistrado() throws IOException {
+        InventarioMapeado inventario = InventarioMapeado.abrir(diretorio);
+
+        assertNull(inventario.obter("evento"));
+        assertEquals(5, inventario.registrar("evento", 5));
+        assertEquals(5, inventario.registrar("evento", 50));
+        inventario.definir("evento", 7);
+        assertEquals(7, inventario.obter("evento"));
+        assertThrows(IllegalArgumentException.class, () -> inventario.reservar("outro", 1));
+        assertThrows(IllegalArgumentException.class, () -> inventario.registrar("x".repeat(200), 1));
+    }
+}
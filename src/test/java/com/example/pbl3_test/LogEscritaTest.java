@@ -0,0 +1,60 @@
+package com.example.pbl3_test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogEscritaTest {
+
+    @TempDir
+    Path diretorio;
+
+    @AfterEach
+    void fecharLog() throws IOException {
+        LogEscrita.fechar(diretorio);
+    }
+
+    @Test
+    void registrosSemCheckpointSaoReaplicadosAoAbrir() throws IOException {
+        LogEscrita log = LogEscrita.abrir(diretorio);
+        log.gravar("Eventos/evento.json", bytes("versão 1"));
+        log.gravar("Eventos/evento.json", bytes("versão 2"));
+        log.gravar("Usuarios/usuario.json", bytes("usuário"));
+
+        // Abaixo do limite não há checkpoint: o log guarda os três registros, como numa queda antes dele
+        Path arquivoLog = diretorio.resolve("escrita.log");
+        byte[] registros = Files.readAllBytes(arquivoLog);
+        assertTrue(registros.length > 0);
+        LogEscrita.fechar(diretorio);
+
+        // A queda deixou um documento sem a renomeação, outro pela metade e um registro incompleto no fim do log
+        Files.delete(diretorio.resolve("Eventos/evento.json"));
+        Files.write(diretorio.resolve("Usuarios/usuario.json"), bytes("usu"));
+        byte[] comRegistroIncompleto = Arrays.copyOf(registros, registros.length + 10);
+        System.arraycopy(registros, 0, comRegistroIncompleto, registros.length, 10);
+        Files.write(arquivoLog, comRegistroIncompleto);
+
+        LogEscrita.abrir(diretorio);
+
+        assertEquals("versão 2", texto(diretorio.resolve("Eventos/evento.json")));
+        assertEquals("usuário", texto(diretorio.resolve("Usuarios/usuario.json")));
+        assertEquals(0, Files.size(arquivoLog));
+    }
+
+    private static byte[] bytes(String texto) {
+        return texto.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String texto(Path arquivo) throws IOException {
+        return new String(Files.readAllBytes(arquivo), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,420 @@
+package com.example.pbl3_test;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Testes de conformidade entre os motores de armazenamento.
+ *
+ * <p>
+ * Cada caso é executado, por meio do {@link Controller}, em todos os motores. A carga de trabalho gerada
+ * com uma semente fixa (cadastros, compras, cancelamentos, leituras, listagens e relatórios) deve produzir
+ * em cada motor o mesmo estado final que no {@link MotorMemoria}, usado como referência. Os tempos de cada
+ * motor são medidos à parte, pelo {@code BenchmarkMotores} do perfil {@code jmh}.
+ * </p>
+ */
+class MotorArmazenamentoTest {
+
+    private static final long SEMENTE = 42L;
+    private static final int USUARIOS = 40;
+    private static final int EVENTOS = 10;
+    private static final int COMPRAS = 300;
+
+    private static Registro.Nivel nivelOriginal;
+
+    @TempDir
+    Path diretorio;
+
+    private final List<Armazenamento> abertos = new ArrayList<>();
+    private final Controller controller = new Controller();
+    private final Usuario admin = new Usuario("admin", "admin", "Administrador", "99999999999", "admin@exemplo.com", true);
+
+    @BeforeAll
+    static void silenciarRegistro() {
+        nivelOriginal = Registro.getNivel();
+        Registro.setNivel(Registro.Nivel.AVISO);
+    }
+
+    @AfterAll
+    static void restaurarRegistro() {
+        Registro.setNivel(nivelOriginal);
+    }
+
+    @AfterEach
+    void fecharMotores() {
+        abertos.forEach(Armazenamento::fechar);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {MotorArquivos.NOME, MotorMemoria.NOME, MotorSql.NOME})
+    void cargaDeTrabalhoProduzOMesmoEstadoQueAReferencia(String nome) throws IOException {
+        Map<String, String> referencia = executar(abrir(MotorMemoria.NOME));
+        Map<String, String> resumo = executar(abrir(nome));
+
+        assertEquals(referencia, resumo);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {MotorArquivos.NOME, MotorMemoria.NOME, MotorSql.NOME})
+    void loginAceitaCpfNomeDeUsuarioEEmail(String nome) throws IOException {
+        Armazenamento dados = abrir(nome);
+        controller.cadastrarUsuario("usuario1", "senha1", "Usuário 1", cpf(1), "usuario1@exemplo.com", false, dados);
+
+        assertTrue(controller.loginUsuario(cpf(1), "senha1", dados));
+        assertTrue(controller.loginUsuario("usuario1", "senha1", dados));
+        assertTrue(controller.loginUsuario("Usuario1@Exemplo.com", "senha1", dados));
+        assertFalse(controller.loginUsuario(cpf(1), "outra", dados));
+        assertEquals("usuario1@exemplo.com", dados.lerCamposUsuario(cpf(1), "email").get("email"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {MotorArquivos.NOME, MotorMemoria.NOME, MotorSql.NOME})
+    void entidadesInexistentes(String nome) {
+        Armazenamento dados = abrir(nome);
+
+        assertNull(dados.lerUsuario("00000000000x"));
+        assertFalse(dados.existeUsuario("00000000000x"));
+        assertNull(dados.lerCamposUsuario("00000000000x", "password"));
+        assertNull(dados.lerEvento("000000-Inexistente"));
+        assertThrows(IllegalArgumentException.class, () -> dados.ajustarIngressos("000000-Inexistente", -1));
+        assertThrows(IllegalArgumentException.class, () -> dados.reservarIngressos("000000-Inexistente", 1));
+        assertThrows(IllegalArgumentException.class, () -> dados.listarEventosEntre(new Date(), new Date(), -1, 10));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {MotorArquivos.NOME, MotorMemoria.NOME, MotorSql.NOME})
+    void eventoEsgotadoRecusaCompras(String nome) {
+        Armazenamento dados = abrir(nome);
+        Usuario comprador = controller.cadastrarUsuario("comprador", "senha", "Comprador", cpf(0),
+                "comprador@exemplo.com", false, dados);
+        String esgotado = controller.cadastrarEvento(admin, "Evento esgotado", "Último ingresso", amanha(), 1, 10.0, dados).getID();
+
+        controller.comprarIngresso(comprador, esgotado, dados, "Pix", new Date());
+
+        assertThrows(IllegalStateException.class, () -> controller.comprarIngresso(comprador, esgotado, dados, "Pix", new Date()));
+        assertEquals(-1, dados.reservarIngressos(esgotado, 1));
+        assertEquals(0, dados.lerEvento(esgotado).getIngressos());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {MotorArquivos.NOME, MotorMemoria.NOME, MotorSql.NOME})
+    void compraEmGrupoRecusadaDevolveOsIngressos(String nome) {
+        Armazenamento dados = abrir(nome);
+        Usuario comprador = controller.cadastrarUsuario("comprador", "senha", "Comprador", cpf(0),
+                "comprador@exemplo.com", false, dados);
+        String esgotado = controller.cadastrarEvento(admin, "Evento esgotado", "Sem ingressos", amanha(), 0, 10.0, dados).getID();
+        String grupo = controller.cadastrarEvento(admin, "Evento em grupo", "Compra em grupo", amanha(), 4, 20.0, dados).getID();
+
+        assertEquals(3, controller.comprarIngressos(comprador, grupo, 3, dados, "Pix", new Date()).size());
+
+        Map<String, Integer> pedido = new LinkedHashMap<>();
+        pedido.put(grupo, 1);
+        pedido.put(esgotado, 1);
+        assertThrows(IllegalStateException.class, () -> controller.comprarIngressos(comprador, pedido, dados, "Pix", new Date()));
+        assertEquals(1, dados.lerEvento(grupo).getIngressos());
+        assertEquals(3, dados.lerUsuario(cpf(0)).getIngressos().size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {MotorArquivos.NOME, MotorMemoria.NOME, MotorSql.NOME})
+    void perfilGravadoComCopiaAntigaMantemAsCompras(String nome) {
+        Armazenamento dados = abrir(nome);
+        controller.cadastrarUsuario("comprador", "senha", "Comprador", cpf(0), "comprador@exemplo.com", false, dados);
+        String eventoId = controller.cadastrarEvento(admin, "Evento", "Compra em outra sessão", amanha(), 10, 10.0, dados).getID();
+        Usuario antigo = dados.lerUsuario(cpf(0));
+
+        controller.comprarIngresso(dados.lerUsuario(cpf(0)), eventoId, dados, "Pix", new Date());
+        controller.NovoCadastroUsuario(antigo, "comprador", "nova", "Novo Nome", "comprador@exemplo.com", dados);
+
+        Usuario lido = dados.lerUsuario(cpf(0));
+        assertEquals("Novo Nome", lido.getNome());
+        assertEquals("nova", lido.getSenha());
+        assertEquals(1, lido.getIngressos().size());
+        assertEquals(1, lido.getRecibos().size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {MotorArquivos.NOME, MotorMemoria.NOME, MotorSql.NOME})
+    void falhaAoGravarOHistoricoDesfazCompraECancelamento(String nome) {
+        AtomicBoolean falhar = new AtomicBoolean();
+        Armazenamento dados = abrirComFalhas(nome, falhar);
+        Usuario comprador = controller.cadastrarUsuario("comprador", "senha", "Comprador", cpf(0),
+                "comprador@exemplo.com", false, dados);
+        String eventoId = controller.cadastrarEvento(admin, "Evento", "Gravação recusada", amanha(), 10, 10.0, dados).getID();
+        Ingresso comprado = controller.comprarIngresso(comprador, eventoId, dados, "Pix", new Date());
+
+        falhar.set(true);
+        assertThrows(IllegalStateException.class, () -> controller.comprarIngresso(comprador, eventoId, dados, "Pix", new Date()));
+        assertEquals(9, dados.lerEvento(eventoId).getIngressos());
+        assertEquals(1, comprador.getIngressos().size());
+        assertEquals(1, comprador.getRecibos().size());
+
+        assertThrows(IllegalStateException.class, () -> controller.cancelarCompra(comprador, comprado, new Date(), dados));
+        assertEquals(9, dados.lerEvento(eventoId).getIngressos());
+        assertEquals(1, comprador.getIngressos().size());
+        assertEquals(1, dados.lerUsuario(cpf(0)).getIngressos().size());
+    }
+
+    @Test
+    void falhaAoCriarOHistoricoNaPrimeiraCompraDevolveOsIngressos() throws IOException {
+        Path base = Files.createTempDirectory(diretorio, "sem-historico-");
+        Armazenamento dados = new Armazenamento(new MotorArquivos(base.toFile(), 1000, 5 * 60 * 1000L));
+        abertos.add(dados);
+        controller.cadastrarUsuario("comprador", "senha", "Comprador", cpf(0), "comprador@exemplo.com", false, dados);
+        String eventoId = controller.cadastrarEvento(admin, "Evento", "Primeira compra", amanha(), 10, 10.0, dados).getID();
+
+        // Como os usuários de Data/, o comprador fica sem histórico, e a criação do histórico falha
+        Path usuarios = base.resolve("Usuarios");
+        Files.delete(usuarios.resolve(cpf(0) + HistoricoUsuario.EXTENSAO));
+        Files.createDirectories(usuarios.resolve(cpf(0) + HistoricoUsuario.EXTENSAO + ".tmp").resolve("ocupado"));
+        Usuario comprador = dados.lerUsuario(cpf(0));
+
+        assertThrows(IllegalStateException.class, () -> controller.comprarIngresso(comprador, eventoId, dados, "Pix", new Date()));
+        assertEquals(10, dados.lerEvento(eventoId).getIngressos());
+        assertTrue(comprador.getIngressos().isEmpty());
+        assertTrue(comprador.getRecibos().isEmpty());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {MotorArquivos.NOME, MotorMemoria.NOME, MotorSql.NOME})
+    void comprasSimultaneasNuncaVendemAlemDoEstoque(String nome) throws Exception {
+        Armazenamento dados = abrir(nome);
+        int compradores = 64;
+        int ingressos = 500;
+        String eventoId = controller.cadastrarEvento(admin, "Evento disputado", "Compras simultâneas", amanha(),
+                ingressos, 10.0, dados).getID();
+        List<Usuario> usuarios = new ArrayList<>(compradores);
+        for (int i = 0; i < compradores; i++) {
+            usuarios.add(controller.cadastrarUsuario("usuario" + i, "senha" + i, "Usuário " + i,
+                    cpf(i), "usuario" + i + "@exemplo.com", false, dados));
+        }
+
+        AtomicInteger vendidos = new AtomicInteger();
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService execucao = Executors.newFixedThreadPool(compradores);
+        try {
+            List<Future<?>> compras = new ArrayList<>();
+            for (Usuario usuario : usuarios) {
+                compras.add(execucao.submit(() -> {
+                    largada.await();
+                    while (true) {
+                        try {
+                            controller.comprarIngresso(usuario, eventoId, dados, "Pix", new Date());
+                            vendidos.incrementAndGet();
+                        } catch (IllegalStateException e) {
+                            return null;
+                        }
+                    }
+                }));
+            }
+            largada.countDown();
+            for (Future<?> compra : compras) {
+                compra.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            execucao.shutdownNow();
+        }
+
+        int guardados = 0;
+        for (int i = 0; i < compradores; i++) {
+            guardados += dados.lerUsuario(cpf(i)).getIngressos().size();
+        }
+        assertEquals(ingressos, vendidos.get());
+        assertEquals(ingressos, guardados);
+        assertEquals(0, dados.lerEvento(eventoId).getIngressos());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {MotorArquivos.NOME, MotorMemoria.NOME, MotorSql.NOME})
+    void visoesCapturadasDuranteComprasNaoPerdemIngressos(String nome) throws Exception {
+        Armazenamento dados = abrir(nome);
+        int compradores = 8;
+        int ingressos = 200;
+        String eventoId = controller.cadastrarEvento(admin, "Evento", "Visões durante compras", amanha(),
+                ingressos, 10.0, dados).getID();
+        List<Usuario> usuarios = new ArrayList<>(compradores);
+        for (int i = 0; i < compradores; i++) {
+            usuarios.add(controller.cadastrarUsuario("usuario" + i, "senha" + i, "Usuário " + i,
+                    cpf(i), "usuario" + i + "@exemplo.com", false, dados));
+        }
+
+        ExecutorService execucao = Executors.newFixedThreadPool(compradores);
+        try {
+            List<Future<?>> compras = new ArrayList<>();
+            for (Usuario usuario : usuarios) {
+                compras.add(execucao.submit(() -> {
+                    while (true) {
+                        try {
+                            controller.comprarIngresso(usuario, eventoId, dados, "Pix", new Date());
+                        } catch (IllegalStateException e) {
+                            return null;
+                        }
+                    }
+                }));
+            }
+            // O lugar é reservado antes da gravação da compra: numa visão, os lugares vendidos e os
+            // restantes nunca passam do total, e uma compra vista não some da visão seguinte
+            int vendidosAntes = 0;
+            while (!compras.stream().allMatch(Future::isDone)) {
+                try (VisaoLeitura visao = dados.abrirVisao()) {
+                    int vendidos = contarVendidos(visao, eventoId, compradores);
+                    assertTrue(vendidos + visao.lerEvento(eventoId).getIngressos() <= ingressos);
+                    assertTrue(vendidos >= vendidosAntes);
+                    vendidosAntes = vendidos;
+                }
+            }
+            for (Future<?> compra : compras) {
+                compra.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            execucao.shutdownNow();
+        }
+
+        try (VisaoLeitura visao = dados.abrirVisao()) {
+            assertEquals(ingressos, contarVendidos(visao, eventoId, compradores));
+            assertEquals(0, visao.lerEvento(eventoId).getIngressos());
+        }
+    }
+
+    /**
+     * Cria um {@link Armazenamento} com o motor informado em um subdiretório vazio do diretório temporário.
+     */
+    private Armazenamento abrir(String nome) {
+        try {
+            Path base = Files.createTempDirectory(diretorio, nome + "-");
+            MotorArmazenamento motor = MotorArmazenamento.porNome(nome, base.toFile(), new Properties(), 1000, 5 * 60 * 1000L);
+            Armazenamento dados = new Armazenamento(motor);
+            abertos.add(dados);
+            dados.verificarExistencia();
+            return dados;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Cria um {@link Armazenamento} cujo motor recusa a gravação de compras e cancelamentos no histórico
+     * enquanto {@code falhar} for verdadeiro, como um motor sem espaço em disco.
+     */
+    private Armazenamento abrirComFalhas(String nome, AtomicBoolean falhar) {
+        MotorArmazenamento motor = abrir(nome).getMotor();
+        MotorArmazenamento comFalhas = (MotorArmazenamento) Proxy.newProxyInstance(MotorArmazenamento.class.getClassLoader(),
+                new Class<?>[] {MotorArmazenamento.class}, (proxy, metodo, argumentos) -> {
+                    String operacao = metodo.getName();
+                    if (falhar.get() && (operacao.equals("registrarCompra") || operacao.equals("registrarCancelamento"))) {
+                        throw new IllegalStateException("Erro ao registrar no histórico: falha simulada");
+                    }
+                    try {
+                        return metodo.invoke(motor, argumentos);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        return new Armazenamento(comFalhas);
+    }
+
+    /**
+     * Executa a carga de trabalho e retorna o resumo do estado final.
+     */
+    private Map<String, String> executar(Armazenamento dados) throws IOException {
+        Random aleatorio = new Random(SEMENTE);
+        ZoneId zona = ZoneId.systemDefault();
+        LocalDate inicio = LocalDate.now().plusDays(1);
+
+        List<Usuario> cadastrados = new ArrayList<>(USUARIOS);
+        for (int i = 0; i < USUARIOS; i++) {
+            cadastrados.add(controller.cadastrarUsuario("usuario" + i, "senha" + i, "Usuário " + i,
+                    cpf(i), "usuario" + i + "@exemplo.com", false, dados));
+        }
+        List<String> eventoIds = new ArrayList<>(EVENTOS);
+        for (int i = 0; i < EVENTOS; i++) {
+            Date data = Date.from(inicio.plusDays(i % 90).atStartOfDay(zona).toInstant());
+            eventoIds.add(controller.cadastrarEvento(admin, "Evento " + i, "Descrição " + i, data,
+                    COMPRAS, 10.0 + i, dados).getID());
+        }
+
+        List<Ingresso> vendidos = new ArrayList<>(COMPRAS);
+        List<Usuario> compradores = new ArrayList<>(COMPRAS);
+        for (int i = 0; i < COMPRAS; i++) {
+            Usuario usuario = cadastrados.get(aleatorio.nextInt(USUARIOS));
+            vendidos.add(controller.comprarIngresso(usuario, eventoIds.get(aleatorio.nextInt(EVENTOS)), dados, "Pix", new Date()));
+            compradores.add(usuario);
+        }
+        for (int i = 0; i < COMPRAS; i += 10) {
+            controller.cancelarCompra(compradores.get(i), vendidos.get(i), new Date(), dados);
+        }
+
+        Map<String, String> resumo = new LinkedHashMap<>();
+        for (int i = 0; i < USUARIOS; i++) {
+            Usuario usuario = dados.lerUsuario(cpf(i));
+            resumo.put("usuário " + cpf(i), usuario == null ? "ausente"
+                    : usuario.getIngressos().size() + " ingresso(s), " + usuario.getRecibos().size() + " recibo(s)");
+        }
+        for (String eventoId : eventoIds) {
+            Evento evento = dados.lerEvento(eventoId);
+            resumo.put("evento " + eventoId, evento == null ? "ausente" : evento.getIngressos() + " ingresso(s)");
+        }
+        Date primeiro = Date.from(inicio.atStartOfDay(zona).toInstant());
+        Date ultimo = Date.from(inicio.plusDays(30).atStartOfDay(zona).toInstant());
+        resumo.put("próximos eventos", dados.listarProximosEventos(20).toString());
+        for (int pagina = 0; pagina < 3; pagina++) {
+            resumo.put("página " + pagina, dados.listarEventosEntre(primeiro, ultimo, pagina, 4).toString());
+        }
+        resumo.put("vendas por evento", controller.relatorioVendasPorEvento(admin, dados).toString());
+        resumo.put("receita por dia", controller.relatorioReceitaPorDia(admin, dados).toString());
+        return resumo;
+    }
+
+    private static int contarVendidos(VisaoLeitura visao, String eventoId, int compradores) {
+        int vendidos = 0;
+        for (int i = 0; i < compradores; i++) {
+            for (Ingresso ingresso : visao.lerUsuario(cpf(i)).getIngressos()) {
+                if (ingresso.getEventoID().equals(eventoId)) {
+                    vendidos++;
+                }
+            }
+        }
+        return vendidos;
+    }
+
+    private static Date amanha() {
+        return Date.from(LocalDate.now().plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static String cpf(int indice) {
+        return String.format("%011d", indice);
+    }
+}
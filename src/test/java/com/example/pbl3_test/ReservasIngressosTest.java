@@ -0,0 +1,50 @@
+package com.example.pbl3_test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReservasIngressosTest {
+
+    private final Controller controller = new Controller();
+    private final Usuario admin = new Usuario("admin", "admin", "Administrador", "99999999999", "admin@exemplo.com", true);
+    private final Armazenamento dados = new Armazenamento(new MotorMemoria());
+
+    @AfterEach
+    void fechar() {
+        dados.fechar();
+    }
+
+    @Test
+    void reservaExpiradaDevolveOsIngressos() throws InterruptedException {
+        Date amanha = Date.from(LocalDate.now().plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        String eventoId = controller.cadastrarEvento(admin, "Evento", "Reserva expirada", amanha, 10, 10.0, dados).getID();
+        Usuario comprador = controller.cadastrarUsuario("comprador", "senha", "Comprador", "00000000000",
+                "comprador@exemplo.com", false, dados);
+
+        ReservasIngressos.Reserva reserva = controller.reservarIngressos(comprador, eventoId, 3, 200, dados);
+        assertEquals(7, dados.lerEvento(eventoId).getIngressos());
+
+        // A roda avança em passos de 100 ms; a reserva vence no máximo alguns passos depois da validade
+        long limite = System.currentTimeMillis() + 5_000;
+        while (reserva.getEstado() == ReservasIngressos.Estado.PENDENTE && System.currentTimeMillis() < limite) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(ReservasIngressos.Estado.EXPIRADA, reserva.getEstado());
+        assertEquals(10, dados.lerEvento(eventoId).getIngressos());
+        assertTrue(dados.getReservas().listarPendentes(comprador.getCpf()).isEmpty());
+        assertThrows(IllegalStateException.class,
+                () -> controller.confirmarReserva(comprador, reserva, "Pix", new Date(), dados));
+        assertFalse(dados.getReservas().liberar(reserva));
+        assertEquals(10, dados.lerEvento(eventoId).getIngressos());
+    }
+}
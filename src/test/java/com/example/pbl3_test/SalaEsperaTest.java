@@ -0,0 +1,64 @@
+package com.example.pbl3_test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SalaEsperaTest {
+
+    private static final int COMPRADORES = 10;
+
+    private final Controller controller = new Controller();
+    private final Usuario admin = new Usuario("admin", "admin", "Administrador", "99999999999", "admin@exemplo.com", true);
+    private final Armazenamento dados = new Armazenamento(new MotorMemoria());
+    private final SalaEspera sala = new SalaEspera(dados, 1000, 100, 60_000);
+
+    @AfterEach
+    void fechar() {
+        sala.fechar();
+        dados.fechar();
+    }
+
+    @Test
+    void filaEsvaziaComEsgotadoQuandoOsIngressosAcabam() {
+        Date amanha = Date.from(LocalDate.now().plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        String eventoId = controller.cadastrarEvento(admin, "Evento", "Sala de espera", amanha, 2, 10.0, dados).getID();
+        List<Usuario> compradores = new ArrayList<>();
+        for (int i = 0; i < COMPRADORES; i++) {
+            compradores.add(controller.cadastrarUsuario("usuario" + i, "senha" + i, "Usuário " + i,
+                    String.format("%011d", i), "usuario" + i + "@exemplo.com", false, dados));
+        }
+
+        // Nunca há mais admitidos que ingressos restantes: os demais esperam na fila
+        for (int i = 0; i < COMPRADORES; i++) {
+            SalaEspera.Estado esperado = i < 2 ? SalaEspera.Estado.ADMITIDO : SalaEspera.Estado.AGUARDANDO;
+            assertEquals(esperado, sala.entrar(eventoId, compradores.get(i).getCpf()).getEstado());
+        }
+        assertEquals(COMPRADORES - 2, sala.getTamanhoFila(eventoId));
+
+        List<Ingresso> vendidos = new ArrayList<>();
+        for (Usuario admitido : compradores.subList(0, 2)) {
+            vendidos.add(controller.comprarIngresso(admitido, eventoId, dados, "Pix", new Date()));
+            assertTrue(sala.concluir(eventoId, admitido.getCpf()));
+        }
+
+        // Com o evento esgotado, a primeira consulta esvazia a fila de uma vez
+        for (Usuario esperando : compradores.subList(2, COMPRADORES)) {
+            assertEquals(SalaEspera.Estado.ESGOTADO, sala.consultar(eventoId, esperando.getCpf()).getEstado());
+        }
+        assertEquals(0, sala.getTamanhoFila(eventoId));
+        assertEquals(SalaEspera.Estado.ESGOTADO, sala.entrar(eventoId, compradores.get(2).getCpf()).getEstado());
+
+        // Um cancelamento devolve o ingresso, e a sala volta a receber compradores
+        controller.cancelarCompra(compradores.get(0), vendidos.get(0), new Date(), dados);
+        assertEquals(SalaEspera.Estado.ADMITIDO, sala.entrar(eventoId, compradores.get(2).getCpf()).getEstado());
+    }
+}
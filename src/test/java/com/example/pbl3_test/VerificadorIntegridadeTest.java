@@ -0,0 +1,53 @@
+package com.example.pbl3_test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class VerificadorIntegridadeTest {
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void documentoCorrompidoVaiParaAQuarentenaNaAbertura() throws IOException {
+        CodecEntidades codec = CodecEntidades.doDiretorio(diretorio.toFile());
+        Path eventos = Files.createDirectories(diretorio.resolve("Eventos"));
+        Evento valido = new Evento("Show", "Documento válido", new Date(), 10, 50.0);
+        Files.write(eventos.resolve(valido.getID() + codec.getExtensao()), codec.codificarEvento(valido));
+        // Uma gravação interrompida sem o log de escrita deixa o documento pela metade
+        byte[] corrompido = "{\"ID\": \"000000-Corrompido\", \"Nome\":".getBytes(StandardCharsets.UTF_8);
+        Path arquivoCorrompido = eventos.resolve("000000-Corrompido" + codec.getExtensao());
+        Files.write(arquivoCorrompido, corrompido);
+
+        MotorArquivos motor = new MotorArquivos(diretorio.toFile(), 1000, 5 * 60 * 1000L);
+        try {
+            assertFalse(Files.exists(arquivoCorrompido));
+            List<Path> emQuarentena;
+            try (Stream<Path> caminhos = Files.walk(diretorio.resolve(VerificadorIntegridade.DIRETORIO_QUARENTENA))) {
+                emQuarentena = caminhos.filter(Files::isRegularFile).collect(Collectors.toList());
+            }
+            assertEquals(1, emQuarentena.size());
+            // O arquivo mantém o caminho relativo dentro de Quarentena/<data e hora>
+            Path movido = emQuarentena.get(0);
+            assertEquals(diretorio.relativize(arquivoCorrompido), movido.subpath(movido.getNameCount() - 2, movido.getNameCount()));
+            assertArrayEquals(corrompido, Files.readAllBytes(emQuarentena.get(0)));
+            assertNotNull(motor.lerEvento(valido.getID()));
+        } finally {
+            motor.fechar();
+        }
+    }
+}